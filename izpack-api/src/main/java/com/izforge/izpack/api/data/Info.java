@@ -125,6 +125,16 @@ public class Info implements Serializable
 
     private boolean pack200Compression;
 
+    /**
+     * The no. of threads used to write unpacked files. If <tt>0</tt>, files are written by the unpacking thread.
+     */
+    private int unpackerThreads = 0;
+
+    /**
+     * Determines if independent packs are unpacked concurrently.
+     */
+    private boolean concurrentPacks;
+
     private boolean requirePrivilegedExecution = false;
 
     private boolean requirePrivilegedExecutionUninstaller = false;
@@ -398,6 +408,46 @@ public class Info implements Serializable
         return pack200Compression;
     }
 
+    /**
+     * Sets the no. of threads used to write unpacked files.
+     *
+     * @param threads the no. of threads. If <tt>0</tt>, files are written by the unpacking thread
+     */
+    public void setUnpackerThreads(int threads)
+    {
+        this.unpackerThreads = threads;
+    }
+
+    /**
+     * Returns the no. of threads used to write unpacked files.
+     *
+     * @return the no. of threads. If <tt>0</tt>, files are written by the unpacking thread
+     */
+    public int getUnpackerThreads()
+    {
+        return unpackerThreads;
+    }
+
+    /**
+     * Determines if {@link Pack#isIndependent() independent} packs are unpacked concurrently.
+     *
+     * @param concurrentPacks if <tt>true</tt>, unpack independent packs concurrently
+     */
+    public void setConcurrentPacks(boolean concurrentPacks)
+    {
+        this.concurrentPacks = concurrentPacks;
+    }
+
+    /**
+     * Determines if {@link Pack#isIndependent() independent} packs are unpacked concurrently.
+     *
+     * @return <tt>true</tt> if independent packs are unpacked concurrently
+     */
+    public boolean isConcurrentPacks()
+    {
+        return concurrentPacks;
+    }
+
     /**
      * This class represents an author.
      *
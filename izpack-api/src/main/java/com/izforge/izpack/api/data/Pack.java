@@ -144,6 +144,16 @@ public class Pack implements Serializable
      */
     private boolean hidden;
 
+    /**
+     * If {@code true}, denotes that the pack may be unpacked concurrently with other packs.
+     */
+    private boolean independent;
+
+    /**
+     * The target paths of the files of an independent pack, prior to variable substitution.
+     */
+    private List<String> targets = new ArrayList<String>();
+
     /**
      * Used for conversions.
      */
@@ -601,6 +611,52 @@ public class Pack implements Serializable
         return hidden;
     }
 
+    /**
+     * Determines if the pack may be unpacked concurrently with other packs.
+     * <p/>
+     * This is the case if the pack has no back references to files in other packs, no Pack200 files, and none of
+     * its files are installed to the same target as a file in another pack.
+     *
+     * @param independent {@code true} if the pack may be unpacked concurrently with other packs
+     */
+    public void setIndependent(boolean independent)
+    {
+        this.independent = independent;
+    }
+
+    /**
+     * Determines if the pack may be unpacked concurrently with other packs.
+     *
+     * @return {@code true} if the pack may be unpacked concurrently with other packs
+     */
+    public boolean isIndependent()
+    {
+        return independent;
+    }
+
+    /**
+     * Sets the target paths of the files of an independent pack.
+     * <p/>
+     * These are the paths prior to variable substitution. They are used by the installer to verify that the targets
+     * of packs unpacked concurrently remain distinct once substituted.
+     *
+     * @param targets the target paths
+     */
+    public void setTargets(List<String> targets)
+    {
+        this.targets = targets;
+    }
+
+    /**
+     * Returns the target paths of the files of an independent pack.
+     *
+     * @return the target paths, prior to variable substitution. Empty if the pack isn't independent
+     */
+    public List<String> getTargets()
+    {
+        return targets;
+    }
+
     /**
      * To a String (usefull for JLists).
      *
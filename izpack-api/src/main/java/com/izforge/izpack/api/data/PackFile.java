@@ -203,6 +203,38 @@ public class PackFile implements Serializable
         this(src, FileUtil.getRelativeFileName(src, baseDir), target, osList, override, overrideRenameTo, blockable, additionals);
     }
 
+    /**
+     * Constructs a <tt>PackFile</tt> read from a pack header.
+     * <p/>
+     * Unlike the other constructors, this doesn't require the source file to exist.
+     *
+     * @param relativeSourcePath the path relative to the compiletime's basedirectory. May be <tt>null</tt>
+     * @param target             the path to install the file to, using '/' as file separator
+     * @param osList             OS constraints. May be <tt>null</tt>
+     * @param length             the length of the file in bytes
+     * @param mtime              the last-modification time of the file
+     * @param isDirectory        determines if the file is a directory
+     * @param override           what to do when the file already exists
+     * @param overrideRenameTo   the globmapper expression used to rename the file if it already exists
+     * @param blockable          determines if the file may be blocked by the operating system
+     * @param additionals        additional attributes. May be <tt>null</tt>
+     */
+    public PackFile(String relativeSourcePath, String target, List<OsModel> osList, long length, long mtime,
+                    boolean isDirectory, OverrideType override, String overrideRenameTo, Blockable blockable,
+                    Map additionals)
+    {
+        this.relativePath = relativeSourcePath;
+        this.targetPath = target;
+        this.osConstraints = osList;
+        this.length = length;
+        this.mtime = mtime;
+        this.isDirectory = isDirectory;
+        this.override = override;
+        this.overrideRenameTo = overrideRenameTo;
+        this.blockable = blockable;
+        this.additionals = additionals;
+    }
+
     public void setPreviousPackFileRef(String previousPackId, Long offsetInPreviousPack)
     {
         this.previousPackId = previousPackId;
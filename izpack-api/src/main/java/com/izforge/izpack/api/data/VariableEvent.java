@@ -0,0 +1,115 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import java.util.EventObject;
+
+
+/**
+ * Event fired when the value of a variable changes.
+ */
+public class VariableEvent extends EventObject
+{
+
+    private static final long serialVersionUID = 4012887264213839418L;
+
+    /**
+     * The variable name.
+     */
+    private final String name;
+
+    /**
+     * The previous value. May be <tt>null</tt>.
+     */
+    private final String oldValue;
+
+    /**
+     * The new value. May be <tt>null</tt>.
+     */
+    private final String newValue;
+
+
+    /**
+     * Constructs a <tt>VariableEvent</tt>.
+     *
+     * @param source   the variables that changed
+     * @param name     the variable name
+     * @param oldValue the previous value. May be <tt>null</tt> if the variable didn't exist
+     * @param newValue the new value. May be <tt>null</tt> if the variable was removed
+     */
+    public VariableEvent(Variables source, String name, String oldValue, String newValue)
+    {
+        super(source);
+        this.name = name;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    /**
+     * Returns the variables that changed.
+     *
+     * @return the variables
+     */
+    public Variables getVariables()
+    {
+        return (Variables) getSource();
+    }
+
+    /**
+     * Returns the variable name.
+     *
+     * @return the variable name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns the previous value of the variable.
+     *
+     * @return the previous value, or <tt>null</tt> if the variable didn't exist
+     */
+    public String getOldValue()
+    {
+        return oldValue;
+    }
+
+    /**
+     * Returns the new value of the variable.
+     *
+     * @return the new value, or <tt>null</tt> if the variable was removed
+     */
+    public String getNewValue()
+    {
+        return newValue;
+    }
+
+    /**
+     * Returns a string representation of the event.
+     *
+     * @return a string representation of the event
+     */
+    @Override
+    public String toString()
+    {
+        return getClass().getName() + "[name=" + name + ", oldValue=" + oldValue + ", newValue=" + newValue + "]";
+    }
+}
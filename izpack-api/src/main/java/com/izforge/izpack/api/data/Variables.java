@@ -59,6 +59,17 @@ public interface Variables
      */
     String get(String name, String defaultValue);
 
+    /**
+     * Returns the version of the specified variable.
+     * <p/>
+     * The version increases each time the value of the variable changes, so that callers can determine if a value
+     * derived from the variable needs to be recalculated.
+     *
+     * @param name the variable name
+     * @return the version
+     */
+    long getVersion(String name);
+
     /**
      * Returns the boolean value of the specified variable.
      *
@@ -131,6 +142,31 @@ public interface Variables
      */
     void refresh();
 
+    /**
+     * Returns a snapshot of the variables.
+     * <p/>
+     * The snapshot contains the current variable values. Subsequent changes to the variables aren't visible in the
+     * snapshot, and vice versa, so a snapshot gives parallel workers a consistent view of the variables. Dynamic
+     * variables aren't included.
+     *
+     * @return a snapshot of the variables
+     */
+    Variables snapshot();
+
+    /**
+     * Registers a listener to be notified when variables change.
+     *
+     * @param listener the listener to add
+     */
+    void addListener(VariableListener listener);
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener to remove
+     */
+    void removeListener(VariableListener listener);
+
     /**
      * Exposes the variables as properties.
      *
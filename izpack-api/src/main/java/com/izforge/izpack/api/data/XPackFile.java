@@ -26,6 +26,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import com.izforge.izpack.api.data.binding.OsModel;
 
@@ -75,6 +76,30 @@ public class XPackFile extends PackFile implements Comparable<XPackFile>
         this.setCondition(file.getCondition());
     }
 
+    /**
+     * Constructs an <tt>XPackFile</tt> read from a pack header.
+     *
+     * @param relativeSourcePath the path relative to the compiletime's basedirectory. May be <tt>null</tt>
+     * @param target             the path to install the file to, using '/' as file separator
+     * @param osList             OS constraints. May be <tt>null</tt>
+     * @param length             the length of the file in bytes
+     * @param mtime              the last-modification time of the file
+     * @param isDirectory        determines if the file is a directory
+     * @param override           what to do when the file already exists
+     * @param overrideRenameTo   the globmapper expression used to rename the file if it already exists
+     * @param blockable          determines if the file may be blocked by the operating system
+     * @param additionals        additional attributes. May be <tt>null</tt>
+     * @param position           the absolute offset of the file in the archive
+     */
+    public XPackFile(String relativeSourcePath, String target, List<OsModel> osList, long length, long mtime,
+                     boolean isDirectory, OverrideType override, String overrideRenameTo, Blockable blockable,
+                     Map additionals, long position)
+    {
+        super(relativeSourcePath, target, osList, length, mtime, isDirectory, override, overrideRenameTo, blockable,
+              additionals);
+        this.position = position;
+    }
+
     /**
      * Returns the position of the file in the archive.
      *
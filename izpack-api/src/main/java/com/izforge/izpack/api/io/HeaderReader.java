@@ -0,0 +1,301 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.XPackFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+
+
+/**
+ * Reads pack headers written by {@link HeaderWriter}.
+ * <p/>
+ * The reader retains no state between headers, so a pack of any number of files can be read in constant memory.
+ *
+ * @see HeaderWriter
+ */
+public class HeaderReader
+{
+
+    /**
+     * The input to read from.
+     */
+    private final DataInput in;
+
+
+    /**
+     * Constructs a <tt>HeaderReader</tt>.
+     *
+     * @param in the input to read from
+     */
+    public HeaderReader(DataInput in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * Reads a pack file header.
+     *
+     * @return the pack file. This is an {@link XPackFile} if one was written
+     * @throws IOException for any I/O error, or if the header is invalid
+     */
+    public PackFile readPackFile() throws IOException
+    {
+        readVersion();
+        int type = in.readUnsignedByte();
+        if (type != HeaderWriter.PACK_FILE && type != HeaderWriter.XPACK_FILE)
+        {
+            throw new IOException("Invalid pack file header type: " + type);
+        }
+        int flags = in.readUnsignedByte();
+        String targetPath = readString();
+        String relativePath = readString();
+        long length = readLength();
+        long mtime = in.readLong();
+        OverrideType override = readEnum(OverrideType.class);
+        String overrideRenameTo = readString();
+        Blockable blockable = readEnum(Blockable.class);
+        String condition = readString();
+        List<OsModel> osConstraints = readOsModels();
+        String previousPackId = null;
+        long offsetInPreviousPack = -1;
+        if ((flags & HeaderWriter.BACK_REFERENCE) != 0)
+        {
+            previousPackId = readString();
+            offsetInPreviousPack = readLength();
+        }
+        Map additionals = (Map) readSerialized();
+        boolean directory = (flags & HeaderWriter.DIRECTORY) != 0;
+
+        PackFile result;
+        if (type == HeaderWriter.XPACK_FILE)
+        {
+            result = new XPackFile(relativePath, targetPath, osConstraints, length, mtime, directory, override,
+                                   overrideRenameTo, blockable, additionals, readLength());
+        }
+        else
+        {
+            result = new PackFile(relativePath, targetPath, osConstraints, length, mtime, directory, override,
+                                  overrideRenameTo, blockable, additionals);
+        }
+        result.setCondition(condition);
+        result.setPack200Jar((flags & HeaderWriter.PACK200) != 0);
+        if (previousPackId != null)
+        {
+            result.setPreviousPackFileRef(previousPackId, offsetInPreviousPack);
+        }
+        return result;
+    }
+
+    /**
+     * Reads and verifies the header format version.
+     *
+     * @throws IOException for any I/O error, or if the version is not supported
+     */
+    protected void readVersion() throws IOException
+    {
+        int version = in.readUnsignedByte();
+        if (version != HeaderWriter.VERSION)
+        {
+            throw new IOException("Unsupported pack header version: " + version);
+        }
+    }
+
+    /**
+     * Reads a string.
+     *
+     * @return the string. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    public String readString() throws IOException
+    {
+        String result = null;
+        int length = readCount();
+        if (length >= 0)
+        {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            result = new String(bytes, "UTF-8");
+        }
+        return result;
+    }
+
+    /**
+     * Reads a list of strings.
+     *
+     * @return the strings. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    public ArrayList<String> readStrings() throws IOException
+    {
+        ArrayList<String> result = null;
+        int count = readCount();
+        if (count >= 0)
+        {
+            result = new ArrayList<String>(count);
+            for (int i = 0; i < count; ++i)
+            {
+                result.add(readString());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a list of OS constraints.
+     *
+     * @return the OS constraints. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    public List<OsModel> readOsModels() throws IOException
+    {
+        List<OsModel> result = null;
+        int count = readCount();
+        if (count >= 0)
+        {
+            result = new ArrayList<OsModel>(count);
+            for (int i = 0; i < count; ++i)
+            {
+                String arch = readString();
+                String family = readString();
+                String jre = readString();
+                String name = readString();
+                String version = readString();
+                result.add(new OsModel(arch, family, jre, name, version));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads an enum constant.
+     *
+     * @param type the enum type
+     * @return the enum constant. May be <tt>null</tt>
+     * @throws IOException for any I/O error, or if the ordinal is invalid
+     */
+    public <T extends Enum<T>> T readEnum(Class<T> type) throws IOException
+    {
+        T result = null;
+        int ordinal = readCount();
+        if (ordinal >= 0)
+        {
+            T[] values = type.getEnumConstants();
+            if (ordinal >= values.length)
+            {
+                throw new IOException("Invalid " + type.getSimpleName() + " ordinal: " + ordinal);
+            }
+            result = values[ordinal];
+        }
+        return result;
+    }
+
+    /**
+     * Reads a count, size or ordinal.
+     *
+     * @return the count. May be <tt>-1</tt>
+     * @throws IOException for any I/O error, or if the count is invalid
+     */
+    public int readCount() throws IOException
+    {
+        long value = readLength();
+        if (value > Integer.MAX_VALUE)
+        {
+            throw new IOException("Invalid count: " + (value - 1));
+        }
+        return (int) value - 1;
+    }
+
+    /**
+     * Reads a non-negative length or offset.
+     *
+     * @return the length
+     * @throws IOException for any I/O error, or if the length is invalid
+     */
+    public long readLength() throws IOException
+    {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do
+        {
+            if (shift > 56)
+            {
+                throw new IOException("Invalid length");
+            }
+            b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return result;
+    }
+
+    /**
+     * Reads an object written using java serialization.
+     *
+     * @return the object. May be <tt>null</tt>
+     * @throws IOException for any I/O error, or if the object cannot be deserialized
+     */
+    public Object readSerialized() throws IOException
+    {
+        Object result = null;
+        int length = readCount();
+        if (length >= 0)
+        {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try
+            {
+                result = stream.readObject();
+            }
+            catch (ClassNotFoundException exception)
+            {
+                throw new IOException("Failed to deserialize object: " + exception.getMessage(), exception);
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the input.
+     *
+     * @return the input
+     */
+    protected DataInput getInput()
+    {
+        return in;
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.XPackFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+
+
+/**
+ * Writes pack headers in a compact binary format.
+ * <p/>
+ * This avoids the class descriptor and reflection costs of java serialization. As no objects are written, an
+ * <tt>ObjectOutputStream</tt> may be supplied without its handle table growing with each header written.
+ * <br/>
+ * Each header starts with the format {@link #VERSION}, so that {@link HeaderReader} can reject headers it doesn't
+ * understand.
+ *
+ * @see HeaderReader
+ */
+public class HeaderWriter
+{
+
+    /**
+     * The header format version.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Header type for {@link PackFile}.
+     */
+    static final int PACK_FILE = 0;
+
+    /**
+     * Header type for {@link XPackFile}.
+     */
+    static final int XPACK_FILE = 1;
+
+    /**
+     * Flag indicating a pack file is a directory.
+     */
+    static final int DIRECTORY = 1;
+
+    /**
+     * Flag indicating a pack file is a pack200 compressed jar.
+     */
+    static final int PACK200 = 2;
+
+    /**
+     * Flag indicating a pack file is a back reference.
+     */
+    static final int BACK_REFERENCE = 4;
+
+    /**
+     * The output to write to.
+     */
+    private final DataOutput out;
+
+
+    /**
+     * Constructs a <tt>HeaderWriter</tt>.
+     *
+     * @param out the output to write to
+     */
+    public HeaderWriter(DataOutput out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Writes a pack file header.
+     * <p/>
+     * The transient source path and size are not written.
+     *
+     * @param file the pack file
+     * @throws IOException for any I/O error
+     */
+    public void writePackFile(PackFile file) throws IOException
+    {
+        writeVersion();
+        boolean extended = file instanceof XPackFile;
+        out.writeByte(extended ? XPACK_FILE : PACK_FILE);
+        int flags = 0;
+        if (file.isDirectory())
+        {
+            flags |= DIRECTORY;
+        }
+        if (file.isPack200Jar())
+        {
+            flags |= PACK200;
+        }
+        if (file.isBackReference())
+        {
+            flags |= BACK_REFERENCE;
+        }
+        out.writeByte(flags);
+        writeString(file.getTargetPath());
+        writeString(file.getRelativeSourcePath());
+        writeLength(file.length());
+        out.writeLong(file.lastModified());
+        writeEnum(file.override());
+        writeString(file.overrideRenameTo());
+        writeEnum(file.blockable());
+        writeString(file.getCondition());
+        writeOsModels(file.osConstraints());
+        if (file.isBackReference())
+        {
+            writeString(file.previousPackId);
+            writeLength(file.offsetInPreviousPack);
+        }
+        writeSerialized(file.getAdditionals());
+        if (extended)
+        {
+            writeLength(((XPackFile) file).getArchiveFilePosition());
+        }
+    }
+
+    /**
+     * Writes the header format version.
+     *
+     * @throws IOException for any I/O error
+     */
+    protected void writeVersion() throws IOException
+    {
+        out.writeByte(VERSION);
+    }
+
+    /**
+     * Writes a string.
+     *
+     * @param value the string. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    public void writeString(String value) throws IOException
+    {
+        if (value == null)
+        {
+            writeCount(-1);
+        }
+        else
+        {
+            byte[] bytes = value.getBytes("UTF-8");
+            writeCount(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Writes a list of strings.
+     *
+     * @param values the strings. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    public void writeStrings(List<String> values) throws IOException
+    {
+        if (values == null)
+        {
+            writeCount(-1);
+        }
+        else
+        {
+            writeCount(values.size());
+            for (String value : values)
+            {
+                writeString(value);
+            }
+        }
+    }
+
+    /**
+     * Writes a list of OS constraints.
+     *
+     * @param models the OS constraints. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    public void writeOsModels(List<OsModel> models) throws IOException
+    {
+        if (models == null)
+        {
+            writeCount(-1);
+        }
+        else
+        {
+            writeCount(models.size());
+            for (OsModel model : models)
+            {
+                writeString(model.getArch());
+                writeString(model.getFamily());
+                writeString(model.getJre());
+                writeString(model.getName());
+                writeString(model.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Writes an enum constant.
+     *
+     * @param value the enum constant. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    public void writeEnum(Enum<?> value) throws IOException
+    {
+        writeCount(value != null ? value.ordinal() : -1);
+    }
+
+    /**
+     * Writes a count, size or ordinal.
+     * <p/>
+     * Values from <tt>-1</tt> to <tt>126</tt> are written in a single byte.
+     *
+     * @param count the count. Must be <tt>&gt;= -1</tt>
+     * @throws IOException for any I/O error
+     */
+    public void writeCount(int count) throws IOException
+    {
+        if (count < -1)
+        {
+            throw new IOException("Invalid count: " + count);
+        }
+        writeLength(count + 1);
+    }
+
+    /**
+     * Writes a non-negative length or offset, using 7 bits per byte.
+     *
+     * @param length the length
+     * @throws IOException for any I/O error
+     */
+    public void writeLength(long length) throws IOException
+    {
+        if (length < 0)
+        {
+            throw new IOException("Invalid length: " + length);
+        }
+        while ((length & ~0x7FL) != 0)
+        {
+            out.writeByte((int) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        out.writeByte((int) length);
+    }
+
+    /**
+     * Writes an arbitrary object using java serialization.
+     * <p/>
+     * This is used for values whose type isn't known, such as the additional attributes of a pack file. The object
+     * is serialized independently of the header, so it doesn't contribute to any handle table of the output.
+     *
+     * @param object the object. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    public void writeSerialized(Object object) throws IOException
+    {
+        if (object == null)
+        {
+            writeCount(-1);
+        }
+        else
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream stream = new ObjectOutputStream(bytes);
+            stream.writeObject(object);
+            stream.close();
+            writeCount(bytes.size());
+            out.write(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Returns the output.
+     *
+     * @return the output
+     */
+    protected DataOutput getOutput()
+    {
+        return out;
+    }
+}
@@ -23,6 +23,7 @@
 package com.izforge.izpack.api.rules;
 
 import java.io.Serializable;
+import java.util.Set;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.data.InstallData;
@@ -41,6 +42,12 @@ public abstract class Condition implements Serializable
 
     private transient InstallData installData;
 
+    /**
+     * The installation data that conditions are being evaluated with on the current thread, when evaluated via
+     * {@link #isTrue(InstallData)}.
+     */
+    private static final ThreadLocal<InstallData> context = new ThreadLocal<InstallData>();
+
     public Condition()
     {
         this.setId("UNKNOWN");
@@ -75,9 +82,47 @@ public abstract class Condition implements Serializable
 
     public abstract boolean isTrue();
 
+    /**
+     * Evaluates the condition against the specified installation data.
+     * <p/>
+     * Unlike setting the installation data and invoking {@link #isTrue()}, this doesn't change the condition, so
+     * the same condition may be evaluated by several threads against different installation data. Nested
+     * conditions evaluated by the condition see the same installation data.
+     *
+     * @param installData the installation data
+     * @return <tt>true</tt> if the condition is met
+     */
+    public boolean isTrue(InstallData installData)
+    {
+        InstallData previous = context.get();
+        context.set(installData);
+        try
+        {
+            return isTrue();
+        }
+        finally
+        {
+            if (previous != null)
+            {
+                context.set(previous);
+            }
+            else
+            {
+                context.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the installation data to evaluate the condition against.
+     *
+     * @return the installation data passed to {@link #isTrue(InstallData)} if the condition is being evaluated by
+     *         it on the current thread, otherwise the installation data set on the condition. May be <tt>null</tt>
+     */
     public InstallData getInstallData()
     {
-        return installData;
+        InstallData result = context.get();
+        return (result != null) ? result : installData;
     }
 
 
@@ -91,6 +136,20 @@ public abstract class Condition implements Serializable
         return "No dependencies for this condition.";
     }
 
+    /**
+     * Returns the names of the variables that this condition reads.
+     * <p/>
+     * If the result of a condition is determined solely by these variables, the rules engine may cache it until
+     * one of them changes. Conditions that depend on anything else, such as files or other installer state, must
+     * return <tt>null</tt>.
+     *
+     * @return the variable names, or <tt>null</tt> if the result of the condition cannot be cached
+     */
+    public Set<String> getVariableNames()
+    {
+        return null;
+    }
+
     /**
      * This element will be called by the RulesEngine to serialize the configuration
      * of a condition into XML.
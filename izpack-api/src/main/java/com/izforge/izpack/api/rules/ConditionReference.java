@@ -19,6 +19,8 @@
 
 package com.izforge.izpack.api.rules;
 
+import java.util.Set;
+
 public abstract class ConditionReference extends Condition
 {
     private static final long serialVersionUID = -2118025238727923692L;
@@ -36,4 +38,16 @@ public abstract class ConditionReference extends Condition
     }
 
     public abstract void resolveReference();
+
+    /**
+     * Returns the names of the variables that the referenced condition reads.
+     *
+     * @return the variable names, or <tt>null</tt> if the reference is unresolved, or the result of the referenced
+     *         condition cannot be cached
+     */
+    @Override
+    public Set<String> getVariableNames()
+    {
+        return (referencedCondition != null) ? referencedCondition.getVariableNames() : null;
+    }
 }
@@ -21,7 +21,9 @@ package com.izforge.izpack.api.rules;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public abstract class ConditionWithMultipleOperands extends Condition
 {
@@ -38,4 +40,25 @@ public abstract class ConditionWithMultipleOperands extends Condition
     {
         Collections.addAll(nestedConditions, operands);
     }
+
+    /**
+     * Returns the names of the variables that the operands read.
+     *
+     * @return the variable names, or <tt>null</tt> if the result of any operand cannot be cached
+     */
+    @Override
+    public Set<String> getVariableNames()
+    {
+        Set<String> result = new HashSet<String>();
+        for (Condition condition : nestedConditions)
+        {
+            Set<String> names = (condition != null) ? condition.getVariableNames() : null;
+            if (names == null)
+            {
+                return null;
+            }
+            result.addAll(names);
+        }
+        return result;
+    }
 }
@@ -53,6 +53,12 @@ import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -931,13 +937,17 @@ public class CompilerConfig extends Thread
 
     private void processFileSetChildren(File baseDir, IXMLElement packElement, PackInfo pack) throws CompilerException
     {
-        for (TargetFileSet fs : readFileSets(packElement))
+        List<TargetFileSet> fileSets = readFileSets(packElement);
+        List<Future<DirectoryScanner>> scans = scan(fileSets);
+        for (int i = 0; i < fileSets.size(); ++i)
         {
+            TargetFileSet fs = fileSets.get(i);
             try
             {
+                DirectoryScanner scanner = getScanner(scans.get(i));
                 String[][] includedFilesAndDirs = new String[][]{
-                        fs.getDirectoryScanner().getIncludedDirectories(),
-                        fs.getDirectoryScanner().getIncludedFiles()
+                        scanner.getIncludedDirectories(),
+                        scanner.getIncludedFiles()
                 };
                 for (String[] filesOrDirs : includedFilesAndDirs)
                 {
@@ -1013,10 +1023,11 @@ public class CompilerConfig extends Thread
 
     private void processFileChildren(File baseDir, IXMLElement packElement, PackInfo pack) throws CompilerException
     {
-        for (IXMLElement fileNode : packElement.getChildrenNamed("file"))
+        List<IXMLElement> fileNodes = packElement.getChildrenNamed("file");
+        List<TargetFileSet> fileSets = new ArrayList<TargetFileSet>();
+        for (IXMLElement fileNode : fileNodes)
         {
             String src = xmlCompilerHelper.requireAttribute(fileNode, "src");
-            boolean unpack = Boolean.parseBoolean(fileNode.getAttribute("unpack"));
 
             TargetFileSet fs = new TargetFileSet();
             try
@@ -1062,15 +1073,30 @@ public class CompilerConfig extends Thread
                 {
                     fs.setFollowSymlinks(Boolean.parseBoolean(boolval));
                 }
+                fileSets.add(fs);
+            }
+            catch (Exception e)
+            {
+                throw new CompilerException(e.getMessage(), e);
+            }
+        }
 
+        List<Future<DirectoryScanner>> scans = scan(fileSets);
+        for (int i = 0; i < fileSets.size(); ++i)
+        {
+            TargetFileSet fs = fileSets.get(i);
+            boolean unpack = Boolean.parseBoolean(fileNodes.get(i).getAttribute("unpack"));
+            try
+            {
+                DirectoryScanner scanner = getScanner(scans.get(i));
                 LinkedList<String> srcfiles = new LinkedList<String>();
-                Collections.addAll(srcfiles, fs.getDirectoryScanner().getIncludedDirectories());
-                Collections.addAll(srcfiles, fs.getDirectoryScanner().getIncludedFiles());
+                Collections.addAll(srcfiles, scanner.getIncludedDirectories());
+                Collections.addAll(srcfiles, scanner.getIncludedFiles());
                 for (String filePath : srcfiles)
                 {
                     if (!filePath.isEmpty())
                     {
-                        abssrcfile = new File(fs.getDir(), filePath);
+                        File abssrcfile = new File(fs.getDir(), filePath);
                         if (unpack)
                         {
                             logger.info("Adding content from archive: " + abssrcfile);
@@ -1096,6 +1122,75 @@ public class CompilerConfig extends Thread
         }
     }
 
+    /**
+     * Scans filesets for the files and directories they include.
+     * <p/>
+     * Filesets are independent, so when there are several, they are scanned concurrently. The scans are returned in
+     * fileset order, so that files are added to packs in the same order as when scanned one after another.
+     * <p/>
+     * The scans only determine the type of each file, so the length and modification time are read when its
+     * {@link com.izforge.izpack.api.data.PackFile} is created.
+     *
+     * @param fileSets the filesets to scan
+     * @return the scans, in fileset order
+     */
+    private List<Future<DirectoryScanner>> scan(List<TargetFileSet> fileSets)
+    {
+        List<Future<DirectoryScanner>> result = new ArrayList<Future<DirectoryScanner>>();
+        int threads = Math.min(fileSets.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = (threads > 1) ? Executors.newFixedThreadPool(threads) : null;
+        for (final TargetFileSet fileSet : fileSets)
+        {
+            FutureTask<DirectoryScanner> scan = new FutureTask<DirectoryScanner>(new Callable<DirectoryScanner>()
+            {
+                @Override
+                public DirectoryScanner call() throws Exception
+                {
+                    return fileSet.getDirectoryScanner();
+                }
+            });
+            if (executor != null)
+            {
+                executor.execute(scan);
+            }
+            else
+            {
+                scan.run();
+            }
+            result.add(scan);
+        }
+        if (executor != null)
+        {
+            // the threads exit once the scans complete
+            executor.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * Waits for a fileset scan to complete.
+     *
+     * @param scan the scan
+     * @return the directory scanner holding the scan results
+     * @throws Exception if the scan failed
+     */
+    private DirectoryScanner getScanner(Future<DirectoryScanner> scan) throws Exception
+    {
+        try
+        {
+            return scan.get();
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof Exception)
+            {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
     private void processExecutableChildren(PackInfo pack, List<IXMLElement> childrenNamed) throws CompilerException
     {
         for (IXMLElement executableNode : childrenNamed)
@@ -1904,6 +1999,25 @@ public class CompilerConfig extends Thread
         IXMLElement pack200 = root.getFirstChildNamed("pack200");
         info.setPack200Compression(pack200 != null);
 
+        // Concurrent unpacking of independent packs
+        IXMLElement concurrentPacks = root.getFirstChildNamed("concurrentpacks");
+        info.setConcurrentPacks(concurrentPacks != null);
+
+        // Unpacker file writer threads
+        IXMLElement unpackerThreads = root.getFirstChildNamed("unpackerthreads");
+        if (unpackerThreads != null)
+        {
+            String threads = xmlCompilerHelper.requireContent(unpackerThreads);
+            try
+            {
+                info.setUnpackerThreads(Integer.parseInt(threads.trim()));
+            }
+            catch (NumberFormatException exception)
+            {
+                assertionHelper.parseError(unpackerThreads, "Invalid number of unpacker threads: " + threads);
+            }
+        }
+
         // Privileged execution
         IXMLElement privileged = root.getFirstChildNamed("run-privileged");
         info.setRequirePrivilegedExecution(privileged != null);
@@ -1950,9 +2064,8 @@ public class CompilerConfig extends Thread
         {
             logger.info("Adding uninstaller");
 
-            //REFACTOR Change the way uninstaller is created
-            mergeManager.addResourceToMerge("com/izforge/izpack/uninstaller/");
-            mergeManager.addResourceToMerge("uninstaller-META-INF/");
+            // the uninstaller classes are merged by the packager, as it also builds the uninstaller skeleton from
+            // them
 
             if (privileged != null)
             {
@@ -45,6 +45,10 @@ public class CliAnalyzer {
     private static final String ARG_OUTPUT = "o";
     private static final String ARG_COMPRESSION_FORMAT = "c";
     private static final String ARG_COMPRESSION_LEVEL = "l";
+    private static final String ARG_PACK_THREADS = "t";
+    private static final String ARG_PACK_CACHE = "cache";
+    private static final String ARG_PACK_CACHE_SIZE = "cachesize";
+    private static final String ARG_BLOCK_COMPRESSION = "blocks";
 
 
     /**
@@ -66,6 +70,14 @@ public class CliAnalyzer {
                 "default is the internal deflate compression\n");
         options.addOption(ARG_COMPRESSION_LEVEL, true, "compression-level : indicates the level for the used compression format"
                 + " if supported. Only integer are valid\n");
+        options.addOption(ARG_PACK_THREADS, true, "threads : indicates the number of threads used to compress packs"
+                + " in parallel. Default is 1, which compresses packs one after another\n");
+        options.addOption(ARG_PACK_CACHE, true, "cache : indicates a directory in which to cache compressed packs"
+                + " between compilations. Unchanged packs are then not compressed again. Default is no cache\n");
+        options.addOption(ARG_PACK_CACHE_SIZE, true, "cache-size : indicates the maximum size of the pack cache in"
+                + " megabytes. The least recently used packs are removed from it once exceeded. Default is unlimited\n");
+        options.addOption(ARG_BLOCK_COMPRESSION, false, "blocks : compress packs in independently inflatable blocks,"
+                + " so the installer can seek to shared files. Default is to compress each pack as a whole\n");
         return options;
     }
 
@@ -109,6 +121,16 @@ public class CliAnalyzer {
         System.out.println("-> Kind        : " + result.getKind());
         System.out.println("-> Compression : " + result.getComprFormat());
         System.out.println("-> Compr. level: " + result.getComprLevel());
+        System.out.println("-> Pack threads: " + result.getPackThreads());
+        if (result.getPackCacheDir() != null) {
+            System.out.println("-> Pack cache  : " + result.getPackCacheDir());
+            if (result.getPackCacheSize() > 0) {
+                System.out.println("-> Cache size  : " + result.getPackCacheSize() + " MB");
+            }
+        }
+        if (result.isBlockCompression()) {
+            System.out.println("-> Pack blocks : enabled");
+        }
         System.out.println("-> IzPack home : " + CompilerData.IZPACK_HOME);
         System.out.println("");
     }
@@ -164,6 +186,18 @@ public class CliAnalyzer {
         if (commandLine.hasOption(ARG_COMPRESSION_LEVEL)) {
             compilerData.setComprLevel(Integer.parseInt(commandLine.getOptionValue(ARG_COMPRESSION_LEVEL).trim()));
         }
+        if (commandLine.hasOption(ARG_PACK_THREADS)) {
+            compilerData.setPackThreads(Integer.parseInt(commandLine.getOptionValue(ARG_PACK_THREADS).trim()));
+        }
+        if (commandLine.hasOption(ARG_PACK_CACHE)) {
+            compilerData.setPackCacheDir(commandLine.getOptionValue(ARG_PACK_CACHE).trim());
+        }
+        if (commandLine.hasOption(ARG_PACK_CACHE_SIZE)) {
+            compilerData.setPackCacheSize(Integer.parseInt(commandLine.getOptionValue(ARG_PACK_CACHE_SIZE).trim()));
+        }
+        if (commandLine.hasOption(ARG_BLOCK_COMPRESSION)) {
+            compilerData.setBlockCompression(true);
+        }
         if (commandLine.hasOption(ARG_IZPACK_HOME)) {
             CompilerData.setIzpackHome(commandLine.getOptionValue(ARG_IZPACK_HOME).trim());
         }
@@ -0,0 +1,63 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.compressor;
+
+import com.izforge.izpack.core.io.BlockDeflaterOutputStream;
+import com.izforge.izpack.core.io.ParallelBlockInflaterInputStream;
+
+
+/**
+ * Implements the PackCompressor for the compression format "block".
+ * <p/>
+ * Packs are deflated in independently compressed blocks of a few MB, which the installer inflates ahead of the
+ * reader on a pool of worker threads, using {@link ParallelBlockInflaterInputStream}.
+ */
+public class BlockPackCompressor extends PackCompressorBase
+{
+
+    /**
+     * The uncompressed block size.
+     */
+    public static final int BLOCK_SIZE = 4 * 1024 * 1024;
+
+    private static final String[] THIS_FORMAT_NAMES = {"block", "parallel"};
+    private static final String THIS_DECODER_MAPPER = ParallelBlockInflaterInputStream.class.getName();
+    private static final String THIS_ENCODER_CLASS_NAME = BlockDeflaterOutputStream.class.getName();
+
+    /**
+     * Constructs a <tt>BlockPackCompressor</tt>.
+     */
+    public BlockPackCompressor()
+    {
+        formatNames = THIS_FORMAT_NAMES;
+        decoderMapper = THIS_DECODER_MAPPER;
+        encoderClassName = THIS_ENCODER_CLASS_NAME;
+    }
+
+    /**
+     * Returns the uncompressed block size.
+     *
+     * @return the block size
+     */
+    public int getBlockSize()
+    {
+        return BLOCK_SIZE;
+    }
+}
@@ -22,6 +22,7 @@ package com.izforge.izpack.compiler.container.provider;
 import org.picocontainer.injectors.Provider;
 
 import com.izforge.izpack.compiler.compressor.BZip2PackCompressor;
+import com.izforge.izpack.compiler.compressor.BlockPackCompressor;
 import com.izforge.izpack.compiler.compressor.DefaultPackCompressor;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.compressor.RawPackCompressor;
@@ -46,6 +47,10 @@ public class PackCompressorProvider implements Provider
         {
             return new RawPackCompressor();
         }
+        else if (format.equals("block") || format.equals("parallel"))
+        {
+            return new BlockPackCompressor();
+        }
         return new DefaultPackCompressor();
     }
 }
@@ -90,6 +90,26 @@ public class CompilerData
      */
     private int comprLevel = -1;
 
+    /**
+     * The number of threads used to compress packs. Values less than 2 compress packs serially.
+     */
+    private int packThreads = 1;
+
+    /**
+     * The directory used to cache compressed packs between compilations, or <tt>null</tt> if packs aren't cached.
+     */
+    private String packCacheDir;
+
+    /**
+     * The maximum size of the pack cache in megabytes. Values less than 1 indicate that the size is unlimited.
+     */
+    private int packCacheSize = 0;
+
+    /**
+     * Determines if packs compressed serially are compressed in independently inflatable blocks.
+     */
+    private boolean blockCompression = false;
+
     /**
      * External Information
      */
@@ -228,6 +248,95 @@ public class CompilerData
         this.comprLevel = comprLevel;
     }
 
+    /**
+     * Returns the number of threads used to compress packs.
+     *
+     * @return the number of pack compression threads. Values less than 2 indicate that packs are compressed serially
+     */
+    public int getPackThreads()
+    {
+        return packThreads;
+    }
+
+    /**
+     * Sets the number of threads used to compress packs.
+     *
+     * @param packThreads the number of pack compression threads. Values less than 2 compress packs serially
+     */
+    public void setPackThreads(int packThreads)
+    {
+        this.packThreads = packThreads;
+    }
+
+    /**
+     * Returns the directory used to cache compressed packs between compilations.
+     *
+     * @return the pack cache directory, or <tt>null</tt> if packs aren't cached
+     */
+    public String getPackCacheDir()
+    {
+        return packCacheDir;
+    }
+
+    /**
+     * Sets the directory used to cache compressed packs between compilations.
+     * <p/>
+     * Packs whose files and attributes are unchanged since they were cached are copied to the installer rather
+     * than compressed.
+     *
+     * @param packCacheDir the pack cache directory. May be <tt>null</tt> to disable caching
+     */
+    public void setPackCacheDir(String packCacheDir)
+    {
+        this.packCacheDir = packCacheDir;
+    }
+
+    /**
+     * Returns the maximum size of the pack cache.
+     *
+     * @return the maximum size in megabytes. Values less than 1 indicate that the size is unlimited
+     */
+    public int getPackCacheSize()
+    {
+        return packCacheSize;
+    }
+
+    /**
+     * Sets the maximum size of the pack cache.
+     * <p/>
+     * Once packs are written, the least recently used cached packs are removed until the cache fits.
+     *
+     * @param packCacheSize the maximum size in megabytes. Values less than 1 indicate that the size is unlimited
+     */
+    public void setPackCacheSize(int packCacheSize)
+    {
+        this.packCacheSize = packCacheSize;
+    }
+
+    /**
+     * Determines if packs compressed serially are compressed in independently inflatable blocks.
+     *
+     * @return <tt>true</tt> if packs are compressed in blocks
+     */
+    public boolean isBlockCompression()
+    {
+        return blockCompression;
+    }
+
+    /**
+     * Determines if packs compressed serially are compressed in independently inflatable blocks.
+     * <p/>
+     * This lets the installer seek to the block containing a back reference, rather than inflating the referenced
+     * pack from its start, at the cost of a slightly larger installer. Packs compressed in parallel are always
+     * compressed in blocks.
+     *
+     * @param blockCompression if <tt>true</tt>, compress packs in blocks
+     */
+    public void setBlockCompression(boolean blockCompression)
+    {
+        this.blockCompression = blockCompression;
+    }
+
     public Info getExternalInfo()
     {
         return this.externalInfo;
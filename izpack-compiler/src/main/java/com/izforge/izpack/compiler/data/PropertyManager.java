@@ -145,6 +145,16 @@ public class PropertyManager
         return true;
     }
 
+    /**
+     * Returns the properties currently known to izpack.
+     *
+     * @return the properties
+     */
+    public Properties getProperties()
+    {
+        return properties;
+    }
+
     /**
      * Get the value of a property currerntly known to izpack.
      *
@@ -0,0 +1,222 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.izforge.izpack.util.BufferPool;
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * Index of the files written to packs, keyed on their content.
+ * <p/>
+ * This is used to store identical files once, even if they come from different source paths.
+ * <br/>
+ * Files are first grouped by length; the SHA-256 digest of a file is only calculated once there is another file
+ * of the same length to compare it with. Files with a unique length are therefore never read by the index.
+ *
+ * @param <T> the type of the information stored with each file
+ */
+public class ContentIndex<T>
+{
+
+    /**
+     * The digest algorithm.
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * The indexed files, keyed on length.
+     */
+    private final Map<Long, List<Entry<T>>> files = new HashMap<Long, List<Entry<T>>>();
+
+    /**
+     * The indexed files, keyed on file. Handles the common case of the same source file being added to
+     * several packs without reading it.
+     */
+    private final Map<File, T> paths = new HashMap<File, T>();
+
+    /**
+     * The calculated file digests.
+     */
+    private final Map<File, byte[]> digests = new HashMap<File, byte[]>();
+
+    /**
+     * Returns the information stored with a file with the same content as that specified.
+     *
+     * @param file the file
+     * @return the information of a file with the same content, or <tt>null</tt> if there is none
+     * @throws IOException if a file cannot be read
+     */
+    public T get(File file) throws IOException
+    {
+        T result = paths.get(file);
+        if (result == null)
+        {
+            List<Entry<T>> entries = files.get(file.length());
+            if (entries != null)
+            {
+                byte[] digest = getDigest(file);
+                for (Entry<T> entry : entries)
+                {
+                    if (Arrays.equals(digest, getDigest(entry.getFile())))
+                    {
+                        result = entry.getValue();
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a file to the index.
+     *
+     * @param file  the file
+     * @param value the information to store with the file
+     */
+    public void put(File file, T value)
+    {
+        paths.put(file, value);
+        Long length = file.length();
+        List<Entry<T>> entries = files.get(length);
+        if (entries == null)
+        {
+            entries = new ArrayList<Entry<T>>();
+            files.put(length, entries);
+        }
+        entries.add(new Entry<T>(file, value));
+    }
+
+    /**
+     * Returns the digest of a file, calculating it if required.
+     *
+     * @param file the file
+     * @return the file digest
+     * @throws IOException if the file cannot be read
+     */
+    private byte[] getDigest(File file) throws IOException
+    {
+        byte[] result = digests.get(file);
+        if (result == null)
+        {
+            result = digest(file);
+            digests.put(file, result);
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the digest of a file.
+     *
+     * @param file the file
+     * @return the file digest
+     * @throws IOException if the file cannot be read
+     */
+    private static byte[] digest(File file) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IOException("Failed to create " + ALGORITHM + " digest", exception);
+        }
+        InputStream in = new DigestInputStream(new FileInputStream(file), digest);
+        byte[] buffer = BufferPool.acquire();
+        try
+        {
+            while (in.read(buffer) != -1)
+            {
+                // read to the end of the file
+            }
+        }
+        finally
+        {
+            FileUtils.close(in);
+            BufferPool.release(buffer);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * An indexed file.
+     */
+    private static class Entry<T>
+    {
+
+        /**
+         * The file.
+         */
+        private final File file;
+
+        /**
+         * The information stored with the file.
+         */
+        private final T value;
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param file  the file
+         * @param value the information stored with the file
+         */
+        public Entry(File file, T value)
+        {
+            this.file = file;
+            this.value = value;
+        }
+
+        /**
+         * Returns the file.
+         *
+         * @return the file
+         */
+        public File getFile()
+        {
+            return file;
+        }
+
+        /**
+         * Returns the information stored with the file.
+         *
+         * @return the information stored with the file
+         */
+        public T getValue()
+        {
+            return value;
+        }
+    }
+}
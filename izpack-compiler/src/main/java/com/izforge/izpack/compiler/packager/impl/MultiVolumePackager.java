@@ -44,6 +44,7 @@ import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.core.io.FileSpanningOutputStream;
 import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.PackHeaderWriter;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
@@ -269,28 +270,29 @@ public class MultiVolumePackager extends PackagerBase
         JarOutputStream installerJar = getInstallerJar();
         installerJar.putNextEntry(entry);
         ObjectOutputStream packStream = new ObjectOutputStream(installerJar);
-
-        writePackFiles(packInfo, volumes, pack, packStream, targetDir);
+        PackHeaderWriter headers = new PackHeaderWriter(packStream);
 
         // Write out information about parsable files
         packStream.writeInt(packInfo.getParsables().size());
         for (ParsableFile file : packInfo.getParsables())
         {
-            packStream.writeObject(file);
+            headers.writeParsableFile(file);
         }
 
+        writePackFiles(packInfo, volumes, pack, packStream, headers, targetDir);
+
         // Write out information about executable files
         packStream.writeInt(packInfo.getExecutables().size());
         for (ExecutableFile file : packInfo.getExecutables())
         {
-            packStream.writeObject(file);
+            headers.writeExecutableFile(file);
         }
 
         // Write out information about update check files
         packStream.writeInt(packInfo.getUpdateChecks().size());
         for (UpdateCheck check : packInfo.getUpdateChecks())
         {
-            packStream.writeObject(check);
+            headers.writeUpdateCheck(check);
         }
 
         // Cleanup
@@ -306,11 +308,13 @@ public class MultiVolumePackager extends PackagerBase
      * @param volumes    the volumes to write to
      * @param pack       the pack
      * @param packStream the stream to write the pack meta-data to
+     * @param headers    the header writer for the pack stream
      * @param targetDir  the target directory for loose files
      * @throws IOException for any I/O error
      */
     private void writePackFiles(PackInfo packInfo, FileSpanningOutputStream volumes, Pack pack,
-                                ObjectOutputStream packStream, File targetDir) throws IOException
+                                ObjectOutputStream packStream, PackHeaderWriter headers, File targetDir)
+            throws IOException
     {
         // write the file meta-data
         Set<PackFile> files = packInfo.getPackFiles();
@@ -336,7 +340,7 @@ public class MultiVolumePackager extends PackagerBase
             }
 
             // write pack file meta-data
-            packStream.writeObject(pf);
+            headers.writePackFile(pf);
             packStream.flush(); // make sure it is written
             // even if not written, it counts towards pack size
             pack.addFileSize(pf.length());
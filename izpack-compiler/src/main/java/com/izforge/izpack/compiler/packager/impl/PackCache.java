@@ -0,0 +1,490 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * A persistent cache of compressed packs, shared between compilations.
+ * <p/>
+ * Each pack is stored under a key derived from everything that determines its compressed bytes: the compression
+ * settings, the pack metadata and file headers, and the path, length and modification time of each file whose
+ * content the pack stores. A pack whose key is unchanged since a previous compilation can therefore be copied to the
+ * installer without reading or compressing its files.
+ * <p/>
+ * An entry consists of the compressed pack (<em>key</em>.pack) and its description (<em>key</em>.info), holding the
+ * CRC-32 of the compressed pack and the offsets of its stored files, which later packs may refer to. Entries are
+ * written to temporary files and renamed into place, so a cache may be shared by concurrent compilations, and
+ * deleted at any time between them.
+ * <p/>
+ * Entries are never invalidated, as a changed pack simply gets a new key. To stop the cache growing without bound,
+ * it may be given a maximum size, in which case {@link #prune()} removes the least recently used entries until the
+ * cache fits. The last access time of an entry is the modification time of its compressed pack, which is updated
+ * each time the entry is retrieved. Entries retrieved or added via this instance are never removed by it, however
+ * pruning may remove entries that a concurrent compilation sharing the cache is about to copy, so such caches should
+ * be generously sized.
+ */
+class PackCache
+{
+
+    /**
+     * The cache format version. This contributes to each key, so changing it invalidates existing entries.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The digest algorithm used to derive keys.
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * The age after which orphaned temporary files are removed by {@link #prune()}, in milliseconds.
+     */
+    private static final long TEMP_FILE_AGE = 24 * 60 * 60 * 1000L;
+
+    /**
+     * The cache directory.
+     */
+    private final File dir;
+
+    /**
+     * The maximum size of the cache in bytes. Values less than 1 indicate that the size is unlimited.
+     */
+    private final long maxSize;
+
+    /**
+     * The keys of the entries retrieved or added via this instance.
+     */
+    private final Set<String> used = new HashSet<String>();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(PackCache.class.getName());
+
+
+    /**
+     * Constructs a <tt>PackCache</tt> of unlimited size.
+     *
+     * @param dir the cache directory. Created if it doesn't exist
+     * @throws IOException if the directory cannot be created
+     */
+    public PackCache(File dir) throws IOException
+    {
+        this(dir, 0);
+    }
+
+    /**
+     * Constructs a <tt>PackCache</tt>.
+     *
+     * @param dir     the cache directory. Created if it doesn't exist
+     * @param maxSize the maximum size of the cache in bytes. Values less than 1 indicate that the size is unlimited
+     * @throws IOException if the directory cannot be created
+     */
+    public PackCache(File dir, long maxSize) throws IOException
+    {
+        if (!dir.isDirectory() && !dir.mkdirs())
+        {
+            throw new IOException("Failed to create pack cache directory: " + dir);
+        }
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Derives a cache key from the fingerprint of a pack.
+     *
+     * @param fingerprint the pack fingerprint
+     * @return the key
+     * @throws IOException if the digest algorithm is not available
+     */
+    public String getKey(byte[] fingerprint) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IOException("Failed to create " + ALGORITHM + " digest", exception);
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest(fingerprint))
+        {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Creates a temporary file in the cache directory, to compress a pack to.
+     * <p/>
+     * Creating it alongside the entries allows it to be renamed into place by {@link #put}.
+     *
+     * @return a new temporary file
+     * @throws IOException if the file cannot be created
+     */
+    public File createTempFile() throws IOException
+    {
+        return File.createTempFile("pack", ".tmp", dir);
+    }
+
+    /**
+     * Returns a cached pack.
+     * <p/>
+     * This updates the last access time of the entry.
+     *
+     * @param key the cache key
+     * @return the cached pack, or <tt>null</tt> if there is no complete entry for the key
+     */
+    public synchronized Entry get(String key)
+    {
+        File file = new File(dir, key + ".pack");
+        File info = new File(dir, key + ".info");
+        if (!file.isFile() || !info.isFile())
+        {
+            return null;
+        }
+        try
+        {
+            DataInputStream in = new DataInputStream(new FileInputStream(info));
+            try
+            {
+                if (in.readInt() != VERSION || in.readLong() != file.length())
+                {
+                    return null;
+                }
+                long crc = in.readLong();
+                long[] offsets = new long[in.readInt()];
+                for (int i = 0; i < offsets.length; ++i)
+                {
+                    offsets[i] = in.readLong();
+                }
+                if (!file.setLastModified(System.currentTimeMillis()))
+                {
+                    logger.fine("Failed to update the last access time of " + file);
+                }
+                used.add(key);
+                return new Entry(file, crc, offsets);
+            }
+            finally
+            {
+                FileUtils.close(in);
+            }
+        }
+        catch (IOException exception)
+        {
+            logger.warning("Ignoring unreadable pack cache entry " + info + ": " + exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Adds a compressed pack to the cache.
+     * <p/>
+     * The temporary file is moved into the cache. If the key is already cached, the temporary file is deleted and
+     * the existing entry is returned.
+     *
+     * @param key     the cache key
+     * @param temp    the compressed pack, written to a file returned by {@link #createTempFile()}
+     * @param crc     the CRC-32 of the compressed pack
+     * @param offsets the offsets of the files stored by the pack, in pack order
+     * @return the cached pack, or <tt>null</tt> if it couldn't be added, in which case the temporary file remains
+     */
+    public synchronized Entry put(String key, File temp, long crc, List<Long> offsets)
+    {
+        Entry result = get(key);
+        if (result != null)
+        {
+            if (!temp.delete())
+            {
+                temp.deleteOnExit();
+            }
+            return result;
+        }
+        File file = new File(dir, key + ".pack");
+        File info = new File(dir, key + ".info");
+        File tempInfo = null;
+        try
+        {
+            tempInfo = createTempFile();
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tempInfo));
+            try
+            {
+                out.writeInt(VERSION);
+                out.writeLong(temp.length());
+                out.writeLong(crc);
+                out.writeInt(offsets.size());
+                for (long offset : offsets)
+                {
+                    out.writeLong(offset);
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+
+            // the description is renamed last, as it completes the entry. If that fails, the pack can still be
+            // used by this compilation; it is just replaced next time
+            if (rename(temp, file))
+            {
+                rename(tempInfo, info);
+                long[] values = new long[offsets.size()];
+                for (int i = 0; i < values.length; ++i)
+                {
+                    values[i] = offsets.get(i);
+                }
+                used.add(key);
+                result = new Entry(file, crc, values);
+            }
+        }
+        catch (IOException exception)
+        {
+            logger.warning("Failed to add pack to cache " + dir + ": " + exception.getMessage());
+        }
+        finally
+        {
+            if (tempInfo != null && tempInfo.exists() && !tempInfo.delete())
+            {
+                tempInfo.deleteOnExit();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the least recently used entries until the cache is no larger than its maximum size.
+     * <p/>
+     * Entries retrieved or added via this instance are retained, as are temporary files less than a day old, as
+     * these may belong to a concurrent compilation. This does nothing if the cache size is unlimited.
+     */
+    public synchronized void prune()
+    {
+        if (maxSize < 1)
+        {
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null)
+        {
+            logger.warning("Failed to list pack cache directory " + dir);
+            return;
+        }
+
+        // group the files by key. An entry's last access time is that of its compressed pack
+        final Map<String, Long> accessed = new HashMap<String, Long>();
+        Map<String, List<File>> entries = new HashMap<String, List<File>>();
+        long size = 0;
+        long now = System.currentTimeMillis();
+        for (File file : files)
+        {
+            String name = file.getName();
+            int index = name.lastIndexOf('.');
+            String suffix = (index != -1) ? name.substring(index) : "";
+            if (suffix.equals(".tmp"))
+            {
+                if (now - file.lastModified() > TEMP_FILE_AGE)
+                {
+                    delete(file);
+                }
+                continue;
+            }
+            if (!suffix.equals(".pack") && !suffix.equals(".info"))
+            {
+                continue;
+            }
+            size += file.length();
+            String key = name.substring(0, index);
+            List<File> entry = entries.get(key);
+            if (entry == null)
+            {
+                entry = new ArrayList<File>();
+                entries.put(key, entry);
+            }
+            if (suffix.equals(".info"))
+            {
+                // remove the description first, as an entry without it is ignored
+                entry.add(0, file);
+            }
+            else
+            {
+                entry.add(file);
+            }
+            if (suffix.equals(".pack") || !accessed.containsKey(key))
+            {
+                accessed.put(key, file.lastModified());
+            }
+        }
+
+        List<String> keys = new ArrayList<String>(entries.keySet());
+        keys.removeAll(used);
+        Collections.sort(keys, new Comparator<String>()
+        {
+            @Override
+            public int compare(String key1, String key2)
+            {
+                long time1 = accessed.get(key1);
+                long time2 = accessed.get(key2);
+                return (time1 < time2) ? -1 : ((time1 == time2) ? 0 : 1);
+            }
+        });
+        for (String key : keys)
+        {
+            if (size <= maxSize)
+            {
+                break;
+            }
+            for (File file : entries.get(key))
+            {
+                long length = file.length();
+                if (delete(file))
+                {
+                    size -= length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a file.
+     *
+     * @param file the file to delete
+     * @return <tt>true</tt> if the file was deleted
+     */
+    private boolean delete(File file)
+    {
+        if (file.delete())
+        {
+            return true;
+        }
+        logger.warning("Failed to delete " + file);
+        return false;
+    }
+
+    /**
+     * Renames a file, replacing any existing file.
+     *
+     * @param from the file to rename
+     * @param to   the new name
+     * @return <tt>true</tt> if the file was renamed
+     */
+    private boolean rename(File from, File to)
+    {
+        if (from.renameTo(to))
+        {
+            return true;
+        }
+        // some platforms won't rename over an existing file
+        if (to.delete() && from.renameTo(to))
+        {
+            return true;
+        }
+        logger.warning("Failed to rename " + from + " to " + to);
+        return false;
+    }
+
+    /**
+     * A cached pack.
+     */
+    public static class Entry
+    {
+
+        /**
+         * The compressed pack.
+         */
+        private final File file;
+
+        /**
+         * The CRC-32 of the compressed pack.
+         */
+        private final long crc;
+
+        /**
+         * The offsets of the files stored by the pack, in pack order.
+         */
+        private final long[] offsets;
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param file    the compressed pack
+         * @param crc     the CRC-32 of the compressed pack
+         * @param offsets the offsets of the files stored by the pack, in pack order
+         */
+        public Entry(File file, long crc, long[] offsets)
+        {
+            this.file = file;
+            this.crc = crc;
+            this.offsets = offsets;
+        }
+
+        /**
+         * Returns the compressed pack.
+         *
+         * @return the compressed pack
+         */
+        public File getFile()
+        {
+            return file;
+        }
+
+        /**
+         * Returns the CRC-32 of the compressed pack.
+         *
+         * @return the CRC-32
+         */
+        public long getCrc()
+        {
+            return crc;
+        }
+
+        /**
+         * Returns the offsets of the files stored by the pack.
+         *
+         * @return the offsets, in pack order
+         */
+        public long[] getOffsets()
+        {
+            return offsets;
+        }
+    }
+}
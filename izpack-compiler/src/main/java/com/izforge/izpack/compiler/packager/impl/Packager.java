@@ -20,37 +20,60 @@
 
 package com.izforge.izpack.compiler.packager.impl;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Pack200;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
+import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.compiler.compressor.BlockPackCompressor;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.core.io.BlockDeflaterOutputStream;
+import com.izforge.izpack.core.io.BlockInflaterInputStream;
 import com.izforge.izpack.core.io.ByteCountingOutputStream;
 import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.PackHeaderWriter;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.file.FileUtils;
 
 /**
  * The packager class. The packager is used by the compiler to put files into an installer, and
@@ -68,6 +91,10 @@ public class Packager extends PackagerBase
      */
     private final OutputStream outputStream;
 
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(Packager.class.getName());
 
     /**
      * Constructs a <tt>Packager</tt>.
@@ -104,8 +131,16 @@ public class Packager extends PackagerBase
         final int num = packs.size();
         sendMsg("Writing " + num + " Pack" + (num > 1 ? "s" : "") + " into installer");
 
-        // Map to remember pack number and bytes offsets of back references
-        Map<File, Object[]> storedFiles = new HashMap<File, Object[]>();
+        if (isParallelPacking())
+        {
+            writePacksParallel(packs);
+            return;
+        }
+
+        // Indexes to remember pack number and bytes offsets of back references, keyed on file content.
+        // Pack200 jars are stored as an identifier rather than their content, so are indexed separately
+        ContentIndex<Object[]> storedFiles = new ContentIndex<Object[]>();
+        ContentIndex<Object[]> storedPack200Files = new ContentIndex<Object[]>();
 
         // Pack200 files map
         Map<Integer, File> pack200Map = new HashMap<Integer, File>();
@@ -115,6 +150,8 @@ public class Packager extends PackagerBase
         JarOutputStream installerJar = getInstallerJar();
         installerJar.setEncoding("utf-8");
 
+        boolean blocks = isBlockCompression();
+
         // First write the serialized files and file metadata data for each pack
         // while counting bytes.
 
@@ -141,11 +178,32 @@ public class Packager extends PackagerBase
             // Retrieve the correct output stream
             org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(
                     RESOURCES_PATH + "packs/pack-" + pack.getName());
+            BlockDeflaterOutputStream deflated = null;
+            if (blocks)
+            {
+                // the pack is compressed in blocks, so store it as is. The jar is seekable, so the size and
+                // CRC are filled in when the entry is closed
+                entry.setMethod(org.apache.tools.zip.ZipEntry.STORED);
+            }
             installerJar.putNextEntry(entry);
             installerJar.flush(); // flush before we start counting
 
-            ByteCountingOutputStream dos = new ByteCountingOutputStream(outputStream);
+            ByteCountingOutputStream dos;
+            if (blocks)
+            {
+                deflated = new BlockDeflaterOutputStream(installerJar, getCompressionLevel());
+                dos = new ByteCountingOutputStream(deflated);
+            }
+            else
+            {
+                dos = new ByteCountingOutputStream(outputStream);
+            }
             ObjectOutputStream objOut = new ObjectOutputStream(dos);
+            PackHeaderWriter headers = new PackHeaderWriter(objOut);
+
+            // The parsable file metadata precedes the files, so that the installer knows which files are parsable
+            // before they are extracted
+            writeParsables(packInfo, objOut, headers);
 
             // We write the actual pack files
             objOut.writeInt(packInfo.getPackFiles().size());
@@ -163,19 +221,25 @@ public class Packager extends PackagerBase
                     pack200 = true;
                 }
 
-                // use a back reference if file was in previous pack, and in
+                // use a back reference if the same content was in a previous pack, and in
                 // same jar
-                Object[] info = storedFiles.get(file);
-                if (info != null && !packSeparateJars())
+                ContentIndex<Object[]> index = pack200 ? storedPack200Files : storedFiles;
+                Object[] info = null;
+                if (!packFile.isDirectory() && !packSeparateJars())
+                {
+                    info = index.get(file);
+                }
+                if (info != null)
                 {
                     packFile.setPreviousPackFileRef((String) info[0], (Long) info[1]);
                     addFile = false;
                 }
 
-                objOut.writeObject(packFile); // base info
+                headers.writePackFile(packFile); // base info
 
                 if (addFile && !packFile.isDirectory())
                 {
+                    objOut.flush(); // write out the header, so the content starts at a block data boundary
                     long pos = dos.getByteCount(); // get the position
 
                     if (pack200)
@@ -203,7 +267,7 @@ public class Packager extends PackagerBase
                         }
                     }
 
-                    storedFiles.put(file, new Object[]{pack.getName(), pos}); // TODO - see IZPACK-799
+                    index.put(file, new Object[]{pack.getName(), pos}); // TODO - see IZPACK-799
                 }
 
                 // even if not written, it counts towards pack size
@@ -215,30 +279,14 @@ public class Packager extends PackagerBase
                 pack.setSize(pack.getFileSize());
             }
 
-            // Write out information about parsable files
-            objOut.writeInt(packInfo.getParsables().size());
-
-            for (ParsableFile parsableFile : packInfo.getParsables())
-            {
-                objOut.writeObject(parsableFile);
-            }
-
-            // Write out information about executable files
-            objOut.writeInt(packInfo.getExecutables().size());
-            for (ExecutableFile executableFile : packInfo.getExecutables())
-            {
-                objOut.writeObject(executableFile);
-            }
-
-            // Write out information about updatecheck files
-            objOut.writeInt(packInfo.getUpdateChecks().size());
-            for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
-            {
-                objOut.writeObject(updateCheck);
-            }
+            writePackMetadata(packInfo, objOut, headers);
 
             // Cleanup
             objOut.flush();
+            if (deflated != null)
+            {
+                deflated.finish();
+            }
             if (!getCompressor().useStandardCompression())
             {
                 outputStream.close();
@@ -266,6 +314,343 @@ public class Packager extends PackagerBase
         }
 
         // Now that we know sizes, write pack metadata to primary jar.
+        writePacksInfo(packs);
+        writePack200Files(pack200Map);
+    }
+
+    /**
+     * Sets the installer information.
+     * <p/>
+     * When packs are compressed in blocks, they are stored pre-compressed in the installer jar, so the installer
+     * must inflate them when reading. For the standard compression, this is done by a sequential inflater; the
+     * {@link BlockPackCompressor} supplies its own decoder.
+     *
+     * @param info the installer information
+     */
+    @Override
+    public void setInfo(Info info)
+    {
+        super.setInfo(info);
+        if (isBlockCompression() && getCompressor().useStandardCompression())
+        {
+            info.setPackDecoderClassName(BlockInflaterInputStream.class.getName());
+        }
+    }
+
+    /**
+     * Determines if packs should be compressed in independently compressed blocks.
+     * <p/>
+     * This allows the installer to seek to the block containing a back reference, rather than inflating the
+     * referenced pack from its start.
+     * <br/>
+     * It is always used when packs are compressed in parallel, which is itself opt-in. Otherwise, it must be
+     * enabled via {@link CompilerData#setBlockCompression(boolean)}, and is only supported for the standard
+     * (deflate) compression when packs are written to a seekable installer jar, as the stored entry sizes are only
+     * known once the packs are written.
+     *
+     * @return <tt>true</tt> if packs should be compressed in blocks
+     */
+    protected boolean isBlockCompression()
+    {
+        return isParallelPacking() || (getCompilerData().isBlockCompression()
+                && getCompressor().useStandardCompression() && !packSeparateJars()
+                && getInstallerJar().isSeekable());
+    }
+
+    /**
+     * Returns the compression level to use when packs are compressed in blocks.
+     *
+     * @return the compression level
+     */
+    private int getCompressionLevel()
+    {
+        int level = getCompilerData().getComprLevel();
+        if (level < 0 || level > 9)
+        {
+            level = Deflater.BEST_COMPRESSION;
+        }
+        return level;
+    }
+
+    /**
+     * Returns the uncompressed block size to use when packs are compressed in blocks.
+     *
+     * @return the block size
+     */
+    private int getBlockSize()
+    {
+        PackCompressor compressor = getCompressor();
+        if (compressor instanceof BlockPackCompressor)
+        {
+            return ((BlockPackCompressor) compressor).getBlockSize();
+        }
+        return BlockDeflaterOutputStream.DEFAULT_BLOCK_SIZE;
+    }
+
+    /**
+     * Determines if packs should be compressed in parallel.
+     * <p/>
+     * Packs are always compressed this way by the {@link BlockPackCompressor}, using as many threads as configured.
+     * Otherwise, this is only supported for the standard (deflate) compression, when multiple threads or a pack cache
+     * are configured and packs are written to the installer jar.
+     *
+     * @return <tt>true</tt> if packs should be compressed in parallel
+     */
+    protected boolean isParallelPacking()
+    {
+        CompilerData compilerData = getCompilerData();
+        return getCompressor() instanceof BlockPackCompressor
+                || ((compilerData.getPackThreads() > 1 || compilerData.getPackCacheDir() != null)
+                && getCompressor().useStandardCompression() && !packSeparateJars());
+    }
+
+    /**
+     * Returns the pack cache.
+     *
+     * @return the pack cache, or <tt>null</tt> if none is configured
+     * @throws IOException if the cache directory cannot be created
+     */
+    private PackCache getPackCache() throws IOException
+    {
+        CompilerData compilerData = getCompilerData();
+        String dir = compilerData.getPackCacheDir();
+        return (dir != null) ? new PackCache(new File(dir), compilerData.getPackCacheSize() * 1024L * 1024L) : null;
+    }
+
+    /**
+     * Writes packs to the installer jar, compressing them in parallel.
+     * <p/>
+     * Each pack is serialized and compressed in blocks by a worker into a spill file. The spill files are then copied to
+     * the installer jar as stored entries, in pack order.
+     * <p/>
+     * Back references are determined up front, as for the serial case. As their offsets are only known once the
+     * file has been written to the owning pack, workers wait on them. This cannot deadlock as back references
+     * only refer to the same or an earlier pack, and packs are submitted to the workers in order.
+     * <p/>
+     * If a pack cache is configured, packs unchanged since they were cached are copied from it rather than
+     * compressed, and newly compressed packs are added to it. Once all packs are written, the cache is pruned to its
+     * maximum size.
+     *
+     * @param packs the packs to write
+     * @throws IOException for any I/O error
+     */
+    private void writePacksParallel(List<PackInfo> packs) throws IOException
+    {
+        int level = getCompressionLevel();
+        PackCache cache = getPackCache();
+
+        // Indexes to remember pack and the (pending) bytes offsets of back references, keyed on file content
+        ContentIndex<BackReference> storedFiles = new ContentIndex<BackReference>();
+        ContentIndex<BackReference> storedPack200Files = new ContentIndex<BackReference>();
+
+        // Pack200 files map
+        Map<Integer, File> pack200Map = new HashMap<Integer, File>();
+        int pack200Counter = 0;
+
+        List<PackWriter> writers = new ArrayList<PackWriter>();
+        for (PackInfo packInfo : packs)
+        {
+            Pack pack = packInfo.getPack();
+            pack.setFileSize(0);
+            PackWriter writer = new PackWriter(packInfo, level, cache);
+
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                File file = packInfo.getFile(packFile);
+                boolean pack200 = false;
+                if (file.getName().toLowerCase().endsWith(".jar") && getInfo().isPack200Compression()
+                        && isNotSignedJar(file))
+                {
+                    packFile.setPack200Jar(true);
+                    pack200 = true;
+                }
+
+                ContentIndex<BackReference> index = pack200 ? storedPack200Files : storedFiles;
+                BackReference reference = packFile.isDirectory() ? null : index.get(file);
+                if (reference != null)
+                {
+                    writer.addReference(packFile, reference);
+                }
+                else if (!pack.isLoose() && !packFile.isDirectory())
+                {
+                    reference = new BackReference(pack.getName());
+                    index.put(file, reference);
+                    Integer pack200Id = null;
+                    if (pack200)
+                    {
+                        pack200Id = pack200Counter;
+                        pack200Map.put(pack200Counter, file);
+                        pack200Counter = pack200Counter + 1;
+                    }
+                    writer.addStored(packFile, reference, pack200Id);
+                }
+            }
+            writers.add(writer);
+        }
+
+        // Force UTF-8 encoding in order to have proper ZipEntry names.
+        JarOutputStream installerJar = getInstallerJar();
+        installerJar.setEncoding("utf-8");
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, getCompilerData().getPackThreads()));
+        List<Future<PackSpill>> spills = new ArrayList<Future<PackSpill>>();
+        int written = 0;
+        try
+        {
+            for (PackWriter writer : writers)
+            {
+                spills.add(executor.submit(writer));
+            }
+
+            for (PackInfo packInfo : packs)
+            {
+                Pack pack = packInfo.getPack();
+                PackSpill spill = getSpill(spills.get(written));
+                sendMsg("Writing Pack " + written + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
+                try
+                {
+                    spill.write(installerJar, RESOURCES_PATH + "packs/pack-" + pack.getName());
+                }
+                finally
+                {
+                    spill.delete();
+                }
+                ++written;
+            }
+            if (cache != null)
+            {
+                cache.prune();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            for (Future<PackSpill> spill : spills.subList(written, spills.size()))
+            {
+                discard(spill);
+            }
+        }
+
+        // Now that we know sizes, write pack metadata to primary jar.
+        writePacksInfo(packs);
+        writePack200Files(pack200Map);
+    }
+
+    /**
+     * Waits for a pack to be compressed.
+     *
+     * @param future the pending pack compression
+     * @return the compressed pack
+     * @throws IOException if the pack could not be compressed
+     */
+    private PackSpill getSpill(Future<PackSpill> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            throw new InterruptedIOException("Interrupted while compressing packs");
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to compress pack", cause);
+        }
+    }
+
+    /**
+     * Discards a pending pack compression, removing its spill file if it has already been written.
+     *
+     * @param future the pending pack compression
+     */
+    private void discard(Future<PackSpill> future)
+    {
+        if (!future.cancel(true))
+        {
+            try
+            {
+                future.get().delete();
+            }
+            catch (Exception ignore)
+            {
+                // the pack failed, so has no spill file
+            }
+        }
+    }
+
+    /**
+     * Writes information about the parsable files of a pack.
+     * <p/>
+     * This precedes the pack files, so that parsable files can be substituted as they are extracted.
+     *
+     * @param packInfo the pack
+     * @param objOut   the stream to write to
+     * @param headers  the header writer for the stream
+     * @throws IOException for any I/O error
+     */
+    private void writeParsables(PackInfo packInfo, ObjectOutputStream objOut, PackHeaderWriter headers)
+            throws IOException
+    {
+        objOut.writeInt(packInfo.getParsables().size());
+
+        for (ParsableFile parsableFile : packInfo.getParsables())
+        {
+            headers.writeParsableFile(parsableFile);
+        }
+    }
+
+    /**
+     * Writes information about the executable files and update checks of a pack.
+     * <p/>
+     * This follows the pack files, so that the installer evaluates them once the files are unpacked.
+     *
+     * @param packInfo the pack
+     * @param objOut   the stream to write to
+     * @param headers  the header writer for the stream
+     * @throws IOException for any I/O error
+     */
+    private void writePackMetadata(PackInfo packInfo, ObjectOutputStream objOut, PackHeaderWriter headers)
+            throws IOException
+    {
+        // Write out information about executable files
+        objOut.writeInt(packInfo.getExecutables().size());
+        for (ExecutableFile executableFile : packInfo.getExecutables())
+        {
+            headers.writeExecutableFile(executableFile);
+        }
+
+        // Write out information about updatecheck files
+        objOut.writeInt(packInfo.getUpdateChecks().size());
+        for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
+        {
+            headers.writeUpdateCheck(updateCheck);
+        }
+    }
+
+    /**
+     * Writes the pack metadata to the installer jar. This must be invoked once the pack sizes are known.
+     *
+     * @param packs the packs
+     * @throws IOException for any I/O error
+     */
+    private void writePacksInfo(List<PackInfo> packs) throws IOException
+    {
+        JarOutputStream installerJar = getInstallerJar();
+        setIndependent(packs);
         installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs.info"));
         ObjectOutputStream out = new ObjectOutputStream(installerJar);
         out.writeInt(packs.size());
@@ -276,8 +661,65 @@ public class Packager extends PackagerBase
         }
         out.flush();
         installerJar.closeEntry();
+    }
+
+    /**
+     * Determines which packs may be unpacked concurrently with other packs.
+     * <p/>
+     * A pack is independent if it has no back references, no Pack200 files, and none of its file targets are shared
+     * with another pack. Targets are compared before variable substitution, so the targets of independent packs are
+     * recorded for the installer to compare once substituted.
+     *
+     * @param packs the packs
+     */
+    private void setIndependent(List<PackInfo> packs)
+    {
+        Map<String, Integer> targets = new HashMap<String, Integer>();
+        for (PackInfo packInfo : packs)
+        {
+            Set<String> packTargets = new HashSet<String>();
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                if (!packFile.isDirectory() && packTargets.add(packFile.getTargetPath()))
+                {
+                    Integer count = targets.get(packFile.getTargetPath());
+                    targets.put(packFile.getTargetPath(), count == null ? 1 : count + 1);
+                }
+            }
+        }
 
-        // Pack200 files
+        for (PackInfo packInfo : packs)
+        {
+            boolean independent = true;
+            List<String> packTargets = new ArrayList<String>();
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                if (packFile.isBackReference() || packFile.isPack200Jar()
+                        || (!packFile.isDirectory() && targets.get(packFile.getTargetPath()) > 1))
+                {
+                    independent = false;
+                    packTargets.clear();
+                    break;
+                }
+                if (!packFile.isDirectory())
+                {
+                    packTargets.add(packFile.getTargetPath());
+                }
+            }
+            packInfo.getPack().setIndependent(independent);
+            packInfo.getPack().setTargets(packTargets);
+        }
+    }
+
+    /**
+     * Writes Pack200 compressed jars to the installer jar.
+     *
+     * @param pack200Map the jars to compress, keyed on their pack200 identifier
+     * @throws IOException for any I/O error
+     */
+    private void writePack200Files(Map<Integer, File> pack200Map) throws IOException
+    {
+        JarOutputStream installerJar = getInstallerJar();
         Pack200.Packer packer = createAgressivePack200Packer();
         for (Integer key : pack200Map.keySet())
         {
@@ -322,6 +764,481 @@ public class Packager extends PackagerBase
         return true;
     }
 
+    /**
+     * The location of a file stored in a pack, used to resolve back references when packs are written in parallel.
+     */
+    private static class BackReference
+    {
+
+        /**
+         * The name of the pack that stores the file.
+         */
+        private final String packName;
+
+        /**
+         * Signalled when the file offset is known, or the owning pack failed.
+         */
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        /**
+         * The offset of the file in the pack, or <tt>-1</tt> if it is not yet known.
+         */
+        private volatile long offset = -1;
+
+        /**
+         * Constructs a <tt>BackReference</tt>.
+         *
+         * @param packName the name of the pack that stores the file
+         */
+        public BackReference(String packName)
+        {
+            this.packName = packName;
+        }
+
+        /**
+         * Returns the name of the pack that stores the file.
+         *
+         * @return the pack name
+         */
+        public String getPackName()
+        {
+            return packName;
+        }
+
+        /**
+         * Sets the offset of the file in the pack, releasing any waiting pack.
+         *
+         * @param offset the offset of the file in the pack
+         */
+        public void setOffset(long offset)
+        {
+            this.offset = offset;
+            latch.countDown();
+        }
+
+        /**
+         * Releases any waiting pack. If the offset has not been set, they will fail.
+         */
+        public void release()
+        {
+            latch.countDown();
+        }
+
+        /**
+         * Returns the offset of the file in the pack, waiting until it is known.
+         *
+         * @param file the file being referenced, for error reporting
+         * @return the offset of the file in the pack
+         * @throws IOException if the owning pack failed, or the wait was interrupted
+         */
+        public long getOffset(File file) throws IOException
+        {
+            try
+            {
+                latch.await();
+            }
+            catch (InterruptedException exception)
+            {
+                throw new InterruptedIOException("Interrupted while waiting for pack: " + packName);
+            }
+            if (offset < 0)
+            {
+                throw new IOException("Cannot reference " + file + ": pack " + packName + " failed");
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * A pack that has been serialized and deflated to a temporary or cached file.
+     */
+    private static class PackSpill
+    {
+
+        /**
+         * The file.
+         */
+        private final File file;
+
+        /**
+         * The CRC-32 of the file contents.
+         */
+        private final long crc;
+
+        /**
+         * Determines if the file is temporary, or belongs to the pack cache.
+         */
+        private final boolean temporary;
+
+        /**
+         * Constructs a <tt>PackSpill</tt>.
+         *
+         * @param file      the file
+         * @param crc       the CRC-32 of the file contents
+         * @param temporary if <tt>true</tt>, the file is deleted once written, otherwise it belongs to the pack cache
+         */
+        public PackSpill(File file, long crc, boolean temporary)
+        {
+            this.file = file;
+            this.crc = crc;
+            this.temporary = temporary;
+        }
+
+        /**
+         * Copies the compressed pack to a stored entry, so that it isn't deflated again.
+         *
+         * @param installerJar the installer jar
+         * @param name         the entry name
+         * @throws IOException for any I/O error
+         */
+        public void write(JarOutputStream installerJar, String name) throws IOException
+        {
+            org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(name);
+            entry.setMethod(org.apache.tools.zip.ZipEntry.STORED);
+            entry.setSize(file.length());
+            entry.setCompressedSize(file.length());
+            entry.setCrc(crc);
+            installerJar.putNextEntry(entry);
+            FileInputStream in = new FileInputStream(file);
+            try
+            {
+                IoHelper.copyStream(in, installerJar);
+            }
+            finally
+            {
+                in.close();
+            }
+            installerJar.closeEntry();
+        }
+
+        /**
+         * Deletes the file, if it is temporary.
+         */
+        public void delete()
+        {
+            if (temporary && !file.delete())
+            {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Serializes and deflates a pack to a temporary file, or retrieves it from the pack cache.
+     */
+    private class PackWriter implements Callable<PackSpill>
+    {
+
+        /**
+         * The pack to write.
+         */
+        private final PackInfo packInfo;
+
+        /**
+         * The compression level.
+         */
+        private final int level;
+
+        /**
+         * The pack cache. May be <tt>null</tt>.
+         */
+        private final PackCache cache;
+
+        /**
+         * The back references to files stored by this or earlier packs.
+         */
+        private final Map<PackFile, BackReference> references = new HashMap<PackFile, BackReference>();
+
+        /**
+         * The files stored by this pack.
+         */
+        private final Map<PackFile, BackReference> stored = new HashMap<PackFile, BackReference>();
+
+        /**
+         * The pack200 identifiers of jars stored by this pack.
+         */
+        private final Map<PackFile, Integer> pack200Ids = new HashMap<PackFile, Integer>();
+
+        /**
+         * Constructs a <tt>PackWriter</tt>.
+         *
+         * @param packInfo the pack to write
+         * @param level    the compression level
+         * @param cache    the pack cache. May be <tt>null</tt>
+         */
+        public PackWriter(PackInfo packInfo, int level, PackCache cache)
+        {
+            this.packInfo = packInfo;
+            this.level = level;
+            this.cache = cache;
+        }
+
+        /**
+         * Registers a file that refers to a file stored by this or an earlier pack.
+         *
+         * @param packFile  the pack file
+         * @param reference the stored file
+         */
+        public void addReference(PackFile packFile, BackReference reference)
+        {
+            references.put(packFile, reference);
+        }
+
+        /**
+         * Registers a file whose content is stored by this pack.
+         *
+         * @param packFile  the pack file
+         * @param reference the reference to resolve once the file is written
+         * @param pack200Id the pack200 identifier, or <tt>null</tt> if the file is not pack200 compressed
+         */
+        public void addStored(PackFile packFile, BackReference reference, Integer pack200Id)
+        {
+            stored.put(packFile, reference);
+            if (pack200Id != null)
+            {
+                pack200Ids.put(packFile, pack200Id);
+            }
+        }
+
+        /**
+         * Writes the pack.
+         *
+         * @return the compressed pack
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public PackSpill call() throws IOException
+        {
+            try
+            {
+                PackSpill result = null;
+                String key = null;
+                if (cache != null)
+                {
+                    key = cache.getKey(getFingerprint());
+                    PackCache.Entry entry = cache.get(key);
+                    if (entry != null && entry.getOffsets().length == stored.size())
+                    {
+                        resolve(entry.getOffsets());
+                        result = new PackSpill(entry.getFile(), entry.getCrc(), false);
+                    }
+                }
+                if (result == null)
+                {
+                    result = write(key);
+                }
+                updateSize();
+                return result;
+            }
+            finally
+            {
+                for (BackReference reference : stored.values())
+                {
+                    reference.release();
+                }
+            }
+        }
+
+        /**
+         * Returns the fingerprint of the pack, used to derive its pack cache key.
+         * <p/>
+         * This comprises the compression settings, the pack metadata and file headers, and the path, length and
+         * modification time of each stored file. As the headers include the offsets of back references, this waits
+         * for earlier packs to resolve them.
+         *
+         * @return the pack fingerprint
+         * @throws IOException for any I/O error
+         */
+        private byte[] getFingerprint() throws IOException
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objOut = new ObjectOutputStream(bytes);
+            PackHeaderWriter headers = new PackHeaderWriter(objOut);
+            objOut.writeInt(PackCache.VERSION);
+            objOut.writeInt(level);
+            objOut.writeInt(getBlockSize());
+            writeParsables(packInfo, objOut, headers);
+            writePackMetadata(packInfo, objOut, headers);
+            objOut.writeInt(packInfo.getPackFiles().size());
+
+            List<BackReference> order = new ArrayList<BackReference>();
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                File file = packInfo.getFile(packFile);
+                BackReference reference = references.get(packFile);
+                if (reference != null && stored.containsValue(reference))
+                {
+                    // refers to a file stored earlier in this pack. Its offset is identified by the fingerprint
+                    // of the pack up to that file
+                    objOut.writeInt(order.indexOf(reference));
+                }
+                else if (reference != null)
+                {
+                    packFile.setPreviousPackFileRef(reference.getPackName(), reference.getOffset(file));
+                }
+                headers.writePackFile(packFile);
+
+                reference = stored.get(packFile);
+                if (reference != null)
+                {
+                    order.add(reference);
+                    Integer pack200Id = pack200Ids.get(packFile);
+                    objOut.writeUTF(file.getAbsolutePath());
+                    objOut.writeLong(file.length());
+                    objOut.writeLong(file.lastModified());
+                    objOut.writeInt(pack200Id != null ? pack200Id : -1);
+                }
+            }
+            objOut.close();
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Resolves the stored files and back references of a cached pack.
+         *
+         * @param offsets the offsets of the stored files, in pack order
+         * @throws IOException for any I/O error
+         */
+        private void resolve(long[] offsets) throws IOException
+        {
+            int index = 0;
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                BackReference reference = stored.get(packFile);
+                if (reference != null)
+                {
+                    reference.setOffset(offsets[index++]);
+                }
+            }
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                BackReference reference = references.get(packFile);
+                if (reference != null)
+                {
+                    File file = packInfo.getFile(packFile);
+                    packFile.setPreviousPackFileRef(reference.getPackName(), reference.getOffset(file));
+                }
+            }
+        }
+
+        /**
+         * Serializes and deflates the pack.
+         *
+         * @param key the pack cache key, or <tt>null</tt> if packs aren't cached
+         * @return the compressed pack
+         * @throws IOException for any I/O error
+         */
+        private PackSpill write(String key) throws IOException
+        {
+            File spill;
+            if (cache != null)
+            {
+                spill = cache.createTempFile();
+            }
+            else
+            {
+                spill = FileUtils.createTempFile("izpack-pack", ".tmp");
+            }
+            spill.deleteOnExit();
+            boolean success = false;
+            try
+            {
+                List<Long> offsets = new ArrayList<Long>();
+                CheckedOutputStream checked = new CheckedOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(spill)), new CRC32());
+                BlockDeflaterOutputStream deflated = new BlockDeflaterOutputStream(checked, level, getBlockSize());
+                ByteCountingOutputStream dos = new ByteCountingOutputStream(deflated);
+                ObjectOutputStream objOut = new ObjectOutputStream(dos);
+                PackHeaderWriter headers = new PackHeaderWriter(objOut);
+                try
+                {
+                    writeParsables(packInfo, objOut, headers);
+                    objOut.writeInt(packInfo.getPackFiles().size());
+
+                    for (PackFile packFile : packInfo.getPackFiles())
+                    {
+                        File file = packInfo.getFile(packFile);
+                        BackReference reference = references.get(packFile);
+                        if (reference != null)
+                        {
+                            packFile.setPreviousPackFileRef(reference.getPackName(), reference.getOffset(file));
+                        }
+
+                        headers.writePackFile(packFile); // base info
+
+                        reference = stored.get(packFile);
+                        if (reference != null)
+                        {
+                            objOut.flush(); // write out the header, so the content starts at a block data boundary
+                            long pos = dos.getByteCount(); // get the position
+                            Integer pack200Id = pack200Ids.get(packFile);
+                            if (pack200Id != null)
+                            {
+                                objOut.writeInt(pack200Id);
+                            }
+                            else
+                            {
+                                FileInputStream inStream = new FileInputStream(file);
+                                long bytesWritten = IoHelper.copyStream(inStream, objOut);
+                                inStream.close();
+                                if (bytesWritten != packFile.length())
+                                {
+                                    throw new IOException("File size mismatch when reading " + file);
+                                }
+                            }
+                            offsets.add(pos);
+                            reference.setOffset(pos);
+                        }
+                    }
+
+                    writePackMetadata(packInfo, objOut, headers);
+                    objOut.flush();
+                    deflated.finish();
+                }
+                finally
+                {
+                    objOut.close();
+                }
+                success = true;
+                long crc = checked.getChecksum().getValue();
+                if (key != null)
+                {
+                    PackCache.Entry entry = cache.put(key, spill, crc, offsets);
+                    if (entry != null)
+                    {
+                        return new PackSpill(entry.getFile(), entry.getCrc(), false);
+                    }
+                }
+                return new PackSpill(spill, crc, true);
+            }
+            finally
+            {
+                if (!success && !spill.delete())
+                {
+                    logger.warning("Failed to delete: " + spill);
+                }
+            }
+        }
+
+        /**
+         * Adds the sizes of the pack files to the pack size.
+         */
+        private void updateSize()
+        {
+            Pack pack = packInfo.getPack();
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                // even if not written, it counts towards pack size
+                pack.addFileSize(packFile.size());
+            }
+
+            if (pack.getFileSize() > pack.getSize())
+            {
+                pack.setSize(pack.getFileSize());
+            }
+        }
+    }
+
     /**
      * ********************************************************************************************
      * Stream utilites for creation of the installer.
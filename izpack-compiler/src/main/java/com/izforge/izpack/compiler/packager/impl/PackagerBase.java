@@ -22,7 +22,10 @@
 
 package com.izforge.izpack.compiler.packager.impl;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -46,6 +49,7 @@ import com.izforge.izpack.api.data.GUIPrefs;
 import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.InstallerRequirement;
 import com.izforge.izpack.api.data.Panel;
+import com.izforge.izpack.api.merge.Mergeable;
 import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
@@ -56,6 +60,7 @@ import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.installer.data.UninstallerSkeleton;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.util.FileUtil;
@@ -102,6 +107,11 @@ public abstract class PackagerBase implements IPackager
      */
     private final CompilerPathResolver pathResolver;
 
+    /**
+     * The mergeables merged into the installer by {@link #writeSkeletonInstaller()}, keyed on resource path.
+     */
+    private final Map<String, List<Mergeable>> installerMergeables = new HashMap<String, List<Mergeable>>();
+
     /**
      * The mergeable resolver.
      */
@@ -446,6 +456,7 @@ public abstract class PackagerBase implements IPackager
         writeInstallerObject("installerrequirements", installerRequirements);
 
         writeInstallerResources();
+        writeUninstallerSkeleton();
         writeIncludedJars();
 
         // Pack File Data may be written to separate jars
@@ -475,30 +486,63 @@ public abstract class PackagerBase implements IPackager
 
     /**
      * Write skeleton installer to the installer jar.
+     * <p/>
+     * If the installer writes an uninstaller, this includes the uninstaller classes and manifest.
      *
      * @throws IOException for any I/O error
      */
     protected void writeSkeletonInstaller() throws IOException
     {
         sendMsg("Copying the skeleton installer", PackagerListener.MSG_VERBOSE);
-        mergeManager.addResourceToMerge("com/izforge/izpack/installer/");
-        mergeManager.addResourceToMerge("org/picocontainer/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/img/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/bin/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/api/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/event/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/core/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/data/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/gui/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/merge/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/util/");
-        mergeManager.addResourceToMerge("org/apache/regexp/");
-        mergeManager.addResourceToMerge("com/coi/tools/");
-        mergeManager.addResourceToMerge("org/apache/tools/zip/");
-        mergeManager.addResourceToMerge("org/apache/commons/io/FilenameUtils.class");
+        addInstallerResource("com/izforge/izpack/installer/");
+        addInstallerResource("org/picocontainer/");
+        addInstallerResource("com/izforge/izpack/img/");
+        addInstallerResource("com/izforge/izpack/bin/");
+        addInstallerResource("com/izforge/izpack/api/");
+        addInstallerResource("com/izforge/izpack/event/");
+        addInstallerResource("com/izforge/izpack/core/");
+        addInstallerResource("com/izforge/izpack/data/");
+        addInstallerResource("com/izforge/izpack/gui/");
+        addInstallerResource("com/izforge/izpack/merge/");
+        addInstallerResource("com/izforge/izpack/util/");
+        addInstallerResource("org/apache/regexp/");
+        addInstallerResource("com/coi/tools/");
+        addInstallerResource("org/apache/tools/zip/");
+        addInstallerResource("org/apache/commons/io/FilenameUtils.class");
+        if (writesUninstaller())
+        {
+            addInstallerResource(UninstallerSkeleton.CLASSES_PATH);
+            addInstallerResource(UninstallerSkeleton.MANIFEST_PATH);
+        }
         mergeManager.merge(installerJar);
     }
 
+    /**
+     * Adds a resource to merge into the installer jar, recording its mergeables so that the uninstaller skeleton
+     * can be built from them.
+     *
+     * @param resourcePath the resource path
+     */
+    private void addInstallerResource(String resourcePath)
+    {
+        List<Mergeable> mergeables = pathResolver.getMergeableFromPath(resourcePath);
+        installerMergeables.put(resourcePath, mergeables);
+        for (Mergeable mergeable : mergeables)
+        {
+            mergeManager.addResourceToMerge(mergeable);
+        }
+    }
+
+    /**
+     * Determines if the installer writes an uninstaller.
+     *
+     * @return <tt>true</tt> if the installer information specifies an uninstaller path
+     */
+    private boolean writesUninstaller()
+    {
+        return info != null && info.getUninstallerPath() != null;
+    }
+
     /**
      * Write an arbitrary object to installer jar.
      *
@@ -553,6 +597,82 @@ public abstract class PackagerBase implements IPackager
         }
     }
 
+    /**
+     * Writes the static content of the uninstaller to the installer jar, if the installer writes an uninstaller.
+     * <p/>
+     * The content is assembled into a jar once, here, rather than by every installation. It is built only from the
+     * mergeables merged into the installer by {@link #writeSkeletonInstaller()}, so that it matches what the
+     * installer would otherwise merge from its own class path. The jar is stored uncompressed, as its entries are
+     * already compressed.
+     *
+     * @throws IOException for any I/O error
+     */
+    protected void writeUninstallerSkeleton() throws IOException
+    {
+        List<Mergeable> classes = installerMergeables.get(UninstallerSkeleton.CLASSES_PATH);
+        if (!writesUninstaller() || classes == null || classes.isEmpty())
+        {
+            return;
+        }
+        List<Mergeable> mergeables = new ArrayList<Mergeable>();
+        if (installerMergeables.containsKey(UninstallerSkeleton.MANIFEST_PATH))
+        {
+            // the installer holds the manifest under its own path, so merge it from the same source to META-INF/
+            mergeables.addAll(pathResolver.getMergeableFromPath(UninstallerSkeleton.MANIFEST_PATH,
+                                                                UninstallerSkeleton.MANIFEST_DESTINATION));
+        }
+        mergeables.addAll(classes);
+        for (String path : UninstallerSkeleton.getContentPaths())
+        {
+            List<Mergeable> content = installerMergeables.get(path);
+            if (content != null)
+            {
+                mergeables.addAll(content);
+            }
+        }
+        sendMsg("Building the uninstaller skeleton", PackagerListener.MSG_VERBOSE);
+        File file = com.izforge.izpack.util.file.FileUtils.createTempFile("uninstaller", ".jar");
+        try
+        {
+            java.util.jar.JarOutputStream jar = new java.util.jar.JarOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)));
+            try
+            {
+                jar.setLevel(9);
+                for (Mergeable mergeable : mergeables)
+                {
+                    mergeable.merge(jar);
+                }
+            }
+            finally
+            {
+                jar.close();
+            }
+
+            org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(
+                    RESOURCES_PATH + UninstallerSkeleton.RESOURCE_NAME);
+            entry.setMethod(org.apache.tools.zip.ZipEntry.STORED);
+            entry.setSize(file.length());
+            entry.setCompressedSize(file.length());
+            entry.setCrc(FileUtils.checksumCRC32(file));
+            installerJar.putNextEntry(entry);
+            FileInputStream in = new FileInputStream(file);
+            try
+            {
+                IoHelper.copyStream(in, installerJar);
+            }
+            finally
+            {
+                in.close();
+            }
+            installerJar.closeEntry();
+        }
+        finally
+        {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
     /**
      * Copy included jars to installer jar.
      *
@@ -597,6 +717,16 @@ public abstract class PackagerBase implements IPackager
         return compressor;
     }
 
+    /**
+     * Returns the compiler data.
+     *
+     * @return the compiler data
+     */
+    protected CompilerData getCompilerData()
+    {
+        return compilerData;
+    }
+
     /**
      * Dispatches a message to the listeners.
      *
@@ -0,0 +1,100 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link PackCache}.
+ */
+public class PackCacheTest
+{
+
+    /**
+     * Temporary folder to create the cache in.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    /**
+     * Verifies that pruning removes the least recently used entries until the cache fits, and retains entries used
+     * by the pruning instance.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPrune() throws Exception
+    {
+        File dir = temporaryFolder.getRoot();
+        PackCache cache = new PackCache(dir);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 4; ++i)
+        {
+            String key = "key" + i;
+            assertNotNull(cache.put(key, createPack(cache, 1000), 0, Collections.<Long>emptyList()));
+            // key0 is the least recently used
+            assertTrue(new File(dir, key + ".pack").setLastModified(now - (4 - i) * 60000L));
+        }
+
+        // the size is unlimited, so nothing is removed
+        cache.prune();
+        assertEquals(8, dir.list().length);
+
+        // allow room for 2 entries. key1 is retrieved, so is retained, and becomes the most recently used
+        cache = new PackCache(dir, 2100);
+        assertNotNull(cache.get("key1"));
+        cache.prune();
+        assertNull(cache.get("key0"));
+        assertNotNull(cache.get("key1"));
+        assertNull(cache.get("key2"));
+        assertNotNull(cache.get("key3"));
+        assertEquals(4, dir.list().length);
+    }
+
+    /**
+     * Creates a compressed pack to add to the cache.
+     *
+     * @param cache  the cache
+     * @param length the pack length
+     * @return the pack
+     * @throws Exception for any error
+     */
+    private File createPack(PackCache cache, int length) throws Exception
+    {
+        File file = cache.createTempFile();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[length]);
+        out.close();
+        return file;
+    }
+}
@@ -19,16 +19,39 @@
 
 package com.izforge.izpack.compiler.packager.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
 
+import org.junit.Test;
 import org.mockito.Mockito;
 
+import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.compiler.compressor.BlockPackCompressor;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.core.io.BlockInflaterInputStream;
+import com.izforge.izpack.core.io.ParallelBlockInflaterInputStream;
+import com.izforge.izpack.data.PackHeaderReader;
+import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 
@@ -38,6 +61,371 @@ import com.izforge.izpack.merge.resolve.MergeableResolver;
 public class PackagerTest extends AbstractPackagerTest
 {
 
+    /**
+     * Verifies that packs compressed in parallel are stored pre-deflated, and that back references to files in
+     * earlier packs resolve to the file content.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testParallelPacking() throws Exception
+    {
+        File data = createTextFile("Shared between packs");
+
+        File jar = File.createTempFile("installer", ".jar");
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        output.setPreventClose(true);
+
+        CompilerData compilerData = new CompilerData("", "", "", true);
+        compilerData.setPackThreads(2);
+        PackCompressor compressor = Mockito.mock(PackCompressor.class);
+        Mockito.when(compressor.useStandardCompression()).thenReturn(true);
+        Packager packager = createPackager(output, Mockito.mock(MergeManager.class), compressor, compilerData);
+        Info info = new Info();
+        packager.setInfo(info);
+        assertEquals(BlockInflaterInputStream.class.getName(), info.getPackDecoderClassName());
+
+        for (String name : new String[]{"Core", "Extra", "Docs"})
+        {
+            PackInfo packInfo = new PackInfo(name, name, null, true, false, null, true, 0);
+            addFile(packInfo, data);
+            packager.addPack(packInfo);
+        }
+        packager.createInstaller();
+
+        JarFile installer = new JarFile(jar);
+        ZipEntry entry = installer.getEntry("resources/packs/pack-Core");
+        assertNotNull(entry);
+        assertEquals(ZipEntry.STORED, entry.getMethod());
+
+        ObjectInputStream core = new ObjectInputStream(getPackStream(installer, "Core"));
+        assertEquals(1, readFileCount(core));
+        assertFalse(new PackHeaderReader(core).readPackFile().isBackReference());
+        core.close();
+
+        for (String name : new String[]{"Extra", "Docs"})
+        {
+            ObjectInputStream pack = new ObjectInputStream(getPackStream(installer, name));
+            assertEquals(1, readFileCount(pack));
+            PackFile file = new PackHeaderReader(pack).readPackFile();
+            assertTrue(file.isBackReference());
+            assertEquals("Core", file.previousPackId);
+            pack.close();
+
+            // mirror the installer: skip to the offset in the referenced pack, and read the content
+            InputStream in = getPackStream(installer, file.previousPackId);
+            ObjectInputStream referenced = new ObjectInputStream(in);
+            assertEquals(file.offsetInPreviousPack - 4, in.skip(file.offsetInPreviousPack - 4));
+            byte[] content = new byte[(int) file.length()];
+            referenced.readFully(content);
+            assertEquals("Shared between packs", new String(content));
+            referenced.close();
+        }
+
+        installer.close();
+        assertTrue(jar.delete());
+        assertTrue(data.delete());
+    }
+
+    /**
+     * Verifies that packs compressed serially are only compressed in blocks when block compression is enabled.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testBlockCompressionOptIn() throws Exception
+    {
+        File jar = File.createTempFile("installer", ".jar");
+        JarOutputStream output = new JarOutputStream(jar);
+        assertTrue(output.isSeekable());
+
+        CompilerData compilerData = new CompilerData("", "", "", true);
+        PackCompressor compressor = Mockito.mock(PackCompressor.class);
+        Mockito.when(compressor.useStandardCompression()).thenReturn(true);
+        Packager packager = createPackager(output, Mockito.mock(MergeManager.class), compressor, compilerData);
+        Info info = new Info();
+        packager.setInfo(info);
+        assertNull(info.getPackDecoderClassName());
+
+        compilerData.setBlockCompression(true);
+        packager.setInfo(info);
+        assertEquals(BlockInflaterInputStream.class.getName(), info.getPackDecoderClassName());
+
+        output.close();
+        assertTrue(jar.delete());
+    }
+
+    /**
+     * Verifies that packs are copied from the pack cache when their files are unchanged, and compressed again
+     * when a file changes.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPackCache() throws Exception
+    {
+        File data = createTextFile("Cached content");
+        File cache = File.createTempFile("cache", "");
+        assertTrue(cache.delete());
+
+        File jar = createCachedInstaller(data, cache);
+        String[] cached = cache.list();
+        assertEquals(4, cached.length); // a .pack and .info for each pack
+        checkCachedInstaller(jar, "Cached content");
+
+        // rebuild. The packs should be reused. Retrieving a pack updates its last access time, so check that its
+        // description isn't rewritten
+        File info = null;
+        for (String name : cached)
+        {
+            if (name.endsWith(".info"))
+            {
+                info = new File(cache, name);
+            }
+        }
+        assertNotNull(info);
+        long modified = info.lastModified();
+        jar = createCachedInstaller(data, cache);
+        assertEquals(4, cache.list().length);
+        assertEquals(modified, info.lastModified());
+        checkCachedInstaller(jar, "Cached content");
+
+        // change the file. The packs should be compressed again
+        PrintStream printStream = new PrintStream(data);
+        printStream.print("Changed content!");
+        printStream.close();
+        assertTrue(data.setLastModified(data.lastModified() + 2000));
+        jar = createCachedInstaller(data, cache);
+        assertEquals(8, cache.list().length);
+        checkCachedInstaller(jar, "Changed content!");
+
+        for (File file : cache.listFiles())
+        {
+            assertTrue(file.delete());
+        }
+        assertTrue(cache.delete());
+        assertTrue(data.delete());
+    }
+
+    /**
+     * Verifies that files with identical content are only stored once, even if they have different source paths.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDuplicateContent() throws Exception
+    {
+        File original = createTextFile("Same content");
+        File copy = createTextFile("Same content");
+        File different = createTextFile("Diff content");
+
+        File jar = File.createTempFile("installer", ".jar");
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        output.setPreventClose(true);
+        PackagerBase packager = createPackager(output, Mockito.mock(MergeManager.class));
+
+        PackInfo core = new PackInfo("Core", "Core", null, true, false, null, true, 0);
+        addFile(core, original);
+        packager.addPack(core);
+        PackInfo extra = new PackInfo("Extra", "Extra", null, true, false, null, true, 0);
+        addFile(extra, copy);
+        addFile(extra, different);
+        packager.addPack(extra);
+        packager.createInstaller();
+
+        JarFile installer = new JarFile(jar);
+        ObjectInputStream pack = new ObjectInputStream(
+                installer.getInputStream(installer.getEntry("resources/packs/pack-Extra")));
+        PackHeaderReader headers = new PackHeaderReader(pack);
+        assertEquals(2, readFileCount(pack));
+        PackFile file = headers.readPackFile();
+        assertTrue(file.isBackReference());
+        assertEquals("Core", file.previousPackId);
+        file = headers.readPackFile();
+        assertFalse(file.isBackReference());
+        pack.close();
+        installer.close();
+
+        assertTrue(jar.delete());
+        assertTrue(original.delete());
+        assertTrue(copy.delete());
+        assertTrue(different.delete());
+    }
+
+    /**
+     * Verifies that packs with no back references and no shared targets are marked as independent.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testIndependentPacks() throws Exception
+    {
+        File original = createTextFile("Same content");
+        File copy = createTextFile("Same content");
+        File doc = createTextFile("Documentation");
+        File config1 = createTextFile("Config 1");
+        File config2 = createTextFile("Config 2");
+
+        File jar = File.createTempFile("installer", ".jar");
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        output.setPreventClose(true);
+        PackagerBase packager = createPackager(output, Mockito.mock(MergeManager.class));
+
+        PackInfo core = new PackInfo("Core", "Core", null, true, false, null, true, 0);
+        addFile(core, original);
+        packager.addPack(core);
+        PackInfo extra = new PackInfo("Extra", "Extra", null, true, false, null, true, 0);
+        addFile(extra, copy);
+        packager.addPack(extra);
+        PackInfo docs = new PackInfo("Docs", "Docs", null, true, false, null, true, 0);
+        addFile(docs, doc);
+        packager.addPack(docs);
+        PackInfo configA = new PackInfo("ConfigA", "ConfigA", null, true, false, null, true, 0);
+        configA.addFile(config1.getParentFile(), config1, "$INSTALL_PATH/config.txt", null,
+                        OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, null);
+        packager.addPack(configA);
+        PackInfo configB = new PackInfo("ConfigB", "ConfigB", null, true, false, null, true, 0);
+        configB.addFile(config2.getParentFile(), config2, "$INSTALL_PATH/config.txt", null,
+                        OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, null);
+        packager.addPack(configB);
+        packager.createInstaller();
+
+        assertTrue(core.getPack().isIndependent());   // referred to by Extra, but has no references itself
+        assertFalse(extra.getPack().isIndependent()); // has a back reference to Core
+        assertTrue(docs.getPack().isIndependent());
+        assertFalse(configA.getPack().isIndependent()); // shares a target with ConfigB
+        assertFalse(configB.getPack().isIndependent());
+
+        // the targets of independent packs are recorded, for the installer to compare once substituted
+        assertEquals(Arrays.asList("$INSTALL_PATH/" + doc.getName()), docs.getPack().getTargets());
+        assertTrue(configA.getPack().getTargets().isEmpty());
+
+        assertTrue(jar.delete());
+        assertTrue(original.delete());
+        assertTrue(copy.delete());
+        assertTrue(doc.delete());
+        assertTrue(config1.delete());
+        assertTrue(config2.delete());
+    }
+
+    /**
+     * Verifies that the block pack compressor stores packs compressed in blocks, even when packs are written by a
+     * single thread, and that the installer is configured to inflate them in parallel.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testBlockCompressor() throws Exception
+    {
+        File data = createTextFile("Compressed in blocks");
+
+        File jar = File.createTempFile("installer", ".jar");
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        output.setPreventClose(true);
+
+        CompilerData compilerData = new CompilerData("", "", "", true);
+        Packager packager = createPackager(output, Mockito.mock(MergeManager.class), new BlockPackCompressor(),
+                                           compilerData);
+        Info info = new Info();
+        packager.setInfo(info);
+        assertEquals(ParallelBlockInflaterInputStream.class.getName(), info.getPackDecoderClassName());
+
+        PackInfo packInfo = new PackInfo("Core", "Core", null, true, false, null, true, 0);
+        addFile(packInfo, data);
+        packager.addPack(packInfo);
+        packager.createInstaller();
+
+        JarFile installer = new JarFile(jar);
+        ZipEntry entry = installer.getEntry("resources/packs/pack-Core");
+        assertEquals(ZipEntry.STORED, entry.getMethod());
+
+        ObjectInputStream pack = new ObjectInputStream(new ParallelBlockInflaterInputStream(
+                installer.getInputStream(entry)));
+        assertEquals(1, readFileCount(pack));
+        PackFile file = new PackHeaderReader(pack).readPackFile();
+        byte[] content = new byte[(int) file.length()];
+        pack.readFully(content);
+        assertEquals("Compressed in blocks", new String(content));
+        pack.close();
+
+        installer.close();
+        assertTrue(jar.delete());
+        assertTrue(data.delete());
+    }
+
+    /**
+     * Helper to create an installer with two packs containing the same file, using a pack cache.
+     *
+     * @param data  the file
+     * @param cache the pack cache directory
+     * @return the installer jar
+     * @throws Exception for any error
+     */
+    private File createCachedInstaller(File data, File cache) throws Exception
+    {
+        File jar = File.createTempFile("installer", ".jar");
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        output.setPreventClose(true);
+
+        CompilerData compilerData = new CompilerData("", "", "", true);
+        compilerData.setPackCacheDir(cache.getPath());
+        PackCompressor compressor = Mockito.mock(PackCompressor.class);
+        Mockito.when(compressor.useStandardCompression()).thenReturn(true);
+        Packager packager = createPackager(output, Mockito.mock(MergeManager.class), compressor, compilerData);
+        packager.setInfo(new Info());
+
+        for (String name : new String[]{"Core", "Docs"})
+        {
+            PackInfo packInfo = new PackInfo(name, name, null, true, false, null, true, 0);
+            addFile(packInfo, data);
+            packager.addPack(packInfo);
+        }
+        packager.createInstaller();
+        return jar;
+    }
+
+    /**
+     * Helper to verify that the second pack of an installer created by {@link #createCachedInstaller} refers to the
+     * expected content, and deletes the installer.
+     *
+     * @param jar     the installer jar
+     * @param content the expected file content
+     * @throws Exception for any error
+     */
+    private void checkCachedInstaller(File jar, String content) throws Exception
+    {
+        JarFile installer = new JarFile(jar);
+        ObjectInputStream pack = new ObjectInputStream(getPackStream(installer, "Docs"));
+        assertEquals(1, readFileCount(pack));
+        PackFile file = new PackHeaderReader(pack).readPackFile();
+        assertTrue(file.isBackReference());
+        pack.close();
+
+        InputStream in = getPackStream(installer, file.previousPackId);
+        ObjectInputStream referenced = new ObjectInputStream(in);
+        assertEquals(file.offsetInPreviousPack - 4, in.skip(file.offsetInPreviousPack - 4));
+        byte[] bytes = new byte[(int) file.length()];
+        referenced.readFully(bytes);
+        assertEquals(content, new String(bytes));
+        referenced.close();
+
+        installer.close();
+        assertTrue(jar.delete());
+    }
+
+    /**
+     * Helper to skip the parsable metadata at the start of a pack stream, and read the no. of pack files.
+     *
+     * @param pack the pack stream
+     * @return the no. of pack files
+     * @throws Exception for any error
+     */
+    private int readFileCount(ObjectInputStream pack) throws Exception
+    {
+        assertEquals(0, pack.readInt()); // parsables
+        return pack.readInt();
+    }
+
     /**
      * Helper to create a packager that writes to the provided jar.
      *
@@ -47,16 +435,71 @@ public class PackagerTest extends AbstractPackagerTest
      */
     @Override
     protected PackagerBase createPackager(JarOutputStream jar, MergeManager mergeManager)
+    {
+        CompilerData data = new CompilerData("", "", "", true);
+        Packager packager = createPackager(jar, mergeManager, Mockito.mock(PackCompressor.class), data);
+        packager.setInfo(new Info());
+        return packager;
+    }
+
+    /**
+     * Helper to create a packager that writes to the provided jar.
+     *
+     * @param jar          the jar stream
+     * @param mergeManager the merge manager
+     * @param compressor   the pack compressor
+     * @param data         the compiler data
+     * @return a new packager
+     */
+    private Packager createPackager(JarOutputStream jar, MergeManager mergeManager, PackCompressor compressor,
+                                    CompilerData data)
     {
         Properties properties = new Properties();
         PackagerListener listener = null;
-        PackCompressor compressor = Mockito.mock(PackCompressor.class);
         CompilerPathResolver pathResolver = Mockito.mock(CompilerPathResolver.class);
         MergeableResolver resolver = Mockito.mock(MergeableResolver.class);
-        CompilerData data = new CompilerData("", "", "", true);
-        Packager packager = new Packager(properties, listener, jar, compressor, jar, mergeManager,
-                                         pathResolver, resolver, data);
-        packager.setInfo(new Info());
-        return packager;
+        return new Packager(properties, listener, jar, compressor, jar, mergeManager, pathResolver, resolver, data);
+    }
+
+    /**
+     * Helper to add a file to a pack.
+     *
+     * @param packInfo the pack
+     * @param file     the file to add
+     * @throws Exception for any error
+     */
+    private void addFile(PackInfo packInfo, File file) throws Exception
+    {
+        packInfo.addFile(file.getParentFile(), file, "$INSTALL_PATH/" + file.getName(), null,
+                         OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, null);
+    }
+
+    /**
+     * Helper to create a temporary text file containing the specified text.
+     *
+     * @param text the text
+     * @return the new file
+     * @throws Exception for any error
+     */
+    private File createTextFile(String text) throws Exception
+    {
+        File file = File.createTempFile("data", ".txt");
+        PrintStream printStream = new PrintStream(file);
+        printStream.print(text);
+        printStream.close();
+        return file;
+    }
+
+    /**
+     * Helper to return the inflated stream of a pack compressed in parallel.
+     *
+     * @param installer the installer jar
+     * @param name      the pack name
+     * @return the pack stream
+     * @throws Exception for any error
+     */
+    private InputStream getPackStream(JarFile installer, String name) throws Exception
+    {
+        return new BlockInflaterInputStream(installer.getInputStream(installer.getEntry("resources/packs/pack-" + name)));
     }
 }
@@ -0,0 +1,455 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * A {@link Properties} backed by a {@link ConcurrentHashMap}, rather than the synchronized {@link java.util.Hashtable}
+ * that <tt>Properties</tt> extends.
+ * <p/>
+ * Reads don't lock, and writes only contend with writes to the same part of the map, so the properties may be
+ * shared by many threads. Iterators and enumerations are weakly consistent; they never throw
+ * {@link java.util.ConcurrentModificationException}.
+ * <p/>
+ * Default properties are not supported. Serializing or cloning the properties produces a plain <tt>Properties</tt>.
+ * <p/>
+ * The atomic {@link ConcurrentMap} operations are provided, and, on Java 8 and later, override those of
+ * {@link java.util.Hashtable}. The Java 8 methods that take functional arguments (<tt>forEach</tt>,
+ * <tt>replaceAll</tt>, <tt>compute</tt>, <tt>computeIfAbsent</tt>, <tt>computeIfPresent</tt> and <tt>merge</tt>)
+ * cannot be overridden while this compiles for Java 6, and operate on the empty <tt>Hashtable</tt>, so must not be
+ * used.
+ */
+public class ConcurrentProperties extends Properties
+{
+
+    private static final long serialVersionUID = -4164409893744412254L;
+
+    /**
+     * The properties.
+     */
+    private final transient ConcurrentMap<Object, Object> map;
+
+
+    /**
+     * Constructs an empty <tt>ConcurrentProperties</tt>.
+     */
+    public ConcurrentProperties()
+    {
+        map = new ConcurrentHashMap<Object, Object>();
+    }
+
+    /**
+     * Constructs a <tt>ConcurrentProperties</tt> containing the string properties of the specified properties,
+     * including any defaults.
+     *
+     * @param properties the properties to copy
+     */
+    public ConcurrentProperties(Properties properties)
+    {
+        this();
+        for (String name : properties.stringPropertyNames())
+        {
+            map.put(name, properties.getProperty(name));
+        }
+    }
+
+    /**
+     * Returns the value of a property.
+     *
+     * @param key the property name
+     * @return the property value, or <tt>null</tt> if the property doesn't exist or isn't a string
+     */
+    @Override
+    public String getProperty(String key)
+    {
+        Object value = map.get(key);
+        return (value instanceof String) ? (String) value : null;
+    }
+
+    /**
+     * Returns the value of a property.
+     *
+     * @param key          the property name
+     * @param defaultValue the value to return if the property doesn't exist
+     * @return the property value, or <tt>defaultValue</tt> if the property doesn't exist or isn't a string
+     */
+    @Override
+    public String getProperty(String key, String defaultValue)
+    {
+        String value = getProperty(key);
+        return (value != null) ? value : defaultValue;
+    }
+
+    /**
+     * Sets a property.
+     *
+     * @param key   the property name
+     * @param value the property value
+     * @return the previous value. May be <tt>null</tt>
+     */
+    @Override
+    public Object setProperty(String key, String value)
+    {
+        return map.put(key, value);
+    }
+
+    /**
+     * Returns the property names.
+     *
+     * @return the property names
+     */
+    @Override
+    public Enumeration<?> propertyNames()
+    {
+        return Collections.enumeration(map.keySet());
+    }
+
+    /**
+     * Returns the names of the properties whose names and values are strings.
+     *
+     * @return the property names
+     */
+    @Override
+    public Set<String> stringPropertyNames()
+    {
+        Set<String> result = new TreeSet<String>();
+        for (Map.Entry<Object, Object> entry : map.entrySet())
+        {
+            if (entry.getKey() instanceof String && entry.getValue() instanceof String)
+            {
+                result.add((String) entry.getKey());
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Returns the value of a property.
+     *
+     * @param key the property name
+     * @return the property value. May be <tt>null</tt>
+     */
+    @Override
+    public Object get(Object key)
+    {
+        return map.get(key);
+    }
+
+    /**
+     * Sets a property.
+     *
+     * @param key   the property name
+     * @param value the property value
+     * @return the previous value. May be <tt>null</tt>
+     */
+    @Override
+    public Object put(Object key, Object value)
+    {
+        return map.put(key, value);
+    }
+
+    /**
+     * Removes a property.
+     *
+     * @param key the property name
+     * @return the previous value. May be <tt>null</tt>
+     */
+    @Override
+    public Object remove(Object key)
+    {
+        return map.remove(key);
+    }
+
+    /**
+     * Returns the value of a property.
+     *
+     * @param key          the property name
+     * @param defaultValue the value to return if the property doesn't exist
+     * @return the property value, or <tt>defaultValue</tt> if the property doesn't exist
+     */
+    public Object getOrDefault(Object key, Object defaultValue)
+    {
+        Object value = map.get(key);
+        return (value != null) ? value : defaultValue;
+    }
+
+    /**
+     * Sets a property, if it doesn't exist.
+     *
+     * @param key   the property name
+     * @param value the property value
+     * @return the existing value, or <tt>null</tt> if the property was set
+     */
+    public Object putIfAbsent(Object key, Object value)
+    {
+        return map.putIfAbsent(key, value);
+    }
+
+    /**
+     * Removes a property, if it has the specified value.
+     *
+     * @param key   the property name
+     * @param value the expected value
+     * @return <tt>true</tt> if the property was removed
+     */
+    public boolean remove(Object key, Object value)
+    {
+        return map.remove(key, value);
+    }
+
+    /**
+     * Replaces a property, if it exists.
+     *
+     * @param key   the property name
+     * @param value the new value
+     * @return the previous value, or <tt>null</tt> if the property doesn't exist
+     */
+    public Object replace(Object key, Object value)
+    {
+        return map.replace(key, value);
+    }
+
+    /**
+     * Replaces a property, if it has the specified value.
+     *
+     * @param key      the property name
+     * @param oldValue the expected value
+     * @param newValue the new value
+     * @return <tt>true</tt> if the property was replaced
+     */
+    public boolean replace(Object key, Object oldValue, Object newValue)
+    {
+        return map.replace(key, oldValue, newValue);
+    }
+
+    /**
+     * Sets properties.
+     *
+     * @param t the properties to set
+     */
+    @Override
+    public void putAll(Map<?, ?> t)
+    {
+        map.putAll(t);
+    }
+
+    /**
+     * Removes all properties.
+     */
+    @Override
+    public void clear()
+    {
+        map.clear();
+    }
+
+    /**
+     * Determines if a property exists.
+     *
+     * @param key the property name
+     * @return <tt>true</tt> if the property exists
+     */
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return map.containsKey(key);
+    }
+
+    /**
+     * Determines if any property has the specified value.
+     *
+     * @param value the value
+     * @return <tt>true</tt> if a property has the value
+     */
+    @Override
+    public boolean contains(Object value)
+    {
+        return map.containsValue(value);
+    }
+
+    /**
+     * Determines if any property has the specified value.
+     *
+     * @param value the value
+     * @return <tt>true</tt> if a property has the value
+     */
+    @Override
+    public boolean containsValue(Object value)
+    {
+        return map.containsValue(value);
+    }
+
+    /**
+     * Returns the no. of properties.
+     *
+     * @return the no. of properties
+     */
+    @Override
+    public int size()
+    {
+        return map.size();
+    }
+
+    /**
+     * Determines if there are no properties.
+     *
+     * @return <tt>true</tt> if there are no properties
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return map.isEmpty();
+    }
+
+    /**
+     * Returns the property names.
+     *
+     * @return the property names
+     */
+    @Override
+    public Enumeration<Object> keys()
+    {
+        return Collections.enumeration(map.keySet());
+    }
+
+    /**
+     * Returns the property values.
+     *
+     * @return the property values
+     */
+    @Override
+    public Enumeration<Object> elements()
+    {
+        return Collections.enumeration(map.values());
+    }
+
+    /**
+     * Returns the property names.
+     *
+     * @return the property names
+     */
+    @Override
+    public Set<Object> keySet()
+    {
+        return map.keySet();
+    }
+
+    /**
+     * Returns the properties.
+     *
+     * @return the properties
+     */
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet()
+    {
+        return map.entrySet();
+    }
+
+    /**
+     * Returns the property values.
+     *
+     * @return the property values
+     */
+    @Override
+    public Collection<Object> values()
+    {
+        return map.values();
+    }
+
+    /**
+     * Returns a copy of the properties.
+     *
+     * @return a new <tt>Properties</tt> containing the same properties
+     */
+    @Override
+    public Object clone()
+    {
+        return copy();
+    }
+
+    /**
+     * Determines if this is equal to another map.
+     *
+     * @param object the object to compare with
+     * @return <tt>true</tt> if the object is a map containing the same properties
+     */
+    @Override
+    public boolean equals(Object object)
+    {
+        return object == this || map.equals(object);
+    }
+
+    /**
+     * Returns the hash code of the properties.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode()
+    {
+        return map.hashCode();
+    }
+
+    /**
+     * Returns a string representation of the properties.
+     *
+     * @return a string representation of the properties
+     */
+    @Override
+    public String toString()
+    {
+        return map.toString();
+    }
+
+    /**
+     * Returns a copy of the properties.
+     *
+     * @return a new <tt>Properties</tt> containing the same properties
+     */
+    private Properties copy()
+    {
+        Properties result = new Properties();
+        for (Map.Entry<Object, Object> entry : map.entrySet())
+        {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Replaces this with a plain <tt>Properties</tt> when serialized, as the superclass only serializes its own
+     * table. This also applies to subclasses.
+     *
+     * @return a copy of the properties
+     */
+    protected Object writeReplace()
+    {
+        return copy();
+    }
+}
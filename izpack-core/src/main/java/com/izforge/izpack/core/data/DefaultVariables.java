@@ -22,21 +22,33 @@
 package com.izforge.izpack.core.data;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.DynamicVariable;
+import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.data.VariableEvent;
+import com.izforge.izpack.api.data.VariableListener;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.rules.RulesEngine;
-import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.core.substitutor.CompiledTemplate;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
 
 
 /**
  * Default implementation of the {@link Variables} interface.
+ * <p/>
+ * By default, variables are held in a {@link ConcurrentProperties}, so that they may be read and written by
+ * several threads without locking. Changes made directly to these via {@link #getProperties()} are reported to
+ * listeners, as well as those made via {@link #set}.
  *
  * @author Tim Anderson
  */
@@ -51,17 +63,27 @@ public class DefaultVariables implements Variables
     /**
      * The dynamic variables.
      */
-    private List<DynamicVariable> dynamicVariables = new ArrayList<DynamicVariable>();
+    private final DynamicVariableGraph dynamicVariables = new DynamicVariableGraph();
 
     /**
-     * The variable replacer.
+     * The rules for evaluating dynamic variable conditions.
      */
-    private final VariableSubstitutor replacer;
+    private RulesEngine rules;
 
     /**
-     * The rules for evaluating dynamic variable conditions.
+     * The variable versions, keyed on variable name.
      */
-    private RulesEngine rules;
+    private final Map<String, Version> versions = new ConcurrentHashMap<String, Version>();
+
+    /**
+     * The last version assigned.
+     */
+    private final AtomicLong lastVersion = new AtomicLong();
+
+    /**
+     * The listeners to notify of variable changes.
+     */
+    private final List<VariableListener> listeners = new CopyOnWriteArrayList<VariableListener>();
 
 
     /**
@@ -74,18 +96,20 @@ public class DefaultVariables implements Variables
      */
     public DefaultVariables()
     {
-        this(new Properties());
+        properties = new ObservedProperties();
     }
 
     /**
      * Constructs a <tt>DefaultVariables</tt>, from properties.
+     * <p/>
+     * The properties are used to hold the variables. Unless they are {@link ConcurrentProperties}, access to them
+     * is synchronized. Changes made to them directly aren't reported to listeners.
      *
      * @param properties the properties
      */
     public DefaultVariables(Properties properties)
     {
         this.properties = properties;
-        replacer = new VariableSubstitutorImpl(properties);
     }
 
     /**
@@ -100,6 +124,8 @@ public class DefaultVariables implements Variables
 
     /**
      * Sets a variable.
+     * <p/>
+     * If the value changes, registered listeners are notified.
      *
      * @param name  the variable name
      * @param value the variable value. May be {@code null}
@@ -107,13 +133,18 @@ public class DefaultVariables implements Variables
     @Override
     public void set(String name, String value)
     {
+        Object oldValue;
         if (value != null)
         {
-            properties.setProperty(name, value);
+            oldValue = properties.setProperty(name, value);
         }
         else
         {
-            properties.remove(name);
+            oldValue = properties.remove(name);
+        }
+        if (!(properties instanceof ObservedProperties))
+        {
+            changed(name, oldValue, value);
         }
     }
 
@@ -141,6 +172,28 @@ public class DefaultVariables implements Variables
         return properties.getProperty(name, defaultValue);
     }
 
+    /**
+     * Returns the version of the specified variable.
+     * <p/>
+     * Changes are detected by comparing the variable with its value when the version was last requested, so that
+     * changes made directly via {@link #getProperties()} are also reflected.
+     *
+     * @param name the variable name
+     * @return the version
+     */
+    @Override
+    public long getVersion(String name)
+    {
+        String value = properties.getProperty(name);
+        Version version = versions.get(name);
+        if (version == null || (value == null ? version.value != null : !value.equals(version.value)))
+        {
+            version = new Version(value, lastVersion.incrementAndGet());
+            versions.put(name, version);
+        }
+        return version.version;
+    }
+
     /**
      * Returns the boolean value of the specified variable.
      *
@@ -255,28 +308,65 @@ public class DefaultVariables implements Variables
 
     /**
      * Replaces any variables in the supplied value.
+     * <p/>
+     * Values are parsed once, and the result cached, as the same values tend to be replaced repeatedly.
      *
      * @param value the value. May be {@code null}
-     * @return the value with variables replaced, or {@code value} if there were no variables to replace, or
-     *         replacement failed
+     * @return the value with variables replaced, or {@code value} if there were no variables to replace
      */
     @Override
     public String replace(String value)
     {
-        if (value != null)
+        if (value != null && value.indexOf('$') != -1)
         {
-            try
-            {
-                value = replacer.substitute(value);
-            }
-            catch (Exception exception)
-            {
-                logger.log(Level.WARNING, exception.getMessage(), exception);
-            }
+            value = CompiledTemplate.compile(value).render(properties);
         }
         return value;
     }
 
+    /**
+     * Returns a snapshot of the variables.
+     * <p/>
+     * The snapshot shares the rules used to evaluate dynamic variable conditions, but has no dynamic variables or
+     * listeners.
+     *
+     * @return a snapshot of the variables
+     */
+    @Override
+    public Variables snapshot()
+    {
+        DefaultVariables result = new DefaultVariables(new ConcurrentProperties(properties));
+        result.setRules(rules);
+        return result;
+    }
+
+    /**
+     * Registers a listener to be notified when variables change.
+     * <p/>
+     * Listeners are notified of changes made via {@link #set}, including those made when dynamic variables are
+     * refreshed, and of changes made directly via {@link #getProperties()}, unless the variables were constructed
+     * from caller supplied properties. Changes made through the <tt>keySet()</tt>, <tt>values()</tt> and
+     * <tt>entrySet()</tt> views of the properties aren't reported.
+     *
+     * @param listener the listener to add
+     */
+    @Override
+    public void addListener(VariableListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener to remove
+     */
+    @Override
+    public void removeListener(VariableListener listener)
+    {
+        listeners.remove(listener);
+    }
+
     /**
      * Adds a dynamic variable.
      *
@@ -290,14 +380,20 @@ public class DefaultVariables implements Variables
 
     /**
      * Refreshes dynamic variables.
+     * <p/>
+     * Dynamic variables are refreshed in dependency order. A variable is only re-evaluated if the variables it
+     * referenced when last evaluated have changed since; otherwise its previous value is re-applied.
+     * <p/>
+     * Refreshes are serialized, but don't prevent other threads from reading or writing variables.
      *
      * @throws IzPackException if variables cannot be refreshed
      */
     @Override
     public synchronized void refresh()
     {
-        for (DynamicVariable variable : dynamicVariables)
+        for (DynamicVariableGraph.Node node : dynamicVariables.getNodes(rules))
         {
+            DynamicVariable variable = node.getVariable();
             String conditionId = variable.getConditionid();
             boolean log = logger.isLoggable(Level.FINE);
             if (conditionId != null && !rules.isConditionTrue(conditionId))
@@ -308,12 +404,22 @@ public class DefaultVariables implements Variables
                                         + " skipped due to unmet condition=" + conditionId);
                 }
             }
+            else if (!node.isStale(properties))
+            {
+                set(variable.getName(), node.getValue());
+                if (log)
+                {
+                    logger.fine("Dynamic variable=" + variable.getName() + " not re-evaluated, value="
+                                        + node.getValue());
+                }
+            }
             else
             {
                 String newValue;
+                Map<String, String> inputs = new LinkedHashMap<String, String>();
                 try
                 {
-                    newValue = variable.evaluate(replacer);
+                    newValue = variable.evaluate(new RecordingSubstitutor(properties, inputs));
                 }
                 catch (IzPackException exception)
                 {
@@ -324,6 +430,7 @@ public class DefaultVariables implements Variables
                     throw new IzPackException("Failed to refresh dynamic variables (" + variable.getName() + ")", exception);
 
                 }
+                dynamicVariables.update(node, inputs, newValue);
                 if (newValue != null)
                 {
                     set(variable.getName(), newValue);
@@ -351,4 +458,247 @@ public class DefaultVariables implements Variables
         return properties;
     }
 
+    /**
+     * Notifies listeners of a change to a variable.
+     *
+     * @param name     the variable name
+     * @param oldValue the old value. May be {@code null}
+     * @param newValue the new value. May be {@code null}
+     */
+    private void changed(Object name, Object oldValue, Object newValue)
+    {
+        if (!listeners.isEmpty() && name instanceof String
+                && (oldValue == null ? newValue != null : !oldValue.equals(newValue)))
+        {
+            VariableEvent event = new VariableEvent(this, (String) name,
+                                                    (oldValue instanceof String) ? (String) oldValue : null,
+                                                    (newValue instanceof String) ? (String) newValue : null);
+            for (VariableListener listener : listeners)
+            {
+                listener.variableChanged(event);
+            }
+        }
+    }
+
+    /**
+     * Properties that notify listeners when they change.
+     */
+    private class ObservedProperties extends ConcurrentProperties
+    {
+
+        private static final long serialVersionUID = -2079154418437329128L;
+
+        /**
+         * Sets a property.
+         *
+         * @param key   the property name
+         * @param value the property value
+         * @return the previous value. May be <tt>null</tt>
+         */
+        @Override
+        public Object setProperty(String key, String value)
+        {
+            return put(key, value);
+        }
+
+        /**
+         * Sets a property.
+         *
+         * @param key   the property name
+         * @param value the property value
+         * @return the previous value. May be <tt>null</tt>
+         */
+        @Override
+        public Object put(Object key, Object value)
+        {
+            Object result = super.put(key, value);
+            changed(key, result, value);
+            return result;
+        }
+
+        /**
+         * Removes a property.
+         *
+         * @param key the property name
+         * @return the previous value. May be <tt>null</tt>
+         */
+        @Override
+        public Object remove(Object key)
+        {
+            Object result = super.remove(key);
+            changed(key, result, null);
+            return result;
+        }
+
+        /**
+         * Sets a property, if it doesn't exist.
+         *
+         * @param key   the property name
+         * @param value the property value
+         * @return the existing value, or <tt>null</tt> if the property was set
+         */
+        @Override
+        public Object putIfAbsent(Object key, Object value)
+        {
+            Object result = super.putIfAbsent(key, value);
+            if (result == null)
+            {
+                changed(key, null, value);
+            }
+            return result;
+        }
+
+        /**
+         * Removes a property, if it has the specified value.
+         *
+         * @param key   the property name
+         * @param value the expected value
+         * @return <tt>true</tt> if the property was removed
+         */
+        @Override
+        public boolean remove(Object key, Object value)
+        {
+            boolean result = super.remove(key, value);
+            if (result)
+            {
+                changed(key, value, null);
+            }
+            return result;
+        }
+
+        /**
+         * Replaces a property, if it exists.
+         *
+         * @param key   the property name
+         * @param value the new value
+         * @return the previous value, or <tt>null</tt> if the property doesn't exist
+         */
+        @Override
+        public Object replace(Object key, Object value)
+        {
+            Object result = super.replace(key, value);
+            if (result != null)
+            {
+                changed(key, result, value);
+            }
+            return result;
+        }
+
+        /**
+         * Replaces a property, if it has the specified value.
+         *
+         * @param key      the property name
+         * @param oldValue the expected value
+         * @param newValue the new value
+         * @return <tt>true</tt> if the property was replaced
+         */
+        @Override
+        public boolean replace(Object key, Object oldValue, Object newValue)
+        {
+            boolean result = super.replace(key, oldValue, newValue);
+            if (result)
+            {
+                changed(key, oldValue, newValue);
+            }
+            return result;
+        }
+
+        /**
+         * Sets properties.
+         *
+         * @param t the properties to set
+         */
+        @Override
+        public void putAll(Map<?, ?> t)
+        {
+            for (Map.Entry<?, ?> entry : t.entrySet())
+            {
+                put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        /**
+         * Removes all properties.
+         */
+        @Override
+        public void clear()
+        {
+            for (Object key : new ArrayList<Object>(keySet()))
+            {
+                remove(key);
+            }
+        }
+    }
+
+    /**
+     * The value of a variable, when a version was assigned to it.
+     */
+    private static class Version
+    {
+
+        /**
+         * The variable value. May be <tt>null</tt>.
+         */
+        private final String value;
+
+        /**
+         * The version.
+         */
+        private final long version;
+
+        /**
+         * Constructs a <tt>Version</tt>.
+         *
+         * @param value   the variable value. May be <tt>null</tt>
+         * @param version the version
+         */
+        public Version(String value, long version)
+        {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    /**
+     * A substitutor that records the variables referenced during substitution, and their values.
+     */
+    private static class RecordingSubstitutor extends VariableSubstitutorImpl
+    {
+
+        private static final long serialVersionUID = 6017234751894502763L;
+
+        /**
+         * The referenced variables, and their values at the time they were first referenced.
+         */
+        private final Map<String, String> inputs;
+
+        /**
+         * Constructs a <tt>RecordingSubstitutor</tt>.
+         *
+         * @param properties the variable values
+         * @param inputs     collects the referenced variables
+         */
+        public RecordingSubstitutor(Properties properties, Map<String, String> inputs)
+        {
+            super(properties);
+            this.inputs = inputs;
+        }
+
+        /**
+         * Returns the value of a variable.
+         *
+         * @param name the variable name
+         * @return the variable value
+         */
+        @Override
+        public Value getValue(String name)
+        {
+            if (!inputs.containsKey(name))
+            {
+                inputs.put(name, this.variables.getProperty(name));
+            }
+            return super.getValue(name);
+        }
+    }
+
 }
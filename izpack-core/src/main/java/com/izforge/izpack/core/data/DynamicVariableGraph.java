@@ -0,0 +1,362 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+
+import com.izforge.izpack.api.data.DynamicVariable;
+import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.core.variable.ValueImpl;
+
+
+/**
+ * Tracks the variables that each dynamic variable depends on, so that dynamic variables are only re-evaluated when
+ * their inputs change.
+ * <p/>
+ * The inputs of a dynamic variable are the variables referenced when it was last evaluated, by its value or its
+ * filters. Dynamic variables are refreshed in dependency order, so that a variable is evaluated after those
+ * defining the variables it references or its condition reads. Definitions of the same variable, and those that
+ * depend on each other, retain the order they were added in.
+ */
+class DynamicVariableGraph
+{
+
+    /**
+     * The nodes, in the order the dynamic variables were added.
+     */
+    private final List<Node> nodes = new ArrayList<Node>();
+
+    /**
+     * The nodes, in dependency order, or <tt>null</tt> if the order needs to be determined.
+     */
+    private List<Node> order;
+
+
+    /**
+     * Adds a dynamic variable.
+     *
+     * @param variable the variable to add
+     */
+    public void add(DynamicVariable variable)
+    {
+        nodes.add(new Node(variable, nodes.size()));
+        order = null;
+    }
+
+    /**
+     * Returns the nodes in the order that they should be refreshed.
+     *
+     * @param rules the rules used to determine the variables read by dynamic variable conditions. May be
+     *              <tt>null</tt>
+     * @return the nodes, in dependency order
+     */
+    public List<Node> getNodes(RulesEngine rules)
+    {
+        if (order == null)
+        {
+            order = sort(rules);
+        }
+        return order;
+    }
+
+    /**
+     * Records the result of evaluating a dynamic variable.
+     *
+     * @param node   the node
+     * @param inputs the variables referenced by the evaluation, and their values at the time
+     * @param value  the result of the evaluation. May be <tt>null</tt>
+     */
+    public void update(Node node, Map<String, String> inputs, String value)
+    {
+        if (node.inputs == null || !node.inputs.keySet().equals(inputs.keySet()))
+        {
+            order = null;
+        }
+        node.inputs = inputs;
+        node.value = value;
+    }
+
+    /**
+     * Sorts the nodes into dependency order.
+     * <p/>
+     * Where there is a choice, or the dependencies are cyclic, nodes are ordered in the order they were added.
+     *
+     * @param rules the rules used to determine the variables read by dynamic variable conditions. May be
+     *              <tt>null</tt>
+     * @return the sorted nodes
+     */
+    private List<Node> sort(RulesEngine rules)
+    {
+        int size = nodes.size();
+        Map<String, List<Node>> definitions = new HashMap<String, List<Node>>();
+        for (Node node : nodes)
+        {
+            List<Node> list = definitions.get(node.getName());
+            if (list == null)
+            {
+                list = new ArrayList<Node>();
+                definitions.put(node.getName(), list);
+            }
+            list.add(node);
+        }
+
+        // determine the nodes that must be refreshed after each node
+        List<List<Node>> successors = new ArrayList<List<Node>>(size);
+        for (int i = 0; i < size; ++i)
+        {
+            successors.add(new ArrayList<Node>());
+        }
+        int[] predecessors = new int[size];
+        for (Node node : nodes)
+        {
+            List<Node> dependencies = new ArrayList<Node>();
+            for (Node definition : definitions.get(node.getName()))
+            {
+                if (definition.index < node.index)
+                {
+                    dependencies.add(definition);
+                }
+            }
+            if (node.inputs != null)
+            {
+                addDefinitions(node, node.inputs.keySet(), definitions, dependencies);
+            }
+            Set<String> conditionVariables = getConditionVariables(node.getVariable(), rules);
+            if (conditionVariables != null)
+            {
+                addDefinitions(node, conditionVariables, definitions, dependencies);
+            }
+            for (Node dependency : dependencies)
+            {
+                successors.get(dependency.index).add(node);
+                ++predecessors[node.index];
+            }
+        }
+
+        List<Node> result = new ArrayList<Node>(size);
+        boolean[] sorted = new boolean[size];
+        PriorityQueue<Node> ready = new PriorityQueue<Node>();
+        for (Node node : nodes)
+        {
+            if (predecessors[node.index] == 0)
+            {
+                ready.add(node);
+            }
+        }
+        int next = 0;
+        while (result.size() < size)
+        {
+            if (ready.isEmpty())
+            {
+                // the remaining nodes depend on each other. Break the cycle at the first added
+                while (sorted[next])
+                {
+                    ++next;
+                }
+                predecessors[next] = 0;
+                ready.add(nodes.get(next));
+            }
+            Node node = ready.poll();
+            if (!sorted[node.index])
+            {
+                sorted[node.index] = true;
+                result.add(node);
+                for (Node successor : successors.get(node.index))
+                {
+                    if (--predecessors[successor.index] == 0 && !sorted[successor.index])
+                    {
+                        ready.add(successor);
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Adds the nodes defining variables to the dependencies of a node.
+     *
+     * @param node         the node
+     * @param names        the variable names
+     * @param definitions  the nodes defining each variable
+     * @param dependencies the dependencies to add to
+     */
+    private void addDefinitions(Node node, Set<String> names, Map<String, List<Node>> definitions,
+                                List<Node> dependencies)
+    {
+        for (String name : names)
+        {
+            List<Node> list = definitions.get(name);
+            if (list != null)
+            {
+                for (Node definition : list)
+                {
+                    if (definition != node && !dependencies.contains(definition))
+                    {
+                        dependencies.add(definition);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the variables read by the condition of a dynamic variable.
+     *
+     * @param variable the dynamic variable
+     * @param rules    the rules. May be <tt>null</tt>
+     * @return the variable names, or <tt>null</tt> if the variable has no condition, or they can't be determined
+     */
+    private Set<String> getConditionVariables(DynamicVariable variable, RulesEngine rules)
+    {
+        String conditionId = variable.getConditionid();
+        if (conditionId == null || rules == null)
+        {
+            return null;
+        }
+        Condition condition = rules.getCondition(conditionId);
+        return (condition != null) ? condition.getVariableNames() : null;
+    }
+
+    /**
+     * A dynamic variable, and the inputs to its last evaluation.
+     */
+    public static class Node implements Comparable<Node>
+    {
+
+        /**
+         * The dynamic variable.
+         */
+        private final DynamicVariable variable;
+
+        /**
+         * The order the variable was added in.
+         */
+        private final int index;
+
+        /**
+         * Determines if the variable value depends on more than the variables it references.
+         */
+        private final boolean external;
+
+        /**
+         * The variables referenced by the last evaluation, and their values at the time, or <tt>null</tt> if the
+         * variable hasn't been evaluated.
+         */
+        private Map<String, String> inputs;
+
+        /**
+         * The result of the last evaluation.
+         */
+        private String value;
+
+        /**
+         * Constructs a <tt>Node</tt>.
+         *
+         * @param variable the dynamic variable
+         * @param index    the order the variable was added in
+         */
+        public Node(DynamicVariable variable, int index)
+        {
+            this.variable = variable;
+            this.index = index;
+            Value value = variable.getValue();
+            external = !(value instanceof ValueImpl && ((ValueImpl) value).isPure());
+        }
+
+        /**
+         * Returns the dynamic variable.
+         *
+         * @return the dynamic variable
+         */
+        public DynamicVariable getVariable()
+        {
+            return variable;
+        }
+
+        /**
+         * Returns the variable name.
+         *
+         * @return the variable name
+         */
+        public String getName()
+        {
+            return variable.getName();
+        }
+
+        /**
+         * Returns the result of the last evaluation.
+         *
+         * @return the result of the last evaluation. May be <tt>null</tt>
+         */
+        public String getValue()
+        {
+            return value;
+        }
+
+        /**
+         * Determines if the variable needs to be evaluated.
+         * <p/>
+         * This is the case if it hasn't been evaluated, the last evaluation failed to produce a value, the value
+         * depends on files or the registry, or any of the variables it references have changed since.
+         *
+         * @param properties the current variable values
+         * @return <tt>true</tt> if the variable needs to be evaluated
+         */
+        public boolean isStale(Properties properties)
+        {
+            if (inputs == null || value == null || external)
+            {
+                return true;
+            }
+            for (Map.Entry<String, String> input : inputs.entrySet())
+            {
+                String current = properties.getProperty(input.getKey());
+                if (current == null ? input.getValue() != null : !current.equals(input.getValue()))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Compares this node with another, for ordering.
+         *
+         * @param other the node to compare with
+         * @return a negative integer, zero, or a positive integer as this node was added before, with, or after
+         *         the other
+         */
+        @Override
+        public int compareTo(Node other)
+        {
+            return (index < other.index) ? -1 : ((index == other.index) ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+
+/**
+ * An <tt>OutputStream</tt> that deflates data in independently compressed blocks.
+ * <p/>
+ * Each block is written as:
+ * <ul>
+ * <li>the uncompressed length of the block, as an <tt>int</tt></li>
+ * <li>the compressed length of the block, as an <tt>int</tt></li>
+ * <li>the compressed data, in zlib format</li>
+ * </ul>
+ * The block headers form a chained index over the stream, which allows {@link BlockInflaterInputStream} to skip
+ * whole blocks without inflating them.
+ *
+ * @see BlockInflaterInputStream
+ */
+public class BlockDeflaterOutputStream extends FilterOutputStream
+{
+
+    /**
+     * The default uncompressed block size.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * The stream to write block headers and data to.
+     */
+    private final DataOutputStream output;
+
+    /**
+     * The deflater, reset for each block.
+     */
+    private final Deflater deflater;
+
+    /**
+     * The uncompressed data of the current block.
+     */
+    private final byte[] block;
+
+    /**
+     * The number of bytes in the current block.
+     */
+    private int count;
+
+    /**
+     * The compressed data of the current block.
+     */
+    private byte[] compressed;
+
+    /**
+     * Determines if the stream has been finished.
+     */
+    private boolean finished;
+
+
+    /**
+     * Constructs a <tt>BlockDeflaterOutputStream</tt> with the default block size.
+     *
+     * @param out   the stream to write to
+     * @param level the compression level
+     */
+    public BlockDeflaterOutputStream(OutputStream out, int level)
+    {
+        this(out, level, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructs a <tt>BlockDeflaterOutputStream</tt>.
+     *
+     * @param out       the stream to write to
+     * @param level     the compression level
+     * @param blockSize the uncompressed block size
+     */
+    public BlockDeflaterOutputStream(OutputStream out, int level, int blockSize)
+    {
+        super(out);
+        if (blockSize <= 0)
+        {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        output = new DataOutputStream(out);
+        deflater = new Deflater(level);
+        block = new byte[blockSize];
+        compressed = new byte[blockSize + blockSize / 8 + 64];
+    }
+
+    /**
+     * Writes a byte.
+     *
+     * @param b the byte to write
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void write(int b) throws IOException
+    {
+        checkFinished();
+        block[count++] = (byte) b;
+        if (count == block.length)
+        {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes bytes from the specified array.
+     *
+     * @param b   the data
+     * @param off the start offset in the data
+     * @param len the number of bytes to write
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        checkFinished();
+        while (len > 0)
+        {
+            int n = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == block.length)
+            {
+                writeBlock();
+            }
+        }
+    }
+
+    /**
+     * Flushes the underlying stream.
+     * <p/>
+     * Any partial block is retained until it is full or the stream is finished, so that flushing doesn't
+     * degrade compression.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        output.flush();
+    }
+
+    /**
+     * Finishes writing compressed data without closing the underlying stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    public void finish() throws IOException
+    {
+        if (!finished)
+        {
+            if (count > 0)
+            {
+                writeBlock();
+            }
+            output.flush();
+            finished = true;
+            deflater.end();
+        }
+    }
+
+    /**
+     * Finishes writing compressed data, and closes the underlying stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            finish();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Compresses and writes the current block.
+     *
+     * @throws IOException for any I/O error
+     */
+    private void writeBlock() throws IOException
+    {
+        deflater.reset();
+        deflater.setInput(block, 0, count);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished())
+        {
+            if (length == compressed.length)
+            {
+                byte[] larger = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, larger, 0, length);
+                compressed = larger;
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        output.writeInt(count);
+        output.writeInt(length);
+        output.write(compressed, 0, length);
+        count = 0;
+    }
+
+    /**
+     * Verifies the stream hasn't been finished.
+     *
+     * @throws IOException if the stream has been finished
+     */
+    private void checkFinished() throws IOException
+    {
+        if (finished)
+        {
+            throw new IOException("Stream finished");
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+
+/**
+ * An <tt>InputStream</tt> that inflates data written by {@link BlockDeflaterOutputStream}.
+ * <p/>
+ * As each block is compressed independently, {@link #skip} uses the block headers to skip over whole blocks
+ * without inflating them. Skipping to an offset therefore only inflates the block containing it.
+ * <p/>
+ * This class may be used as a pack decoder, as it provides a constructor accepting the stream to decode.
+ *
+ * @see BlockDeflaterOutputStream
+ */
+public class BlockInflaterInputStream extends InputStream
+{
+
+    /**
+     * The stream to read block headers and data from.
+     */
+    private final DataInputStream input;
+
+    /**
+     * The inflater, reset for each block.
+     */
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * The uncompressed data of the current block.
+     */
+    private byte[] block = new byte[0];
+
+    /**
+     * The compressed data of the current block.
+     */
+    private byte[] compressed = new byte[0];
+
+    /**
+     * The number of bytes in the current block.
+     */
+    private int count;
+
+    /**
+     * The position of the next byte to read in the current block.
+     */
+    private int pos;
+
+    /**
+     * Determines if the end of the stream has been reached.
+     */
+    private boolean eof;
+
+    /**
+     * Determines if the stream has been closed.
+     */
+    private boolean closed;
+
+
+    /**
+     * Constructs a <tt>BlockInflaterInputStream</tt>.
+     *
+     * @param in the stream to read from
+     */
+    public BlockInflaterInputStream(InputStream in)
+    {
+        input = new DataInputStream(in);
+    }
+
+    /**
+     * Reads a byte.
+     *
+     * @return the byte, or <tt>-1</tt> if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public int read() throws IOException
+    {
+        if (!fill())
+        {
+            return -1;
+        }
+        return block[pos++] & 0xff;
+    }
+
+    /**
+     * Reads bytes into the specified array.
+     *
+     * @param b   the buffer to read into
+     * @param off the start offset in the buffer
+     * @param len the maximum number of bytes to read
+     * @return the number of bytes read, or <tt>-1</tt> if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!fill())
+        {
+            return -1;
+        }
+        int n = Math.min(len, count - pos);
+        System.arraycopy(block, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    /**
+     * Skips over bytes.
+     * <p/>
+     * Whole blocks are skipped without being inflated.
+     *
+     * @param n the number of bytes to skip
+     * @return the number of bytes skipped. This is less than <tt>n</tt> only if the end of the stream was reached
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public long skip(long n) throws IOException
+    {
+        checkClosed();
+        long skipped = 0;
+        while (skipped < n && !eof)
+        {
+            int available = count - pos;
+            if (available > 0)
+            {
+                int step = (int) Math.min(available, n - skipped);
+                pos += step;
+                skipped += step;
+            }
+            else
+            {
+                int length = readHeader();
+                if (length < 0)
+                {
+                    break;
+                }
+                int compressedLength = input.readInt();
+                if (length <= n - skipped)
+                {
+                    skipFully(compressedLength);
+                    skipped += length;
+                }
+                else
+                {
+                    inflate(length, compressedLength);
+                }
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Returns the number of bytes that can be read without blocking.
+     *
+     * @return the number of bytes remaining in the current block
+     * @throws IOException if the stream is closed
+     */
+    @Override
+    public int available() throws IOException
+    {
+        checkClosed();
+        return count - pos;
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (!closed)
+        {
+            closed = true;
+            inflater.end();
+            input.close();
+        }
+    }
+
+    /**
+     * Ensures that there is data available in the current block, reading the next block if required.
+     *
+     * @return <tt>true</tt> if there is data available, <tt>false</tt> if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    private boolean fill() throws IOException
+    {
+        checkClosed();
+        while (pos == count)
+        {
+            int length = readHeader();
+            if (length < 0)
+            {
+                return false;
+            }
+            inflate(length, input.readInt());
+        }
+        return true;
+    }
+
+    /**
+     * Reads the uncompressed length of the next block.
+     *
+     * @return the uncompressed length, or <tt>-1</tt> if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    private int readHeader() throws IOException
+    {
+        if (eof)
+        {
+            return -1;
+        }
+        int b1 = input.read();
+        if (b1 < 0)
+        {
+            eof = true;
+            return -1;
+        }
+        int b2 = input.read();
+        int b3 = input.read();
+        int b4 = input.read();
+        if ((b2 | b3 | b4) < 0)
+        {
+            throw new EOFException("Truncated block header");
+        }
+        int length = (b1 << 24) + (b2 << 16) + (b3 << 8) + b4;
+        if (length < 0)
+        {
+            throw new IOException("Invalid block length: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Reads and inflates a block.
+     *
+     * @param length           the uncompressed length of the block
+     * @param compressedLength the compressed length of the block
+     * @throws IOException for any I/O error
+     */
+    private void inflate(int length, int compressedLength) throws IOException
+    {
+        if (compressed.length < compressedLength)
+        {
+            compressed = new byte[compressedLength];
+        }
+        if (block.length < length)
+        {
+            block = new byte[length];
+        }
+        input.readFully(compressed, 0, compressedLength);
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try
+        {
+            int inflated = 0;
+            while (inflated < length)
+            {
+                int n = inflater.inflate(block, inflated, length - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    throw new IOException("Corrupt block: expected " + length + " bytes but inflated " + inflated);
+                }
+                inflated += n;
+            }
+        }
+        catch (DataFormatException exception)
+        {
+            throw new IOException("Corrupt block: " + exception.getMessage(), exception);
+        }
+        count = length;
+        pos = 0;
+    }
+
+    /**
+     * Skips over compressed data in the underlying stream.
+     *
+     * @param length the number of bytes to skip
+     * @throws IOException for any I/O error
+     */
+    private void skipFully(int length) throws IOException
+    {
+        int remaining = length;
+        while (remaining > 0)
+        {
+            int skipped = (int) input.skip(remaining);
+            if (skipped <= 0)
+            {
+                if (input.read() < 0)
+                {
+                    throw new EOFException("Truncated block");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Verifies the stream is open.
+     *
+     * @throws IOException if the stream is closed
+     */
+    private void checkClosed() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,579 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+
+/**
+ * An <tt>InputStream</tt> that inflates data written by {@link BlockDeflaterOutputStream}, inflating several blocks
+ * ahead of the reader on a pool of worker threads.
+ * <p/>
+ * Compressed blocks are read from the underlying stream by the reading thread, and handed to the workers to
+ * inflate. Blocks are returned to the reader in order.
+ * <br/>
+ * The number of blocks inflated ahead starts at one, and doubles each time a block is consumed, up to the
+ * read-ahead limit. This avoids inflating blocks that are never read when the stream is only used to
+ * {@link #skip} to a back reference.
+ * <p/>
+ * This class may be used as a pack decoder, as it provides a constructor accepting the stream to decode.
+ *
+ * @see BlockDeflaterOutputStream
+ * @see BlockInflaterInputStream
+ */
+public class ParallelBlockInflaterInputStream extends InputStream
+{
+
+    /**
+     * The maximum no. of blocks to inflate ahead of the reader, by default.
+     */
+    private static final int MAX_READ_AHEAD = 8;
+
+    /**
+     * The stream to read block headers and data from.
+     */
+    private final DataInputStream input;
+
+    /**
+     * The maximum no. of blocks to inflate ahead of the reader.
+     */
+    private final int readAhead;
+
+    /**
+     * The blocks being inflated, in stream order.
+     */
+    private final LinkedList<PendingBlock> pending = new LinkedList<PendingBlock>();
+
+    /**
+     * The current no. of blocks to inflate ahead of the reader.
+     */
+    private int window = 1;
+
+    /**
+     * The uncompressed data of the current block.
+     */
+    private byte[] block = new byte[0];
+
+    /**
+     * The position of the next byte to read in the current block.
+     */
+    private int pos;
+
+    /**
+     * Determines if the end of the underlying stream has been reached.
+     */
+    private boolean eof;
+
+    /**
+     * Determines if the stream has been closed.
+     */
+    private boolean closed;
+
+
+    /**
+     * Constructs a <tt>ParallelBlockInflaterInputStream</tt>.
+     * <p/>
+     * This inflates up to one block ahead per available processor, to a maximum of 8.
+     *
+     * @param in the stream to read from
+     */
+    public ParallelBlockInflaterInputStream(InputStream in)
+    {
+        this(in, Math.min(Runtime.getRuntime().availableProcessors(), MAX_READ_AHEAD));
+    }
+
+    /**
+     * Constructs a <tt>ParallelBlockInflaterInputStream</tt>.
+     *
+     * @param in        the stream to read from
+     * @param readAhead the maximum no. of blocks to inflate ahead of the reader
+     */
+    public ParallelBlockInflaterInputStream(InputStream in, int readAhead)
+    {
+        if (readAhead < 1)
+        {
+            throw new IllegalArgumentException("Invalid read-ahead: " + readAhead);
+        }
+        input = new DataInputStream(in);
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Reads a byte.
+     *
+     * @return the byte, or <tt>-1</tt> if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public int read() throws IOException
+    {
+        if (!fill())
+        {
+            return -1;
+        }
+        return block[pos++] & 0xff;
+    }
+
+    /**
+     * Reads bytes into the specified array.
+     *
+     * @param b   the buffer to read into
+     * @param off the start offset in the buffer
+     * @param len the maximum number of bytes to read
+     * @return the number of bytes read, or <tt>-1</tt> if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!fill())
+        {
+            return -1;
+        }
+        int n = Math.min(len, block.length - pos);
+        System.arraycopy(block, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    /**
+     * Skips over bytes.
+     * <p/>
+     * Blocks being inflated are discarded if they are skipped entirely, and blocks not yet read from the underlying
+     * stream are skipped without being inflated.
+     *
+     * @param n the number of bytes to skip
+     * @return the number of bytes skipped. This is less than <tt>n</tt> only if the end of the stream was reached
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public long skip(long n) throws IOException
+    {
+        checkClosed();
+        long skipped = 0;
+        while (skipped < n)
+        {
+            int available = block.length - pos;
+            if (available > 0)
+            {
+                int step = (int) Math.min(available, n - skipped);
+                pos += step;
+                skipped += step;
+            }
+            else if (!pending.isEmpty())
+            {
+                PendingBlock next = pending.getFirst();
+                if (next.getLength() <= n - skipped)
+                {
+                    pending.removeFirst().cancel();
+                    skipped += next.getLength();
+                }
+                else
+                {
+                    take();
+                }
+            }
+            else
+            {
+                int length = readHeader();
+                if (length < 0)
+                {
+                    break;
+                }
+                int compressedLength = input.readInt();
+                if (length <= n - skipped)
+                {
+                    skipFully(compressedLength);
+                    skipped += length;
+                }
+                else
+                {
+                    submit(length, compressedLength);
+                }
+            }
+        }
+        // restart the read-ahead from the new position
+        window = 1;
+        return skipped;
+    }
+
+    /**
+     * Returns the number of bytes that can be read without blocking.
+     *
+     * @return the number of bytes remaining in the current block
+     * @throws IOException if the stream is closed
+     */
+    @Override
+    public int available() throws IOException
+    {
+        checkClosed();
+        return block.length - pos;
+    }
+
+    /**
+     * Closes the stream.
+     * <p/>
+     * Any blocks being inflated are discarded.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (!closed)
+        {
+            closed = true;
+            for (PendingBlock next : pending)
+            {
+                next.cancel();
+            }
+            pending.clear();
+            input.close();
+        }
+    }
+
+    /**
+     * Ensures that there is data available in the current block, waiting on the next block if required.
+     *
+     * @return <tt>true</tt> if there is data available, <tt>false</tt> if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    private boolean fill() throws IOException
+    {
+        checkClosed();
+        while (pos == block.length)
+        {
+            readAhead();
+            if (pending.isEmpty())
+            {
+                return false;
+            }
+            take();
+            window = Math.min(window * 2, readAhead);
+        }
+        return true;
+    }
+
+    /**
+     * Reads compressed blocks from the underlying stream and submits them for inflation, until the read-ahead
+     * window is full or the end of the stream is reached.
+     *
+     * @throws IOException for any I/O error
+     */
+    private void readAhead() throws IOException
+    {
+        while (pending.size() < window)
+        {
+            int length = readHeader();
+            if (length < 0)
+            {
+                break;
+            }
+            submit(length, input.readInt());
+        }
+    }
+
+    /**
+     * Reads a compressed block, and submits it for inflation.
+     *
+     * @param length           the uncompressed length of the block
+     * @param compressedLength the compressed length of the block
+     * @throws IOException for any I/O error
+     */
+    private void submit(int length, int compressedLength) throws IOException
+    {
+        if (compressedLength < 0)
+        {
+            throw new IOException("Invalid compressed block length: " + compressedLength);
+        }
+        byte[] compressed = new byte[compressedLength];
+        input.readFully(compressed);
+        Future<byte[]> future = Workers.EXECUTOR.submit(new InflateTask(compressed, length));
+        pending.addLast(new PendingBlock(length, future));
+    }
+
+    /**
+     * Makes the next pending block the current block, waiting for it to be inflated if required.
+     *
+     * @throws IOException if the block cannot be inflated, or the thread is interrupted
+     */
+    private void take() throws IOException
+    {
+        PendingBlock next = pending.removeFirst();
+        try
+        {
+            block = next.get();
+            pos = 0;
+        }
+        catch (InterruptedException exception)
+        {
+            next.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while inflating block");
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to inflate block: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Reads the uncompressed length of the next block.
+     *
+     * @return the uncompressed length, or <tt>-1</tt> if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    private int readHeader() throws IOException
+    {
+        if (eof)
+        {
+            return -1;
+        }
+        int b1 = input.read();
+        if (b1 < 0)
+        {
+            eof = true;
+            return -1;
+        }
+        int b2 = input.read();
+        int b3 = input.read();
+        int b4 = input.read();
+        if ((b2 | b3 | b4) < 0)
+        {
+            throw new EOFException("Truncated block header");
+        }
+        int length = (b1 << 24) + (b2 << 16) + (b3 << 8) + b4;
+        if (length < 0)
+        {
+            throw new IOException("Invalid block length: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Skips over compressed data in the underlying stream.
+     *
+     * @param length the number of bytes to skip
+     * @throws IOException for any I/O error
+     */
+    private void skipFully(int length) throws IOException
+    {
+        int remaining = length;
+        while (remaining > 0)
+        {
+            int skipped = (int) input.skip(remaining);
+            if (skipped <= 0)
+            {
+                if (input.read() < 0)
+                {
+                    throw new EOFException("Truncated block");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Verifies the stream is open.
+     *
+     * @throws IOException if the stream is closed
+     */
+    private void checkClosed() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * A block submitted for inflation.
+     */
+    private static class PendingBlock
+    {
+
+        /**
+         * The uncompressed length of the block.
+         */
+        private final int length;
+
+        /**
+         * The inflated block.
+         */
+        private final Future<byte[]> future;
+
+        /**
+         * Constructs a <tt>PendingBlock</tt>.
+         *
+         * @param length the uncompressed length of the block
+         * @param future the inflated block
+         */
+        public PendingBlock(int length, Future<byte[]> future)
+        {
+            this.length = length;
+            this.future = future;
+        }
+
+        /**
+         * Returns the uncompressed length of the block.
+         *
+         * @return the uncompressed length
+         */
+        public int getLength()
+        {
+            return length;
+        }
+
+        /**
+         * Waits for the block to be inflated.
+         *
+         * @return the inflated block
+         * @throws InterruptedException if the thread is interrupted
+         * @throws ExecutionException   if the block cannot be inflated
+         */
+        public byte[] get() throws InterruptedException, ExecutionException
+        {
+            return future.get();
+        }
+
+        /**
+         * Discards the block.
+         */
+        public void cancel()
+        {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Inflates a block.
+     */
+    private static class InflateTask implements Callable<byte[]>
+    {
+
+        /**
+         * The compressed data.
+         */
+        private final byte[] compressed;
+
+        /**
+         * The uncompressed length.
+         */
+        private final int length;
+
+        /**
+         * Constructs an <tt>InflateTask</tt>.
+         *
+         * @param compressed the compressed data
+         * @param length     the uncompressed length
+         */
+        public InflateTask(byte[] compressed, int length)
+        {
+            this.compressed = compressed;
+            this.length = length;
+        }
+
+        /**
+         * Inflates the block.
+         *
+         * @return the inflated block
+         * @throws IOException if the block is corrupt
+         */
+        @Override
+        public byte[] call() throws IOException
+        {
+            byte[] result = new byte[length];
+            Inflater inflater = new Inflater();
+            try
+            {
+                inflater.setInput(compressed);
+                int inflated = 0;
+                while (inflated < length)
+                {
+                    int n = inflater.inflate(result, inflated, length - inflated);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    {
+                        throw new IOException("Corrupt block: expected " + length + " bytes but inflated "
+                                                      + inflated);
+                    }
+                    inflated += n;
+                }
+            }
+            catch (DataFormatException exception)
+            {
+                throw new IOException("Corrupt block: " + exception.getMessage(), exception);
+            }
+            finally
+            {
+                inflater.end();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Holds the worker pool shared by all streams, created on first use.
+     * <p/>
+     * The workers are daemon threads, so an idle pool doesn't prevent the JVM from exiting.
+     */
+    private static class Workers
+    {
+
+        /**
+         * The worker pool.
+         */
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+        {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "izpack-inflater-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
@@ -76,6 +77,20 @@ public class RulesEngineImpl implements RulesEngine
 
     private final Map<String, Condition> conditionsMap = new HashMap<String, Condition>();
 
+    /**
+     * The conditions parsed from expressions, keyed on expression, so that each expression is only parsed once.
+     * <p/>
+     * Parsed conditions refer to the registered conditions they were parsed from, so this is cleared whenever a
+     * condition is registered.
+     */
+    private final Map<String, Condition> expressions = new ConcurrentHashMap<String, Condition>();
+
+    /**
+     * The cached condition results, for conditions that only depend on variables. Cleared along with
+     * {@link #expressions}.
+     */
+    private final Map<Condition, Result> results = new ConcurrentHashMap<Condition, Result>();
+
     private final Set<ConditionReference> refConditions = new HashSet<ConditionReference>();
 
     private final InstallData installData;
@@ -133,7 +148,7 @@ public class RulesEngineImpl implements RulesEngine
             // skip BuiltinConditions - these must be created by initStandardConditions().
             if (!(condition instanceof BuiltinCondition))
             {
-                conditionsMap.put(entry.getKey(), condition);
+                putCondition(entry.getKey(), condition);
                 condition.setInstallData(installData);
                 resolveBuiltinConditions(condition);
             }
@@ -186,7 +201,7 @@ public class RulesEngineImpl implements RulesEngine
                 result.setId(id);
                 result.setInstallData(installData);
                 result.readFromXML(condition);
-                conditionsMap.put(id, result);
+                putCondition(id, result);
                 if (result instanceof ConditionReference)
                 {
                     refConditions.add((ConditionReference) result);
@@ -238,7 +253,7 @@ public class RulesEngineImpl implements RulesEngine
                     if ((condid != null) && !("UNKNOWN".equals(condid)))
                     {
                         resolveBuiltinConditions(cond);
-                        conditionsMap.put(condid, cond);
+                        putCondition(condid, cond);
                     }
                 }
             }
@@ -290,13 +305,21 @@ public class RulesEngineImpl implements RulesEngine
         Condition result = conditionsMap.get(id);
         if (result == null)
         {
-            if (id.startsWith("@"))
-            {
-                result = parseComplexCondition(id.substring(1));
-            }
-            else
+            result = expressions.get(id);
+            if (result == null)
             {
-                result = getConditionByExpr(new StringBuffer(id));
+                if (id.startsWith("@"))
+                {
+                    result = parseComplexCondition(id.substring(1));
+                }
+                else
+                {
+                    result = getConditionByExpr(new StringBuffer(id));
+                }
+                if (result != null)
+                {
+                    expressions.put(id, result);
+                }
             }
         }
         return result;
@@ -319,11 +342,13 @@ public class RulesEngineImpl implements RulesEngine
     {
         if (cond != null)
         {
-            if (installData != null)
+            if (installData == null)
             {
-                cond.setInstallData(installData);
+                installData = getInstallData(cond);
             }
-            return isConditionTrue(cond);
+            boolean value = evaluate(cond, installData);
+            logger.fine("Condition " + cond.getId() + ": " + Boolean.toString(value));
+            return value;
         }
         return false;
     }
@@ -343,13 +368,7 @@ public class RulesEngineImpl implements RulesEngine
     @Override
     public boolean isConditionTrue(Condition cond)
     {
-        if (cond.getInstallData() == null)
-        {
-            cond.setInstallData(this.installData);
-        }
-        boolean value = cond.isTrue();
-        logger.fine("Condition " + cond.getId() + ": " + Boolean.toString(value));
-        return value;
+        return isConditionTrue(cond, null);
     }
 
     /**
@@ -369,7 +388,7 @@ public class RulesEngineImpl implements RulesEngine
             return true;
         }
         Condition condition = getCondition(this.panelConditions.get(panelid));
-        boolean b = condition.isTrue();
+        boolean b = evaluate(condition, condition.getInstallData());
         logger.fine("Panel " + panelid + ": activation depends on condition "
                             + condition.getId() + " -> " + b);
         return b;
@@ -396,7 +415,7 @@ public class RulesEngineImpl implements RulesEngine
             return true;
         }
         Condition condition = getCondition(this.packConditions.get(packid));
-        boolean b = condition.isTrue();
+        boolean b = evaluate(condition, condition.getInstallData());
         logger.fine("Package " + packid + ": installation depends on condition "
                             + condition.getId() + " -> " + b);
         return b;
@@ -439,7 +458,7 @@ public class RulesEngineImpl implements RulesEngine
             }
             else
             {
-                conditionsMap.put(id, condition);
+                putCondition(id, condition);
             }
         }
         else
@@ -499,7 +518,7 @@ public class RulesEngineImpl implements RulesEngine
                 selectionCondition.setInstallData(installData);
                 selectionCondition.setId("izpack.selected." + pack.getName());
                 selectionCondition.setPack(pack.getName());
-                conditionsMap.put(selectionCondition.getId(), selectionCondition);
+                putCondition(selectionCondition.getId(), selectionCondition);
 
                 String condition = pack.getCondition();
                 if (condition != null && !condition.isEmpty())
@@ -547,7 +566,7 @@ public class RulesEngineImpl implements RulesEngine
         Condition condition = new StaticCondition(isA);
         condition.setInstallData(installData);
         condition.setId(conditionId);
-        conditionsMap.put(condition.getId(), condition);
+        putCondition(condition.getId(), condition);
     }
 
     /**
@@ -723,6 +742,81 @@ public class RulesEngineImpl implements RulesEngine
         return result;
     }
 
+    /**
+     * Returns the installation data to evaluate a condition against.
+     *
+     * @param condition the condition
+     * @return the installation data of the condition, or that of the engine if the condition has none
+     */
+    private InstallData getInstallData(Condition condition)
+    {
+        InstallData result = condition.getInstallData();
+        return (result != null) ? result : installData;
+    }
+
+    /**
+     * Evaluates a condition against the specified installation data, without changing the condition.
+     * <p/>
+     * If the condition only depends on variables, its result is cached, and only re-evaluated when the version of
+     * one of the variables changes.
+     *
+     * @param condition the condition
+     * @param data      the installation data. May be <tt>null</tt>
+     * @return the result of the condition
+     */
+    private boolean evaluate(Condition condition, InstallData data)
+    {
+        Variables variables = (data != null) ? data.getVariables() : null;
+        if (variables == null)
+        {
+            return isTrue(condition, data);
+        }
+        Result result = results.get(condition);
+        if (result != null && result.isCurrent(data))
+        {
+            return result.value;
+        }
+        Set<String> names = condition.getVariableNames();
+        if (names == null)
+        {
+            return isTrue(condition, data);
+        }
+
+        // determine the versions prior to evaluation, so that concurrent changes aren't missed
+        result = new Result(data, names);
+        result.value = isTrue(condition, data);
+        results.put(condition, result);
+        return result.value;
+    }
+
+    /**
+     * Evaluates a condition against the specified installation data, without changing the condition.
+     *
+     * @param condition the condition
+     * @param data      the installation data. May be <tt>null</tt>
+     * @return the result of the condition
+     */
+    private static boolean isTrue(Condition condition, InstallData data)
+    {
+        return (data == null || data == condition.getInstallData()) ? condition.isTrue() : condition.isTrue(data);
+    }
+
+    /**
+     * Registers a condition.
+     * <p/>
+     * This discards any conditions parsed from expressions, and any cached results, as they may refer to a
+     * condition being replaced, or failed to resolve the condition being registered.
+     *
+     * @param id        the condition identifier
+     * @param condition the condition
+     */
+    private void putCondition(String id, Condition condition)
+    {
+        conditionsMap.put(id, condition);
+        expressions.clear();
+        results.clear();
+    }
+
     /**
      * Returns the class name implementing a condition type.
      *
@@ -787,6 +881,74 @@ public class RulesEngineImpl implements RulesEngine
         }
     }
 
+    /**
+     * The result of a condition, and the versions of the variables it was evaluated with.
+     */
+    private static class Result
+    {
+
+        /**
+         * The installation data the condition was evaluated with.
+         */
+        private final InstallData installData;
+
+        /**
+         * The variable names.
+         */
+        private final String[] names;
+
+        /**
+         * The variable versions.
+         */
+        private final long[] versions;
+
+        /**
+         * The condition result.
+         */
+        private boolean value;
+
+        /**
+         * Constructs a <tt>Result</tt>, recording the current versions of the variables.
+         *
+         * @param installData the installation data
+         * @param names       the variable names
+         */
+        public Result(InstallData installData, Set<String> names)
+        {
+            this.installData = installData;
+            this.names = names.toArray(new String[names.size()]);
+            versions = new long[this.names.length];
+            Variables variables = installData.getVariables();
+            for (int i = 0; i < this.names.length; ++i)
+            {
+                versions[i] = variables.getVersion(this.names[i]);
+            }
+        }
+
+        /**
+         * Determines if the result is current.
+         *
+         * @param installData the installation data the condition is being evaluated with
+         * @return <tt>true</tt> if no variable has changed since the condition was evaluated
+         */
+        public boolean isCurrent(InstallData installData)
+        {
+            if (installData != this.installData)
+            {
+                return false;
+            }
+            Variables variables = installData.getVariables();
+            for (int i = 0; i < names.length; ++i)
+            {
+                if (variables.getVersion(names[i]) != versions[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * A built-in condition, created by the RulesEngine. These are not intended to be serialized - the RulesEngine
      * will replace any instance of a built in condition with its own version.
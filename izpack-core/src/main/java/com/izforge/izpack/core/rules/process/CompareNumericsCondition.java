@@ -22,12 +22,15 @@
 
 package com.izforge.izpack.core.rules.process;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.rules.CompareCondition;
 import com.izforge.izpack.api.rules.ComparisonOperator;
+import com.izforge.izpack.core.substitutor.CompiledTemplate;
 
 public class CompareNumericsCondition extends CompareCondition
 {
@@ -84,4 +87,21 @@ public class CompareNumericsCondition extends CompareCondition
         }
         return result;
     }
+
+    /**
+     * Returns the names of the variables that this condition reads.
+     *
+     * @return the names of the variables referenced by the operands
+     */
+    @Override
+    public Set<String> getVariableNames()
+    {
+        Set<String> result = new HashSet<String>();
+        if (operand1 != null && operand2 != null)
+        {
+            result.addAll(CompiledTemplate.compile(operand1).getVariableNames());
+            result.addAll(CompiledTemplate.compile(operand2).getVariableNames());
+        }
+        return result;
+    }
 }
\ No newline at end of file
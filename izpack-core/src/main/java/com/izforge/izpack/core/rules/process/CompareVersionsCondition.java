@@ -22,11 +22,14 @@
 package com.izforge.izpack.core.rules.process;
 
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
 
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.rules.CompareCondition;
 import com.izforge.izpack.api.rules.ComparisonOperator;
+import com.izforge.izpack.core.substitutor.CompiledTemplate;
 
 public class CompareVersionsCondition extends CompareCondition
 {
@@ -75,6 +78,23 @@ public class CompareVersionsCondition extends CompareCondition
         return result;
     }
 
+    /**
+     * Returns the names of the variables that this condition reads.
+     *
+     * @return the names of the variables referenced by the operands
+     */
+    @Override
+    public Set<String> getVariableNames()
+    {
+        Set<String> result = new HashSet<String>();
+        if (operand1 != null && operand2 != null)
+        {
+            result.addAll(CompiledTemplate.compile(operand1).getVariableNames());
+            result.addAll(CompiledTemplate.compile(operand2).getVariableNames());
+        }
+        return result;
+    }
+
     private static class VersionStringComparator implements Comparator<String>
     {
         @Override
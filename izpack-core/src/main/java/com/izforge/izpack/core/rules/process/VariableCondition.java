@@ -21,11 +21,15 @@
 
 package com.izforge.izpack.core.rules.process;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.core.substitutor.CompiledTemplate;
 
 /**
  * @author Dennis Reil, <izpack@reil-online.de>
@@ -107,6 +111,26 @@ public class VariableCondition extends Condition
         }
     }
 
+    /**
+     * Returns the names of the variables that this condition reads.
+     *
+     * @return the variable name, and the names of any variables referenced by the value
+     */
+    @Override
+    public Set<String> getVariableNames()
+    {
+        Set<String> result = new HashSet<String>();
+        if (variablename != null)
+        {
+            result.add(variablename);
+        }
+        if (value != null)
+        {
+            result.addAll(CompiledTemplate.compile(value).getVariableNames());
+        }
+        return result;
+    }
+
     @Override
     public String getDependenciesDetails()
     {
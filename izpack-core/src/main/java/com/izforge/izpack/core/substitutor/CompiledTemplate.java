@@ -0,0 +1,338 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * A string containing variable references, parsed once into literal text and variable references so that it can be
+ * rendered repeatedly without being re-parsed.
+ * <p/>
+ * Templates follow the {@link com.izforge.izpack.api.substitutor.SubstitutionType#TYPE_PLAIN plain} substitution
+ * rules of {@link VariableSubstitutorBase}, with braces optional. Rendering a template produces the same result as
+ * {@link VariableSubstitutorImpl#substitute(String)} for the same variables.
+ * <p/>
+ * Templates are immutable. Those obtained via {@link #compile(String)} are held in a bounded cache, keyed on the
+ * template string. When full, the least recently used template is evicted. Templates are parsed outside of the
+ * cache lock, so the lock is only held for the lookup.
+ */
+public class CompiledTemplate
+{
+
+    /**
+     * The maximum no. of templates to cache.
+     */
+    public static final int CACHE_SIZE = 4096;
+
+    /**
+     * The template cache. Access must be synchronized on the cache.
+     */
+    private static final Cache cache = new Cache();
+
+    /**
+     * The template string.
+     */
+    private final String template;
+
+    /**
+     * The literal text preceding each variable reference, and following the last. There is one more literal than
+     * there are references.
+     */
+    private final String[] literals;
+
+    /**
+     * The variable references.
+     */
+    private final Reference[] references;
+
+
+    /**
+     * Constructs a <tt>CompiledTemplate</tt>.
+     *
+     * @param template the template string
+     */
+    public CompiledTemplate(String template)
+    {
+        this.template = template;
+        List<String> literals = new ArrayList<String>();
+        List<Reference> references = new ArrayList<Reference>();
+        parse(template, literals, references);
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.references = references.toArray(new Reference[references.size()]);
+    }
+
+    /**
+     * Returns a compiled template for the specified string, from the cache if possible.
+     *
+     * @param template the template string
+     * @return the compiled template
+     */
+    public static CompiledTemplate compile(String template)
+    {
+        CompiledTemplate result;
+        synchronized (cache)
+        {
+            result = cache.get(template);
+        }
+        if (result == null)
+        {
+            CompiledTemplate compiled = new CompiledTemplate(template);
+            synchronized (cache)
+            {
+                // another thread may have compiled the same template in the meantime
+                result = cache.get(template);
+                if (result == null)
+                {
+                    cache.put(template, compiled);
+                    result = compiled;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the template string.
+     *
+     * @return the template string
+     */
+    public String getTemplate()
+    {
+        return template;
+    }
+
+    /**
+     * Determines if the template contains any variable references.
+     *
+     * @return <tt>true</tt> if the template contains variable references
+     */
+    public boolean hasReferences()
+    {
+        return references.length != 0;
+    }
+
+    /**
+     * Returns the names of the variables referenced by the template.
+     * <p/>
+     * Environment variable references are excluded.
+     *
+     * @return the variable names
+     */
+    public Set<String> getVariableNames()
+    {
+        Set<String> result = new LinkedHashSet<String>();
+        for (Reference reference : references)
+        {
+            if (!reference.environment)
+            {
+                result.add(reference.name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Renders the template.
+     * <p/>
+     * References to undefined variables are rendered as they appear in the template.
+     *
+     * @param variables the variable values
+     * @return the rendered template
+     */
+    public String render(Properties variables)
+    {
+        if (references.length == 0)
+        {
+            return template;
+        }
+        StringBuilder result = new StringBuilder(template.length() + 32);
+        for (int i = 0; i < references.length; ++i)
+        {
+            result.append(literals[i]);
+            Reference reference = references[i];
+            String value;
+            if (reference.environment)
+            {
+                value = IoHelper.getenv(reference.name);
+                if (value == null)
+                {
+                    value = "";
+                }
+            }
+            else
+            {
+                value = variables.getProperty(reference.name);
+            }
+            result.append(value != null ? value : reference.text);
+        }
+        result.append(literals[references.length]);
+        return result.toString();
+    }
+
+    /**
+     * Returns the template string.
+     *
+     * @return the template string
+     */
+    @Override
+    public String toString()
+    {
+        return template;
+    }
+
+    /**
+     * Parses a template string into literal text and variable references.
+     *
+     * @param template   the template string
+     * @param literals   collects the literal text
+     * @param references collects the variable references
+     */
+    private static void parse(String template, List<String> literals, List<Reference> references)
+    {
+        StringBuilder literal = new StringBuilder();
+        int length = template.length();
+        int i = 0;
+        while (i < length)
+        {
+            int start = template.indexOf('$', i);
+            if (start == -1)
+            {
+                literal.append(template, i, length);
+                break;
+            }
+            literal.append(template, i, start);
+
+            int nameStart = start + 1;
+            boolean braces = nameStart < length && template.charAt(nameStart) == '{';
+            if (braces)
+            {
+                ++nameStart;
+            }
+            int nameEnd = nameStart;
+            while (nameEnd < length
+                    && VariableSubstitutorBase.isNameChar(template.charAt(nameEnd), braces, nameEnd - nameStart))
+            {
+                ++nameEnd;
+            }
+            String name = template.substring(nameStart, nameEnd);
+
+            if (name.length() > 0 && (!braces || nameEnd < length))
+            {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                if (braces)
+                {
+                    // the closing brace is part of the reference
+                    ++nameEnd;
+                }
+                String text = template.substring(start, nameEnd);
+                if (braces && name.startsWith("ENV[") && name.lastIndexOf(']') == name.length() - 1)
+                {
+                    references.add(new Reference(name.substring(4, name.length() - 1), true, text));
+                }
+                else
+                {
+                    references.add(new Reference(name, false, text));
+                }
+            }
+            else
+            {
+                // not a reference, so treat it as literal text
+                literal.append(template, start, nameEnd);
+            }
+            i = nameEnd;
+        }
+        literals.add(literal.toString());
+    }
+
+    /**
+     * A cache of compiled templates, evicting the least recently used when full.
+     */
+    private static class Cache extends LinkedHashMap<String, CompiledTemplate>
+    {
+
+        private static final long serialVersionUID = 2816539472041658117L;
+
+        /**
+         * Constructs a <tt>Cache</tt>.
+         */
+        public Cache()
+        {
+            super(256, 0.75f, true);
+        }
+
+        /**
+         * Determines if the least recently used template should be evicted.
+         *
+         * @param eldest the least recently used template
+         * @return <tt>true</tt> if the cache holds more than {@link #CACHE_SIZE} templates
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledTemplate> eldest)
+        {
+            return size() > CACHE_SIZE;
+        }
+    }
+
+    /**
+     * A variable reference.
+     */
+    private static class Reference
+    {
+
+        /**
+         * The variable name, or the environment variable name if {@link #environment} is <tt>true</tt>.
+         */
+        private final String name;
+
+        /**
+         * Determines if the reference is to an environment variable.
+         */
+        private final boolean environment;
+
+        /**
+         * The reference, as it appears in the template.
+         */
+        private final String text;
+
+        /**
+         * Constructs a <tt>Reference</tt>.
+         *
+         * @param name        the variable name
+         * @param environment if <tt>true</tt>, the reference is to an environment variable
+         * @param text        the reference, as it appears in the template
+         */
+        public Reference(String name, boolean environment, String text)
+        {
+            this.name = name;
+            this.environment = environment;
+            this.text = text;
+        }
+    }
+}
@@ -52,6 +52,63 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
 {
     private static final Logger LOGGER = Logger.getLogger(VariableSubstitutorBase.class.getName());
 
+    /**
+     * The size of the buffers used when substituting streams.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Indicates a character that may start or continue a variable name.
+     */
+    private static final byte NAME_START = 1;
+
+    /**
+     * Indicates a character that may continue, but not start, a variable name.
+     */
+    private static final byte NAME_PART = 2;
+
+    /**
+     * The characters that may appear in variable names, indexed on character.
+     */
+    private static final byte[] NAME_CHARS = new byte[128];
+
+    /**
+     * The escapes for Java properties files, excluding leading spaces.
+     */
+    private static final String[] JAVA_PROPERTIES_ESCAPES
+            = createEscapes("\t\n\r\\\"'", "\\t", "\\n", "\\r", "\\\\", "\\\"", "\\'");
+
+    /**
+     * The escapes for Java files.
+     */
+    private static final String[] JAVA_ESCAPES = createEscapes("\\", "\\\\");
+
+    /**
+     * The escapes for XML files.
+     */
+    private static final String[] XML_ESCAPES = createEscapes("<>&'\"", "&lt;", "&gt;", "&amp;", "&apos;", "&quot;");
+
+    /**
+     * The escapes for shell files.
+     */
+    private static final String[] SHELL_ESCAPES = createEscapes("\r", "");
+
+    static
+    {
+        for (char c = 'a'; c <= 'z'; ++c)
+        {
+            NAME_CHARS[c] = NAME_START;
+            NAME_CHARS[Character.toUpperCase(c)] = NAME_START;
+        }
+        for (char c = '0'; c <= '9'; ++c)
+        {
+            NAME_CHARS[c] = NAME_PART;
+        }
+        NAME_CHARS['_'] = NAME_PART;
+        NAME_CHARS['.'] = NAME_PART;
+        NAME_CHARS['-'] = NAME_PART;
+    }
+
     /**
      * Whether braces are required for substitution.
      */
@@ -162,24 +219,23 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
         {
             return null;
         }
+        if (str.indexOf(getVariableStart(type)) == -1)
+        {
+            // nothing to substitute
+            return str;
+        }
 
-        // Create reader and write for the strings
-        StringReader reader = new StringReader(str);
-        StringWriter writer = new StringWriter();
-
-        // Substitute any variables
+        Output output = new Output(null, str.length() + 16);
         try
         {
-            substitute(reader, writer, type);
+            substitute(new Input(str), output, type);
         }
         catch (Exception e)
         {
             LOGGER.log(Level.SEVERE, "Error when substituting variables", e);
             throw new IzPackException(e);
         }
-
-        // Return the resulting string
-        return writer.getBuffer().toString();
+        return output.toString();
     }
 
     /**
@@ -290,6 +346,25 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
      * @throws IOException
      */
     public int substitute(Reader reader, Writer writer, SubstitutionType type) throws Exception
+    {
+        Output output = new Output(writer, BUFFER_SIZE);
+        int subs = substitute(new Input(reader), output, type);
+        output.flush();
+        return subs;
+    }
+
+    /**
+     * Substitutes the variables found in the input, writing the result to the output.
+     * <p/>
+     * Runs of characters that can't start a variable reference are copied in bulk.
+     *
+     * @param input  the input
+     * @param output the output
+     * @param type   the file type or null for plain
+     * @return the number of substitutions made
+     * @throws Exception if a variable cannot be resolved, or for any I/O error
+     */
+    private int substitute(Input input, Output output, SubstitutionType type) throws Exception
     {
         if (type == null)
         {
@@ -297,85 +372,48 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
         }
 
         // determine character which starts (and ends) a variable
-        char variable_start = '$';
-        char variable_end = '\0';
-        switch (type)
-        {
-            case TYPE_SHELL:
-                variable_start = '%';
-                break;
-
-            case TYPE_AT:
-                variable_start = '@';
-                break;
-
-            case TYPE_ANT:
-                variable_start = '@';
-                variable_end = '@';
-                break;
-
-            default:
-                break;
-        }
+        char variableStart = getVariableStart(type);
+        char variableEnd = (type == SubstitutionType.TYPE_ANT) ? '@' : '\0';
 
         int subs = 0;
-
-        // Copy data and substitute variables
-        int c = reader.read();
-
-        while (true)
+        StringBuilder nameBuffer = new StringBuilder();
+        while (input.copyTo(variableStart, output))
         {
-            // Find the next potential variable reference or EOF
-            while (c != -1 && c != variable_start)
-            {
-                writer.write(c);
-                c = reader.read();
-            }
-            if (c == -1)
-            {
-                return subs;
-            }
-
             // Check if braces used or start char escaped
             boolean braces = false;
-            c = reader.read();
+            int c = input.read();
             if (c == '{')
             {
                 braces = true;
-                c = reader.read();
+                c = input.read();
             }
             else if (bracesRequired)
             {
-                writer.write(variable_start);
+                output.write(variableStart);
+                input.unread();
                 continue;
             }
             else if (c == -1)
             {
-                writer.write(variable_start);
+                output.write(variableStart);
                 return subs;
             }
 
             // Read the variable name
-            StringBuffer nameBuffer = new StringBuffer();
-            while (c != -1 && (braces && c != '}') || (c >= 'a' && c <= 'z')
-                    || (c >= 'A' && c <= 'Z') || (braces && ((c == '[') || (c == ']')))
-                    || (((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') && nameBuffer.length() > 0))
+            nameBuffer.setLength(0);
+            while (isNameChar(c, braces, nameBuffer.length()))
             {
                 nameBuffer.append((char) c);
-                c = reader.read();
+                c = input.read();
             }
             String name = nameBuffer.toString();
 
             // Check if a legal and defined variable found
             String varvalue = null;
-
-            if (((!braces || c == '}') &&
-                    (!braces || variable_end == '\0' || variable_end == c)
-            ) && name.length() > 0)
+            if ((!braces || (c == '}' && variableEnd == '\0')) && name.length() > 0)
             {
                 // check for environment variables
-                if (braces && name.startsWith("ENV[")
-                        && (name.lastIndexOf(']') == name.length() - 1))
+                if (braces && name.startsWith("ENV[") && (name.lastIndexOf(']') == name.length() - 1))
                 {
                     varvalue = IoHelper.getenv(name.substring(4, name.length() - 1));
                     if (varvalue == null)
@@ -398,23 +436,72 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
             // Substitute the variable...
             if (varvalue != null)
             {
-                writer.write(escapeSpecialChars(varvalue, type));
-                if (braces || variable_end != '\0')
+                output.write(escapeSpecialChars(varvalue, type));
+                if (!braces && variableEnd == '\0')
                 {
-                    c = reader.read();
+                    // the character following the name isn't part of the reference
+                    input.unread();
                 }
             }
             // ...or ignore it
             else
             {
-                writer.write(variable_start);
+                output.write(variableStart);
                 if (braces)
                 {
-                    writer.write('{');
+                    output.write('{');
                 }
-                writer.write(name);
+                output.write(name);
+                input.unread();
             }
         }
+        return subs;
+    }
+
+    /**
+     * Returns the character that starts a variable reference.
+     *
+     * @param type the file type or null for plain
+     * @return the variable start character
+     */
+    private char getVariableStart(SubstitutionType type)
+    {
+        char result = '$';
+        if (type == SubstitutionType.TYPE_SHELL)
+        {
+            result = '%';
+        }
+        else if (type == SubstitutionType.TYPE_AT || type == SubstitutionType.TYPE_ANT)
+        {
+            result = '@';
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a character may appear in a variable name.
+     * <p/>
+     * Within braces, any character but the closing brace may appear. Otherwise, names start with a letter, followed
+     * by letters, digits, '_', '.' or '-'.
+     * <p/>
+     * This is shared with {@link CompiledTemplate}, so that both parse names the same way.
+     *
+     * @param c      the character, or <tt>-1</tt> if the end of input has been reached
+     * @param braces if <tt>true</tt>, the name is enclosed in braces
+     * @param length the length of the name so far
+     * @return <tt>true</tt> if the character is part of the name
+     */
+    static boolean isNameChar(int c, boolean braces, int length)
+    {
+        if (c == -1)
+        {
+            return false;
+        }
+        if (braces)
+        {
+            return c != '}';
+        }
+        return c < NAME_CHARS.length && (NAME_CHARS[c] == NAME_START || (NAME_CHARS[c] == NAME_PART && length > 0));
     }
 
     /**
@@ -450,10 +537,6 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
      */
     protected String escapeSpecialChars(String str, SubstitutionType type)
     {
-        StringBuffer buffer;
-        int len;
-        int i;
-
         if (type == null)
         {
             type = SubstitutionType.getDefault();
@@ -467,110 +550,359 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
                 return str;
             case TYPE_SHELL:
                 // apple mac has major problem with \r, make sure they are gone
-                return str.replace("\r", "");
+                return escape(str, SHELL_ESCAPES, false);
             case TYPE_JAVA_PROPERTIES:
+                // According to the spec:
+                // 'For the element, leading space characters, but not embedded or trailing space characters,
+                // are written with a preceding \ character'
+                return escape(str, JAVA_PROPERTIES_ESCAPES, true);
             case TYPE_JAVA:
-                buffer = new StringBuffer(str);
-                len = str.length();
-                boolean leading = true;
-                for (i = 0; i < len; i++)
+                return escape(str, JAVA_ESCAPES, false);
+            case TYPE_XML:
+                return escape(str, XML_ESCAPES, false);
+            default:
+                throw new Error("Unknown file type constant " + type);
+        }
+    }
+
+    /**
+     * Escapes the characters in a string using an escape table.
+     *
+     * @param str           the string to escape
+     * @param escapes       the escapes, indexed on character. A <tt>null</tt> element indicates no escape is required
+     * @param leadingSpaces if <tt>true</tt>, escape leading spaces. Control characters don't end the leading spaces
+     * @return the escaped string. This is <tt>str</tt> if no characters needed escaping
+     */
+    private static String escape(String str, String[] escapes, boolean leadingSpaces)
+    {
+        StringBuilder result = null;
+        boolean leading = leadingSpaces;
+        int length = str.length();
+        for (int i = 0; i < length; ++i)
+        {
+            char c = str.charAt(i);
+            String escape = (c < escapes.length) ? escapes[c] : null;
+            if (leadingSpaces)
+            {
+                if (c == ' ')
                 {
-                    // Check for control characters
-                    char c = buffer.charAt(i);
-                    if (type.equals(SubstitutionType.TYPE_JAVA_PROPERTIES))
-                    {
-                        if (c == '\t' || c == '\n' || c == '\r')
-                        {
-                            char tag;
-                            if (c == '\t')
-                            {
-                                tag = 't';
-                            }
-                            else if (c == '\n')
-                            {
-                                tag = 'n';
-                            }
-                            else
-                            {
-                                tag = 'r';
-                            }
-                            buffer.replace(i, i + 1, "\\" + tag);
-                            len++;
-                            i++;
-                        }
-
-                        // Check for special characters
-                        // According to the spec:
-                        // 'For the element, leading space characters, but not embedded or trailing
-                        // space characters,
-                        // are written with a preceding \ character'
-                        else if (c == ' ')
-                        {
-                            if (leading)
-                            {
-                                buffer.insert(i, '\\');
-                                len++;
-                                i++;
-                            }
-                        }
-                        else if (c == '\\' || c == '"' || c == '\'')
-                        {
-                            leading = false;
-                            buffer.insert(i, '\\');
-                            len++;
-                            i++;
-                        }
-                        else
-                        {
-                            leading = false;
-                        }
-                    }
-                    else
-                    {
-                        if (c == '\\')
-                        {
-                            buffer.replace(i, i + 1, "\\\\");
-                            len++;
-                            i++;
-                        }
-                    }
+                    escape = leading ? "\\ " : null;
                 }
-                return buffer.toString();
-            case TYPE_XML:
-                buffer = new StringBuffer(str);
-                len = str.length();
-                for (i = 0; i < len; i++)
+                else if (c != '\t' && c != '\n' && c != '\r')
                 {
-                    String r = null;
-                    char c = buffer.charAt(i);
-                    switch (c)
-                    {
-                        case '<':
-                            r = "&lt;";
-                            break;
-                        case '>':
-                            r = "&gt;";
-                            break;
-                        case '&':
-                            r = "&amp;";
-                            break;
-                        case '\'':
-                            r = "&apos;";
-                            break;
-                        case '"':
-                            r = "&quot;";
-                            break;
-                    }
-                    if (r != null)
-                    {
-                        buffer.replace(i, i + 1, r);
-                        len = buffer.length();
-                        i += r.length() - 1;
-                    }
+                    leading = false;
                 }
-                return buffer.toString();
-            default:
-                throw new Error("Unknown file type constant " + type);
+            }
+            if (escape != null)
+            {
+                if (result == null)
+                {
+                    result = new StringBuilder(length + 16);
+                    result.append(str, 0, i);
+                }
+                result.append(escape);
+            }
+            else if (result != null)
+            {
+                result.append(c);
+            }
+        }
+        return (result != null) ? result.toString() : str;
+    }
+
+    /**
+     * Creates an escape table.
+     *
+     * @param chars   the characters to escape
+     * @param escapes the corresponding escapes
+     * @return the escape table, indexed on character
+     */
+    private static String[] createEscapes(String chars, String... escapes)
+    {
+        String[] result = new String[128];
+        for (int i = 0; i < chars.length(); ++i)
+        {
+            result[chars.charAt(i)] = escapes[i];
+        }
+        return result;
+    }
+
+    /**
+     * Reads characters from a reader or string, a buffer at a time.
+     */
+    private static class Input
+    {
+
+        /**
+         * The reader, or <tt>null</tt> if reading from a string.
+         */
+        private final Reader reader;
+
+        /**
+         * The buffer.
+         */
+        private final char[] buffer;
+
+        /**
+         * The position of the next character in the buffer.
+         */
+        private int position;
+
+        /**
+         * The no. of characters in the buffer.
+         */
+        private int limit;
+
+        /**
+         * Determines if the end of input has been reached.
+         */
+        private boolean eof;
+
+        /**
+         * Constructs an <tt>Input</tt> to read from a reader.
+         *
+         * @param reader the reader
+         */
+        public Input(Reader reader)
+        {
+            this.reader = reader;
+            this.buffer = new char[BUFFER_SIZE];
+        }
+
+        /**
+         * Constructs an <tt>Input</tt> to read from a string.
+         *
+         * @param str the string
+         */
+        public Input(String str)
+        {
+            this.reader = null;
+            this.buffer = str.toCharArray();
+            this.limit = buffer.length;
+        }
+
+        /**
+         * Reads the next character.
+         *
+         * @return the next character, or <tt>-1</tt> if the end of input has been reached
+         * @throws IOException for any I/O error
+         */
+        public int read() throws IOException
+        {
+            if (position == limit && !fill())
+            {
+                return -1;
+            }
+            return buffer[position++];
+        }
+
+        /**
+         * Unreads the last character read, so that it is returned by the next read.
+         * <p/>
+         * This has no effect if the end of input has been reached.
+         */
+        public void unread()
+        {
+            if (!eof)
+            {
+                --position;
+            }
+        }
+
+        /**
+         * Copies characters to the output up to the next occurrence of the specified character, which is consumed.
+         *
+         * @param stop   the character to stop at
+         * @param output the output to write to
+         * @return <tt>true</tt> if the character was found, <tt>false</tt> if the end of input has been reached
+         * @throws IOException for any I/O error
+         */
+        public boolean copyTo(char stop, Output output) throws IOException
+        {
+            while (position < limit || fill())
+            {
+                int start = position;
+                while (position < limit && buffer[position] != stop)
+                {
+                    ++position;
+                }
+                output.write(buffer, start, position - start);
+                if (position < limit)
+                {
+                    ++position;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Refills the buffer.
+         *
+         * @return <tt>true</tt> if characters were read, <tt>false</tt> if the end of input has been reached
+         * @throws IOException for any I/O error
+         */
+        private boolean fill() throws IOException
+        {
+            if (!eof && reader != null)
+            {
+                int read;
+                do
+                {
+                    read = reader.read(buffer, 0, buffer.length);
+                }
+                while (read == 0);
+                if (read > 0)
+                {
+                    position = 0;
+                    limit = read;
+                    return true;
+                }
+            }
+            eof = true;
+            return false;
+        }
+    }
+
+    /**
+     * Buffers characters written to a writer, or collects them into a string.
+     */
+    private static class Output
+    {
+
+        /**
+         * The writer, or <tt>null</tt> if collecting to a string.
+         */
+        private final Writer writer;
+
+        /**
+         * The buffer.
+         */
+        private char[] buffer;
+
+        /**
+         * The no. of characters in the buffer.
+         */
+        private int length;
+
+        /**
+         * Constructs an <tt>Output</tt>.
+         *
+         * @param writer the writer, or <tt>null</tt> to collect to a string
+         * @param size   the initial buffer size
+         */
+        public Output(Writer writer, int size)
+        {
+            this.writer = writer;
+            this.buffer = new char[size];
+        }
+
+        /**
+         * Writes a character.
+         *
+         * @param c the character
+         * @throws IOException for any I/O error
+         */
+        public void write(char c) throws IOException
+        {
+            if (length == buffer.length)
+            {
+                reserve(1);
+            }
+            buffer[length++] = c;
+        }
+
+        /**
+         * Writes characters.
+         *
+         * @param chars  the characters
+         * @param offset the offset of the first character
+         * @param count  the no. of characters
+         * @throws IOException for any I/O error
+         */
+        public void write(char[] chars, int offset, int count) throws IOException
+        {
+            if (count > buffer.length - length)
+            {
+                reserve(count);
+                if (count > buffer.length)
+                {
+                    writer.write(chars, offset, count);
+                    return;
+                }
+            }
+            System.arraycopy(chars, offset, buffer, length, count);
+            length += count;
+        }
+
+        /**
+         * Writes a string.
+         *
+         * @param str the string
+         * @throws IOException for any I/O error
+         */
+        public void write(String str) throws IOException
+        {
+            int count = str.length();
+            if (count > buffer.length - length)
+            {
+                reserve(count);
+                if (count > buffer.length)
+                {
+                    writer.write(str);
+                    return;
+                }
+            }
+            str.getChars(0, count, buffer, length);
+            length += count;
+        }
+
+        /**
+         * Writes any buffered characters to the writer.
+         *
+         * @throws IOException for any I/O error
+         */
+        public void flush() throws IOException
+        {
+            if (length > 0)
+            {
+                writer.write(buffer, 0, length);
+                length = 0;
+            }
+        }
+
+        /**
+         * Returns the characters collected.
+         *
+         * @return the characters collected
+         */
+        @Override
+        public String toString()
+        {
+            return new String(buffer, 0, length);
+        }
+
+        /**
+         * Makes room for the specified no. of characters, either by flushing the buffer to the writer, or by growing
+         * it when collecting to a string.
+         * <p/>
+         * When writing to a writer, the buffer isn't grown, so writes larger than it must go to the writer directly.
+         *
+         * @param count the no. of characters
+         * @throws IOException for any I/O error
+         */
+        private void reserve(int count) throws IOException
+        {
+            if (writer != null)
+            {
+                flush();
+            }
+            else
+            {
+                char[] grown = new char[Math.max(buffer.length * 2, length + count)];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
         }
     }
 }
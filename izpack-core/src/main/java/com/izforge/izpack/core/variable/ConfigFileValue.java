@@ -21,13 +21,11 @@
 
 package com.izforge.izpack.core.variable;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -36,7 +34,6 @@ import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.util.config.base.Ini;
@@ -110,62 +107,96 @@ public abstract class ConfigFileValue extends ValueImpl implements Serializable
 
     protected String resolve(InputStream in) throws Exception
     {
-        switch (type)
-        {
-            case CONFIGFILE_TYPE_OPTIONS:
-                Options opts;
-                opts = new Options(in);
-                return opts.get(key);
-            case CONFIGFILE_TYPE_INI:
-                Ini ini;
-                ini = new Ini(in);
-                return ini.get(section, key);
-            case CONFIGFILE_TYPE_XML:
-                return parseXPath(in, key, System.getProperty("line.separator"));
-            default:
-                throw new Exception("Invalid configuration file type " + type);
-        }
+        return lookup(parse(in, type), section, key);
     }
 
     protected String resolve(InputStream in, VariableSubstitutor... substitutors)
             throws Exception
+    {
+        return lookup(parse(in, type), substitutors);
+    }
+
+    /**
+     * Looks up the key in a parsed configuration file, after substituting variables in the key.
+     *
+     * @param config       the parsed configuration file, as returned by {@link #parse(InputStream, int)}
+     * @param substitutors the variable substitutors
+     * @return the value of the key. May be <tt>null</tt>
+     * @throws Exception if the key cannot be looked up
+     */
+    protected String lookup(Object config, VariableSubstitutor... substitutors) throws Exception
     {
         String _key_ = key;
         for (VariableSubstitutor substitutor : substitutors)
         {
             _key_ = substitutor.substitute(_key_);
         }
+        if (type == CONFIGFILE_TYPE_INI)
+        {
+            for (VariableSubstitutor substitutor : substitutors)
+            {
+                _key_ = substitutor.substitute(_key_);
+            }
+        }
+        return lookup(config, section, _key_);
+    }
 
+    /**
+     * Parses a configuration file.
+     *
+     * @param in   the stream to read the file from
+     * @param type the file type
+     * @return the parsed file
+     * @throws Exception if the file cannot be parsed
+     */
+    static Object parse(InputStream in, int type) throws Exception
+    {
         switch (type)
         {
             case CONFIGFILE_TYPE_OPTIONS:
-                Options opts;
-                opts = new Options(in);
-                return opts.get(_key_);
+                return new Options(in);
             case CONFIGFILE_TYPE_INI:
-                Ini ini;
-                String _section_ = section;
-                for (VariableSubstitutor substitutor : substitutors)
-                {
-                    _key_ = substitutor.substitute(_key_);
-                }
-                ini = new Ini(in);
-                return ini.get(_section_, _key_);
+                return new Ini(in);
             case CONFIGFILE_TYPE_XML:
-                return parseXPath(in, _key_, System.getProperty("line.separator"));
+                DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+                domFactory.setNamespaceAware(true);
+                DocumentBuilder builder = domFactory.newDocumentBuilder();
+                return builder.parse(in);
             default:
                 throw new Exception("Invalid configuration file type '" + type + "'");
         }
     }
 
-    private static String parseXPath(InputStream in, String expression, String separator)
-            throws ParserConfigurationException, SAXException, IOException, XPathExpressionException
+    /**
+     * Looks up a key in a parsed configuration file.
+     *
+     * @param config  the parsed configuration file
+     * @param section the INI file section
+     * @param key     the key, or the XPath expression for XML files
+     * @return the value of the key. May be <tt>null</tt>
+     * @throws Exception if the key cannot be looked up
+     */
+    private static String lookup(Object config, String section, String key) throws Exception
+    {
+        if (config instanceof Options)
+        {
+            return ((Options) config).get(key);
+        }
+        else if (config instanceof Ini)
+        {
+            return ((Ini) config).get(section, key);
+        }
+        Document doc = (Document) config;
+        synchronized (doc)
+        {
+            // DOM implementations aren't thread safe, even for reads
+            return parseXPath(doc, key, System.getProperty("line.separator"));
+        }
+    }
+
+    private static String parseXPath(Document doc, String expression, String separator)
+            throws XPathExpressionException
     {
-        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-        domFactory.setNamespaceAware(true);
-        DocumentBuilder builder;
-        builder = domFactory.newDocumentBuilder();
-        Document doc = builder.parse(in);
         XPath xpath = XPathFactory.newInstance().newXPath();
         // XPath Query for showing all nodes value
         XPathExpression expr = xpath.compile(expression);
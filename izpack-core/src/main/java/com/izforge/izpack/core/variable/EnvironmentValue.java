@@ -78,4 +78,16 @@ public class EnvironmentValue extends ValueImpl implements Serializable
         return IoHelper.getenv(_variable_);
     }
 
+    /**
+     * Determines if the value is determined solely by the variables it references.
+     * <p/>
+     * The environment doesn't change during installation.
+     *
+     * @return <tt>true</tt>
+     */
+    @Override
+    public boolean isPure()
+    {
+        return true;
+    }
 }
@@ -25,7 +25,6 @@ import java.io.Serializable;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
-import com.izforge.izpack.util.FileExecutor;
 import com.izforge.izpack.util.OsVersion;
 
 
@@ -123,20 +122,20 @@ public class ExecValue extends ValueImpl implements Serializable
             }
             _cmd_[i] = _cmdarg_;
         }
-        String[] execOut = new String[2];
-        int ret = new FileExecutor().executeCommand(_cmd_, execOut, _dir_);
-        if (ret == 0)
-        {
-            if (useStdErr)
-            {
-                // Some commands return their output on stderr (as java -version)
-                return execOut[1];
-            }
-            else
-            {
-                return execOut[0];
-            }
-        }
-        return null;
+        return ValueCache.execute(_cmd_, _dir_, useStdErr);
+    }
+
+    /**
+     * Determines if the value is determined solely by the variables it references.
+     * <p/>
+     * The output of a command is assumed to depend only on its substituted arguments and directory, as
+     * {@link ValueCache} also assumes.
+     *
+     * @return <tt>true</tt>
+     */
+    @Override
+    public boolean isPure()
+    {
+        return true;
     }
 }
@@ -19,11 +19,6 @@
 
 package com.izforge.izpack.core.variable;
 
-import java.io.InputStream;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.zip.ZipException;
-
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
 
@@ -38,7 +33,7 @@ public class JarEntryConfigValue extends ZipEntryConfigFileValue
     @Override
     public String resolve() throws Exception
     {
-        return super.resolve(getJarEntryInputStream(getFilename(), getEntryname()));
+        return lookup(ValueCache.getConfig(getFilename(), getEntryname(), true, type));
     }
 
     @Override
@@ -54,26 +49,7 @@ public class JarEntryConfigValue extends ZipEntryConfigFileValue
         {
             _entryname_ = substitutor.substitute(_entryname_);
         }
-        return super.resolve(getJarEntryInputStream(_filename_, _entryname_), substitutors);
-    }
-
-    private InputStream getJarEntryInputStream(String filename, String entryname) throws Exception
-    {
-        JarFile jarfile;
-        try
-        {
-            jarfile = new JarFile(filename);
-            JarEntry entry = jarfile.getJarEntry(entryname);
-            if (entry == null)
-            {
-                throw new Exception("Jar file entry " + entryname + " not found in " + jarfile.getName());
-            }
-            return jarfile.getInputStream(entry);
-        }
-        catch (ZipException ze)
-        {
-            throw new Exception("Error opening jar file " + filename, ze);
-        }
+        return lookup(ValueCache.getConfig(_filename_, _entryname_, true, type), substitutors);
     }
 
 }
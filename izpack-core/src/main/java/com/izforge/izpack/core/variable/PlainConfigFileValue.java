@@ -23,7 +23,6 @@ package com.izforge.izpack.core.variable;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
-import java.io.FileInputStream;
 import java.io.Serializable;
 
 public class PlainConfigFileValue extends ConfigFileValue implements Serializable
@@ -64,7 +63,7 @@ public class PlainConfigFileValue extends ConfigFileValue implements Serializabl
     @Override
     public String resolve() throws Exception
     {
-        return resolve(new FileInputStream(location));
+        return lookup(ValueCache.getConfig(location, type));
     }
 
     @Override
@@ -76,6 +75,6 @@ public class PlainConfigFileValue extends ConfigFileValue implements Serializabl
         {
             _location_ = substitutor.substitute(_location_);
         }
-        return resolve(new FileInputStream(_location_), substitutors);
+        return lookup(ValueCache.getConfig(_location_, type), substitutors);
     }
 }
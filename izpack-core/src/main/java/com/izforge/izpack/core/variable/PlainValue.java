@@ -77,4 +77,15 @@ public class PlainValue extends ValueImpl implements Serializable
 
         return _value_;
     }
+
+    /**
+     * Determines if the value is determined solely by the variables it references.
+     *
+     * @return <tt>true</tt>
+     */
+    @Override
+    public boolean isPure()
+    {
+        return true;
+    }
 }
@@ -0,0 +1,314 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.variable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import com.izforge.izpack.util.FileExecutor;
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * Caches the results of expensive {@link com.izforge.izpack.api.data.Value} evaluations.
+ * <p/>
+ * Two caches are maintained:
+ * <ul>
+ * <li>command output, for {@link ExecValue}. Successful results are cached for the remainder of the installation
+ * session, keyed on the command line and working directory. Failed commands are re-executed, as they may depend on
+ * files yet to be installed.</li>
+ * <li>parsed configuration files, for the {@link ConfigFileValue} subclasses. Plain files are re-parsed when their
+ * modification time or size changes; zip and jar entries, when their CRC or size changes. As many variables
+ * typically read keys from the same file, each file is only parsed once.</li>
+ * </ul>
+ * The caches may be cleared via {@link #clear()}.
+ */
+public final class ValueCache
+{
+
+    /**
+     * The maximum no. of configuration files to cache.
+     */
+    public static final int CONFIG_CACHE_SIZE = 64;
+
+    /**
+     * The successful command results, keyed on working directory, output stream and command line.
+     */
+    private static final Map<List<String>, String> commands = new HashMap<List<String>, String>();
+
+    /**
+     * The parsed configuration files, in least-recently-used order.
+     */
+    private static final Map<String, Config> configs = new LinkedHashMap<String, Config>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Config> eldest)
+        {
+            return size() > CONFIG_CACHE_SIZE;
+        }
+    };
+
+
+    /**
+     * Constructs a <tt>ValueCache</tt>.
+     */
+    private ValueCache()
+    {
+    }
+
+    /**
+     * Executes a command, returning the cached output if the command has already been executed successfully.
+     *
+     * @param command   the command line
+     * @param dir       the working directory. May be <tt>null</tt>
+     * @param useStdErr if <tt>true</tt>, return the standard error output, otherwise return the standard output
+     * @return the command output, or <tt>null</tt> if the command failed
+     */
+    public static String execute(String[] command, String dir, boolean useStdErr)
+    {
+        List<String> key = new ArrayList<String>(command.length + 2);
+        key.add(dir);
+        key.add(Boolean.toString(useStdErr));
+        key.addAll(Arrays.asList(command));
+        synchronized (commands)
+        {
+            if (commands.containsKey(key))
+            {
+                return commands.get(key);
+            }
+        }
+
+        String[] execOut = new String[2];
+        int ret = new FileExecutor().executeCommand(command, execOut, dir);
+        if (ret != 0)
+        {
+            return null;
+        }
+        // Some commands return their output on stderr (as java -version)
+        String result = useStdErr ? execOut[1] : execOut[0];
+        synchronized (commands)
+        {
+            commands.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a parsed configuration file.
+     *
+     * @param location the file location
+     * @param type     the file type. One of the <tt>ConfigFileValue.CONFIGFILE_TYPE_*</tt> constants
+     * @return the parsed file
+     * @throws Exception if the file cannot be read or parsed
+     */
+    public static Object getConfig(String location, int type) throws Exception
+    {
+        File file = new File(location);
+        long modified = file.lastModified();
+        long length = file.length();
+        String key = type + ":" + file.getAbsolutePath();
+        Config config = get(key);
+        if (config != null && modified != 0 && config.modified == modified && config.length == length)
+        {
+            return config.config;
+        }
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            config = new Config(ConfigFileValue.parse(in, type), modified, length, 0);
+        }
+        finally
+        {
+            FileUtils.close(in);
+        }
+        put(key, config);
+        return config.config;
+    }
+
+    /**
+     * Returns a parsed configuration file, read from a zip or jar file entry.
+     *
+     * @param location  the zip file location
+     * @param entryName the entry name
+     * @param jar       if <tt>true</tt>, the file is a jar file
+     * @param type      the file type. One of the <tt>ConfigFileValue.CONFIGFILE_TYPE_*</tt> constants
+     * @return the parsed file
+     * @throws Exception if the entry cannot be read or parsed
+     */
+    public static Object getConfig(String location, String entryName, boolean jar, int type) throws Exception
+    {
+        File file = new File(location);
+        long modified = file.lastModified();
+        long length = file.length();
+        String key = type + ":" + file.getAbsolutePath() + "!" + entryName;
+        Config config = get(key);
+        if (config != null && modified != 0 && config.modified == modified && config.length == length)
+        {
+            return config.config;
+        }
+
+        String kind = jar ? "Jar" : "Zip";
+        ZipFile zip;
+        try
+        {
+            zip = jar ? new JarFile(location) : new ZipFile(location);
+        }
+        catch (ZipException exception)
+        {
+            throw new Exception("Error opening " + kind.toLowerCase() + " file " + location, exception);
+        }
+        try
+        {
+            ZipEntry entry = zip.getEntry(entryName);
+            if (entry == null)
+            {
+                throw new Exception(kind + " file entry " + entryName + " not found in " + zip.getName());
+            }
+            long crc = entry.getCrc();
+            if (config == null || crc == -1 || config.crc != crc || config.entryLength != entry.getSize())
+            {
+                InputStream in = zip.getInputStream(entry);
+                try
+                {
+                    config = new Config(ConfigFileValue.parse(in, type), modified, length, crc);
+                }
+                finally
+                {
+                    FileUtils.close(in);
+                }
+                config.entryLength = entry.getSize();
+            }
+            else
+            {
+                // the zip file has changed, but not the entry
+                config = new Config(config.config, modified, length, crc);
+                config.entryLength = entry.getSize();
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        put(key, config);
+        return config.config;
+    }
+
+    /**
+     * Clears the caches.
+     */
+    public static void clear()
+    {
+        synchronized (commands)
+        {
+            commands.clear();
+        }
+        synchronized (configs)
+        {
+            configs.clear();
+        }
+    }
+
+    /**
+     * Returns a cached configuration file.
+     *
+     * @param key the cache key
+     * @return the cached configuration file, or <tt>null</tt> if it isn't cached
+     */
+    private static Config get(String key)
+    {
+        synchronized (configs)
+        {
+            return configs.get(key);
+        }
+    }
+
+    /**
+     * Caches a configuration file.
+     *
+     * @param key    the cache key
+     * @param config the configuration file
+     */
+    private static void put(String key, Config config)
+    {
+        synchronized (configs)
+        {
+            configs.put(key, config);
+        }
+    }
+
+    /**
+     * A parsed configuration file, and the fingerprint of the file it was parsed from.
+     */
+    private static class Config
+    {
+
+        /**
+         * The parsed configuration.
+         */
+        private final Object config;
+
+        /**
+         * The modification time of the file.
+         */
+        private final long modified;
+
+        /**
+         * The length of the file.
+         */
+        private final long length;
+
+        /**
+         * The CRC of the zip entry, or <tt>0</tt> if the configuration wasn't read from a zip entry.
+         */
+        private final long crc;
+
+        /**
+         * The uncompressed size of the zip entry.
+         */
+        private long entryLength;
+
+        /**
+         * Constructs a <tt>Config</tt>.
+         *
+         * @param config   the parsed configuration
+         * @param modified the modification time of the file
+         * @param length   the length of the file
+         * @param crc      the CRC of the zip entry
+         */
+        public Config(Object config, long modified, long length, long crc)
+        {
+            this.config = config;
+            this.modified = modified;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+}
@@ -49,4 +49,18 @@ public abstract class ValueImpl implements Value
     {
         this.installData = installData;
     }
+
+    /**
+     * Determines if the value is determined solely by the variables it references.
+     * <p/>
+     * If so, a dynamic variable with this value need only be re-evaluated when one of those variables changes.
+     * Values that depend on anything else, such as files or the registry, must return <tt>false</tt>.
+     *
+     * @return <tt>true</tt> if the value is determined solely by the variables it references. This implementation
+     *         returns <tt>false</tt>
+     */
+    public boolean isPure()
+    {
+        return false;
+    }
 }
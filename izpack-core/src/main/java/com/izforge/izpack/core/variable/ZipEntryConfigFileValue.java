@@ -19,11 +19,6 @@
 
 package com.izforge.izpack.core.variable;
 
-import java.io.InputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
-
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
 
@@ -77,7 +72,7 @@ public class ZipEntryConfigFileValue extends ConfigFileValue
     @Override
     public String resolve() throws Exception
     {
-        return super.resolve(getZipEntryInputStream(getFilename(), getEntryname()));
+        return lookup(ValueCache.getConfig(getFilename(), getEntryname(), false, type));
     }
 
     @Override
@@ -93,25 +88,6 @@ public class ZipEntryConfigFileValue extends ConfigFileValue
         {
             _entryname_ = substitutor.substitute(_entryname_);
         }
-        return super.resolve(getZipEntryInputStream(_filename_, _entryname_), substitutors);
-    }
-
-    private InputStream getZipEntryInputStream(String filename, String entryname) throws Exception
-    {
-        ZipFile zipfile;
-        try
-        {
-            zipfile = new ZipFile(filename);
-            ZipEntry entry = zipfile.getEntry(entryname);
-            if (entry == null)
-            {
-                throw new Exception("Zip file entry " + entryname + " not found in " + zipfile.getName());
-            }
-            return zipfile.getInputStream(entry);
-        }
-        catch (ZipException ze)
-        {
-            throw new Exception("Error opening zip file " + filename, ze);
-        }
+        return lookup(ValueCache.getConfig(_filename_, _entryname_, false, type), substitutors);
     }
 }
@@ -22,13 +22,13 @@ package com.izforge.izpack.merge.jar;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
@@ -39,11 +39,16 @@ import org.apache.tools.zip.ZipOutputStream;
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.exception.MergeException;
 import com.izforge.izpack.merge.AbstractMerge;
+import com.izforge.izpack.merge.resolve.ClassPathIndex;
 import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.IoHelper;
 
 /**
  * Jar files merger.
+ * <p/>
+ * Entries are only copied without being inflated and re-compressed when merging into a {@link RawJarOutputStream},
+ * as is done for the uninstaller jar. Merges into any other stream, including the installer jar written by the
+ * compiler, inflate and re-compress each entry.
  *
  * @author Anthonin Bonnefoy
  */
@@ -54,6 +59,11 @@ public class JarMerge extends AbstractMerge
     private String regexp;
     private String destination;
 
+    /**
+     * The class path index, used to cache the jar's entry names.
+     */
+    private final ClassPathIndex classPathIndex;
+
 
     /**
      * Create a new JarMerge with a destination
@@ -62,10 +72,25 @@ public class JarMerge extends AbstractMerge
      * @param jarPath      Path to the jar to merge
      * @param mergeContent map linking outputstream to their content to avoir duplication
      */
-    public JarMerge(URL resource, String jarPath, Map<OutputStream, List<String>> mergeContent)
+    public JarMerge(URL resource, String jarPath, Map<OutputStream, Set<String>> mergeContent)
+    {
+        this(resource, jarPath, mergeContent, new ClassPathIndex());
+    }
+
+    /**
+     * Create a new JarMerge with a destination
+     *
+     * @param resource       the resource to merge
+     * @param jarPath        Path to the jar to merge
+     * @param mergeContent   map linking outputstream to their content to avoir duplication
+     * @param classPathIndex the class path index
+     */
+    public JarMerge(URL resource, String jarPath, Map<OutputStream, Set<String>> mergeContent,
+                    ClassPathIndex classPathIndex)
     {
         this.jarPath = jarPath;
         this.mergeContent = mergeContent;
+        this.classPathIndex = classPathIndex;
         destination = FileUtil.convertUrlToFilePath(resource).replaceAll(this.jarPath, "").replaceAll("file:",
                                                                                                       "").replaceAll(
                 "!/?", "").replaceAll("//", "/");
@@ -93,11 +118,27 @@ public class JarMerge extends AbstractMerge
      * @param mergeContent  map linking outputstream to their content to avoir duplication
      */
     public JarMerge(String jarPath, String pathInsideJar, String destination,
-                    Map<OutputStream, List<String>> mergeContent)
+                    Map<OutputStream, Set<String>> mergeContent)
+    {
+        this(jarPath, pathInsideJar, destination, mergeContent, new ClassPathIndex());
+    }
+
+    /**
+     * Create a new JarMerge with a destination
+     *
+     * @param jarPath        Path to the jar to merge
+     * @param pathInsideJar  Inside path of the jar to merge. Can be a package or a file. Needed to build the regexp
+     * @param destination    Destination of the package
+     * @param mergeContent   map linking outputstream to their content to avoir duplication
+     * @param classPathIndex the class path index
+     */
+    public JarMerge(String jarPath, String pathInsideJar, String destination,
+                    Map<OutputStream, Set<String>> mergeContent, ClassPathIndex classPathIndex)
     {
         this.jarPath = jarPath;
         this.destination = destination;
         this.mergeContent = mergeContent;
+        this.classPathIndex = classPathIndex;
         StringBuilder builder = new StringBuilder().append(pathInsideJar);
         if (pathInsideJar.endsWith("/"))
         {
@@ -160,15 +201,7 @@ public class JarMerge extends AbstractMerge
 
     public ArrayList<String> getFileNameInJar() throws IOException
     {
-        JarFile jarFile = new JarFile(jarPath);
-        ArrayList<String> arrayList = new ArrayList<String>();
-        Enumeration<JarEntry> jarEntries = jarFile.entries();
-        while (jarEntries.hasMoreElements())
-        {
-            JarEntry jarEntry = jarEntries.nextElement();
-            arrayList.add(jarEntry.getName());
-        }
-        return arrayList;
+        return new ArrayList<String>(classPathIndex.getEntries(jarPath));
     }
 
 
@@ -185,12 +218,20 @@ public class JarMerge extends AbstractMerge
     private void mergeImpl(OutputStream outputStream)
     {
         Pattern pattern = Pattern.compile(regexp);
-        List<String> mergeList = getMergeList(outputStream);
+        Set<String> mergeList = getMergeList(outputStream);
+        RawJarOutputStream rawOutput = (outputStream instanceof RawJarOutputStream)
+                ? (RawJarOutputStream) outputStream : null;
         JarFile jarFile = null;
+        RawJarFile rawJarFile = null;
         JarEntry jarEntry;
         try
         {
             jarFile = new JarFile(jarPath);
+            if (rawOutput != null)
+            {
+                // entries can be copied without being inflated and re-compressed
+                rawJarFile = new RawJarFile(new File(jarPath));
+            }
             Enumeration<JarEntry> jarFileEntries = jarFile.entries();
 
             while (jarFileEntries.hasMoreElements())
@@ -206,11 +247,10 @@ public class JarMerge extends AbstractMerge
                 Matcher matcher = pattern.matcher(jarEntry.getName());
                 if (matcher.matches() && !isSignature(jarEntry.getName()))
                 {
-                    if (mergeList.contains(jarEntry.getName()))
+                    if (!mergeList.add(jarEntry.getName()))
                     {
                         continue;
                     }
-                    mergeList.add(jarEntry.getName());
 
                     String matchFile = matcher.group(1);
                     StringBuilder dest = new StringBuilder(destination);
@@ -222,17 +262,23 @@ public class JarMerge extends AbstractMerge
                         }
                         dest.append(matchFile);
                     }
+                    String name = dest.toString().replaceAll("//", "/");
 
-                    InputStream inputStream = jarFile.getInputStream(jarEntry);
-                    if (outputStream instanceof ZipOutputStream)
+                    RawJarFile.Entry rawEntry = (rawJarFile != null) ? rawJarFile.getEntry(jarEntry.getName()) : null;
+                    if (rawEntry != null && rawOutput.canCopy(rawEntry))
+                    {
+                        rawOutput.copyEntry(rawJarFile, rawEntry, name);
+                    }
+                    else if (outputStream instanceof ZipOutputStream)
                     {
-                        IoHelper.copyStreamToJar(inputStream, (ZipOutputStream) outputStream, dest.toString().replaceAll("//", "/"),
-                                jarEntry.getTime());
+                        IoHelper.copyStreamToJar(jarFile.getInputStream(jarEntry), (ZipOutputStream) outputStream,
+                                                 name, jarEntry.getTime());
                     }
                     else if (outputStream instanceof java.util.zip.ZipOutputStream)
                     {
-                        IoHelper.copyStreamToJar(inputStream, (java.util.zip.ZipOutputStream) outputStream, dest.toString().replaceAll("//", "/"),
-                                jarEntry.getTime());
+                        IoHelper.copyStreamToJar(jarFile.getInputStream(jarEntry),
+                                                 (java.util.zip.ZipOutputStream) outputStream, name,
+                                                 jarEntry.getTime());
                     }
                 }
             }
@@ -242,6 +288,17 @@ public class JarMerge extends AbstractMerge
             throw new IzPackException(e);
         }
         finally {
+            if (rawJarFile != null)
+            {
+                try
+                {
+                    rawJarFile.close();
+                }
+                catch (IOException e)
+                {
+                    // Ignore
+                }
+            }
             if (jarFile != null)
             {
                 try
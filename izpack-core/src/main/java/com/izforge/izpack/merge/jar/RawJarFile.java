@@ -0,0 +1,338 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.merge.jar;
+
+import static com.izforge.izpack.merge.jar.ZipRecords.CENTRAL_SIZE;
+import static com.izforge.izpack.merge.jar.ZipRecords.END_SIZE;
+import static com.izforge.izpack.merge.jar.ZipRecords.LOCAL_SIGNATURE;
+import static com.izforge.izpack.merge.jar.ZipRecords.LOCAL_SIZE;
+import static com.izforge.izpack.merge.jar.ZipRecords.MAX_COMMENT;
+import static com.izforge.izpack.merge.jar.ZipRecords.ZIP64_INT;
+import static com.izforge.izpack.merge.jar.ZipRecords.ZIP64_SHORT;
+import static com.izforge.izpack.merge.jar.ZipRecords.readInt;
+import static com.izforge.izpack.merge.jar.ZipRecords.readShort;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+
+/**
+ * Provides access to the compressed data of jar file entries.
+ * <p/>
+ * This reads the central directory of the jar, so that entries can be copied to a {@link RawJarOutputStream}
+ * without being inflated and re-compressed.
+ * <p/>
+ * Zip64 archives aren't indexed; they appear to have no entries.
+ */
+public class RawJarFile implements Closeable
+{
+
+    /**
+     * The jar file.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * The entries, keyed on name.
+     */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+
+    /**
+     * Constructs a <tt>RawJarFile</tt>.
+     *
+     * @param file the jar file
+     * @throws IOException if the file cannot be read, or isn't a zip file
+     */
+    public RawJarFile(File file) throws IOException
+    {
+        this.file = new RandomAccessFile(file, "r");
+        try
+        {
+            read();
+        }
+        catch (IOException exception)
+        {
+            this.file.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Returns an entry.
+     *
+     * @param name the entry name
+     * @return the entry, or <tt>null</tt> if it doesn't exist
+     */
+    public Entry getEntry(String name)
+    {
+        return entries.get(name);
+    }
+
+    /**
+     * Closes the jar file.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        file.close();
+    }
+
+    /**
+     * Copies the compressed data of an entry to a stream.
+     *
+     * @param entry  the entry
+     * @param out    the stream to write to
+     * @param buffer the buffer to copy with
+     * @throws IOException for any I/O error, or if the entry's local file header is invalid
+     */
+    void copy(Entry entry, OutputStream out, byte[] buffer) throws IOException
+    {
+        byte[] header = new byte[LOCAL_SIZE];
+        file.seek(entry.getOffset());
+        file.readFully(header);
+        if (readInt(header, 0) != LOCAL_SIGNATURE)
+        {
+            throw new ZipException("Invalid local file header for " + entry.getName());
+        }
+        file.seek(entry.getOffset() + LOCAL_SIZE + readShort(header, 26) + readShort(header, 28));
+        long remaining = entry.getCompressedSize();
+        while (remaining > 0)
+        {
+            int read = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1)
+            {
+                throw new ZipException("Unexpected end of file reading " + entry.getName());
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Reads the central directory.
+     *
+     * @throws IOException for any I/O error, or if the file isn't a zip file
+     */
+    private void read() throws IOException
+    {
+        long length = file.length();
+        byte[] tail = new byte[(int) Math.min(length, END_SIZE + MAX_COMMENT)];
+        file.seek(length - tail.length);
+        file.readFully(tail);
+        int end = ZipRecords.findEnd(tail);
+        int count = readShort(tail, end + 10);
+        long size = readInt(tail, end + 12);
+        long offset = readInt(tail, end + 16);
+        if (count == ZIP64_SHORT || size == ZIP64_INT || offset == ZIP64_INT)
+        {
+            return;
+        }
+        if (offset + size > length - tail.length + end)
+        {
+            throw new ZipException("Invalid central directory");
+        }
+        byte[] directory = new byte[(int) size];
+        file.seek(offset);
+        file.readFully(directory);
+        int pos = 0;
+        for (int i = 0; i < count; ++i)
+        {
+            ZipRecords.checkCentralHeader(directory, pos);
+            Entry entry = new Entry(directory, pos);
+            entries.put(entry.getName(), entry);
+            pos += ZipRecords.getCentralHeaderSize(directory, pos);
+        }
+    }
+
+    /**
+     * A jar file entry, as described by its central directory file header.
+     */
+    public static class Entry
+    {
+
+        /**
+         * The general purpose flag indicating that the entry is encrypted.
+         */
+        private static final int ENCRYPTED = 0x01;
+
+        /**
+         * The entry name.
+         */
+        private final String name;
+
+        /**
+         * The general purpose flags.
+         */
+        private final int flags;
+
+        /**
+         * The compression method.
+         */
+        private final int method;
+
+        /**
+         * The last modification time, in MS-DOS format.
+         */
+        private final long time;
+
+        /**
+         * The CRC-32 of the uncompressed data.
+         */
+        private final long crc;
+
+        /**
+         * The compressed size.
+         */
+        private final long compressedSize;
+
+        /**
+         * The uncompressed size.
+         */
+        private final long size;
+
+        /**
+         * The offset of the local file header.
+         */
+        private final long offset;
+
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param directory the central directory
+         * @param pos       the position of the entry's file header
+         * @throws IOException if the name cannot be decoded
+         */
+        private Entry(byte[] directory, int pos) throws IOException
+        {
+            flags = readShort(directory, pos + 8);
+            method = readShort(directory, pos + 10);
+            time = readInt(directory, pos + 12);
+            crc = readInt(directory, pos + 16);
+            compressedSize = readInt(directory, pos + 20);
+            size = readInt(directory, pos + 24);
+            offset = readInt(directory, pos + 42);
+            name = new String(directory, pos + CENTRAL_SIZE, readShort(directory, pos + 28), "UTF-8");
+        }
+
+        /**
+         * Returns the entry name.
+         *
+         * @return the entry name
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Returns the general purpose flags.
+         *
+         * @return the flags
+         */
+        public int getFlags()
+        {
+            return flags;
+        }
+
+        /**
+         * Returns the compression method.
+         *
+         * @return one of {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}, or another method number
+         */
+        public int getMethod()
+        {
+            return method;
+        }
+
+        /**
+         * Returns the last modification time.
+         *
+         * @return the time, in MS-DOS format
+         */
+        public long getDosTime()
+        {
+            return time;
+        }
+
+        /**
+         * Returns the CRC-32 of the uncompressed data.
+         *
+         * @return the CRC-32
+         */
+        public long getCrc()
+        {
+            return crc;
+        }
+
+        /**
+         * Returns the compressed size.
+         *
+         * @return the compressed size
+         */
+        public long getCompressedSize()
+        {
+            return compressedSize;
+        }
+
+        /**
+         * Returns the uncompressed size.
+         *
+         * @return the uncompressed size
+         */
+        public long getSize()
+        {
+            return size;
+        }
+
+        /**
+         * Returns the offset of the local file header.
+         *
+         * @return the offset
+         */
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        /**
+         * Determines if the entry data can be copied without being inflated.
+         * <p/>
+         * This is the case for unencrypted entries that are stored or deflated, and don't use the Zip64 extensions.
+         *
+         * @return <tt>true</tt> if the entry can be copied
+         */
+        public boolean isCopyable()
+        {
+            return (method == ZipEntry.STORED || method == ZipEntry.DEFLATED) && (flags & ENCRYPTED) == 0
+                    && compressedSize != ZIP64_INT && size != ZIP64_INT && offset != ZIP64_INT;
+        }
+    }
+}
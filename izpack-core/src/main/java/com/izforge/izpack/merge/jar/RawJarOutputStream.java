@@ -0,0 +1,526 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.merge.jar;
+
+import static com.izforge.izpack.merge.jar.ZipRecords.CENTRAL_SIGNATURE;
+import static com.izforge.izpack.merge.jar.ZipRecords.CENTRAL_SIZE;
+import static com.izforge.izpack.merge.jar.ZipRecords.END_SIZE;
+import static com.izforge.izpack.merge.jar.ZipRecords.LOCAL_SIGNATURE;
+import static com.izforge.izpack.merge.jar.ZipRecords.LOCAL_SIZE;
+import static com.izforge.izpack.merge.jar.ZipRecords.ZIP64_INT;
+import static com.izforge.izpack.merge.jar.ZipRecords.ZIP64_SHORT;
+import static com.izforge.izpack.merge.jar.ZipRecords.readInt;
+import static com.izforge.izpack.merge.jar.ZipRecords.readShort;
+import static com.izforge.izpack.merge.jar.ZipRecords.writeInt;
+import static com.izforge.izpack.merge.jar.ZipRecords.writeShort;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+
+/**
+ * A <tt>JarOutputStream</tt> that can copy entries from other jars without inflating and re-compressing them.
+ * <p/>
+ * Copied entries are written directly to the underlying stream, between the entries written via
+ * {@link #putNextEntry(ZipEntry)}. When the stream is finished, the central directory of the copied entries is
+ * combined with that of the written entries, adjusting the offsets of the latter to account for the copied data.
+ * <p/>
+ * Neither the copied jars nor the combined jar may use the Zip64 extensions.
+ */
+public class RawJarOutputStream extends JarOutputStream
+{
+
+    /**
+     * The version needed to extract deflated entries.
+     */
+    private static final int DEFLATED_VERSION = 20;
+
+    /**
+     * The version needed to extract stored entries.
+     */
+    private static final int STORED_VERSION = 10;
+
+    /**
+     * The general purpose flag indicating that the entry name is UTF-8 encoded.
+     */
+    private static final int UTF8_FLAG = 0x800;
+
+    /**
+     * The general purpose flags describing the deflate options used.
+     */
+    private static final int DEFLATE_FLAGS = 0x06;
+
+    /**
+     * The underlying stream.
+     */
+    private final CaptureOutputStream stream;
+
+    /**
+     * The central directory of the copied entries.
+     */
+    private final ByteArrayOutputStream directory = new ByteArrayOutputStream();
+
+    /**
+     * The names of all entries written or copied.
+     */
+    private final Set<String> names = new HashSet<String>();
+
+    /**
+     * The positions, relative to the written entries, where data was copied.
+     */
+    private final List<Long> positions = new ArrayList<Long>();
+
+    /**
+     * The total length of the data copied up to and including each position.
+     */
+    private final List<Long> shifts = new ArrayList<Long>();
+
+    /**
+     * The buffer used to copy entry data.
+     */
+    private final byte[] buffer = new byte[8192];
+
+    /**
+     * The default compression method for new entries.
+     */
+    private int method = DEFLATED;
+
+    /**
+     * The no. of copied entries.
+     */
+    private int copied;
+
+    /**
+     * The total length of the copied data.
+     */
+    private long inserted;
+
+    /**
+     * Determines if the stream has been finished.
+     */
+    private boolean finished;
+
+
+    /**
+     * Constructs a <tt>RawJarOutputStream</tt>.
+     *
+     * @param out the stream to write to
+     * @throws IOException for any I/O error
+     */
+    public RawJarOutputStream(OutputStream out) throws IOException
+    {
+        this(new CaptureOutputStream(out));
+    }
+
+    /**
+     * Constructs a <tt>RawJarOutputStream</tt>.
+     *
+     * @param stream the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private RawJarOutputStream(CaptureOutputStream stream) throws IOException
+    {
+        super(stream);
+        this.stream = stream;
+    }
+
+    /**
+     * Sets the default compression method for new entries.
+     *
+     * @param method the compression method
+     */
+    @Override
+    public void setMethod(int method)
+    {
+        super.setMethod(method);
+        this.method = method;
+    }
+
+    /**
+     * Determines if an entry can be copied without being inflated.
+     * <p/>
+     * This is the case if {@link RawJarFile.Entry#isCopyable()} is <tt>true</tt>, and the entry has the same
+     * compression method as that used for new entries.
+     *
+     * @param entry the entry
+     * @return <tt>true</tt> if the entry can be copied
+     */
+    public boolean canCopy(RawJarFile.Entry entry)
+    {
+        return entry.isCopyable() && entry.getMethod() == method;
+    }
+
+    /**
+     * Begins writing a new entry.
+     *
+     * @param entry the entry
+     * @throws ZipException if an entry with the same name has been written or copied
+     * @throws IOException  for any I/O error
+     */
+    @Override
+    public void putNextEntry(ZipEntry entry) throws IOException
+    {
+        if (!names.add(entry.getName()))
+        {
+            throw new ZipException("duplicate entry: " + entry.getName());
+        }
+        super.putNextEntry(entry);
+    }
+
+    /**
+     * Copies an entry from a jar, without inflating it.
+     * <p/>
+     * Any current entry is closed first.
+     *
+     * @param jar   the jar to copy from
+     * @param entry the entry to copy. Must be {@link RawJarFile.Entry#isCopyable() copyable}
+     * @param name  the name of the copied entry
+     * @throws ZipException if the entry can't be copied, or an entry with the same name has been written or copied
+     * @throws IOException  for any I/O error
+     */
+    public void copyEntry(RawJarFile jar, RawJarFile.Entry entry, String name) throws IOException
+    {
+        if (!entry.isCopyable())
+        {
+            throw new ZipException("Cannot copy entry: " + entry.getName());
+        }
+        if (!names.add(name))
+        {
+            throw new ZipException("duplicate entry: " + name);
+        }
+        long start = beginCopy();
+
+        byte[] nameBytes = name.getBytes("UTF-8");
+        int flags = entry.getFlags() & DEFLATE_FLAGS;
+        if (nameBytes.length != name.length())
+        {
+            flags |= UTF8_FLAG;
+        }
+        int version = (entry.getMethod() == DEFLATED) ? DEFLATED_VERSION : STORED_VERSION;
+
+        byte[] local = new byte[LOCAL_SIZE];
+        writeInt(local, 0, LOCAL_SIGNATURE);
+        writeShort(local, 4, version);
+        writeShort(local, 6, flags);
+        writeShort(local, 8, entry.getMethod());
+        writeInt(local, 10, entry.getDosTime());
+        writeInt(local, 14, entry.getCrc());
+        writeInt(local, 18, entry.getCompressedSize());
+        writeInt(local, 22, entry.getSize());
+        writeShort(local, 26, nameBytes.length);
+        OutputStream out = stream.getTarget();
+        out.write(local);
+        out.write(nameBytes);
+        jar.copy(entry, out, buffer);
+
+        byte[] central = new byte[CENTRAL_SIZE];
+        writeInt(central, 0, CENTRAL_SIGNATURE);
+        writeShort(central, 4, DEFLATED_VERSION);
+        writeShort(central, 6, version);
+        System.arraycopy(local, 6, central, 8, 20);
+        writeShort(central, 28, nameBytes.length);
+        writeInt(central, 42, start);
+        directory.write(central);
+        directory.write(nameBytes);
+
+        endCopy(start, LOCAL_SIZE + nameBytes.length + entry.getCompressedSize(), 1);
+    }
+
+    /**
+     * Copies all of the entries of a jar verbatim.
+     * <p/>
+     * Any current entry is closed first.
+     *
+     * @param jar the jar to copy
+     * @return the names of the copied entries
+     * @throws ZipException if the jar is invalid or uses the Zip64 extensions, or an entry with the same name has
+     *                      been written or copied
+     * @throws IOException  for any I/O error
+     */
+    public List<String> copyJar(byte[] jar) throws IOException
+    {
+        int end = ZipRecords.findEnd(jar);
+        int count = readShort(jar, end + 10);
+        long size = readInt(jar, end + 12);
+        long offset = readInt(jar, end + 16);
+        if (count == ZIP64_SHORT || size == ZIP64_INT || offset == ZIP64_INT || offset + size > end)
+        {
+            throw new ZipException("Unsupported or invalid jar");
+        }
+        byte[] records = new byte[(int) size];
+        System.arraycopy(jar, (int) offset, records, 0, records.length);
+        List<String> result = new ArrayList<String>(count);
+        int pos = 0;
+        for (int i = 0; i < count; ++i)
+        {
+            ZipRecords.checkCentralHeader(records, pos);
+            result.add(new String(records, pos + CENTRAL_SIZE, readShort(records, pos + 28), "UTF-8"));
+            pos += ZipRecords.getCentralHeaderSize(records, pos);
+        }
+        for (String name : result)
+        {
+            if (names.contains(name))
+            {
+                throw new ZipException("duplicate entry: " + name);
+            }
+        }
+        names.addAll(result);
+
+        long start = beginCopy();
+        stream.getTarget().write(jar, 0, (int) offset);
+        pos = 0;
+        for (int i = 0; i < count; ++i)
+        {
+            writeInt(records, pos + 42, start + readInt(records, pos + 42));
+            pos += ZipRecords.getCentralHeaderSize(records, pos);
+        }
+        directory.write(records);
+        endCopy(start, offset, count);
+        return result;
+    }
+
+    /**
+     * Finishes writing the jar, without closing the underlying stream.
+     * <p/>
+     * If entries have been copied, this writes a central directory containing both the copied and written entries.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void finish() throws IOException
+    {
+        if (finished)
+        {
+            return;
+        }
+        finished = true;
+        closeEntry();
+        if (copied == 0)
+        {
+            super.finish();
+            return;
+        }
+
+        // capture the central directory of the written entries, so their offsets can be adjusted for the copied data
+        stream.capture();
+        super.finish();
+        byte[] captured = stream.release();
+
+        int end = ZipRecords.findEnd(captured);
+        int count = readShort(captured, end + 10);
+        long size = readInt(captured, end + 12);
+        int start = end - (int) size;
+        int total = copied + count;
+        long offset = stream.getCount();
+        if (count == ZIP64_SHORT || size == ZIP64_INT || start < 0)
+        {
+            throw new ZipException("Unsupported or invalid central directory");
+        }
+        if (total >= ZIP64_SHORT || offset + directory.size() + size >= ZIP64_INT)
+        {
+            throw new ZipException("Jar too large: " + total + " entries");
+        }
+        int pos = start;
+        int index = 0;
+        long shift = 0;
+        for (int i = 0; i < count; ++i)
+        {
+            ZipRecords.checkCentralHeader(captured, pos);
+            long local = readInt(captured, pos + 42);
+            while (index < positions.size() && positions.get(index) <= local)
+            {
+                shift = shifts.get(index++);
+            }
+            writeInt(captured, pos + 42, local + shift);
+            pos += ZipRecords.getCentralHeaderSize(captured, pos);
+        }
+        writeShort(captured, end + 8, total);
+        writeShort(captured, end + 10, total);
+        writeInt(captured, end + 12, directory.size() + size);
+        writeInt(captured, end + 16, offset);
+
+        OutputStream out = stream.getTarget();
+        directory.writeTo(out);
+        out.write(captured, start, captured.length - start);
+        out.flush();
+    }
+
+    /**
+     * Prepares to copy data to the underlying stream.
+     *
+     * @return the position in the underlying stream that the data will be copied to
+     * @throws IOException if the stream is finished, or the current entry cannot be closed
+     */
+    private long beginCopy() throws IOException
+    {
+        if (finished)
+        {
+            throw new IOException("Stream finished");
+        }
+        closeEntry();
+        return stream.getCount();
+    }
+
+    /**
+     * Records data copied to the underlying stream.
+     *
+     * @param start   the position the data was copied to
+     * @param length  the length of the data
+     * @param entries the no. of entries copied
+     */
+    private void endCopy(long start, long length, int entries)
+    {
+        positions.add(start - inserted);
+        inserted += length;
+        shifts.add(inserted);
+        stream.skip(length);
+        copied += entries;
+    }
+
+    /**
+     * An output stream that counts the bytes written through it, and can temporarily divert writes to a buffer.
+     */
+    private static class CaptureOutputStream extends FilterOutputStream
+    {
+
+        /**
+         * The no. of bytes written to the underlying stream.
+         */
+        private long count;
+
+        /**
+         * The buffer, or <tt>null</tt> if writes aren't being captured.
+         */
+        private ByteArrayOutputStream buffer;
+
+        /**
+         * Constructs a <tt>CaptureOutputStream</tt>.
+         *
+         * @param out the stream to write to
+         */
+        public CaptureOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        /**
+         * Returns the underlying stream.
+         * <p/>
+         * Data written directly to it must be recorded with {@link #skip(long)}.
+         *
+         * @return the stream
+         */
+        public OutputStream getTarget()
+        {
+            return out;
+        }
+
+        /**
+         * Returns the no. of bytes written to the underlying stream.
+         *
+         * @return the no. of bytes written
+         */
+        public long getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Records data written directly to the underlying stream.
+         *
+         * @param length the length of the data
+         */
+        public void skip(long length)
+        {
+            count += length;
+        }
+
+        /**
+         * Diverts subsequent writes to a buffer.
+         */
+        public void capture()
+        {
+            buffer = new ByteArrayOutputStream();
+        }
+
+        /**
+         * Stops diverting writes.
+         *
+         * @return the bytes captured
+         */
+        public byte[] release()
+        {
+            byte[] result = buffer.toByteArray();
+            buffer = null;
+            return result;
+        }
+
+        /**
+         * Writes a byte.
+         *
+         * @param b the byte
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void write(int b) throws IOException
+        {
+            if (buffer != null)
+            {
+                buffer.write(b);
+            }
+            else
+            {
+                out.write(b);
+                ++count;
+            }
+        }
+
+        /**
+         * Writes bytes.
+         *
+         * @param b   the bytes
+         * @param off the start offset in the bytes
+         * @param len the no. of bytes to write
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if (buffer != null)
+            {
+                buffer.write(b, off, len);
+            }
+            else
+            {
+                out.write(b, off, len);
+                count += len;
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.merge.jar;
+
+import java.util.zip.ZipException;
+
+
+/**
+ * Helpers to read and write the records of a zip file.
+ * <p/>
+ * Only the records of standard zip files are supported; Zip64 extensions are not.
+ */
+final class ZipRecords
+{
+
+    /**
+     * The local file header signature.
+     */
+    static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    /**
+     * The central directory file header signature.
+     */
+    static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    /**
+     * The end of central directory record signature.
+     */
+    static final int END_SIGNATURE = 0x06054b50;
+
+    /**
+     * The size of the local file header, excluding variable length fields.
+     */
+    static final int LOCAL_SIZE = 30;
+
+    /**
+     * The size of the central directory file header, excluding variable length fields.
+     */
+    static final int CENTRAL_SIZE = 46;
+
+    /**
+     * The size of the end of central directory record, excluding the comment.
+     */
+    static final int END_SIZE = 22;
+
+    /**
+     * The maximum length of the zip file comment.
+     */
+    static final int MAX_COMMENT = 0xFFFF;
+
+    /**
+     * The value of 16-bit fields that indicates that the Zip64 extensions are in use.
+     */
+    static final int ZIP64_SHORT = 0xFFFF;
+
+    /**
+     * The value of 32-bit fields that indicates that the Zip64 extensions are in use.
+     */
+    static final long ZIP64_INT = 0xFFFFFFFFL;
+
+
+    /**
+     * Constructs a <tt>ZipRecords</tt>.
+     */
+    private ZipRecords()
+    {
+    }
+
+    /**
+     * Locates the end of central directory record.
+     *
+     * @param zip the zip file, or its trailing bytes
+     * @return the offset of the record in <tt>zip</tt>
+     * @throws ZipException if the record cannot be found
+     */
+    static int findEnd(byte[] zip) throws ZipException
+    {
+        int min = Math.max(0, zip.length - END_SIZE - MAX_COMMENT);
+        for (int pos = zip.length - END_SIZE; pos >= min; --pos)
+        {
+            if (readInt(zip, pos) == END_SIGNATURE && pos + END_SIZE + readShort(zip, pos + 20) == zip.length)
+            {
+                return pos;
+            }
+        }
+        throw new ZipException("End of central directory not found");
+    }
+
+    /**
+     * Verifies that a central directory file header starts at the specified position.
+     *
+     * @param directory the central directory
+     * @param pos       the position of the header
+     * @throws ZipException if there is no valid header at the position
+     */
+    static void checkCentralHeader(byte[] directory, int pos) throws ZipException
+    {
+        if (pos < 0 || pos + CENTRAL_SIZE > directory.length || readInt(directory, pos) != CENTRAL_SIGNATURE
+                || pos + getCentralHeaderSize(directory, pos) > directory.length)
+        {
+            throw new ZipException("Invalid central directory");
+        }
+    }
+
+    /**
+     * Returns the size of a central directory file header, including its variable length fields.
+     *
+     * @param directory the central directory
+     * @param pos       the position of the header
+     * @return the size of the header
+     */
+    static int getCentralHeaderSize(byte[] directory, int pos)
+    {
+        return CENTRAL_SIZE + readShort(directory, pos + 28) + readShort(directory, pos + 30)
+                + readShort(directory, pos + 32);
+    }
+
+    /**
+     * Reads an unsigned little-endian short.
+     *
+     * @param b   the buffer
+     * @param pos the position to read from
+     * @return the value
+     */
+    static int readShort(byte[] b, int pos)
+    {
+        return (b[pos] & 0xFF) | ((b[pos + 1] & 0xFF) << 8);
+    }
+
+    /**
+     * Reads an unsigned little-endian int.
+     *
+     * @param b   the buffer
+     * @param pos the position to read from
+     * @return the value
+     */
+    static long readInt(byte[] b, int pos)
+    {
+        return readShort(b, pos) | ((long) readShort(b, pos + 2) << 16);
+    }
+
+    /**
+     * Writes a little-endian short.
+     *
+     * @param b     the buffer
+     * @param pos   the position to write to
+     * @param value the value
+     */
+    static void writeShort(byte[] b, int pos, int value)
+    {
+        b[pos] = (byte) value;
+        b[pos + 1] = (byte) (value >> 8);
+    }
+
+    /**
+     * Writes a little-endian int.
+     *
+     * @param b     the buffer
+     * @param pos   the position to write to
+     * @param value the value
+     */
+    static void writeInt(byte[] b, int pos, long value)
+    {
+        writeShort(b, pos, (int) value);
+        writeShort(b, pos + 2, (int) (value >> 16));
+    }
+}
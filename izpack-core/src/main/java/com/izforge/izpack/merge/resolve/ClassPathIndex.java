@@ -0,0 +1,424 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.merge.resolve;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.util.FileUtil;
+
+
+/**
+ * An index of the entries of the jars and directories on a class path.
+ * <p/>
+ * This answers {@link URLClassLoader#findResources(String)} queries with a map lookup, rather than probing every jar
+ * and directory of the class loader. The index is built on first use, and extended if URLs are subsequently added to
+ * the class loader. The names of jar entries are also cached for {@link #getEntries(String)}, so that each jar is
+ * only listed once.
+ * <p/>
+ * The index follows the <em>Class-Path</em> manifest attribute of jars, like <tt>URLClassLoader</tt>. If the class
+ * path contains URLs other than <em>file</em> URLs, queries are delegated to the class loader.
+ */
+public class ClassPathIndex
+{
+
+    /**
+     * The class loader that the index was built for.
+     */
+    private URLClassLoader loader;
+
+    /**
+     * The no. of class loader URLs indexed.
+     */
+    private int indexed;
+
+    /**
+     * The URLs indexed, including those referenced by jar manifests.
+     */
+    private final Set<String> visited = new HashSet<String>();
+
+    /**
+     * Determines if the class path contains URLs that cannot be indexed.
+     */
+    private boolean incomplete;
+
+    /**
+     * The jars and directories containing each entry. Directory entries end with a <em>/</em>.
+     */
+    private final Map<String, List<Source>> sources = new HashMap<String, List<Source>>();
+
+    /**
+     * The jar entry names, keyed on the absolute path of the jar.
+     */
+    private final Map<String, JarEntries> jars = new HashMap<String, JarEntries>();
+
+
+    /**
+     * Finds the resources with the specified name in the class path of a class loader.
+     * <p/>
+     * This returns the same resources as {@link URLClassLoader#findResources(String)}.
+     *
+     * @param loader the class loader
+     * @param name   the resource name
+     * @return the URLs of the resources
+     * @throws IOException for any I/O error
+     */
+    public synchronized Set<URL> findResources(URLClassLoader loader, String name) throws IOException
+    {
+        index(loader);
+        Set<URL> result = new LinkedHashSet<URL>();
+        if (incomplete)
+        {
+            result.addAll(Collections.list(loader.findResources(name)));
+            return result;
+        }
+        List<Source> list = sources.get(name);
+        if (list == null && !name.endsWith("/"))
+        {
+            // a name without a trailing slash also matches directories
+            list = sources.get(name + "/");
+        }
+        if (list != null)
+        {
+            String path = encode(name);
+            for (Source source : list)
+            {
+                result.add(source.getURL(path));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of the entries in a jar.
+     * <p/>
+     * The names are cached until the jar is modified.
+     *
+     * @param jarPath the path of the jar
+     * @return the entry names, in the order they appear in the jar
+     * @throws IOException if the jar cannot be read
+     */
+    public synchronized List<String> getEntries(String jarPath) throws IOException
+    {
+        File file = new File(jarPath).getAbsoluteFile();
+        String key = file.getPath();
+        JarEntries entries = jars.get(key);
+        if (entries == null || entries.modified != file.lastModified() || entries.length != file.length())
+        {
+            entries = new JarEntries(file);
+            jars.put(key, entries);
+        }
+        return entries.names;
+    }
+
+    /**
+     * Indexes the class path of a class loader.
+     * <p/>
+     * If the class loader differs from that previously indexed, the index is rebuilt, otherwise only URLs added
+     * since are indexed.
+     *
+     * @param loader the class loader
+     */
+    private void index(URLClassLoader loader)
+    {
+        if (this.loader != loader)
+        {
+            this.loader = loader;
+            indexed = 0;
+            incomplete = false;
+            visited.clear();
+            sources.clear();
+        }
+        URL[] urls = loader.getURLs();
+        for (; indexed < urls.length; ++indexed)
+        {
+            index(urls[indexed]);
+        }
+    }
+
+    /**
+     * Indexes a class path URL, and any URLs its manifest references.
+     *
+     * @param url the URL
+     */
+    private void index(URL url)
+    {
+        if (!visited.add(url.toString()))
+        {
+            return;
+        }
+        if (!"file".equals(url.getProtocol()))
+        {
+            incomplete = true;
+            return;
+        }
+        File file = FileUtil.convertUrlToFile(url);
+        if (url.getFile().endsWith("/"))
+        {
+            if (file.isDirectory())
+            {
+                Source source = new Source(url, false);
+                add("", source);
+                indexDirectory(source, file, "");
+            }
+        }
+        else if (file.isFile())
+        {
+            indexJar(url, file);
+        }
+    }
+
+    /**
+     * Indexes a directory.
+     *
+     * @param source the class path directory
+     * @param dir    the directory to index
+     * @param prefix the path of the directory, relative to the class path directory
+     */
+    private void indexDirectory(Source source, File dir, String prefix)
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                String name = prefix + file.getName();
+                if (file.isDirectory())
+                {
+                    name += "/";
+                    add(name, source);
+                    indexDirectory(source, file, name);
+                }
+                else
+                {
+                    add(name, source);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indexes a jar.
+     * <p/>
+     * Jars that cannot be read are ignored, as they are by the class loader.
+     *
+     * @param url  the jar URL
+     * @param file the jar file
+     */
+    private void indexJar(URL url, File file)
+    {
+        List<String> names;
+        try
+        {
+            names = getEntries(file.getPath());
+        }
+        catch (IOException ignore)
+        {
+            return;
+        }
+        Source source = new Source(url, true);
+        for (String name : names)
+        {
+            add(name, source);
+        }
+        for (URL reference : jars.get(file.getPath()).classPath)
+        {
+            index(reference);
+        }
+    }
+
+    /**
+     * Adds an entry.
+     *
+     * @param name   the entry name
+     * @param source the jar or directory containing the entry
+     */
+    private void add(String name, Source source)
+    {
+        List<Source> list = sources.get(name);
+        if (list == null)
+        {
+            list = new ArrayList<Source>(1);
+            sources.put(name, list);
+        }
+        if (!list.contains(source))
+        {
+            list.add(source);
+        }
+    }
+
+    /**
+     * Encodes a resource name for use in a URL.
+     *
+     * @param name the resource name
+     * @return the encoded name
+     */
+    private static String encode(String name)
+    {
+        try
+        {
+            return new URI(null, null, name, null).toASCIIString();
+        }
+        catch (URISyntaxException exception)
+        {
+            throw new IzPackException("Invalid resource name: " + name, exception);
+        }
+    }
+
+    /**
+     * A jar or directory on the class path.
+     */
+    private static class Source
+    {
+
+        /**
+         * The URL of the jar or directory.
+         */
+        private final URL url;
+
+        /**
+         * Determines if the source is a jar.
+         */
+        private final boolean jar;
+
+        /**
+         * Constructs a <tt>Source</tt>.
+         *
+         * @param url the URL of the jar or directory
+         * @param jar if <tt>true</tt>, the source is a jar, otherwise it is a directory
+         */
+        public Source(URL url, boolean jar)
+        {
+            this.url = url;
+            this.jar = jar;
+        }
+
+        /**
+         * Returns the URL of a resource in this source.
+         *
+         * @param path the encoded resource name
+         * @return the resource URL
+         */
+        public URL getURL(String path)
+        {
+            try
+            {
+                return jar ? new URL("jar:" + url + "!/" + path) : new URL(url, path);
+            }
+            catch (MalformedURLException exception)
+            {
+                throw new IzPackException(exception);
+            }
+        }
+    }
+
+    /**
+     * The entry names of a jar.
+     */
+    private static class JarEntries
+    {
+
+        /**
+         * The modification time of the jar.
+         */
+        private final long modified;
+
+        /**
+         * The length of the jar.
+         */
+        private final long length;
+
+        /**
+         * The entry names.
+         */
+        private final List<String> names;
+
+        /**
+         * The URLs referenced by the <em>Class-Path</em> manifest attribute.
+         */
+        private final List<URL> classPath = new ArrayList<URL>();
+
+        /**
+         * Constructs a <tt>JarEntries</tt>.
+         *
+         * @param file the jar file
+         * @throws IOException if the jar cannot be read
+         */
+        public JarEntries(File file) throws IOException
+        {
+            modified = file.lastModified();
+            length = file.length();
+            JarFile jar = new JarFile(file);
+            try
+            {
+                List<String> list = new ArrayList<String>(jar.size());
+                Enumeration<? extends ZipEntry> entries = jar.entries();
+                while (entries.hasMoreElements())
+                {
+                    list.add(entries.nextElement().getName());
+                }
+                names = Collections.unmodifiableList(list);
+                Manifest manifest = jar.getManifest();
+                String value = (manifest != null)
+                        ? manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH) : null;
+                if (value != null)
+                {
+                    URL base = file.toURI().toURL();
+                    StringTokenizer tokens = new StringTokenizer(value);
+                    while (tokens.hasMoreTokens())
+                    {
+                        try
+                        {
+                            classPath.add(new URL(base, tokens.nextToken()));
+                        }
+                        catch (MalformedURLException ignore)
+                        {
+                            // ignored by the class loader too
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                jar.close();
+            }
+        }
+    }
+}
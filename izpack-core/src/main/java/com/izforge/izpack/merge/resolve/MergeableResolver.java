@@ -22,8 +22,8 @@ package com.izforge.izpack.merge.resolve;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.izforge.izpack.api.merge.Mergeable;
 import com.izforge.izpack.merge.file.FileMerge;
@@ -36,26 +36,41 @@ import com.izforge.izpack.merge.jar.JarMerge;
  */
 public class MergeableResolver
 {
-    private Map<OutputStream, List<String>> mergeContent = new HashMap<OutputStream, List<String>>();
+    private Map<OutputStream, Set<String>> mergeContent = new HashMap<OutputStream, Set<String>>();
+
+    /**
+     * The class path index, shared by all mergeables created by this resolver.
+     */
+    private final ClassPathIndex classPathIndex = new ClassPathIndex();
 
     public MergeableResolver()
     {
     }
 
+    /**
+     * Returns the class path index.
+     *
+     * @return the class path index
+     */
+    public ClassPathIndex getClassPathIndex()
+    {
+        return classPathIndex;
+    }
+
     public Mergeable getMergeableFromURL(URL url)
     {
         if (!ResolveUtils.isJar(url))
         {
             return new FileMerge(url, mergeContent);
         }
-        return new JarMerge(url, ResolveUtils.processUrlToJarPath(url), mergeContent);
+        return new JarMerge(url, ResolveUtils.processUrlToJarPath(url), mergeContent, classPathIndex);
     }
 
     public Mergeable getMergeableFromURL(URL url, String resourcePath)
     {
         if (ResolveUtils.isJar(url))
         {            
-            return new JarMerge(url, ResolveUtils.processUrlToJarPath(url), mergeContent);
+            return new JarMerge(url, ResolveUtils.processUrlToJarPath(url), mergeContent, classPathIndex);
         }
         else
         {
@@ -69,9 +84,9 @@ public class MergeableResolver
         {
             if (ResolveUtils.isFileInJar(url))
             {
-                return new JarMerge(ResolveUtils.processUrlToJarPath(url), ResolveUtils.processUrlToInsidePath(url), destination, mergeContent);
+                return new JarMerge(ResolveUtils.processUrlToJarPath(url), ResolveUtils.processUrlToInsidePath(url), destination, mergeContent, classPathIndex);
             }
-            return new JarMerge(ResolveUtils.processUrlToJarPath(url), ResolveUtils.processUrlToJarPackage(url), destination, mergeContent);
+            return new JarMerge(ResolveUtils.processUrlToJarPath(url), ResolveUtils.processUrlToJarPackage(url), destination, mergeContent, classPathIndex);
         }
         else
         {
@@ -23,7 +23,6 @@ import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -143,12 +142,8 @@ public class PathResolver
         {
             try
             {
-                Enumeration<URL> iterator = ((URLClassLoader) loader).findResources(resourcePath);
-                while (iterator.hasMoreElements())
-                {
-                    URL url = iterator.nextElement();
-                    result.add(url);
-                }
+                ClassPathIndex index = mergeableResolver.getClassPathIndex();
+                result.addAll(index.findResources((URLClassLoader) loader, resourcePath));
             }
             catch (IOException e)
             {
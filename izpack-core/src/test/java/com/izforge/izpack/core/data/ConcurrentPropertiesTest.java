@@ -0,0 +1,146 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Properties;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link ConcurrentProperties} class.
+ */
+public class ConcurrentPropertiesTest
+{
+
+    /**
+     * Verifies that properties can be set, read and removed.
+     */
+    @Test
+    public void testProperties()
+    {
+        Properties properties = new ConcurrentProperties();
+        properties.setProperty("INSTALL_PATH", "/opt/app");
+        properties.put("APP_VER", "5.0");
+        assertEquals("/opt/app", properties.getProperty("INSTALL_PATH"));
+        assertEquals("5.0", properties.get("APP_VER"));
+        assertEquals("default", properties.getProperty("undefined", "default"));
+        assertEquals(2, properties.size());
+        assertEquals(2, properties.stringPropertyNames().size());
+
+        properties.remove("APP_VER");
+        assertNull(properties.getProperty("APP_VER"));
+        assertTrue(properties.containsKey("INSTALL_PATH"));
+    }
+
+    /**
+     * Verifies that the atomic map operations apply to the properties.
+     */
+    @Test
+    public void testAtomicOperations()
+    {
+        ConcurrentProperties properties = new ConcurrentProperties();
+        assertNull(properties.putIfAbsent("APP_VER", "5.0"));
+        assertEquals("5.0", properties.putIfAbsent("APP_VER", "5.1"));
+        assertEquals("5.0", properties.getOrDefault("APP_VER", "default"));
+        assertEquals("default", properties.getOrDefault("undefined", "default"));
+
+        assertFalse(properties.replace("APP_VER", "5.1", "5.2"));
+        assertTrue(properties.replace("APP_VER", "5.0", "5.1"));
+        assertEquals("5.1", properties.replace("APP_VER", "5.2"));
+        assertNull(properties.replace("undefined", "value"));
+        assertEquals("5.2", properties.getProperty("APP_VER"));
+
+        assertFalse(properties.remove("APP_VER", "5.1"));
+        assertTrue(properties.remove("APP_VER", "5.2"));
+        assertTrue(properties.isEmpty());
+    }
+
+    /**
+     * Verifies that copying properties includes their defaults.
+     */
+    @Test
+    public void testCopy()
+    {
+        Properties defaults = new Properties();
+        defaults.setProperty("INSTALL_PATH", "/opt/app");
+        defaults.setProperty("APP_VER", "5.0");
+        Properties properties = new Properties(defaults);
+        properties.setProperty("APP_VER", "5.1");
+
+        Properties copy = new ConcurrentProperties(properties);
+        assertEquals(2, copy.size());
+        assertEquals("/opt/app", copy.getProperty("INSTALL_PATH"));
+        assertEquals("5.1", copy.getProperty("APP_VER"));
+    }
+
+    /**
+     * Verifies that properties can be stored and loaded.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testStoreAndLoad() throws Exception
+    {
+        Properties properties = new ConcurrentProperties();
+        properties.setProperty("INSTALL_PATH", "/opt/app");
+        properties.setProperty("APP_VER", "5.0");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store(out, null);
+        Properties loaded = new ConcurrentProperties();
+        loaded.load(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(properties, loaded);
+    }
+
+    /**
+     * Verifies that serializing and cloning the properties produces plain properties with the same content.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSerializeAndClone() throws Exception
+    {
+        Properties properties = new ConcurrentProperties();
+        properties.setProperty("INSTALL_PATH", "/opt/app");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(properties);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Properties read = (Properties) in.readObject();
+        assertEquals(Properties.class, read.getClass());
+        assertEquals("/opt/app", read.getProperty("INSTALL_PATH"));
+
+        Properties clone = (Properties) properties.clone();
+        properties.setProperty("INSTALL_PATH", "/usr/local/app");
+        assertEquals("/opt/app", clone.getProperty("INSTALL_PATH"));
+    }
+}
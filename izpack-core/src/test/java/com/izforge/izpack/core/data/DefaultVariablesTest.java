@@ -23,16 +23,24 @@ package com.izforge.izpack.core.data;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 import org.junit.Test;
 
 import com.izforge.izpack.api.data.AutomatedInstallData;
 import com.izforge.izpack.api.data.DynamicVariable;
+import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.data.VariableEvent;
+import com.izforge.izpack.api.data.VariableListener;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.container.DefaultContainer;
 import com.izforge.izpack.core.rules.ConditionContainer;
 import com.izforge.izpack.core.rules.RulesEngineImpl;
@@ -166,6 +174,112 @@ public class DefaultVariablesTest
         assertEquals(9999, variables.getLong("notALong", 9999));
     }
 
+    /**
+     * Tests the {@link Variables#getVersion(String)} method.
+     */
+    @Test
+    public void testVersion()
+    {
+        long version = variables.getVersion("var1");
+        assertEquals(version, variables.getVersion("var1"));
+
+        variables.set("var1", "value1");
+        long version2 = variables.getVersion("var1");
+        assertTrue(version2 > version);
+
+        variables.set("var1", "value1");
+        variables.set("var2", "value2");
+        assertEquals(version2, variables.getVersion("var1"));
+
+        variables.set("var1", null);
+        assertTrue(variables.getVersion("var1") > version2);
+    }
+
+    /**
+     * Verifies that changes to a snapshot aren't visible in the variables it was taken from, and vice versa.
+     */
+    @Test
+    public void testSnapshot()
+    {
+        variables.set("var1", "value1");
+        Variables snapshot = variables.snapshot();
+        assertEquals("value1", snapshot.get("var1"));
+
+        variables.set("var1", "value2");
+        snapshot.set("var2", "value3");
+        assertEquals("value1", snapshot.get("var1"));
+        assertNull(variables.get("var2"));
+    }
+
+    /**
+     * Verifies that listeners are only notified when a variable changes.
+     */
+    @Test
+    public void testListener()
+    {
+        final List<VariableEvent> events = new ArrayList<VariableEvent>();
+        VariableListener listener = new VariableListener()
+        {
+            @Override
+            public void variableChanged(VariableEvent event)
+            {
+                events.add(event);
+            }
+        };
+        variables.addListener(listener);
+
+        variables.set("var1", "value1");
+        variables.set("var1", "value1");
+        variables.set("var1", "value2");
+        variables.set("var1", null);
+        variables.set("var2", null);
+        assertEquals(3, events.size());
+        checkEvent(events.get(0), "var1", null, "value1");
+        checkEvent(events.get(1), "var1", "value1", "value2");
+        checkEvent(events.get(2), "var1", "value2", null);
+
+        variables.removeListener(listener);
+        variables.set("var1", "value3");
+        assertEquals(3, events.size());
+    }
+
+    /**
+     * Verifies that listeners are notified of changes made directly via {@link Variables#getProperties()}.
+     */
+    @Test
+    public void testPropertiesListener()
+    {
+        final List<VariableEvent> events = new ArrayList<VariableEvent>();
+        variables.addListener(new VariableListener()
+        {
+            @Override
+            public void variableChanged(VariableEvent event)
+            {
+                events.add(event);
+            }
+        });
+
+        Properties properties = variables.getProperties();
+        properties.setProperty("var1", "value1");
+        properties.put("var1", "value1");
+        properties.put("var1", "value2");
+        properties.remove("var1");
+        properties.remove("var2");
+        assertEquals(3, events.size());
+        checkEvent(events.get(0), "var1", null, "value1");
+        checkEvent(events.get(1), "var1", "value1", "value2");
+        checkEvent(events.get(2), "var1", "value2", null);
+
+        // changes via set() are only reported once
+        variables.set("var2", "value1");
+        assertEquals(4, events.size());
+        checkEvent(events.get(3), "var2", null, "value1");
+
+        properties.clear();
+        assertEquals(5, events.size());
+        checkEvent(events.get(4), "var2", "value1", null);
+    }
+
     /**
      * Tests the {@link Variables#replace(String)} method.
      */
@@ -236,6 +350,79 @@ public class DefaultVariablesTest
         assertEquals("/usr/local/bin", variables.get("INSTALL_PATH"));
     }
 
+    /**
+     * Verifies that a conditional dynamic variable is refreshed after the dynamic variables defining the variables
+     * its condition reads.
+     */
+    @Test
+    public void testConditionDependencies()
+    {
+        Map<String, Condition> conditions = new HashMap<String, Condition>();
+        conditions.put("server", new VariableCondition("INSTALL_TYPE", "server"));
+        AutomatedInstallData installData = new AutomatedInstallData(variables, Platforms.FREEBSD);
+        RulesEngineImpl rules = new RulesEngineImpl(installData, new ConditionContainer(new DefaultContainer()),
+                                                    installData.getPlatform());
+        rules.readConditionMap(conditions);
+        ((DefaultVariables) variables).setRules(rules);
+
+        // PORT is added first, but its condition reads INSTALL_TYPE, so it must be refreshed after it
+        variables.add(createDynamic("PORT", "8080", "server"));
+        variables.add(createDynamic("INSTALL_TYPE", "server"));
+
+        variables.refresh();
+        assertEquals("server", variables.get("INSTALL_TYPE"));
+        assertEquals("8080", variables.get("PORT"));
+    }
+
+    /**
+     * Verifies that dynamic variables are only re-evaluated when the variables they reference change, and that
+     * they are refreshed in dependency order.
+     */
+    @Test
+    public void testIncrementalRefresh()
+    {
+        CountingValue lib = new CountingValue("$APP_HOME/lib");
+        CountingValue home = new CountingValue("$INSTALL_PATH/app");
+        CountingValue version = new CountingValue("5.0");
+        variables.add(createDynamic("APP_LIB", lib));   // depends on APP_HOME, which is defined after it
+        variables.add(createDynamic("APP_HOME", home));
+        variables.add(createDynamic("APP_VER", version));
+        variables.set("INSTALL_PATH", "/opt");
+
+        variables.refresh();
+        assertEquals("$APP_HOME/lib", variables.get("APP_LIB"));
+        assertEquals("/opt/app", variables.get("APP_HOME"));
+        assertEquals("5.0", variables.get("APP_VER"));
+
+        // APP_LIB is re-evaluated as APP_HOME has changed
+        variables.refresh();
+        assertEquals("/opt/app/lib", variables.get("APP_LIB"));
+        assertEquals(2, lib.count);
+        assertEquals(1, home.count);
+        assertEquals(1, version.count);
+
+        // nothing has changed, so nothing is re-evaluated
+        variables.refresh();
+        assertEquals(2, lib.count);
+        assertEquals(1, home.count);
+        assertEquals(1, version.count);
+
+        // APP_HOME is evaluated before APP_LIB, so both are updated by a single refresh
+        variables.set("INSTALL_PATH", "/usr/local");
+        variables.refresh();
+        assertEquals("/usr/local/app", variables.get("APP_HOME"));
+        assertEquals("/usr/local/app/lib", variables.get("APP_LIB"));
+        assertEquals(3, lib.count);
+        assertEquals(2, home.count);
+        assertEquals(1, version.count);
+
+        // variables overwritten since the last refresh are restored without re-evaluation
+        variables.set("APP_VER", "6.0");
+        variables.refresh();
+        assertEquals("5.0", variables.get("APP_VER"));
+        assertEquals(1, version.count);
+    }
+
     /**
      * Creates a dynamic variable.
      *
@@ -264,5 +451,72 @@ public class DefaultVariablesTest
         result.setConditionid(conditionId);
         return result;
     }
+
+    /**
+     * Creates a dynamic variable.
+     *
+     * @param name  the variable name
+     * @param value the variable value
+     * @return a new variable
+     */
+    private DynamicVariable createDynamic(String name, Value value)
+    {
+        DynamicVariableImpl result = new DynamicVariableImpl();
+        result.setName(name);
+        result.setValue(value);
+        return result;
+    }
+
+    /**
+     * Verifies a variable event matches that expected.
+     *
+     * @param event    the event to check
+     * @param name     the expected variable name
+     * @param oldValue the expected old value
+     * @param newValue the expected new value
+     */
+    private void checkEvent(VariableEvent event, String name, String oldValue, String newValue)
+    {
+        assertEquals(variables, event.getVariables());
+        assertEquals(name, event.getName());
+        assertEquals(oldValue, event.getOldValue());
+        assertEquals(newValue, event.getNewValue());
+    }
+
+    /**
+     * A value that counts the no. of times it is resolved.
+     */
+    private static class CountingValue extends PlainValue
+    {
+
+        /**
+         * The no. of times the value has been resolved.
+         */
+        private int count;
+
+        /**
+         * Constructs a <tt>CountingValue</tt>.
+         *
+         * @param value the value
+         */
+        public CountingValue(String value)
+        {
+            super(value);
+        }
+
+        /**
+         * Resolves the value.
+         *
+         * @param substitutors the substitutors
+         * @return the resolved value
+         * @throws Exception for any error
+         */
+        @Override
+        public String resolve(VariableSubstitutor... substitutors) throws Exception
+        {
+            ++count;
+            return super.resolve(substitutors);
+        }
+    }
 }
 
@@ -0,0 +1,201 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link BlockDeflaterOutputStream}, {@link BlockInflaterInputStream} and
+ * {@link ParallelBlockInflaterInputStream}.
+ */
+public class BlockStreamTest
+{
+
+    /**
+     * Verifies that data written across several blocks can be read back.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testReadWrite() throws IOException
+    {
+        byte[] data = createData(10000);
+        byte[] compressed = compress(data, 1024);
+
+        InputStream in = new BlockInflaterInputStream(new ByteArrayInputStream(compressed));
+        byte[] result = new byte[data.length];
+        int offset = 0;
+        int read;
+        while (offset < result.length && (read = in.read(result, offset, result.length - offset)) != -1)
+        {
+            offset += read;
+        }
+        assertEquals(data.length, offset);
+        assertArrayEquals(data, result);
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    /**
+     * Verifies that skipping into a block only inflates from that block, and returns the correct data.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSkip() throws IOException
+    {
+        byte[] data = createData(10000);
+        byte[] compressed = compress(data, 1024);
+
+        InputStream in = new BlockInflaterInputStream(new ByteArrayInputStream(compressed));
+        assertEquals(data[0], (byte) in.read());
+        assertEquals(5000, in.skip(5000));
+        assertEquals(data[5001], (byte) in.read());
+        assertEquals(1000, in.skip(1000));
+        assertEquals(data[6002], (byte) in.read());
+
+        // skipping past the end only skips what is available
+        assertEquals(data.length - 6003, in.skip(data.length));
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    /**
+     * Verifies that data can be read back when blocks are inflated ahead of the reader.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testParallelReadWrite() throws IOException
+    {
+        byte[] data = createData(100000);
+        byte[] compressed = compress(data, 1000);
+
+        InputStream in = new ParallelBlockInflaterInputStream(new ByteArrayInputStream(compressed), 4);
+        byte[] result = new byte[data.length];
+        int offset = 0;
+        int read;
+        while (offset < result.length && (read = in.read(result, offset, result.length - offset)) != -1)
+        {
+            offset += read;
+        }
+        assertEquals(data.length, offset);
+        assertArrayEquals(data, result);
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    /**
+     * Verifies that skipping discards blocks being inflated, and returns the correct data.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testParallelSkip() throws IOException
+    {
+        byte[] data = createData(100000);
+        byte[] compressed = compress(data, 1000);
+
+        InputStream in = new ParallelBlockInflaterInputStream(new ByteArrayInputStream(compressed), 4);
+        byte[] buffer = new byte[2500];
+        assertEquals(1000, in.read(buffer));
+        assertEquals(1000, in.read(buffer));
+        assertEquals(data[1999], buffer[999]);
+        assertEquals(50000, in.skip(50000));
+        assertEquals(data[52000], (byte) in.read());
+        assertEquals(10, in.skip(10));
+        assertEquals(data[52011], (byte) in.read());
+
+        // skipping past the end only skips what is available
+        assertEquals(data.length - 52012, in.skip(data.length));
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    /**
+     * Verifies that an empty stream can be read.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testEmpty() throws IOException
+    {
+        byte[] compressed = compress(new byte[0], 1024);
+        assertEquals(0, compressed.length);
+
+        InputStream in = new BlockInflaterInputStream(new ByteArrayInputStream(compressed));
+        assertEquals(-1, in.read());
+        assertEquals(0, in.skip(10));
+        in.close();
+
+        in = new ParallelBlockInflaterInputStream(new ByteArrayInputStream(compressed));
+        assertEquals(-1, in.read());
+        assertEquals(0, in.skip(10));
+        in.close();
+    }
+
+    /**
+     * Compresses data.
+     *
+     * @param data      the data to compress
+     * @param blockSize the block size
+     * @return the compressed data
+     * @throws IOException for any I/O error
+     */
+    private byte[] compress(byte[] data, int blockSize) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BlockDeflaterOutputStream out = new BlockDeflaterOutputStream(bytes, Deflater.BEST_COMPRESSION, blockSize);
+        out.write(data, 0, data.length / 2);
+        out.flush();
+        for (int i = data.length / 2; i < data.length; ++i)
+        {
+            out.write(data[i]);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Creates test data.
+     *
+     * @param length the data length
+     * @return the data
+     */
+    private byte[] createData(int length)
+    {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; ++i)
+        {
+            result[i] = (byte) ((i * 31) ^ (i >> 7));
+        }
+        return result;
+    }
+}
@@ -22,6 +22,8 @@ package com.izforge.izpack.core.rules;
 
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -494,6 +496,91 @@ public class RulesEngineImplTest
         assertEquals(true ^ true && true ^ true, condition.isTrue());
     }
 
+    /**
+     * Verifies that conditions parsed from expressions are cached until a condition is registered.
+     */
+    @Test
+    public void testExpressionCache()
+    {
+        Condition complex = engine.getCondition("@true && !false");
+        Condition simple = engine.getCondition("true+!false");
+        assertTrue(complex.isTrue());
+        assertTrue(simple.isTrue());
+        assertSame(complex, engine.getCondition("@true && !false"));
+        assertSame(simple, engine.getCondition("true+!false"));
+
+        JavaCondition other = new JavaCondition();
+        other.setId("other");
+        engine.addCondition(other);
+        assertNotSame(complex, engine.getCondition("@true && !false"));
+        assertNotSame(simple, engine.getCondition("true+!false"));
+        assertFalse(engine.getCondition("@true && other").isTrue());
+    }
+
+    /**
+     * Verifies that the results of conditions that only depend on variables are cached until a variable changes.
+     */
+    @Test
+    public void testResultCache()
+    {
+        DefaultVariables variables = new DefaultVariables();
+        RulesEngine rules = new RulesEngineImpl(new AutomatedInstallData(variables, Platforms.LINUX), null,
+                                                Platforms.LINUX);
+        CountingCondition condition = new CountingCondition("os", "$expected");
+        condition.setId("counting");
+        rules.addCondition(condition);
+        variables.set("os", "linux");
+        variables.set("expected", "linux");
+
+        assertTrue(rules.isConditionTrue("counting"));
+        assertTrue(rules.isConditionTrue("counting"));
+        assertEquals(1, condition.count);
+
+        // conditions parsed from expressions are cached too
+        assertFalse(rules.isConditionTrue("@!counting"));
+        assertFalse(rules.isConditionTrue("@!counting"));
+        assertEquals(2, condition.count);
+
+        variables.set("unrelated", "value");
+        assertTrue(rules.isConditionTrue("counting"));
+        assertEquals(2, condition.count);
+
+        variables.set("expected", "windows");
+        assertFalse(rules.isConditionTrue("counting"));
+        assertEquals(3, condition.count);
+
+        // changes made directly to the properties are detected
+        variables.getProperties().setProperty("os", "windows");
+        assertTrue(rules.isConditionTrue("counting"));
+        assertEquals(4, condition.count);
+    }
+
+    /**
+     * Verifies that evaluating a condition against installation data doesn't change the condition.
+     */
+    @Test
+    public void testEvaluateWithInstallData()
+    {
+        DefaultVariables variables1 = new DefaultVariables();
+        DefaultVariables variables2 = new DefaultVariables();
+        InstallData installData1 = new AutomatedInstallData(variables1, Platforms.LINUX);
+        InstallData installData2 = new AutomatedInstallData(variables2, Platforms.LINUX);
+        RulesEngine rules = new RulesEngineImpl(installData1, null, Platforms.LINUX);
+        variables1.set("os", "linux");
+        variables2.set("os", "windows");
+
+        VariableCondition windows = new VariableCondition("os", "windows");
+        windows.setInstallData(installData1);
+        AndCondition condition = new AndCondition(rules);
+        condition.addOperands(windows);
+        condition.setInstallData(installData1);
+        assertFalse(rules.isConditionTrue(condition));
+        assertTrue(rules.isConditionTrue(condition, installData2));
+        assertEquals(installData1, condition.getInstallData());
+        assertEquals(installData1, windows.getInstallData());
+        assertFalse(rules.isConditionTrue(condition));
+    }
+
     /**
      * Verifies that conditions read from a <tt>conditions.xml</tt> have the expected type.
      */
@@ -733,6 +820,38 @@ public class RulesEngineImplTest
         return rules;
     }
 
-}
+    /**
+     * A variable condition that counts the no. of times it is evaluated.
+     */
+    private static class CountingCondition extends VariableCondition
+    {
 
+        /**
+         * The no. of times the condition has been evaluated.
+         */
+        private int count;
+
+        /**
+         * Constructs a <tt>CountingCondition</tt>.
+         *
+         * @param name  the variable name
+         * @param value the expected value
+         */
+        public CountingCondition(String name, String value)
+        {
+            super(name, value);
+        }
 
+        /**
+         * Evaluates the condition.
+         *
+         * @return <tt>true</tt> if the variable has the expected value
+         */
+        @Override
+        public boolean isTrue()
+        {
+            ++count;
+            return super.isTrue();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link CompiledTemplate} class.
+ */
+public class CompiledTemplateTest
+{
+
+    /**
+     * Verifies that templates render the same as {@link VariableSubstitutorImpl#substitute(String)}.
+     */
+    @Test
+    public void testRender()
+    {
+        Properties properties = new Properties();
+        properties.put("INSTALL_PATH", "/opt/app");
+        properties.put("app.version", "5.0");
+        VariableSubstitutorImpl substitutor = new VariableSubstitutorImpl(properties);
+
+        String[] templates = {"", "no references", "$INSTALL_PATH/lib", "${INSTALL_PATH}lib", "$app.version",
+                "$app.version.", "$$INSTALL_PATH", "${undefined}/$undefined", "$1", "${", "${}", "${INSTALL_PATH",
+                "trailing $", "${ENV[IZPACK_UNDEFINED_VARIABLE]}x", "$INSTALL_PATH-$app.version"};
+        for (String template : templates)
+        {
+            assertEquals(template, substitutor.substitute(template), new CompiledTemplate(template).render(properties));
+        }
+    }
+
+    /**
+     * Verifies that a template reflects the variable values at the time it is rendered.
+     */
+    @Test
+    public void testRenderCurrentValues()
+    {
+        Properties properties = new Properties();
+        CompiledTemplate template = CompiledTemplate.compile("$INSTALL_PATH/lib");
+        assertTrue(template.hasReferences());
+        assertEquals("$INSTALL_PATH/lib", template.render(properties));
+
+        properties.put("INSTALL_PATH", "/opt/app");
+        assertEquals("/opt/app/lib", template.render(properties));
+
+        properties.put("INSTALL_PATH", "/usr/local/app");
+        assertEquals("/usr/local/app/lib", template.render(properties));
+    }
+
+    /**
+     * Verifies that compiled templates are cached.
+     */
+    @Test
+    public void testCache()
+    {
+        CompiledTemplate template = CompiledTemplate.compile("$INSTALL_PATH/bin");
+        assertSame(template, CompiledTemplate.compile("$INSTALL_PATH/bin"));
+        assertFalse(CompiledTemplate.compile("no references").hasReferences());
+    }
+}
@@ -21,6 +21,8 @@ package com.izforge.izpack.core.substitutor;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.Properties;
 
 import org.hamcrest.core.Is;
@@ -85,5 +87,43 @@ public class VariableSubstitutorImplTest
                 Is.is("onetwo"));
     }
 
+    @Test
+    public void shouldEscapeValues() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.put("xml", "<a href='x'>&\"");
+        properties.put("prop", "  a b\\\t'");
+        properties.put("path", "C:\\Program Files");
+        VariableSubstitutor substitutor = new VariableSubstitutorImpl(properties);
+        assertThat(substitutor.substitute("${xml}", SubstitutionType.TYPE_XML),
+                   Is.is("&lt;a href=&apos;x&apos;&gt;&amp;&quot;"));
+        assertThat(substitutor.substitute("$prop", SubstitutionType.TYPE_JAVA_PROPERTIES),
+                   Is.is("\\ \\ a b\\\\\\t\\'"));
+        assertThat(substitutor.substitute("$path", SubstitutionType.TYPE_JAVA), Is.is("C:\\\\Program Files"));
+    }
+
+    @Test
+    public void shouldLeaveUndefinedReferences() throws Exception
+    {
+        assertThat(variableSubstitutor.substitute("$ ${undefined} $1 ${MY_PROP", SubstitutionType.TYPE_PLAIN),
+                   Is.is("$ ${undefined} $1 ${MY_PROP"));
+        assertThat(variableSubstitutor.substitute("$$MY_PROP!", SubstitutionType.TYPE_PLAIN), Is.is("$one!"));
+    }
 
+    @Test
+    public void shouldSubstituteAcrossBufferBoundaries() throws Exception
+    {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; ++i)
+        {
+            input.append("line ").append(i).append(" ${MY_PROP}/$MY_PROP2\n");
+            expected.append("line ").append(i).append(" one/two\n");
+        }
+        StringWriter writer = new StringWriter();
+        int subs = variableSubstitutor.substitute(new StringReader(input.toString()), writer,
+                                                  SubstitutionType.TYPE_PLAIN);
+        assertThat(subs, Is.is(10000));
+        assertThat(writer.toString(), Is.is(expected.toString()));
+    }
 }
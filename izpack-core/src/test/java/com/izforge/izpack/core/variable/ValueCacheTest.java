@@ -0,0 +1,169 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.variable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.util.OsVersion;
+
+
+/**
+ * Tests the {@link ValueCache} class.
+ */
+public class ValueCacheTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Clears the cache.
+     */
+    @After
+    public void tearDown()
+    {
+        ValueCache.clear();
+    }
+
+    /**
+     * Verifies that a configuration file is parsed once, and re-parsed when it changes.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testConfigFile() throws Exception
+    {
+        File file = temporaryFolder.newFile("app.properties");
+        write(file, "name=izpack\nversion=5.0\n");
+        String location = file.getPath();
+        int type = ConfigFileValue.CONFIGFILE_TYPE_OPTIONS;
+
+        Object config = ValueCache.getConfig(location, type);
+        assertSame(config, ValueCache.getConfig(location, type));
+        assertEquals("izpack", new PlainConfigFileValue(location, type, null, "name").resolve());
+        assertEquals("5.0", new PlainConfigFileValue(location, type, null, "version").resolve());
+
+        write(file, "name=izpack\nversion=5.0.1\n");
+        assertNotSame(config, ValueCache.getConfig(location, type));
+        assertEquals("5.0.1", new PlainConfigFileValue(location, type, null, "version").resolve());
+    }
+
+    /**
+     * Verifies that a configuration file read from a zip entry is parsed once, and re-parsed when the entry
+     * changes.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testZipEntry() throws Exception
+    {
+        File file = temporaryFolder.newFile("app.zip");
+        writeZip(file, "version=5.0\n", "other");
+        String location = file.getPath();
+        int type = ConfigFileValue.CONFIGFILE_TYPE_OPTIONS;
+
+        Object config = ValueCache.getConfig(location, "app.properties", false, type);
+        assertSame(config, ValueCache.getConfig(location, "app.properties", false, type));
+        assertEquals("5.0", new ZipEntryConfigFileValue(location, "app.properties", type, null, "version").resolve());
+
+        // change another entry. The parsed entry should be reused
+        writeZip(file, "version=5.0\n", "changed");
+        assertSame(config, ValueCache.getConfig(location, "app.properties", false, type));
+
+        writeZip(file, "version=5.1.0\n", "changed");
+        assertNotSame(config, ValueCache.getConfig(location, "app.properties", false, type));
+        assertEquals("5.1.0", new JarEntryConfigValue(location, "app.properties", type, null, "version").resolve());
+    }
+
+    /**
+     * Verifies that successful command results are cached, and failed commands are not.
+     */
+    @Test
+    public void testExecute()
+    {
+        Assume.assumeTrue(OsVersion.IS_UNIX || OsVersion.IS_WINDOWS);
+        // commands whose output differs on each execution
+        String[] command = OsVersion.IS_WINDOWS
+                ? new String[]{"cmd", "/c", "echo %TIME% %RANDOM%"}
+                : new String[]{"sh", "-c", "echo $$"};
+        String[] fail = OsVersion.IS_WINDOWS ? new String[]{"cmd", "/c", "exit 1"} : new String[]{"sh", "-c", "exit 1"};
+        String output = ValueCache.execute(command, null, false);
+        assertEquals(output, ValueCache.execute(command, null, false));
+
+        ValueCache.clear();
+        assertFalse(output.equals(ValueCache.execute(command, null, false)));
+
+        assertNull(ValueCache.execute(fail, null, false));
+    }
+
+    /**
+     * Writes a file.
+     *
+     * @param file    the file
+     * @param content the file content
+     * @throws IOException for any I/O error
+     */
+    private void write(File file, String content) throws IOException
+    {
+        PrintWriter writer = new PrintWriter(file, "ISO-8859-1");
+        writer.print(content);
+        writer.close();
+    }
+
+    /**
+     * Writes a zip file containing a properties file, and another entry.
+     *
+     * @param file       the zip file
+     * @param properties the properties file content
+     * @param other      the content of the other entry
+     * @throws IOException for any I/O error
+     */
+    private void writeZip(File file, String properties, String other) throws IOException
+    {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        out.putNextEntry(new ZipEntry("app.properties"));
+        out.write(properties.getBytes("ISO-8859-1"));
+        out.closeEntry();
+        out.putNextEntry(new ZipEntry("other.txt"));
+        out.write(other.getBytes("ISO-8859-1"));
+        out.closeEntry();
+        out.close();
+    }
+}
@@ -20,7 +20,9 @@
 package com.izforge.izpack.merge.jar;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
 import java.io.File;
 import java.io.FileFilter;
@@ -31,9 +33,12 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.jar.JarOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import org.apache.commons.io.IOUtils;
 import org.hamcrest.core.Is;
 import org.hamcrest.text.StringContains;
 import org.junit.Test;
@@ -187,7 +192,7 @@ public class JarMergeTest
         // now merge to a mocked JarOutputStream
         URL url = jar.toURI().toURL();
         String jarPath = ResolveUtils.processUrlToJarPath(url);
-        JarMerge merge = new JarMerge(url, jarPath, new HashMap<OutputStream, List<String>>());
+        JarMerge merge = new JarMerge(url, jarPath, new HashMap<OutputStream, Set<String>>());
         JarOutputStream output = Mockito.mock(JarOutputStream.class);
         merge.merge(output);
 
@@ -200,4 +205,36 @@ public class JarMergeTest
         assertEquals("META-INF/ok2", allValues.get(1).getName());
     }
 
+    /**
+     * Verifies that entries merged to a {@link RawJarOutputStream} are copied without being re-compressed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testMergeRaw() throws IOException
+    {
+        URL url = ClassLoader.getSystemResource("com/izforge/izpack/merge/test/jar-hellopanel-1.0-SNAPSHOT.jar");
+        String jarPath = ResolveUtils.processUrlToJarPath(url);
+        JarMerge merge = new JarMerge(jarPath, "jar/izforge/", "com/dest/",
+                                      new HashMap<OutputStream, Set<String>>());
+        File target = File.createTempFile("rawtest", ".jar");
+        RawJarOutputStream output = new RawJarOutputStream(new FileOutputStream(target));
+        merge.merge(output);
+        merge.merge(output); // entries already merged are skipped
+        output.close();
+
+        ZipFile source = new ZipFile(jarPath);
+        ZipFile zip = new ZipFile(target);
+        ZipEntry original = source.getEntry("jar/izforge/izpack/panels/hello/HelloPanel.class");
+        ZipEntry copied = zip.getEntry("com/dest/izpack/panels/hello/HelloPanel.class");
+        assertNotNull(copied);
+        assertEquals(original.getCompressedSize(), copied.getCompressedSize());
+        assertEquals(original.getCrc(), copied.getCrc());
+        byte[] expected = IOUtils.toByteArray(source.getInputStream(original));
+        assertArrayEquals(expected, IOUtils.toByteArray(zip.getInputStream(copied)));
+        zip.close();
+        source.close();
+        target.delete();
+    }
+
 }
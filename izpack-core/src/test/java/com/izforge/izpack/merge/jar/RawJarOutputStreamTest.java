@@ -0,0 +1,225 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.merge.jar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * Tests the {@link RawJarOutputStream} class.
+ */
+public class RawJarOutputStreamTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that copied entries retain their compressed data, and can be interleaved with written entries.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCopy() throws IOException
+    {
+        File source = temporaryFolder.newFile("source.jar");
+        JarOutputStream sourceJar = new JarOutputStream(new FileOutputStream(source));
+        write(sourceJar, "dir/", null);
+        write(sourceJar, "dir/a.txt", "a a a a a a a a a a a a a a a a");
+        write(sourceJar, "dir/b.txt", "b b b b b b b b b b b b b b b b");
+        sourceJar.close();
+
+        ByteArrayOutputStream other = new ByteArrayOutputStream();
+        JarOutputStream otherJar = new JarOutputStream(other);
+        write(otherJar, "other/c.txt", "c c c c c c c c c c c c c c c c");
+        otherJar.close();
+
+        File target = temporaryFolder.newFile("target.jar");
+        RawJarOutputStream jar = new RawJarOutputStream(new FileOutputStream(target));
+        RawJarFile sourceFile = new RawJarFile(source);
+        assertNull(sourceFile.getEntry("missing.txt"));
+        write(jar, "first.txt", "first");
+        jar.putNextEntry(new ZipEntry("open.txt"));
+        jar.write("open".getBytes("UTF-8"));
+        copy(jar, sourceFile, "dir/");
+        copy(jar, sourceFile, "dir/a.txt");
+        copy(jar, sourceFile, "dir/b.txt", "renamed/b\u00e9.txt");
+        write(jar, "middle.txt", "middle");
+        assertEquals(Arrays.asList("other/c.txt"), jar.copyJar(other.toByteArray()));
+        write(jar, "last.txt", "last");
+        try
+        {
+            jar.putNextEntry(new ZipEntry("dir/a.txt"));
+            fail("Expected duplicate entry to fail");
+        }
+        catch (ZipException expected)
+        {
+            // expected
+        }
+        jar.close();
+        sourceFile.close();
+
+        ZipFile sourceZip = new ZipFile(source);
+        ZipFile zip = new ZipFile(target);
+        assertEquals(8, zip.size());
+        assertEquals("first", read(zip, "first.txt"));
+        assertEquals("open", read(zip, "open.txt"));
+        assertTrue(zip.getEntry("dir/").isDirectory());
+        assertEquals("a a a a a a a a a a a a a a a a", read(zip, "dir/a.txt"));
+        assertEquals("b b b b b b b b b b b b b b b b", read(zip, "renamed/b\u00e9.txt"));
+        assertEquals("middle", read(zip, "middle.txt"));
+        assertEquals("c c c c c c c c c c c c c c c c", read(zip, "other/c.txt"));
+        assertEquals("last", read(zip, "last.txt"));
+        ZipEntry copied = zip.getEntry("dir/a.txt");
+        ZipEntry original = sourceZip.getEntry("dir/a.txt");
+        assertEquals(ZipEntry.DEFLATED, copied.getMethod());
+        assertEquals(original.getCompressedSize(), copied.getCompressedSize());
+        assertEquals(original.getCrc(), copied.getCrc());
+        assertEquals(original.getTime(), copied.getTime());
+        zip.close();
+        sourceZip.close();
+
+        // verify the local file headers can be read sequentially
+        ZipInputStream in = new ZipInputStream(new FileInputStream(target));
+        int count = 0;
+        while (in.getNextEntry() != null)
+        {
+            IoHelper.copyStream(in, new ByteArrayOutputStream());
+            ++count;
+        }
+        in.close();
+        assertEquals(8, count);
+    }
+
+    /**
+     * Verifies that entries are only copied if they have the same compression method as new entries.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCanCopy() throws IOException
+    {
+        File source = temporaryFolder.newFile("source.jar");
+        JarOutputStream sourceJar = new JarOutputStream(new FileOutputStream(source));
+        write(sourceJar, "a.txt", "a");
+        sourceJar.close();
+
+        RawJarFile file = new RawJarFile(source);
+        RawJarFile.Entry entry = file.getEntry("a.txt");
+        assertNotNull(entry);
+        assertTrue(entry.isCopyable());
+        RawJarOutputStream jar = new RawJarOutputStream(new ByteArrayOutputStream());
+        assertTrue(jar.canCopy(entry));
+        jar.setMethod(ZipEntry.STORED);
+        assertFalse(jar.canCopy(entry));
+        file.close();
+    }
+
+    /**
+     * Copies an entry.
+     *
+     * @param jar  the jar to copy to
+     * @param file the jar to copy from
+     * @param name the entry name
+     * @throws IOException for any I/O error
+     */
+    private void copy(RawJarOutputStream jar, RawJarFile file, String name) throws IOException
+    {
+        copy(jar, file, name, name);
+    }
+
+    /**
+     * Copies an entry.
+     *
+     * @param jar    the jar to copy to
+     * @param file   the jar to copy from
+     * @param name   the entry name
+     * @param target the name to copy the entry to
+     * @throws IOException for any I/O error
+     */
+    private void copy(RawJarOutputStream jar, RawJarFile file, String name, String target) throws IOException
+    {
+        RawJarFile.Entry entry = file.getEntry(name);
+        assertTrue(jar.canCopy(entry));
+        jar.copyEntry(file, entry, target);
+    }
+
+    /**
+     * Writes an entry.
+     *
+     * @param jar     the jar to write to
+     * @param name    the entry name
+     * @param content the entry content. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private void write(JarOutputStream jar, String name, String content) throws IOException
+    {
+        jar.putNextEntry(new ZipEntry(name));
+        if (content != null)
+        {
+            jar.write(content.getBytes("UTF-8"));
+        }
+        jar.closeEntry();
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param zip  the zip file
+     * @param name the entry name
+     * @return the entry content
+     * @throws IOException for any I/O error
+     */
+    private String read(ZipFile zip, String name) throws IOException
+    {
+        InputStream in = zip.getInputStream(zip.getEntry(name));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IoHelper.copyStream(in, out);
+        in.close();
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.merge.resolve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link ClassPathIndex} class.
+ */
+public class ClassPathIndexTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that the index finds the same resources as {@link URLClassLoader#findResources(String)}, including
+     * those in jars referenced by a manifest, and in URLs added after the index is built.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testFindResources() throws IOException
+    {
+        File dir = temporaryFolder.newFolder("classes");
+        new File(dir, "com/acme/util").mkdirs();
+        new File(dir, "com/acme/util/Util.class").createNewFile();
+        new File(dir, "com/acme/app.properties").createNewFile();
+
+        File lib = temporaryFolder.newFile("lib.jar");
+        writeJar(lib, null, "com/", "com/acme/", "com/acme/Lib.class", "org/other/Other.class");
+        File app = temporaryFolder.newFile("app.jar");
+        writeJar(app, "lib.jar", "com/acme/App.class", "com/acme/app.properties");
+        File extra = temporaryFolder.newFile("extra.jar");
+        writeJar(extra, null, "com/acme/", "com/acme/Extra.class");
+
+        String[] names = {"com/acme/", "com/acme", "com/acme/util/", "com/acme/util", "com/acme/app.properties",
+                "com/acme/Lib.class", "org/other/", "org/other/Other.class", "com/acme/Extra.class", "missing/",
+                "missing.class"};
+        TestClassLoader loader = new TestClassLoader(dir.toURI().toURL(), app.toURI().toURL());
+        ClassPathIndex index = new ClassPathIndex();
+        check(index, loader, names);
+
+        loader.addURL(extra.toURI().toURL());
+        check(index, loader, names);
+        assertEquals(3, index.findResources(loader, "com/acme/").size());
+    }
+
+    /**
+     * Verifies that jar entry names are cached until the jar changes.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testGetEntries() throws IOException
+    {
+        File jar = temporaryFolder.newFile("test.jar");
+        writeJar(jar, null, "a/", "a/A.class");
+        ClassPathIndex index = new ClassPathIndex();
+        List<String> entries = index.getEntries(jar.getPath());
+        assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "a/", "a/A.class"), entries);
+        assertSame(entries, index.getEntries(jar.getPath()));
+
+        writeJar(jar, null, "a/", "a/A.class", "a/B.class");
+        jar.setLastModified(jar.lastModified() + 2000);
+        List<String> changed = index.getEntries(jar.getPath());
+        assertNotSame(entries, changed);
+        assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "a/", "a/A.class", "a/B.class"), changed);
+    }
+
+    /**
+     * Verifies that the index returns the same resources as the class loader.
+     *
+     * @param index  the index
+     * @param loader the class loader
+     * @param names  the resource names to check
+     * @throws IOException for any I/O error
+     */
+    private void check(ClassPathIndex index, URLClassLoader loader, String... names) throws IOException
+    {
+        for (String name : names)
+        {
+            Set<String> expected = new HashSet<String>();
+            for (URL url : Collections.list(loader.findResources(name)))
+            {
+                expected.add(url.toString());
+            }
+            Set<String> actual = new HashSet<String>();
+            for (URL url : index.findResources(loader, name))
+            {
+                actual.add(url.toString());
+            }
+            assertEquals(name, expected, actual);
+        }
+    }
+
+    /**
+     * Writes a jar.
+     *
+     * @param file      the jar file
+     * @param classPath the manifest <em>Class-Path</em>. May be <tt>null</tt>
+     * @param names     the entry names
+     * @throws IOException for any I/O error
+     */
+    private void writeJar(File file, String classPath, String... names) throws IOException
+    {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (classPath != null)
+        {
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+        }
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(file), manifest);
+        for (String name : names)
+        {
+            jar.putNextEntry(new ZipEntry(name));
+            jar.closeEntry();
+        }
+        jar.close();
+    }
+
+    /**
+     * A class loader that allows URLs to be added.
+     */
+    private static class TestClassLoader extends URLClassLoader
+    {
+
+        /**
+         * Constructs a <tt>TestClassLoader</tt>.
+         *
+         * @param urls the class path
+         */
+        public TestClassLoader(URL... urls)
+        {
+            super(urls, null);
+        }
+
+        /**
+         * Adds a URL to the class path.
+         *
+         * @param url the URL to add
+         */
+        @Override
+        public void addURL(URL url)
+        {
+            super.addURL(url);
+        }
+    }
+}
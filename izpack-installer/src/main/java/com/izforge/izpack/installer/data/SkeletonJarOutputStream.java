@@ -0,0 +1,146 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+
+import com.izforge.izpack.merge.jar.RawJarFile;
+import com.izforge.izpack.merge.jar.RawJarOutputStream;
+
+
+/**
+ * A <tt>JarOutputStream</tt> that starts with the entries of an existing jar, the skeleton.
+ * <p/>
+ * The skeleton entries are copied verbatim, without being inflated and re-compressed. Entries written to the stream
+ * follow them. When the stream is finished, the central directory of the skeleton is combined with that of the new
+ * entries.
+ * <p/>
+ * Entries with the same name as a skeleton entry are discarded.
+ * <p/>
+ * The skeleton must not be a Zip64 archive, and the combined jar must be within the limits of a standard zip file.
+ */
+public class SkeletonJarOutputStream extends RawJarOutputStream
+{
+
+    /**
+     * The names of the skeleton entries.
+     */
+    private final Set<String> names = new HashSet<String>();
+
+    /**
+     * Determines if the current entry is being discarded.
+     */
+    private boolean discard;
+
+
+    /**
+     * Constructs a <tt>SkeletonJarOutputStream</tt>.
+     *
+     * @param out      the stream to write to
+     * @param skeleton the skeleton jar
+     * @throws IOException if the skeleton is invalid, or cannot be written
+     */
+    public SkeletonJarOutputStream(OutputStream out, byte[] skeleton) throws IOException
+    {
+        super(out);
+        names.addAll(copyJar(skeleton));
+    }
+
+    /**
+     * Begins writing a new entry.
+     * <p/>
+     * If the skeleton contains an entry with the same name, the entry is discarded.
+     *
+     * @param entry the entry
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void putNextEntry(ZipEntry entry) throws IOException
+    {
+        if (names.contains(entry.getName()))
+        {
+            super.closeEntry();
+            discard = true;
+        }
+        else
+        {
+            discard = false;
+            super.putNextEntry(entry);
+        }
+    }
+
+    /**
+     * Copies an entry from a jar, without inflating it.
+     * <p/>
+     * If the skeleton contains an entry with the same name, the entry is discarded.
+     *
+     * @param jar   the jar to copy from
+     * @param entry the entry to copy
+     * @param name  the name of the copied entry
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void copyEntry(RawJarFile jar, RawJarFile.Entry entry, String name) throws IOException
+    {
+        if (!names.contains(name))
+        {
+            super.copyEntry(jar, entry, name);
+        }
+    }
+
+    /**
+     * Writes data to the current entry.
+     *
+     * @param b   the data
+     * @param off the start offset in the data
+     * @param len the no. of bytes to write
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException
+    {
+        if (!discard)
+        {
+            super.write(b, off, len);
+        }
+    }
+
+    /**
+     * Closes the current entry.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void closeEntry() throws IOException
+    {
+        if (discard)
+        {
+            discard = false;
+        }
+        else
+        {
+            super.closeEntry();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
@@ -19,10 +20,13 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.merge.Mergeable;
+import com.izforge.izpack.api.resource.Resources;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.merge.jar.RawJarOutputStream;
 import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.file.FileUtils;
@@ -47,6 +51,11 @@ public class UninstallDataWriter
      */
     private PathResolver pathResolver;
 
+    /**
+     * The resources.
+     */
+    private Resources resources;
+
     /**
      * The jar to write to.
      */
@@ -57,6 +66,11 @@ public class UninstallDataWriter
      */
     private FileOutputStream jarStream;
 
+    /**
+     * Determines if the jar was started from the pre-built skeleton.
+     */
+    private boolean prebuilt;
+
     /**
      * The rules engine.
      */
@@ -78,14 +92,16 @@ public class UninstallDataWriter
      * @param uninstallData the uninstall data
      * @param installData   the install data
      * @param pathResolver  the path resolver
+     * @param resources     the resources
      * @param rules         the rules engine
      */
     public UninstallDataWriter(UninstallData uninstallData, AutomatedInstallData installData, PathResolver pathResolver,
-                               RulesEngine rules)
+                               Resources resources, RulesEngine rules)
     {
         this.uninstallData = uninstallData;
         this.installData = installData;
         this.pathResolver = pathResolver;
+        this.resources = resources;
         this.rules = rules;
     }
 
@@ -186,6 +202,10 @@ public class UninstallDataWriter
 
     /**
      * Writes the uninstaller skeleton.
+     * <p/>
+     * If the installer contains a pre-built {@link UninstallerSkeleton}, this has already been copied to the jar, and
+     * only the content that depends on the installation is written. Otherwise, the skeleton is merged from the
+     * installer classpath.
      *
      * @throws IOException for any I/O error
      * @throws com.izforge.izpack.api.exception.IzPackException
@@ -193,18 +213,11 @@ public class UninstallDataWriter
      */
     private void writeJarSkeleton() throws IOException
     {
-        List<Mergeable> uninstallerMerge = pathResolver.getMergeableFromPath("com/izforge/izpack/uninstaller/");
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("uninstaller-META-INF/", "META-INF/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/api/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/data/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/core/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/util/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/gui/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("com/izforge/izpack/img/"));
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("org/picocontainer/"));
-
-        // indirectly required by Librarian, which pulls in IoHelper. TODO
-        uninstallerMerge.addAll(pathResolver.getMergeableFromPath("org/apache/tools/zip/"));
+        List<Mergeable> uninstallerMerge = new ArrayList<Mergeable>();
+        if (!prebuilt)
+        {
+            uninstallerMerge.addAll(UninstallerSkeleton.getMergeables(pathResolver));
+        }
 
         if (!uninstallData.getUninstallerListeners().isEmpty())
         {
@@ -507,13 +520,46 @@ public class UninstallDataWriter
         uninstallData.setUninstallerJarFilename(jarPath);
         uninstallData.setUninstallerPath(dirPath);
 
-        // Create the jar file
+        // Create the jar file, starting with the pre-built skeleton if the installer has one
+        byte[] skeleton = getSkeleton();
         jarStream = new FileOutputStream(jarPath);
-        jar = new JarOutputStream(new BufferedOutputStream(jarStream));
+        BufferedOutputStream out = new BufferedOutputStream(jarStream);
+        prebuilt = (skeleton != null);
+        jar = prebuilt ? new SkeletonJarOutputStream(out, skeleton) : new RawJarOutputStream(out);
         jar.setLevel(9);
         uninstallData.addFile(jarPath, true);
     }
 
+    /**
+     * Returns the pre-built uninstaller skeleton.
+     *
+     * @return the skeleton jar, or <tt>null</tt> if the installer doesn't contain one
+     * @throws IOException if the skeleton cannot be read
+     */
+    private byte[] getSkeleton() throws IOException
+    {
+        InputStream in;
+        try
+        {
+            in = resources.getInputStream(UninstallerSkeleton.RESOURCE_NAME);
+        }
+        catch (ResourceNotFoundException exception)
+        {
+            logger.fine("No pre-built uninstaller skeleton. It will be merged from the installer");
+            return null;
+        }
+        try
+        {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            IoHelper.copyStream(in, result);
+            return result.toByteArray();
+        }
+        finally
+        {
+            FileUtils.close(in);
+        }
+    }
+
     /**
      * Destroys the uninstaller jar when it cannot be written.
      */
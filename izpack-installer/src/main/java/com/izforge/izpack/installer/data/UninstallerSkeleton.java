@@ -0,0 +1,111 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.izforge.izpack.api.merge.Mergeable;
+import com.izforge.izpack.merge.resolve.PathResolver;
+
+
+/**
+ * Determines the static content of the uninstaller jar.
+ * <p/>
+ * This is the content that doesn't vary between installations. It is assembled into a jar by the compiler, and
+ * stored in the installer as the {@link #RESOURCE_NAME} resource, so that installations only need to add their own
+ * data to it.
+ */
+public final class UninstallerSkeleton
+{
+
+    /**
+     * The name of the resource containing the pre-built skeleton.
+     */
+    public static final String RESOURCE_NAME = "uninstaller.jar";
+
+    /**
+     * The path of the uninstaller manifest. This is written to <tt>META-INF/</tt>.
+     */
+    public static final String MANIFEST_PATH = "uninstaller-META-INF/";
+
+    /**
+     * The path of the uninstaller classes.
+     */
+    public static final String CLASSES_PATH = "com/izforge/izpack/uninstaller/";
+
+    /**
+     * The destination of the uninstaller manifest.
+     */
+    public static final String MANIFEST_DESTINATION = "META-INF/";
+
+    /**
+     * The paths of the skeleton content, following the uninstaller manifest and classes.
+     */
+    private static final String[] PATHS = {"com/izforge/izpack/api/", "com/izforge/izpack/data/",
+            "com/izforge/izpack/core/", "com/izforge/izpack/util/", "com/izforge/izpack/gui/",
+            "com/izforge/izpack/img/", "org/picocontainer/",
+            // indirectly required by Librarian, which pulls in IoHelper. TODO
+            "org/apache/tools/zip/"};
+
+
+    /**
+     * Constructs an <tt>UninstallerSkeleton</tt>.
+     */
+    private UninstallerSkeleton()
+    {
+    }
+
+    /**
+     * Returns the paths of the skeleton content, following the uninstaller manifest and classes.
+     * <p/>
+     * These are all part of the installer, so that the installer can build the skeleton itself if it doesn't
+     * contain a pre-built one.
+     *
+     * @return the content paths
+     */
+    public static List<String> getContentPaths()
+    {
+        return Collections.unmodifiableList(Arrays.asList(PATHS));
+    }
+
+    /**
+     * Returns the mergeables that make up the skeleton, in the order they should be written.
+     * <p/>
+     * The manifest is written first, so that the jar can be read by <tt>JarInputStream</tt>.
+     *
+     * @param pathResolver the path resolver
+     * @return the skeleton mergeables
+     */
+    public static List<Mergeable> getMergeables(PathResolver pathResolver)
+    {
+        List<Mergeable> result = new ArrayList<Mergeable>();
+        result.addAll(pathResolver.getMergeableFromPath(MANIFEST_PATH, MANIFEST_DESTINATION));
+        result.addAll(pathResolver.getMergeableFromPath(CLASSES_PATH));
+        for (String path : PATHS)
+        {
+            result.addAll(pathResolver.getMergeableFromPath(path));
+        }
+        return result;
+    }
+
+}
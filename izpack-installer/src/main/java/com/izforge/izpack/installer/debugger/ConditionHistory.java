@@ -23,17 +23,23 @@ package com.izforge.izpack.installer.debugger;
 
 import com.izforge.izpack.api.rules.Condition;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
+ * The history of a condition's results.
+ * <p/>
+ * Only the last {@link #MAX_VALUES} results are retained.
+ *
  * @author Dennis Reil, <Dennis.Reil@reddot.de>
  * @version $Id: $
  */
 public class ConditionHistory
 {
+    /**
+     * The maximum no. of results to retain.
+     */
+    public static final int MAX_VALUES = 100;
+
     private Condition condition;
-    private List<Object[]> values;
+    private RingBuffer<Object[]> values;
 
     private boolean newcondition;
     private boolean changedcondition;
@@ -42,20 +48,20 @@ public class ConditionHistory
     public ConditionHistory(Condition condition)
     {
         this.condition = condition;
-        values = new ArrayList<Object[]>();
+        values = new RingBuffer<Object[]>(MAX_VALUES);
         newcondition = true;
         changedcondition = true;
     }
 
     public void addValue(boolean value, String comment)
     {
-        if ((values.size() == 0) || value != getLastValue())
+        if (values.isEmpty() || value != getLastValue())
         {
             Object[] valuecomment = new Object[2];
             valuecomment[0] = value;
             valuecomment[1] = comment;
             this.values.add(valuecomment);
-            if (values.size() == 1)
+            if (values.getAdded() == 1)
             {
                 newcondition = true;
                 changedcondition = true;
@@ -69,9 +75,9 @@ public class ConditionHistory
 
     public boolean getLastValue()
     {
-        if (values.size() > 0)
+        if (!values.isEmpty())
         {
-            return (Boolean) (values.get(values.size() - 1))[0];
+            return (Boolean) values.getLast()[0];
         }
         else
         {
@@ -119,10 +125,11 @@ public class ConditionHistory
         details.append("<h3>Details of <b>");
         details.append(this.condition.getId());
         details.append("</b></h3>");
+        long first = values.getAdded() - values.size();
         for (int i = values.size() - 1; i >= 0; i--)
         {
             Object[] condcomment = values.get(i);
-            details.append(i + 1);
+            details.append(first + i + 1);
             details.append(". ");
             details.append(condcomment[0].toString());
             details.append(" (");
@@ -27,8 +27,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -47,6 +48,8 @@ import javax.swing.JTextPane;
 import javax.swing.ListSelectionModel;
 
 import com.izforge.izpack.api.data.Panel;
+import com.izforge.izpack.api.data.VariableEvent;
+import com.izforge.izpack.api.data.VariableListener;
 import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.gui.ButtonFactory;
@@ -55,6 +58,10 @@ import com.izforge.izpack.installer.data.GUIInstallData;
 
 /**
  * Class for debugging variables and conditions.
+ * <p/>
+ * Variable changes are collected as they occur via a {@link VariableListener}, including those made directly via
+ * {@link com.izforge.izpack.api.data.Variables#getProperties()}. When the panel changes, only the changed variables
+ * are recorded, and only the conditions that may depend on them are re-evaluated.
  *
  * @author Dennis Reil, <Dennis.Reil@reddot.de>
  * @version $Id: $
@@ -64,7 +71,15 @@ public class Debugger
     private RulesEngine rules;
     private GUIInstallData idata;
 
-    private Properties lasttimevariables;
+    /**
+     * The variables changed since the last panel switch, and their new values.
+     */
+    private final Map<String, String> changedvariables = new LinkedHashMap<String, String>();
+
+    /**
+     * The names of the variables changed since conditions were last evaluated.
+     */
+    private final Set<String> changedconditionvariables = new HashSet<String>();
 
     private JTextPane debugtxt;
     private IconsDatabase icons;
@@ -81,7 +96,6 @@ public class Debugger
     {
         idata = installdata;
         this.rules = rules;
-        lasttimevariables = (Properties) idata.getVariables().getProperties().clone();
         this.icons = icons;
         this.variableshistory = new HashMap<String, VariableHistory>();
         this.conditionhistory = new HashMap<String, ConditionHistory>();
@@ -91,11 +105,23 @@ public class Debugger
 
     private void init()
     {
-        String[] variablekeys = lasttimevariables.keySet().toArray(new String[lasttimevariables.size()]);
-        for (String variablename : variablekeys)
+        idata.getVariables().addListener(new VariableListener()
+        {
+            @Override
+            public void variableChanged(VariableEvent event)
+            {
+                synchronized (changedvariables)
+                {
+                    changedvariables.put(event.getName(), event.getNewValue());
+                    changedconditionvariables.add(event.getName());
+                }
+            }
+        });
+        Properties variables = idata.getVariables().getProperties();
+        for (String variablename : variables.stringPropertyNames())
         {
             VariableHistory variableHistory = new VariableHistory(variablename);
-            variableHistory.addValue(lasttimevariables.getProperty(variablename), "initial value");
+            variableHistory.addValue(variables.getProperty(variablename), "initial value");
             variableshistory.put(variablename, variableHistory);
         }
         Set<String> conditionids = this.rules.getKnownConditionIds();
@@ -116,7 +142,6 @@ public class Debugger
     private void debugVariables(Panel nextpanelmetadata, Panel lastpanelmetadata)
     {
         getChangedVariables(nextpanelmetadata, lastpanelmetadata);
-        lasttimevariables = (Properties) idata.getVariables().getProperties().clone();
     }
 
     private void debugConditions(Panel nextpanelmetadata, Panel lastpanelmetadata)
@@ -128,76 +153,116 @@ public class Debugger
                 " to " + nextpanelmetadata.getPanelId());
     }
 
+    /**
+     * Re-evaluates conditions that may have changed since they were last evaluated.
+     * <p/>
+     * These are new conditions, those that reference variables changed since, and those that don't declare the
+     * variables they reference.
+     *
+     * @param comment the comment to record against changed conditions
+     */
     private void updateChangedConditions(String comment)
     {
+        Set<String> changednames;
+        synchronized (changedvariables)
+        {
+            changednames = new HashSet<String>(changedconditionvariables);
+            changedconditionvariables.clear();
+        }
         Set<String> conditionids = this.rules.getKnownConditionIds();
         for (String conditionid : conditionids)
         {
             Condition currentcondition = rules.getCondition(conditionid);
-            ConditionHistory aConditionHistory = null;
-            if (!conditionhistory.containsKey(conditionid))
+            ConditionHistory aConditionHistory = conditionhistory.get(conditionid);
+            if (aConditionHistory == null)
             {
                 // new condition
                 aConditionHistory = new ConditionHistory(currentcondition);
                 conditionhistory.put(conditionid, aConditionHistory);
             }
-            else
+            else if (!dependsOn(currentcondition, changednames))
             {
-                aConditionHistory = conditionhistory.get(conditionid);
+                continue;
             }
             aConditionHistory.addValue(this.rules.isConditionTrue(currentcondition), comment);
         }
         conditionhistorymodel.fireTableDataChanged();
     }
 
+    /**
+     * Determines if a condition may depend on any of a set of variables.
+     *
+     * @param condition the condition
+     * @param names     the variable names
+     * @return <tt>true</tt> if the condition references any of the variables, or doesn't declare the variables it
+     *         references
+     */
+    private boolean dependsOn(Condition condition, Set<String> names)
+    {
+        Set<String> referenced = condition.getVariableNames();
+        if (referenced == null)
+        {
+            return true;
+        }
+        for (String name : referenced)
+        {
+            if (names.contains(name))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private Properties getChangedVariables(Panel nextpanelmetadata, Panel lastpanelmetadata)
     {
-        Properties currentvariables = (Properties) idata.getVariables().getProperties().clone();
-        Properties changedvariables = new Properties();
+        Map<String, String> changes;
+        synchronized (changedvariables)
+        {
+            changes = new LinkedHashMap<String, String>(changedvariables);
+            changedvariables.clear();
+        }
+        Properties result = new Properties();
 
         variablesrenderer.clearState();
-        // check for changed and new variables
-        Enumeration currentvariableskeys = currentvariables.keys();
-        boolean changes = false;
-        while (currentvariableskeys.hasMoreElements())
+        String panelid = (lastpanelmetadata != null) ? lastpanelmetadata.getPanelId() : null;
+        for (Map.Entry<String, String> entry : changes.entrySet())
         {
-            String key = (String) currentvariableskeys.nextElement();
-            String currentvalue = currentvariables.getProperty(key);
-            String oldvalue = lasttimevariables.getProperty(key);
-
-            if ((oldvalue == null))
+            String key = entry.getKey();
+            String currentvalue = entry.getValue();
+            VariableHistory variableHistory = variableshistory.get(key);
+            if (variableHistory == null)
             {
-                VariableHistory variableHistory = new VariableHistory(key);
-                variableHistory.addValue(currentvalue, "new after panel " + lastpanelmetadata.getPanelId());
+                variableHistory = new VariableHistory(key);
+                variableHistory.addValue(currentvalue, "new after panel " + panelid);
                 variableshistory.put(key, variableHistory);
-                changes = true;
-                changedvariables.put(key, currentvalue);
             }
             else
             {
-                if (!currentvalue.equals(oldvalue))
-                {
-                    VariableHistory variableHistory = variableshistory.get(key);
-                    variableHistory.addValue(currentvalue,
-                                             "changed value after panel " + lastpanelmetadata.getPanelId());
-                    changes = true;
-                    changedvariables.put(key, currentvalue);
-                }
+                variableHistory.addValue(currentvalue, "changed value after panel " + panelid);
+            }
+            if (currentvalue != null)
+            {
+                result.put(key, currentvalue);
             }
         }
-        if (changes)
+        if (!changes.isEmpty())
         {
             variablesmodel.fireTableDataChanged();
         }
-        return changedvariables;
+        return result;
     }
 
     private void modifyVariableManually(String varnametxt, String varvaluetxt)
     {
-        lasttimevariables = (Properties) idata.getVariables().getProperties().clone();
         VariableHistory variableHistory = variableshistory.get(varnametxt);
         if (variableHistory != null)
         {
+            synchronized (changedvariables)
+            {
+                // record the change here, rather than at the next panel switch
+                changedvariables.remove(varnametxt);
+            }
             variableHistory.addValue(varvaluetxt, "modified manually");
         }
         variablesmodel.fireTableDataChanged();
@@ -0,0 +1,126 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.debugger;
+
+
+/**
+ * A fixed capacity buffer that discards its oldest element when a new element is added and the buffer is full.
+ *
+ * @param <T> the element type
+ */
+public class RingBuffer<T>
+{
+
+    /**
+     * The elements.
+     */
+    private final Object[] elements;
+
+    /**
+     * The total no. of elements added.
+     */
+    private long added;
+
+
+    /**
+     * Constructs a <tt>RingBuffer</tt>.
+     *
+     * @param capacity the maximum no. of elements to retain
+     * @throws IllegalArgumentException if <tt>capacity</tt> is less than <tt>1</tt>
+     */
+    public RingBuffer(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Argument 'capacity' must be greater than 0");
+        }
+        elements = new Object[capacity];
+    }
+
+    /**
+     * Adds an element, discarding the oldest if the buffer is full.
+     *
+     * @param element the element to add
+     */
+    public void add(T element)
+    {
+        elements[(int) (added % elements.length)] = element;
+        ++added;
+    }
+
+    /**
+     * Returns an element.
+     *
+     * @param index the index of the element, where <tt>0</tt> is the oldest element retained
+     * @return the element
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index)
+    {
+        int size = size();
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (T) elements[(int) ((added - size + index) % elements.length)];
+    }
+
+    /**
+     * Returns the most recently added element.
+     *
+     * @return the most recently added element, or <tt>null</tt> if the buffer is empty
+     */
+    public T getLast()
+    {
+        return isEmpty() ? null : get(size() - 1);
+    }
+
+    /**
+     * Returns the no. of elements retained.
+     *
+     * @return the no. of elements retained
+     */
+    public int size()
+    {
+        return (int) Math.min(added, elements.length);
+    }
+
+    /**
+     * Determines if the buffer is empty.
+     *
+     * @return <tt>true</tt> if the buffer is empty
+     */
+    public boolean isEmpty()
+    {
+        return added == 0;
+    }
+
+    /**
+     * Returns the total no. of elements added, including those discarded.
+     *
+     * @return the total no. of elements added
+     */
+    public long getAdded()
+    {
+        return added;
+    }
+
+}
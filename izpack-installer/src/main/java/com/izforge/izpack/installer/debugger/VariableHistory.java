@@ -21,18 +21,23 @@
 
 package com.izforge.izpack.installer.debugger;
 
-import java.util.ArrayList;
-import java.util.List;
-
-
 /**
+ * The history of a variable's values.
+ * <p/>
+ * Only the last {@link #MAX_VALUES} values are retained.
+ *
  * @author Dennis Reil, <Dennis.Reil@reddot.de>
  * @version $Id: $
  */
 public class VariableHistory
 {
+    /**
+     * The maximum no. of values to retain.
+     */
+    public static final int MAX_VALUES = 100;
+
     private String name;
-    private List<String[]> values;
+    private RingBuffer<String[]> values;
     private boolean newvariable;
     private boolean changed;
 
@@ -40,7 +45,7 @@ public class VariableHistory
     public VariableHistory(String variable)
     {
         name = variable;
-        values = new ArrayList<String[]>();
+        values = new RingBuffer<String[]>(MAX_VALUES);
     }
 
 
@@ -67,7 +72,7 @@ public class VariableHistory
         valuecomment[0] = value;
         valuecomment[1] = comment;
         values.add(valuecomment);
-        if (values.size() == 1)
+        if (values.getAdded() == 1)
         {
             newvariable = true;
             changed = true;
@@ -90,9 +95,9 @@ public class VariableHistory
 
     public String getLastValue()
     {
-        if (values.size() > 0)
+        if (!values.isEmpty())
         {
-            String[] valuecomment = values.get(values.size() - 1);
+            String[] valuecomment = values.getLast();
             return valuecomment[0];
         }
         else
@@ -140,10 +145,11 @@ public class VariableHistory
         details.append("<h3>Details of <b>");
         details.append(this.name);
         details.append("</b></h3>");
+        long first = values.getAdded() - values.size();
         for (int i = values.size() - 1; i >= 0; i--)
         {
             String[] valuecomment = values.get(i);
-            details.append(i + 1);
+            details.append(first + i + 1);
             details.append(". ");
             details.append(valuecomment[0]);
             details.append(" (");
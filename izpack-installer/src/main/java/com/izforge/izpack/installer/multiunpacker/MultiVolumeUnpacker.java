@@ -187,6 +187,21 @@ public class MultiVolumeUnpacker extends UnpackerBase
         return unpacker;
     }
 
+    /**
+     * Determines if variables in a parsable pack file can be substituted as it is extracted.
+     * <p/>
+     * This is not supported, as the file content is read from the volumes rather than the pack stream.
+     *
+     * @param file the pack file
+     * @param pack the parent pack
+     * @return {@code false}
+     */
+    @Override
+    protected boolean canParse(PackFile file, Pack pack)
+    {
+        return false;
+    }
+
     /**
      * Skips a pack file.
      *
@@ -0,0 +1,163 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * A {@link ProgressListener} that reports the progress of packs unpacked concurrently as a single step.
+ * <p/>
+ * The first step started is passed through; the sub-steps of subsequent steps are added to it. Sub-step progress
+ * is reported as the total no. of sub-steps completed across all steps.
+ * <p/>
+ * Notifications may be made from multiple threads, but are passed to the underlying listener one at a time.
+ */
+class AggregateProgressListener implements ProgressListener
+{
+
+    /**
+     * The listener to delegate to.
+     */
+    private final ProgressListener listener;
+
+    /**
+     * The total no. of sub-steps.
+     */
+    private int subSteps;
+
+    /**
+     * The no. of sub-steps completed.
+     */
+    private int completed;
+
+    /**
+     * Determines if a step has been started.
+     */
+    private boolean started;
+
+
+    /**
+     * Constructs an <tt>AggregateProgressListener</tt>.
+     *
+     * @param listener the listener to delegate to
+     */
+    public AggregateProgressListener(ProgressListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * Invoked when an action starts.
+     *
+     * @param name  the name of the action
+     * @param steps the number of steps the action consists of
+     */
+    @Override
+    public synchronized void startAction(String name, int steps)
+    {
+        listener.startAction(name, steps);
+    }
+
+    /**
+     * Invoked when an action finishes.
+     */
+    @Override
+    public synchronized void stopAction()
+    {
+        listener.stopAction();
+    }
+
+    /**
+     * Invoked when an action step starts.
+     * <p/>
+     * Only the first step is passed through. The sub-steps of subsequent steps are added to it.
+     *
+     * @param stepName the name of the step
+     * @param step     the step number
+     * @param subSteps the number of sub-steps the step consists of
+     */
+    @Override
+    public synchronized void nextStep(String stepName, int step, int subSteps)
+    {
+        this.subSteps += subSteps;
+        if (!started)
+        {
+            started = true;
+            listener.nextStep(stepName, step, this.subSteps);
+        }
+        else
+        {
+            listener.setSubStepNo(this.subSteps);
+        }
+    }
+
+    /**
+     * Sets the number of sub-steps.
+     * <p/>
+     * This is ignored, as the no. of sub-steps is the total of all steps.
+     *
+     * @param subSteps the number of sub-steps
+     */
+    @Override
+    public synchronized void setSubStepNo(int subSteps)
+    {
+        // no-op
+    }
+
+    /**
+     * Invoked to notify progress.
+     *
+     * @param message a message describing the step
+     */
+    @Override
+    public synchronized void progress(String message)
+    {
+        listener.progress(message);
+    }
+
+    /**
+     * Invoked to notify progress.
+     * <p/>
+     * The sub-step is replaced with the total no. of sub-steps completed.
+     *
+     * @param subStep the sub-step which will be performed next
+     * @param message an additional message describing the sub-step
+     */
+    @Override
+    public synchronized void progress(int subStep, String message)
+    {
+        listener.progress(completed++, message);
+    }
+
+    /**
+     * Invoked when an action restarts.
+     *
+     * @param name           the name of the action
+     * @param overallMessage a message describing the overall progress
+     * @param tip            a tip describing the current progress
+     * @param steps          the number of steps the action consists of
+     */
+    @Override
+    public synchronized void restartAction(String name, String overallMessage, String tip, int steps)
+    {
+        listener.restartAction(name, overallMessage, tip, steps);
+    }
+}
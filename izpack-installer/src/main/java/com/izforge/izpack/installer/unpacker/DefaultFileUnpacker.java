@@ -64,4 +64,31 @@ public class DefaultFileUnpacker extends FileUnpacker
     {
         copy(file, packInputStream, target);
     }
+
+    /**
+     * Unpacks a pack file, writing it using a writer pool.
+     * <p/>
+     * Files too large to be queued are unpacked directly, once any queued writes have completed.
+     *
+     * @param file            the pack file meta-data
+     * @param packInputStream the pack input stream
+     * @param target          the target
+     * @param writers         the writer pool
+     * @param completion      the completion to invoke once the file has been written
+     * @throws IOException        for any I/O error
+     * @throws InstallerException for any installer exception
+     */
+    @Override
+    public void unpack(PackFile file, ObjectInputStream packInputStream, File target, FileWriterPool writers,
+                       FileWriterPool.Completion completion) throws IOException, InstallerException
+    {
+        if (writers.canQueue(file.length()))
+        {
+            write(file, packInputStream, target, writers, completion);
+        }
+        else
+        {
+            super.unpack(file, packInputStream, target, writers, completion);
+        }
+    }
 }
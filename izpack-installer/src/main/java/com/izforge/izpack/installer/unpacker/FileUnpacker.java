@@ -22,17 +22,20 @@
 package com.izforge.izpack.installer.unpacker;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.util.BufferPool;
 import com.izforge.izpack.util.file.FileUtils;
 import com.izforge.izpack.util.os.FileQueue;
 import com.izforge.izpack.util.os.FileQueueMove;
@@ -73,6 +76,11 @@ public abstract class FileUnpacker
      */
     private boolean queued;
 
+    /**
+     * The maximum no. of bytes transferred between file channels before checking for cancellation.
+     */
+    private static final long TRANSFER_SIZE = 8 * 1024 * 1024;
+
     /**
      * The logger.
      */
@@ -103,6 +111,30 @@ public abstract class FileUnpacker
     public abstract void unpack(PackFile file, ObjectInputStream packInputStream, File target)
             throws IOException, InstallerException;
 
+    /**
+     * Unpacks a pack file, writing it using a writer pool if supported.
+     * <p/>
+     * The <tt>completion</tt> is invoked on the calling thread once the file has been written, after those of any
+     * previously queued writes.
+     * <p/>
+     * This implementation waits for any queued writes to complete, before unpacking the file directly.
+     *
+     * @param file            the pack file meta-data
+     * @param packInputStream the pack input stream
+     * @param target          the target
+     * @param writers         the writer pool
+     * @param completion      the completion to invoke once the file has been written
+     * @throws IOException        for any I/O error
+     * @throws InstallerException for any installer exception
+     */
+    public void unpack(PackFile file, ObjectInputStream packInputStream, File target, FileWriterPool writers,
+                       FileWriterPool.Completion completion) throws IOException, InstallerException
+    {
+        writers.flush();
+        unpack(file, packInputStream, target);
+        completion.completed();
+    }
+
     /**
      * Determines if the file was queued.
      *
@@ -129,7 +161,83 @@ public abstract class FileUnpacker
         OutputStream out = getTarget(file, target);
         try
         {
-            byte[] buffer = new byte[5120];
+            copy(file, in, out);
+        }
+        finally
+        {
+            FileUtils.close(out);
+        }
+        postCopy(file);
+    }
+
+    /**
+     * Copies a file to a target, setting its timestamp to that of the pack file.
+     * <p/>
+     * Where possible, the file is transferred between file channels, so that its content is not copied via the
+     * Java heap.
+     * <p/>
+     * If the target is a blockable file, then a temporary file will be created, and the file queued.
+     *
+     * @param file   the pack file
+     * @param in     the file stream
+     * @param target the file to write to
+     * @throws InterruptedIOException if the copy operation is cancelled
+     * @throws IOException            for any I/O error
+     */
+    protected void transfer(PackFile file, FileInputStream in, File target) throws IOException
+    {
+        OutputStream out = getTarget(file, target);
+        try
+        {
+            if (out instanceof FileOutputStream)
+            {
+                FileChannel source = in.getChannel();
+                FileChannel dest = ((FileOutputStream) out).getChannel();
+                long position = source.position();
+                long bytesCopied = 0;
+                while (bytesCopied < file.length())
+                {
+                    if (cancellable.isCancelled())
+                    {
+                        // operation cancelled
+                        throw new InterruptedIOException("Copy operation cancelled");
+                    }
+                    long count = Math.min(file.length() - bytesCopied, TRANSFER_SIZE);
+                    long transferred = source.transferTo(position + bytesCopied, count, dest);
+                    if (transferred <= 0)
+                    {
+                        throw new IOException("Unexpected end of file: " + file.getRelativeSourcePath());
+                    }
+                    bytesCopied += transferred;
+                }
+                source.position(position + bytesCopied);
+            }
+            else
+            {
+                copy(file, in, out);
+            }
+        }
+        finally
+        {
+            FileUtils.close(out);
+        }
+        postCopy(file);
+    }
+
+    /**
+     * Copies a pack file payload from an input stream to an output stream, via a pooled buffer.
+     *
+     * @param file the pack file
+     * @param in   the stream to read from
+     * @param out  the stream to write to
+     * @throws InterruptedIOException if the copy operation is cancelled
+     * @throws IOException            for any I/O error
+     */
+    private void copy(PackFile file, InputStream in, OutputStream out) throws IOException
+    {
+        byte[] buffer = BufferPool.acquire();
+        try
+        {
             long bytesCopied = 0;
             while (bytesCopied < file.length())
             {
@@ -143,9 +251,74 @@ public abstract class FileUnpacker
         }
         finally
         {
-            FileUtils.close(out);
+            BufferPool.release(buffer);
         }
-        postCopy(file);
+    }
+
+    /**
+     * Reads a file payload from an input stream, and queues it to be written to the target by a writer pool.
+     * <p/>
+     * Once written, the timestamp is set on the writer thread. Blockable files are queued on the calling thread,
+     * prior to invoking the <tt>completion</tt>.
+     *
+     * @param file       the pack file
+     * @param in         the pack file stream
+     * @param target     the file to write to
+     * @param writers    the writer pool
+     * @param completion the completion to invoke once the file has been written
+     * @throws InterruptedIOException if the read is cancelled
+     * @throws IOException            for any I/O error
+     */
+    protected void write(final PackFile file, InputStream in, final File target, FileWriterPool writers,
+                         final FileWriterPool.Completion completion) throws IOException
+    {
+        final byte[] data = new byte[(int) file.length()];
+        int offset = 0;
+        while (offset < data.length)
+        {
+            if (cancellable.isCancelled())
+            {
+                // operation cancelled
+                throw new InterruptedIOException("Copy operation cancelled");
+            }
+            int read = read(data, offset, in, data.length - offset);
+            if (read == -1)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            offset += read;
+        }
+
+        FileWriterPool.Write write = new FileWriterPool.Write()
+        {
+            @Override
+            public void write() throws IOException
+            {
+                OutputStream out = getTarget(file, target);
+                try
+                {
+                    out.write(data);
+                }
+                finally
+                {
+                    FileUtils.close(out);
+                }
+                setLastModified(file);
+            }
+        };
+        FileWriterPool.Completion queueing = new FileWriterPool.Completion()
+        {
+            @Override
+            public void completed() throws IOException
+            {
+                if (isBlockable(file))
+                {
+                    queue();
+                }
+                completion.completed();
+            }
+        };
+        writers.queue(target, data.length, write, queueing);
     }
 
     /**
@@ -178,14 +351,20 @@ public abstract class FileUnpacker
     protected long copy(PackFile file, byte[] buffer, InputStream in, OutputStream out, long bytesCopied)
             throws IOException
     {
+        // fill the buffer before writing, as pack streams typically return small chunks per read
         int maxBytes = (int) Math.min(file.length() - bytesCopied, buffer.length);
-        int read = read(buffer, in, maxBytes);
-        if (read == -1)
+        int count = 0;
+        while (count < maxBytes)
         {
-            throw new IOException("Unexpected end of stream (installer corrupted?)");
+            int read = read(buffer, count, in, maxBytes - count);
+            if (read == -1)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            count += read;
         }
-        out.write(buffer, 0, read);
-        bytesCopied += read;
+        out.write(buffer, 0, count);
+        bytesCopied += count;
 
         return bytesCopied;
     }
@@ -201,7 +380,22 @@ public abstract class FileUnpacker
      */
     protected int read(byte[] buffer, InputStream in, int maxBytes) throws IOException
     {
-        return in.read(buffer, 0, maxBytes);
+        return read(buffer, 0, in, maxBytes);
+    }
+
+    /**
+     * Reads up to <tt>maxBytes</tt> bytes to the specified buffer, starting at <tt>offset</tt>.
+     *
+     * @param buffer   the buffer
+     * @param offset   the offset in the buffer to read to
+     * @param in       the input stream
+     * @param maxBytes the maximum no. of bytes to read
+     * @return the no. of bytes read
+     * @throws IOException for any I/O error
+     */
+    protected int read(byte[] buffer, int offset, InputStream in, int maxBytes) throws IOException
+    {
+        return in.read(buffer, offset, maxBytes);
     }
 
     /**
@@ -0,0 +1,318 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * Writes unpacked files on a pool of writer threads, so that slow file systems don't stall decompression.
+ * <p/>
+ * The unpacking thread reads each file payload into memory and queues it. The queue is bounded both in bytes and
+ * in files; when either bound is exceeded, the unpacking thread waits for the oldest write to complete.
+ * <p/>
+ * Each queued write has a {@link Completion} that is invoked on the unpacking thread once the write has finished.
+ * Completions are invoked strictly in the order that writes were queued, so order-sensitive operations such as
+ * file queueing and listener notification are performed in pack order.
+ */
+public class FileWriterPool
+{
+
+    /**
+     * Writes a file. Invoked on a writer thread.
+     */
+    public interface Write
+    {
+
+        /**
+         * Writes the file.
+         *
+         * @throws IOException for any I/O error
+         */
+        void write() throws IOException;
+    }
+
+    /**
+     * Invoked on the unpacking thread when a write has completed.
+     */
+    public interface Completion
+    {
+
+        /**
+         * Invoked when a write has completed.
+         *
+         * @throws IOException for any I/O error
+         */
+        void completed() throws IOException;
+    }
+
+    /**
+     * The default maximum no. of bytes that may be queued.
+     */
+    public static final int DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * The maximum no. of files that may be queued, per writer thread.
+     */
+    private static final int MAX_FILES_PER_THREAD = 64;
+
+    /**
+     * The writer threads.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The writes, in the order they were queued.
+     */
+    private final LinkedList<Pending> pending = new LinkedList<Pending>();
+
+    /**
+     * The maximum no. of bytes that may be queued.
+     */
+    private final long maxBytes;
+
+    /**
+     * The maximum no. of files that may be queued.
+     */
+    private final int maxFiles;
+
+    /**
+     * The no. of bytes queued.
+     */
+    private long pendingBytes;
+
+
+    /**
+     * Constructs a <tt>FileWriterPool</tt>.
+     *
+     * @param threads the no. of writer threads
+     */
+    public FileWriterPool(int threads)
+    {
+        this(threads, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructs a <tt>FileWriterPool</tt>.
+     *
+     * @param threads  the no. of writer threads
+     * @param maxBytes the maximum no. of bytes that may be queued
+     */
+    public FileWriterPool(int threads, long maxBytes)
+    {
+        if (threads <= 0)
+        {
+            throw new IllegalArgumentException("Argument 'threads' must be > 0");
+        }
+        this.maxBytes = maxBytes;
+        this.maxFiles = threads * MAX_FILES_PER_THREAD;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "IzPack file writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Determines if a file payload of the specified length may be queued.
+     * <p/>
+     * Larger files must be written directly, after calling {@link #flush()}.
+     *
+     * @param length the payload length
+     * @return <tt>true</tt> if the payload may be queued
+     */
+    public boolean canQueue(long length)
+    {
+        return length <= maxBytes;
+    }
+
+    /**
+     * Queues a write.
+     * <p/>
+     * This invokes the completions of any writes that have finished, and waits for the oldest writes to complete
+     * while the queue is full.
+     *
+     * @param target     the file being written
+     * @param length     the no. of bytes being written
+     * @param write      the write
+     * @param completion the completion, invoked on this thread once the write has finished
+     * @throws IOException for any I/O error raised by a completed write or completion
+     */
+    public void queue(File target, long length, final Write write, Completion completion) throws IOException
+    {
+        Future<Void> future = executor.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                write.write();
+                return null;
+            }
+        });
+        pending.add(new Pending(target, length, future, completion));
+        pendingBytes += length;
+
+        while (!pending.isEmpty() && pending.getFirst().future.isDone())
+        {
+            completeNext();
+        }
+        while (pendingBytes > maxBytes || pending.size() > maxFiles)
+        {
+            completeNext();
+        }
+    }
+
+    /**
+     * Determines if there is a queued write for a file.
+     *
+     * @param target the file
+     * @return <tt>true</tt> if the file has a queued write
+     */
+    public boolean isPending(File target)
+    {
+        for (Pending write : pending)
+        {
+            if (write.target.equals(target))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for all queued writes to complete, invoking their completions in order.
+     *
+     * @throws IOException for any I/O error raised by a write or completion
+     */
+    public void flush() throws IOException
+    {
+        while (!pending.isEmpty())
+        {
+            completeNext();
+        }
+    }
+
+    /**
+     * Shuts down the pool.
+     * <p/>
+     * Writes that haven't started are discarded, and their completions are not invoked.
+     */
+    public void shutdown()
+    {
+        for (Pending write : pending)
+        {
+            write.future.cancel(false);
+        }
+        pending.clear();
+        pendingBytes = 0;
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for the oldest write to complete, and invokes its completion.
+     *
+     * @throws IOException for any I/O error raised by the write or completion
+     */
+    private void completeNext() throws IOException
+    {
+        Pending write = pending.removeFirst();
+        pendingBytes -= write.length;
+        try
+        {
+            write.future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            throw new InterruptedIOException("Interrupted waiting for " + write.target + " to be written");
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to write " + write.target + ": " + cause.getMessage(), cause);
+        }
+        write.completion.completed();
+    }
+
+    /**
+     * A queued write.
+     */
+    private static class Pending
+    {
+
+        /**
+         * The file being written.
+         */
+        private final File target;
+
+        /**
+         * The no. of bytes being written.
+         */
+        private final long length;
+
+        /**
+         * The write result.
+         */
+        private final Future<Void> future;
+
+        /**
+         * The completion.
+         */
+        private final Completion completion;
+
+        /**
+         * Constructs a <tt>Pending</tt>.
+         *
+         * @param target     the file being written
+         * @param length     the no. of bytes being written
+         * @param future     the write result
+         * @param completion the completion
+         */
+        public Pending(File target, long length, Future<Void> future, Completion completion)
+        {
+            this.target = target;
+            this.length = length;
+            this.future = future;
+            this.completion = completion;
+        }
+    }
+}
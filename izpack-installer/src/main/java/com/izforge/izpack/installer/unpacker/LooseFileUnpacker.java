@@ -24,7 +24,6 @@ package com.izforge.izpack.installer.unpacker;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.util.logging.Logger;
 
@@ -32,6 +31,7 @@ import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.api.handler.Prompt;
+import com.izforge.izpack.util.file.FileUtils;
 import com.izforge.izpack.util.os.FileQueue;
 
 
@@ -102,14 +102,22 @@ public class LooseFileUnpacker extends FileUnpacker
         }
         if (resolvedFile.exists())
         {
-            InputStream stream = new FileInputStream(resolvedFile);
             // may have a different length & last modified than we had at compile time, therefore we have to
             // build a new PackFile for the copy process...
             file = new PackFile(resolvedFile.getParentFile(), resolvedFile, file.getTargetPath(),
                                 file.osConstraints(), file.override(), file.overrideRenameTo(),
                                 file.blockable(), file.getAdditionals());
 
-            copy(file, stream, target);
+            // loose files are stored raw, so transfer them directly
+            FileInputStream stream = new FileInputStream(resolvedFile);
+            try
+            {
+                transfer(file, stream, target);
+            }
+            finally
+            {
+                FileUtils.close(stream);
+            }
         }
         else
         {
@@ -0,0 +1,273 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.util.file.FileUtils;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * Unpacks a parsable file from a pack, substituting variables as it is written.
+ * <p/>
+ * This avoids writing the file, and reading it back to parse it once unpacking is complete.
+ * <p/>
+ * The file is substituted in memory, so only files up to {@link #MAX_LENGTH} bytes are supported.
+ * <p/>
+ * If the file refers to variables that aren't defined when it is unpacked, it is written unchanged, and
+ * {@link #isResolved()} returns <tt>false</tt>. The file should then be parsed once unpacking is complete, in case
+ * the variables have been defined by then. Writing it unchanged ensures that values substituted in the meantime
+ * aren't parsed twice.
+ */
+public class ParsableFileUnpacker extends FileUnpacker
+{
+
+    /**
+     * The maximum length of a file that may be substituted as it is unpacked.
+     */
+    public static final long MAX_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * Determines if unpacking should be cancelled.
+     */
+    private final Cancellable cancellable;
+
+    /**
+     * The parsable file.
+     */
+    private final ParsableFile parsable;
+
+    /**
+     * The variables.
+     */
+    private final Variables variables;
+
+    /**
+     * Determines if every variable referenced by the file was defined.
+     */
+    private boolean resolved = true;
+
+
+    /**
+     * Constructs a <tt>ParsableFileUnpacker</tt>.
+     *
+     * @param cancellable determines if unpacking should be cancelled
+     * @param queue       the file queue. May be <tt>null</tt>
+     * @param parsable    the parsable file
+     * @param variables   the variables
+     */
+    public ParsableFileUnpacker(Cancellable cancellable, FileQueue queue, ParsableFile parsable,
+                                Variables variables)
+    {
+        super(cancellable, queue);
+        this.cancellable = cancellable;
+        this.parsable = parsable;
+        this.variables = variables;
+    }
+
+    /**
+     * Unpacks a pack file.
+     *
+     * @param file            the pack file meta-data
+     * @param packInputStream the pack input stream
+     * @param target          the target
+     * @throws IOException        for any I/O error
+     * @throws InstallerException for any installer exception
+     */
+    @Override
+    public void unpack(PackFile file, ObjectInputStream packInputStream, File target)
+            throws IOException, InstallerException
+    {
+        if (file.length() > MAX_LENGTH)
+        {
+            throw new IOException("Cannot parse " + parsable.getPath() + " as it is unpacked: file too large");
+        }
+        PayloadInputStream in = new PayloadInputStream(packInputStream, file.length());
+        byte[] payload = new byte[(int) file.length()];
+        int offset = 0;
+        while (offset < payload.length)
+        {
+            offset += in.read(payload, offset, payload.length - offset);
+        }
+
+        ByteArrayOutputStream substituted = new ByteArrayOutputStream(payload.length);
+        try
+        {
+            new Substitutor(variables.getProperties()).substitute(new ByteArrayInputStream(payload), substituted,
+                                                                 parsable.getType(), parsable.getEncoding());
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to parse: " + parsable.getPath(), exception);
+        }
+
+        OutputStream out = new BufferedOutputStream(getTarget(file, target));
+        try
+        {
+            if (resolved)
+            {
+                substituted.writeTo(out);
+            }
+            else
+            {
+                // leave the file to be parsed once unpacking is complete
+                out.write(payload);
+            }
+        }
+        finally
+        {
+            FileUtils.close(out);
+        }
+        postCopy(file);
+    }
+
+    /**
+     * Determines if every variable referenced by the file was defined when it was unpacked.
+     *
+     * @return <tt>true</tt> if every variable was defined, <tt>false</tt> if the file must be parsed again
+     */
+    public boolean isResolved()
+    {
+        return resolved;
+    }
+
+    /**
+     * A substitutor that records references to undefined variables.
+     */
+    private class Substitutor extends VariableSubstitutorImpl
+    {
+
+        private static final long serialVersionUID = -2378157904587226481L;
+
+        /**
+         * Constructs a <tt>Substitutor</tt>.
+         *
+         * @param properties the variable values
+         */
+        public Substitutor(Properties properties)
+        {
+            super(properties);
+        }
+
+        /**
+         * Returns the value of a variable.
+         *
+         * @param name the variable name
+         * @return the variable value
+         */
+        @Override
+        public Value getValue(String name)
+        {
+            if (this.variables.getProperty(name) == null)
+            {
+                resolved = false;
+            }
+            return super.getValue(name);
+        }
+    }
+
+    /**
+     * Reads a file payload from a pack stream, checking for cancellation.
+     */
+    private class PayloadInputStream extends InputStream
+    {
+
+        /**
+         * The pack stream.
+         */
+        private final InputStream in;
+
+        /**
+         * The no. of payload bytes remaining.
+         */
+        private long remaining;
+
+        /**
+         * Constructs a <tt>PayloadInputStream</tt>.
+         *
+         * @param in     the pack stream
+         * @param length the payload length
+         */
+        public PayloadInputStream(InputStream in, long length)
+        {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        /**
+         * Reads the next byte of the payload.
+         *
+         * @return the next byte, or <tt>-1</tt> if the end of the payload has been reached
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public int read() throws IOException
+        {
+            byte[] buffer = new byte[1];
+            return (read(buffer, 0, 1) == -1) ? -1 : buffer[0] & 0xFF;
+        }
+
+        /**
+         * Reads up to <tt>length</tt> bytes of the payload.
+         *
+         * @param buffer the buffer to read to
+         * @param offset the offset in the buffer to read to
+         * @param length the maximum no. of bytes to read
+         * @return the no. of bytes read, or <tt>-1</tt> if the end of the payload has been reached
+         * @throws InterruptedIOException if unpacking is cancelled
+         * @throws IOException            for any I/O error
+         */
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            if (remaining == 0)
+            {
+                return -1;
+            }
+            if (cancellable.isCancelled())
+            {
+                throw new InterruptedIOException("Copy operation cancelled");
+            }
+            int result = ParsableFileUnpacker.this.read(buffer, offset, in, (int) Math.min(length, remaining));
+            if (result == -1)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            remaining -= result;
+            return result;
+        }
+    }
+}
@@ -35,11 +35,22 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.jar.Pack200;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -49,6 +60,7 @@ import com.izforge.izpack.api.data.OverrideType;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.data.binding.OsModel;
 import com.izforge.izpack.api.event.InstallerListener;
 import com.izforge.izpack.api.event.ProgressListener;
 import com.izforge.izpack.api.exception.InstallerException;
@@ -61,6 +73,7 @@ import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.handler.ProgressHandler;
 import com.izforge.izpack.core.handler.PromptUIHandler;
 import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.PackHeaderReader;
 import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.installer.data.UninstallData;
@@ -141,6 +154,44 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private Pack200.Unpacker unpacker;
 
+    /**
+     * The pool used to write unpacked files, or <tt>null</tt> if files are written by the unpacking thread.
+     */
+    private FileWriterPool writers;
+
+    /**
+     * Directories known to exist, either because they were found or created, to avoid probing them for each file.
+     */
+    private final Set<File> directories = Collections.synchronizedSet(new HashSet<File>());
+
+    /**
+     * Directories created by the unpacker. As these were empty when created, files unpacked to them need not be
+     * probed for existence, unless they have already been unpacked.
+     */
+    private final Set<File> createdDirectories = Collections.synchronizedSet(new HashSet<File>());
+
+    /**
+     * The paths of files unpacked to directories created by the unpacker.
+     */
+    private final Set<String> createdFiles = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * The parsable files substituted as they were unpacked, keyed on path.
+     */
+    private final Map<String, ParsableFile> parsed = Collections.synchronizedMap(
+            new HashMap<String, ParsableFile>());
+
+    /**
+     * Parsable files substituted as they were unpacked, but subsequently overwritten by a later pack.
+     * These must be parsed once unpacking is complete.
+     */
+    private final List<ParsableFile> overwritten = Collections.synchronizedList(new ArrayList<ParsableFile>());
+
+    /**
+     * The metadata of the pack being unpacked by the current thread, when packs are unpacked concurrently.
+     */
+    private final ThreadLocal<PackMetadata> packMetadata = new ThreadLocal<PackMetadata>();
+
     /**
      * The prompt.
      */
@@ -384,6 +435,16 @@ public abstract class UnpackerBase implements IUnpacker
 
     /**
      * Unpacks the selected packs.
+     * <p/>
+     * If the installation specifies {@link com.izforge.izpack.api.data.Info#getUnpackerThreads() unpacker threads},
+     * file payloads are written by a {@link FileWriterPool}. Uninstallation logging, file queueing and
+     * {@link InstallerListener#afterFile} notification still occur in pack order, on this thread.
+     * <p/>
+     * If the installation specifies {@link com.izforge.izpack.api.data.Info#isConcurrentPacks() concurrent packs},
+     * consecutive selected {@link Pack#isIndependent() independent} packs are unpacked concurrently, each from its
+     * own stream, provided their substituted targets are distinct. Other packs are unpacked one at a time, after the
+     * packs that precede them. Parsable files, executables and update checks are still collected in pack order, and
+     * installed files and uninstall executables are added to the uninstallation data in pack order.
      *
      * @param packs        the packs to unpack
      * @param queue        the file queue, or {@code null} if queuing is not supported
@@ -396,18 +457,333 @@ public abstract class UnpackerBase implements IUnpacker
     protected void unpack(List<Pack> packs, FileQueue queue, List<ParsableFile> parsables,
                           List<ExecutableFile> executables, List<UpdateCheck> updateChecks)
     {
-        int count = packs.size();
-        for (int i = 0; i < count; i++)
+        int threads = installData.getInfo().getUnpackerThreads();
+        if (threads > 0)
         {
-            Pack pack = packs.get(i);
-            if (shouldUnpack(pack))
+            writers = new FileWriterPool(threads);
+        }
+        try
+        {
+            int count = packs.size();
+            int i = 0;
+            while (i < count)
             {
-                listeners.beforePack(pack, i, listener);
-                unpack(pack, i, queue, parsables, executables, updateChecks);
-                checkInterrupt();
-                listeners.afterPack(pack, i, listener);
+                List<Integer> concurrent = getConcurrentPacks(packs, i);
+                if (concurrent.size() > 1)
+                {
+                    unpack(packs, concurrent, queue, parsables, executables, updateChecks);
+                    i = concurrent.get(concurrent.size() - 1) + 1;
+                }
+                else
+                {
+                    Pack pack = packs.get(i);
+                    if (shouldUnpack(pack))
+                    {
+                        unpack(pack, i, queue, parsables, executables, updateChecks, listener);
+                    }
+                    ++i;
+                }
+            }
+            parsables.addAll(overwritten);
+        }
+        finally
+        {
+            if (writers != null)
+            {
+                writers.shutdown();
+                writers = null;
+            }
+            directories.clear();
+            createdDirectories.clear();
+            createdFiles.clear();
+            parsed.clear();
+            overwritten.clear();
+        }
+    }
+
+    /**
+     * Unpacks packs concurrently.
+     *
+     * @param packs        the packs
+     * @param concurrent   the indexes of the packs to unpack concurrently
+     * @param queue        the file queue, or {@code null} if queuing is not supported
+     * @param parsables    used to collect parsable files in the pack
+     * @param executables  used to collect executable files files in the pack
+     * @param updateChecks used to collect update checks in the pack
+     * @throws ResourceInterruptedException if unpacking is cancelled
+     * @throws IzPackException              for any error
+     */
+    private void unpack(List<Pack> packs, List<Integer> concurrent, FileQueue queue,
+                        List<ParsableFile> parsables, List<ExecutableFile> executables,
+                        List<UpdateCheck> updateChecks)
+    {
+        Sequence starts = new Sequence();
+        Sequence ends = new Sequence();
+        PackMetadata[] metadata = new PackMetadata[concurrent.size()];
+        for (int i = 0; i < metadata.length; ++i)
+        {
+            metadata[i] = new PackMetadata(starts, ends, i);
+        }
+        try
+        {
+            unpack(packs, concurrent, queue, metadata);
+        }
+        finally
+        {
+            // the uninstallation data reflects the files written, even if unpacking failed
+            for (PackMetadata data : metadata)
+            {
+                data.addTo(getUninstallData());
+            }
+        }
+        for (PackMetadata data : metadata)
+        {
+            parsables.addAll(data.parsables);
+            executables.addAll(data.executables);
+            updateChecks.addAll(data.updateChecks);
+        }
+    }
+
+    /**
+     * Unpacks packs concurrently, collecting the metadata of each pack.
+     *
+     * @param packs      the packs
+     * @param concurrent the indexes of the packs to unpack concurrently
+     * @param queue      the file queue, or {@code null} if queuing is not supported
+     * @param metadata   used to collect the metadata of each pack to unpack
+     * @throws ResourceInterruptedException if unpacking is cancelled
+     * @throws IzPackException              for any error
+     */
+    private void unpack(final List<Pack> packs, final List<Integer> concurrent, final FileQueue queue,
+                        final PackMetadata[] metadata)
+    {
+        // the concurrent packs write their own files, so don't use the writer pool for them.
+        // Progress is reported as an aggregate of all concurrent packs
+        FileWriterPool pool = writers;
+        ProgressListener progress = listener;
+        writers = null;
+        listener = new AggregateProgressListener(progress);
+        int threads = Math.min(concurrent.size(), Math.max(2, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "IzPack pack unpacker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try
+        {
+            // the packs are submitted in order, so that each pack is started before those that must wait for it
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < metadata.length; ++i)
+            {
+                final int packNo = concurrent.get(i);
+                final PackMetadata data = metadata[i];
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        unpack(packs.get(packNo), packNo, queue, data);
+                        return null;
+                    }
+                }));
+            }
+            // wait for all packs to complete before reporting the first failure, so that no pack is still writing.
+            // Packs aborted because of the failure of another aren't reported, unless nothing else failed
+            RuntimeException failure = null;
+            for (Future<Void> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (InterruptedException exception)
+                {
+                    if (failure == null)
+                    {
+                        failure = new ResourceInterruptedException("Installation cancelled");
+                    }
+                }
+                catch (ExecutionException exception)
+                {
+                    Throwable cause = exception.getCause();
+                    if (failure == null || (failure instanceof AbortedException
+                            && !(cause instanceof AbortedException)))
+                    {
+                        if (cause instanceof RuntimeException)
+                        {
+                            failure = (RuntimeException) cause;
+                        }
+                        else if (cause instanceof Error)
+                        {
+                            throw (Error) cause;
+                        }
+                        else
+                        {
+                            failure = new InstallerException("Failed to unpack packs", cause);
+                        }
+                    }
+                }
+            }
+            if (failure != null)
+            {
+                throw failure;
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            writers = pool;
+            listener = progress;
+        }
+    }
+
+    /**
+     * Unpacks a pack concurrently with others, collecting its metadata and uninstallation data.
+     * <p/>
+     * Listeners are notified in pack order: {@link InstallerListener#beforePack} and the start of the progress step
+     * follow those of the preceding packs, and {@link InstallerListener#afterPack} follows that of the preceding
+     * packs. If the pack fails, the packs still waiting to be notified are aborted.
+     *
+     * @param pack     the pack to unpack
+     * @param packNo   the pack number
+     * @param queue    the file queue, or {@code null} if queuing is not supported
+     * @param metadata used to collect the pack metadata
+     * @throws ResourceInterruptedException if unpacking is cancelled
+     * @throws IzPackException              for any error
+     */
+    private void unpack(Pack pack, int packNo, FileQueue queue, PackMetadata metadata)
+    {
+        packMetadata.set(metadata);
+        try
+        {
+            metadata.starts.await(metadata.position);
+            try
+            {
+                synchronized (listeners)
+                {
+                    listeners.beforePack(pack, packNo, listener);
+                }
+                unpack(pack, packNo, queue, metadata.parsables, metadata.executables, metadata.updateChecks);
+            }
+            finally
+            {
+                metadata.started();
+            }
+            checkInterrupt();
+            metadata.ends.await(metadata.position);
+            try
+            {
+                synchronized (listeners)
+                {
+                    listeners.afterPack(pack, packNo, listener);
+                }
+            }
+            finally
+            {
+                metadata.ends.advance();
             }
         }
+        catch (RuntimeException exception)
+        {
+            metadata.abort();
+            throw exception;
+        }
+        catch (Error error)
+        {
+            metadata.abort();
+            throw error;
+        }
+        finally
+        {
+            packMetadata.remove();
+        }
+    }
+
+    /**
+     * Unpacks a pack, notifying listeners before and after.
+     *
+     * @param pack         the pack to unpack
+     * @param packNo       the pack number
+     * @param queue        the file queue, or {@code null} if queuing is not supported
+     * @param parsables    used to collect parsable files in the pack
+     * @param executables  used to collect executable files files in the pack
+     * @param updateChecks used to collect update checks in the pack
+     * @param progress     the progress listener to pass to listeners
+     * @throws ResourceInterruptedException if unpacking is cancelled
+     * @throws IzPackException              for any error
+     */
+    private void unpack(Pack pack, int packNo, FileQueue queue, List<ParsableFile> parsables,
+                        List<ExecutableFile> executables, List<UpdateCheck> updateChecks,
+                        ProgressListener progress)
+    {
+        synchronized (listeners)
+        {
+            listeners.beforePack(pack, packNo, progress);
+        }
+        unpack(pack, packNo, queue, parsables, executables, updateChecks);
+        checkInterrupt();
+        synchronized (listeners)
+        {
+            listeners.afterPack(pack, packNo, progress);
+        }
+    }
+
+    /**
+     * Returns the indexes of the packs to unpack concurrently, starting at the specified pack.
+     * <p/>
+     * If the installation specifies concurrent packs, these are the consecutive selected
+     * {@link Pack#isIndependent() independent} packs from the specified pack, up to the first selected pack that is
+     * not independent, or whose {@link Pack#getTargets() targets}, once substituted, are shared with a preceding
+     * pack. Packs that aren't selected are skipped.
+     *
+     * @param packs the packs
+     * @param start the index of the first pack
+     * @return the indexes of the packs to unpack concurrently. May be empty
+     */
+    private List<Integer> getConcurrentPacks(List<Pack> packs, int start)
+    {
+        List<Integer> result = new ArrayList<Integer>();
+        if (installData.getInfo().isConcurrentPacks())
+        {
+            Variables variables = installData.getVariables();
+            Set<File> targets = new HashSet<File>();
+            for (int i = start; i < packs.size(); ++i)
+            {
+                Pack pack = packs.get(i);
+                if (shouldUnpack(pack))
+                {
+                    if (!pack.isIndependent() || pack.getTargets() == null)
+                    {
+                        break;
+                    }
+                    boolean distinct = true;
+                    List<File> packTargets = new ArrayList<File>();
+                    for (String target : pack.getTargets())
+                    {
+                        File file = new File(IoHelper.translatePath(target, variables)).getAbsoluteFile();
+                        if (targets.contains(file))
+                        {
+                            distinct = false;
+                            break;
+                        }
+                        packTargets.add(file);
+                    }
+                    if (!distinct)
+                    {
+                        logger.fine("Pack " + pack.getName() + " shares targets with a preceding pack");
+                        break;
+                    }
+                    targets.addAll(packTargets);
+                    result.add(i);
+                }
+            }
+        }
+        return result;
     }
 
     /**
@@ -430,20 +806,32 @@ public abstract class UnpackerBase implements IUnpacker
         {
             in = resources.getPackStream(pack.getName());
             packInputStream = new ObjectInputStream(in);
+            PackHeaderReader headers = new PackHeaderReader(packInputStream);
+
+            // the parsable files precede the files, so that they can be substituted as they are unpacked
+            List<ParsableFile> packParsables = new ArrayList<ParsableFile>();
+            readParsableFiles(packInputStream, packParsables);
+            Map<String, ParsableFile> inline = getInlineParsables(packParsables);
 
             int fileCount = packInputStream.readInt();
 
             String stepName = getStepName(pack);
             listener.nextStep(stepName, packNo + 1, fileCount);
+            PackMetadata metadata = packMetadata.get();
+            if (metadata != null)
+            {
+                // the next concurrent pack may now start its step
+                metadata.started();
+            }
 
             for (int i = 0; i < fileCount; ++i)
             {
                 // read the header
-                PackFile file = (PackFile) packInputStream.readObject();
+                PackFile file = headers.readPackFile();
                 if (shouldUnpack(file))
                 {
                     // unpack the file
-                    unpack(file, packInputStream, i, pack, queue);
+                    unpack(file, packInputStream, i, pack, queue, inline);
                 }
                 else
                 {
@@ -451,9 +839,22 @@ public abstract class UnpackerBase implements IUnpacker
                     skip(file, pack, packInputStream);
                 }
             }
-            readParsableFiles(packInputStream, parsables);
+            if (writers != null)
+            {
+                // complete queued writes before the pack is considered unpacked
+                writers.flush();
+            }
             readExecutableFiles(packInputStream, executables);
             readUpdateChecks(packInputStream, updateChecks);
+            for (ParsableFile parsable : packParsables)
+            {
+                if (parsed.get(new File(parsable.getPath()).getPath()) != parsable
+                        && !overwritten.contains(parsable))
+                {
+                    // not substituted when unpacked, so parse it once unpacking is complete
+                    parsables.add(parsable);
+                }
+            }
         }
         catch (IzPackException exception)
         {
@@ -470,6 +871,55 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Returns the parsable files that may be substituted as they are unpacked, keyed on path.
+     * <p/>
+     * Files that don't match the current platform, or that have an unsupported encoding, are excluded, as are files
+     * listed more than once. These are left to be parsed once unpacking is complete.
+     *
+     * @param parsables the parsable files of a pack
+     * @return the parsable files to substitute as they are unpacked
+     */
+    private Map<String, ParsableFile> getInlineParsables(List<ParsableFile> parsables)
+    {
+        Map<String, ParsableFile> result = new HashMap<String, ParsableFile>();
+        Set<String> duplicates = new HashSet<String>();
+        for (ParsableFile parsable : parsables)
+        {
+            String path = new File(parsable.getPath()).getPath();
+            if (result.put(path, parsable) != null)
+            {
+                duplicates.add(path);
+            }
+            List<OsModel> constraints = parsable.getOsConstraints();
+            if ((constraints != null && !constraints.isEmpty() && !matcher.matchesCurrentPlatform(constraints))
+                    || !isSupported(parsable.getEncoding()))
+            {
+                duplicates.add(path);
+            }
+        }
+        result.keySet().removeAll(duplicates);
+        return result;
+    }
+
+    /**
+     * Determines if an encoding is supported.
+     *
+     * @param encoding the encoding. May be {@code null}, indicating the default
+     * @return {@code true} if the encoding is supported
+     */
+    private boolean isSupported(String encoding)
+    {
+        try
+        {
+            return encoding == null || Charset.isSupported(encoding);
+        }
+        catch (IllegalCharsetNameException exception)
+        {
+            return false;
+        }
+    }
+
     /**
      * Determines if a file should be unpacked.
      *
@@ -498,10 +948,12 @@ public abstract class UnpackerBase implements IUnpacker
      * @param fileNo          the pack file number
      * @param pack            the pack that the pack file comes from
      * @param queue           the file queue, or {@code null} if queuing is not supported
+     * @param parsables       the parsable files that may be substituted as they are unpacked, keyed on path
      * @throws IOException     for any I/O error
      * @throws IzPackException for any other error
      */
-    protected void unpack(PackFile file, ObjectInputStream packInputStream, int fileNo, Pack pack, FileQueue queue)
+    protected void unpack(PackFile file, ObjectInputStream packInputStream, int fileNo, Pack pack, FileQueue queue,
+                          Map<String, ParsableFile> parsables)
             throws IOException
     {
         if (logger.isLoggable(Level.FINE))
@@ -522,19 +974,28 @@ public abstract class UnpackerBase implements IUnpacker
         createDirectory(dir, file, pack);
 
         // Add path to the log
-        getUninstallData().addFile(path, pack.isUninstall());
+        addFile(path, pack.isUninstall());
 
         if (file.isDirectory())
         {
             return;
         }
 
-        listeners.beforeFile(target, file, pack);
+        synchronized (listeners)
+        {
+            listeners.beforeFile(target, file, pack);
+        }
 
         listener.progress(fileNo, path);
 
+        if (writers != null && writers.isPending(target))
+        {
+            // the target is still being written by an earlier pack file
+            writers.flush();
+        }
+
         // if this file exists and should not be overwritten, check what to do
-        if (target.exists() && (file.override() != OverrideType.OVERRIDE_TRUE) && !isOverwriteFile(file, target))
+        if (exists(target) && (file.override() != OverrideType.OVERRIDE_TRUE) && !isOverwriteFile(file, target))
         {
             if (!file.isBackReference() && !pack.isLoose())
             {
@@ -551,7 +1012,12 @@ public abstract class UnpackerBase implements IUnpacker
         else
         {
             handleOverrideRename(file, target);
-            extract(file, target, packInputStream, pack, queue);
+            ParsableFile parsable = parsables.get(target.getPath());
+            if (parsable != null && !canParse(file, pack))
+            {
+                parsable = null;
+            }
+            extract(file, target, packInputStream, pack, queue, parsable);
         }
     }
 
@@ -563,18 +1029,19 @@ public abstract class UnpackerBase implements IUnpacker
      * @param packInputStream the pack file input stream
      * @param pack            the pack that the pack file comes from
      * @param queue           the file queue, or {@code null} if queuing is not supported
+     * @param parsable        if non-null, the parsable file to substitute variables in as the file is extracted
      * @throws IOException                  for any I/O error
      * @throws ResourceInterruptedException if installation is cancelled
      * @throws IzPackException              for any IzPack error
      */
-    protected void extract(PackFile file, File target, ObjectInputStream packInputStream, Pack pack, FileQueue queue)
-            throws IOException
+    protected void extract(final PackFile file, final File target, ObjectInputStream packInputStream,
+                           final Pack pack, FileQueue queue, ParsableFile parsable) throws IOException
     {
         ObjectInputStream packStream = packInputStream;
         InputStream in = null;
         try
         {
-            FileUnpacker unpacker;
+            final FileUnpacker unpacker;
 
             if (!pack.isLoose() && file.isBackReference())
             {
@@ -586,13 +1053,58 @@ public abstract class UnpackerBase implements IUnpacker
                 // but the stream header is now already read (== 4 bytes)
             }
 
-            unpacker = createFileUnpacker(file, pack, queue, cancellable);
-            unpacker.unpack(file, packStream, target);
+            if (parsable != null)
+            {
+                unpacker = new ParsableFileUnpacker(cancellable, queue, parsable, installData.getVariables());
+            }
+            else
+            {
+                unpacker = createFileUnpacker(file, pack, queue, cancellable);
+            }
+            if (writers != null)
+            {
+                unpacker.unpack(file, packStream, target, writers, new FileWriterPool.Completion()
+                {
+                    @Override
+                    public void completed()
+                    {
+                        if (!unpacker.isQueued())
+                        {
+                            synchronized (listeners)
+                            {
+                                listeners.afterFile(target, file, pack);
+                            }
+                        }
+                    }
+                });
+            }
+            else
+            {
+                unpacker.unpack(file, packStream, target);
+            }
             checkInterrupt();
 
-            if (!unpacker.isQueued())
+            String path = target.getPath();
+            if (parsable != null && ((ParsableFileUnpacker) unpacker).isResolved())
             {
-                listeners.afterFile(target, file, pack);
+                parsed.put(path, parsable);
+            }
+            else
+            {
+                ParsableFile previous = parsed.remove(path);
+                if (previous != null && previous != parsable)
+                {
+                    // substituted by an earlier pack, but since overwritten
+                    overwritten.add(previous);
+                }
+            }
+
+            if (writers == null && !unpacker.isQueued())
+            {
+                synchronized (listeners)
+                {
+                    listeners.afterFile(target, file, pack);
+                }
             }
         }
         finally
@@ -626,6 +1138,22 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Determines if variables in a parsable pack file can be substituted as it is extracted.
+     * <p/>
+     * This is only supported for files read directly from the pack stream, no longer than
+     * {@link ParsableFileUnpacker#MAX_LENGTH}.
+     *
+     * @param file the pack file
+     * @param pack the parent pack
+     * @return {@code true} if the file can be substituted as it is extracted, {@code false} if it must be parsed
+     *         once unpacking is complete
+     */
+    protected boolean canParse(PackFile file, Pack pack)
+    {
+        return !pack.isLoose() && !file.isPack200Jar() && file.length() <= ParsableFileUnpacker.MAX_LENGTH;
+    }
+
     /**
      * Creates an unpacker to unpack a pack file.
      *
@@ -728,6 +1256,50 @@ public abstract class UnpackerBase implements IUnpacker
         return uninstallData;
     }
 
+    /**
+     * Adds an installed file to the uninstallation data.
+     * <p/>
+     * If the current thread is unpacking a pack concurrently with others, the file is added once unpacking is
+     * complete, in pack order.
+     *
+     * @param path      the file path
+     * @param uninstall determines if the file should be removed on uninstallation
+     */
+    private void addFile(String path, boolean uninstall)
+    {
+        PackMetadata metadata = packMetadata.get();
+        if (metadata != null)
+        {
+            metadata.files.add(path);
+            metadata.uninstall.add(uninstall);
+        }
+        else
+        {
+            getUninstallData().addFile(path, uninstall);
+        }
+    }
+
+    /**
+     * Adds an executable to run on uninstallation to the uninstallation data.
+     * <p/>
+     * If the current thread is unpacking a pack concurrently with others, the executable is added once unpacking
+     * is complete, in pack order.
+     *
+     * @param file the executable
+     */
+    private void addExecutable(ExecutableFile file)
+    {
+        PackMetadata metadata = packMetadata.get();
+        if (metadata != null)
+        {
+            metadata.uninstallExecutables.add(file);
+        }
+        else
+        {
+            getUninstallData().addExecutable(file);
+        }
+    }
+
     /**
      * Returns the pack resources.
      *
@@ -823,12 +1395,20 @@ public abstract class UnpackerBase implements IUnpacker
      */
     protected void createDirectory(File dir, PackFile file, Pack pack)
     {
+        if (directories.contains(dir))
+        {
+            return;
+        }
         if (!dir.exists())
         {
             if (!listeners.isFileListener())
             {
-                // Create it in one step.
-                if (!dir.mkdirs())
+                // Create it in one step. Another pack may be creating it concurrently
+                if (dir.mkdirs())
+                {
+                    createdDirectories.add(dir);
+                }
+                else if (!dir.isDirectory())
                 {
                     throw new IzPackException("Could not create directory: " + dir.getPath());
                 }
@@ -840,14 +1420,40 @@ public abstract class UnpackerBase implements IUnpacker
                 {
                     createDirectory(parent, file, pack);
                 }
-                listeners.beforeDir(dir, file, pack);
-                if (!dir.mkdir())
+                synchronized (listeners)
                 {
-                    throw new IzPackException("Could not create directory: " + dir.getPath());
+                    listeners.beforeDir(dir, file, pack);
+                    if (dir.mkdir())
+                    {
+                        createdDirectories.add(dir);
+                    }
+                    else if (!dir.isDirectory())
+                    {
+                        throw new IzPackException("Could not create directory: " + dir.getPath());
+                    }
+                    listeners.afterDir(dir, file, pack);
                 }
-                listeners.afterDir(dir, file, pack);
             }
         }
+        directories.add(dir);
+    }
+
+    /**
+     * Determines if a file being unpacked exists.
+     * <p/>
+     * Files unpacked to directories created by the unpacker are only probed if they have been unpacked before.
+     *
+     * @param target the file
+     * @return <tt>true</tt> if the file exists
+     */
+    private boolean exists(File target)
+    {
+        File parent = target.getParentFile();
+        if (parent != null && createdDirectories.contains(parent) && createdFiles.add(target.getPath()))
+        {
+            return false;
+        }
+        return target.exists();
     }
 
     /**
@@ -1254,7 +1860,7 @@ public abstract class UnpackerBase implements IUnpacker
      */
     protected void handleOverrideRename(PackFile pf, File file)
     {
-        if (file.exists() && pf.overrideRenameTo() != null)
+        if (pf.overrideRenameTo() != null && file.exists())
         {
             GlobPatternMapper mapper = new GlobPatternMapper();
             mapper.setFrom("*");
@@ -1297,10 +1903,11 @@ public abstract class UnpackerBase implements IUnpacker
     protected void readParsableFiles(ObjectInputStream stream, List<ParsableFile> parsables)
             throws IOException, ClassNotFoundException
     {
+        PackHeaderReader headers = new PackHeaderReader(stream);
         int count = stream.readInt();
         for (int i = 0; i < count; ++i)
         {
-            ParsableFile file = (ParsableFile) stream.readObject();
+            ParsableFile file = headers.readParsableFile();
             if (!file.hasCondition() || isConditionTrue(file.getCondition()))
             {
                 String path = IoHelper.translatePath(file.getPath(), installData.getVariables());
@@ -1322,10 +1929,11 @@ public abstract class UnpackerBase implements IUnpacker
             throws IOException, ClassNotFoundException
     {
         // Load information about executable files
+        PackHeaderReader headers = new PackHeaderReader(stream);
         int count = stream.readInt();
         for (int i = 0; i < count; ++i)
         {
-            ExecutableFile file = (ExecutableFile) stream.readObject();
+            ExecutableFile file = headers.readExecutableFile();
             if (!file.hasCondition() || isConditionTrue(file.getCondition()))
             {
                 Variables variables = installData.getVariables();
@@ -1342,7 +1950,7 @@ public abstract class UnpackerBase implements IUnpacker
                 executables.add(file);
                 if (file.executionStage == ExecutableFile.UNINSTALL)
                 {
-                    uninstallData.addExecutable(file);
+                    addExecutable(file);
                 }
             }
         }
@@ -1359,10 +1967,11 @@ public abstract class UnpackerBase implements IUnpacker
     protected void readUpdateChecks(ObjectInputStream stream, List<UpdateCheck> updateChecks)
             throws IOException, ClassNotFoundException
     {
+        PackHeaderReader headers = new PackHeaderReader(stream);
         int count = stream.readInt();
         for (int i = 0; i < count; ++i)
         {
-            UpdateCheck check = (UpdateCheck) stream.readObject();
+            UpdateCheck check = headers.readUpdateCheck();
             updateChecks.add(check);
         }
     }
@@ -1381,6 +1990,197 @@ public abstract class UnpackerBase implements IUnpacker
         return unpacker;
     }
 
+    /**
+     * Orders the notifications of packs unpacked concurrently.
+     * <p/>
+     * Each pack waits for the notifications of the packs that precede it.
+     */
+    private static class Sequence
+    {
 
-}
+        /**
+         * The position of the next pack to notify.
+         */
+        private int next;
+
+        /**
+         * Determines if notification has been aborted, due to the failure of a pack.
+         */
+        private boolean aborted;
+
+        /**
+         * Waits for the packs preceding the specified position to be notified.
+         *
+         * @param position the position of the pack
+         * @throws AbortedException             if notification was aborted
+         * @throws ResourceInterruptedException if the thread is interrupted
+         */
+        public synchronized void await(int position)
+        {
+            while (next < position && !aborted)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException exception)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new ResourceInterruptedException("Installation cancelled");
+                }
+            }
+            if (aborted)
+            {
+                throw new AbortedException();
+            }
+        }
+
+        /**
+         * Invoked when a pack has been notified, to allow the next pack to be notified.
+         */
+        public synchronized void advance()
+        {
+            ++next;
+            notifyAll();
+        }
+
+        /**
+         * Aborts notification, releasing any waiting packs.
+         */
+        public synchronized void abort()
+        {
+            aborted = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Thrown when a pack unpacked concurrently is aborted, due to the failure of another.
+     */
+    private static class AbortedException extends InstallerException
+    {
+
+        private static final long serialVersionUID = -4513722619530924385L;
+
+        /**
+         * Constructs an <tt>AbortedException</tt>.
+         */
+        public AbortedException()
+        {
+            super("Unpacking aborted");
+        }
+    }
+
+    /**
+     * Collects the metadata of a pack unpacked concurrently, so it can be processed in pack order.
+     */
+    private static class PackMetadata
+    {
+
+        /**
+         * Orders the start of the packs.
+         */
+        private final Sequence starts;
+
+        /**
+         * Orders the completion of the packs.
+         */
+        private final Sequence ends;
+
+        /**
+         * The position of the pack amongst those unpacked concurrently.
+         */
+        private final int position;
+
+        /**
+         * Determines if the pack has started its step.
+         */
+        private boolean started;
+
+        /**
+         * The parsable files.
+         */
+        private final List<ParsableFile> parsables = new ArrayList<ParsableFile>();
+
+        /**
+         * The executable files.
+         */
+        private final List<ExecutableFile> executables = new ArrayList<ExecutableFile>();
+
+        /**
+         * The update checks.
+         */
+        private final List<UpdateCheck> updateChecks = new ArrayList<UpdateCheck>();
+
+        /**
+         * The paths of the installed files.
+         */
+        private final List<String> files = new ArrayList<String>();
+
+        /**
+         * Determines if each installed file should be removed on uninstallation.
+         */
+        private final List<Boolean> uninstall = new ArrayList<Boolean>();
+
+        /**
+         * The executables to run on uninstallation.
+         */
+        private final List<ExecutableFile> uninstallExecutables = new ArrayList<ExecutableFile>();
+
+        /**
+         * Constructs a <tt>PackMetadata</tt>.
+         *
+         * @param starts   orders the start of the packs
+         * @param ends     orders the completion of the packs
+         * @param position the position of the pack amongst those unpacked concurrently
+         */
+        public PackMetadata(Sequence starts, Sequence ends, int position)
+        {
+            this.starts = starts;
+            this.ends = ends;
+            this.position = position;
+        }
+
+        /**
+         * Invoked when the pack has started its step, allowing the next pack to start.
+         * <p/>
+         * This only has an effect the first time it is invoked.
+         */
+        public void started()
+        {
+            if (!started)
+            {
+                started = true;
+                starts.advance();
+            }
+        }
+
+        /**
+         * Aborts the notification of the packs still waiting.
+         */
+        public void abort()
+        {
+            started();
+            starts.abort();
+            ends.abort();
+        }
 
+        /**
+         * Adds the installed files and uninstall executables to the uninstallation data.
+         *
+         * @param uninstallData the uninstallation data
+         */
+        public void addTo(UninstallData uninstallData)
+        {
+            for (int i = 0; i < files.size(); ++i)
+            {
+                uninstallData.addFile(files.get(i), uninstall.get(i));
+            }
+            for (ExecutableFile file : uninstallExecutables)
+            {
+                uninstallData.addExecutable(file);
+            }
+        }
+    }
+
+}
@@ -35,7 +35,7 @@ public class FileQueue
      *
      * @param op the operation (copy/move/delete)
      */
-    public void add(FileQueueOperation op)
+    public synchronized void add(FileQueueOperation op)
     {
         operations.add(op);
     }
@@ -0,0 +1,130 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * Tests the {@link SkeletonJarOutputStream} class.
+ */
+public class SkeletonJarOutputStreamTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that the skeleton entries are retained, new entries are appended, and entries duplicating skeleton
+     * entries are discarded.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testWrite() throws IOException
+    {
+        ByteArrayOutputStream skeleton = new ByteArrayOutputStream();
+        JarOutputStream jar = new JarOutputStream(skeleton);
+        write(jar, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n");
+        write(jar, "com/acme/Uninstaller.class", "uninstaller");
+        jar.close();
+
+        File file = temporaryFolder.newFile("uninstaller.jar");
+        jar = new SkeletonJarOutputStream(new FileOutputStream(file), skeleton.toByteArray());
+        jar.setLevel(9);
+        write(jar, "install.log", "/opt/app");
+        write(jar, "com/acme/Uninstaller.class", "duplicate");
+        jar.putNextEntry(new JarEntry("executables"));
+        jar.write(new byte[]{1, 2, 3});
+        jar.close();
+
+        ZipFile zip = new ZipFile(file);
+        assertEquals(4, zip.size());
+        assertEquals("Manifest-Version: 1.0\r\n", read(zip, "META-INF/MANIFEST.MF"));
+        assertEquals("uninstaller", read(zip, "com/acme/Uninstaller.class"));
+        assertEquals("/opt/app", read(zip, "install.log"));
+        assertEquals(3, zip.getEntry("executables").getSize());
+        zip.close();
+
+        // verify the local entries can also be read sequentially
+        ZipInputStream in = new ZipInputStream(new FileInputStream(file));
+        int count = 0;
+        while (in.getNextEntry() != null)
+        {
+            ++count;
+        }
+        in.close();
+        assertEquals(4, count);
+    }
+
+    /**
+     * Writes an entry.
+     *
+     * @param jar     the jar to write to
+     * @param name    the entry name
+     * @param content the entry content
+     * @throws IOException for any I/O error
+     */
+    private void write(JarOutputStream jar, String name, String content) throws IOException
+    {
+        jar.putNextEntry(new JarEntry(name));
+        jar.write(content.getBytes("UTF-8"));
+        jar.closeEntry();
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @param zip  the zip file
+     * @param name the entry name
+     * @return the entry content
+     * @throws IOException for any I/O error
+     */
+    private String read(ZipFile zip, String name) throws IOException
+    {
+        ZipEntry entry = zip.getEntry(name);
+        InputStream in = zip.getInputStream(entry);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IoHelper.copyStream(in, out);
+        in.close();
+        return out.toString("UTF-8");
+    }
+}
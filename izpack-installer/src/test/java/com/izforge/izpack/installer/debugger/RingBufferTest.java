@@ -0,0 +1,72 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link RingBuffer} class.
+ */
+public class RingBufferTest
+{
+
+    /**
+     * Verifies that the oldest elements are discarded once the buffer is full.
+     */
+    @Test
+    public void testAdd()
+    {
+        RingBuffer<String> buffer = new RingBuffer<String>(3);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.getLast());
+
+        buffer.add("a");
+        buffer.add("b");
+        assertEquals(2, buffer.size());
+        assertEquals("a", buffer.get(0));
+        assertEquals("b", buffer.getLast());
+
+        buffer.add("c");
+        buffer.add("d");
+        buffer.add("e");
+        assertEquals(3, buffer.size());
+        assertEquals(5, buffer.getAdded());
+        assertEquals("c", buffer.get(0));
+        assertEquals("d", buffer.get(1));
+        assertEquals("e", buffer.get(2));
+        assertEquals("e", buffer.getLast());
+    }
+
+    /**
+     * Verifies that an {@link IndexOutOfBoundsException} is thrown for an index outside the retained elements.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfRange()
+    {
+        RingBuffer<String> buffer = new RingBuffer<String>(2);
+        buffer.add("a");
+        buffer.get(1);
+    }
+}
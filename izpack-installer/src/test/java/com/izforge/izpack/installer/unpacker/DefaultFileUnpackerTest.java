@@ -22,6 +22,10 @@
 package com.izforge.izpack.installer.unpacker;
 
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -29,8 +33,16 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
 
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.Platforms;
 import com.izforge.izpack.util.os.FileQueue;
 
 
@@ -42,6 +54,102 @@ import com.izforge.izpack.util.os.FileQueue;
 public class DefaultFileUnpackerTest extends AbstractFileUnpackerTest
 {
 
+    /**
+     * Verifies that files written by a {@link FileWriterPool} are complete, and that completions are invoked in the
+     * order the files were unpacked.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPipelinedUnpack() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        FileWriterPool writers = new FileWriterPool(4, 1024);
+        final List<String> completed = new ArrayList<String>();
+        List<File> sources = new ArrayList<File>();
+        List<File> targets = new ArrayList<File>();
+        try
+        {
+            for (int i = 0; i < 20; ++i)
+            {
+                File source = createSourceFile(baseDir, "source" + i + ".txt", i * 100);
+                final File target = new File(baseDir, "target" + i + ".txt");
+                sources.add(source);
+                targets.add(target);
+                PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+                FileUnpacker unpacker = createUnpacker(baseDir, null);
+                unpacker.unpack(file, createPackStream(source), target, writers, new FileWriterPool.Completion()
+                {
+                    @Override
+                    public void completed()
+                    {
+                        assertTrue(target.exists());
+                        completed.add(target.getName());
+                    }
+                });
+            }
+            writers.flush();
+        }
+        finally
+        {
+            writers.shutdown();
+        }
+
+        assertEquals(20, completed.size());
+        for (int i = 0; i < 20; ++i)
+        {
+            assertEquals("target" + i + ".txt", completed.get(i));
+            checkTarget(sources.get(i), targets.get(i));
+        }
+    }
+
+    /**
+     * Verifies that blockable files written by a {@link FileWriterPool} are queued in the order they were unpacked.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPipelinedQueue() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        final FileQueue queue = new FileQueueFactory(Platforms.WINDOWS, getLibrarian()).create();
+        FileWriterPool writers = new FileWriterPool(4);
+        final List<String> completed = new ArrayList<String>();
+        try
+        {
+            for (int i = 0; i < 10; ++i)
+            {
+                // write the larger files first, so that later writes tend to finish earlier
+                File source = createSourceFile(baseDir, "source" + i + ".txt", 1000 - i * 100);
+                final File target = new File(baseDir, "target" + i + ".txt");
+                PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_FORCE);
+                final FileUnpacker unpacker = createUnpacker(baseDir, queue);
+                unpacker.unpack(file, createPackStream(source), target, writers, new FileWriterPool.Completion()
+                {
+                    @Override
+                    public void completed()
+                    {
+                        assertTrue(unpacker.isQueued());
+                        completed.add(target.getName());
+                        assertEquals(completed.size(), queue.getOperations().size());
+                    }
+                });
+                assertFalse(target.exists());
+            }
+            writers.flush();
+        }
+        finally
+        {
+            writers.shutdown();
+        }
+
+        assertEquals(10, queue.getOperations().size());
+        for (int i = 0; i < 10; ++i)
+        {
+            assertEquals("target" + i + ".txt", completed.get(i));
+        }
+    }
+
     /**
      * Creates a pack file stream.
      *
@@ -71,4 +179,25 @@ public class DefaultFileUnpackerTest extends AbstractFileUnpackerTest
         return new DefaultFileUnpacker(getCancellable(), queue);
     }
 
+    /**
+     * Creates a source file.
+     *
+     * @param baseDir the base directory
+     * @param name    the file name
+     * @param lines   the no. of lines to write
+     * @return the source file
+     * @throws IOException for any I/O error
+     */
+    private File createSourceFile(File baseDir, String name, int lines) throws IOException
+    {
+        File file = new File(baseDir, name);
+        PrintWriter writer = new PrintWriter(file);
+        for (int i = 0; i < lines; ++i)
+        {
+            writer.println(name + " line " + i);
+        }
+        writer.close();
+        return file;
+    }
+
 }
@@ -0,0 +1,175 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * Tests the {@link ParsableFileUnpacker} class.
+ */
+public class ParsableFileUnpackerTest extends AbstractFileUnpackerTest
+{
+
+    /**
+     * The variables.
+     */
+    private final Variables variables = new DefaultVariables();
+
+    /**
+     * Verifies that variables are substituted as the file is unpacked, and that only the file payload is read from
+     * the pack stream.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSubstitute() throws Exception
+    {
+        variables.set("INSTALL_PATH", "/opt/app");
+        variables.set("APP_VER", "5.0");
+
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir, "path=${INSTALL_PATH}\nversion=$APP_VER\n");
+        File target = getTargetFile(baseDir);
+
+        ParsableFileUnpacker unpacker = (ParsableFileUnpacker) createUnpacker(baseDir, null);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        ObjectInputStream packStream = createPackStream(source);
+        unpacker.unpack(file, packStream, target);
+
+        assertTrue(unpacker.isResolved());
+        assertEquals("path=/opt/app\nversion=5.0\n", getContent(target));
+        assertEquals(source.lastModified(), target.lastModified());
+        assertEquals(-1, packStream.readInt());
+    }
+
+    /**
+     * Verifies that a file referring to undefined variables is written unchanged and flagged as unresolved, so that
+     * values containing variable references aren't substituted twice when it is parsed again.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnresolved() throws Exception
+    {
+        variables.set("INSTALL_PATH", "/opt/$APP_HOME");
+
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir, "path=${INSTALL_PATH}\nhome=${APP_HOME}\n");
+        File target = getTargetFile(baseDir);
+
+        ParsableFileUnpacker unpacker = (ParsableFileUnpacker) createUnpacker(baseDir, null);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        unpacker.unpack(file, createPackStream(source), target);
+
+        assertFalse(unpacker.isResolved());
+        assertEquals("path=${INSTALL_PATH}\nhome=${APP_HOME}\n", getContent(target));
+    }
+
+    /**
+     * Creates a pack file stream. The file content is followed by an <tt>int</tt> marker, which must not be
+     * consumed by the unpacker.
+     *
+     * @param source the source
+     * @return a new stream
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected ObjectInputStream createPackStream(File source) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+        FileInputStream in = new FileInputStream(source);
+        IoHelper.copyStream(in, objectOut);
+        in.close();
+        objectOut.writeInt(-1);
+        objectOut.close();
+        return new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Helper to create an unpacker.
+     *
+     * @param sourceDir the source directory
+     * @param queue     the file queue. May be {@code null}
+     * @return a new unpacker
+     */
+    @Override
+    protected FileUnpacker createUnpacker(File sourceDir, FileQueue queue)
+    {
+        ParsableFile parsable = new ParsableFile("target.txt", SubstitutionType.TYPE_PLAIN, null, null);
+        return new ParsableFileUnpacker(getCancellable(), queue, parsable, variables);
+    }
+
+    /**
+     * Creates a source file with the specified content.
+     *
+     * @param baseDir the base directory
+     * @param content the file content
+     * @return the source file
+     * @throws IOException for any I/O error
+     */
+    private File createSourceFile(File baseDir, String content) throws IOException
+    {
+        File file = new File(baseDir, "source.txt");
+        PrintWriter writer = new PrintWriter(file, "UTF-8");
+        writer.print(content);
+        writer.close();
+        return file;
+    }
+
+    /**
+     * Returns the content of a file as a string.
+     *
+     * @param file the file
+     * @return the file content
+     * @throws IOException for any I/O error
+     */
+    private String getContent(File file) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileInputStream in = new FileInputStream(file);
+        IoHelper.copyStream(in, out);
+        in.close();
+        return out.toString("UTF-8");
+    }
+}
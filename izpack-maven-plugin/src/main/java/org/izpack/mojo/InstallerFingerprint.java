@@ -0,0 +1,261 @@
+package org.izpack.mojo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Fingerprint of the inputs of an installer compilation, used to determine if an installer is up to date.
+ * <p/>
+ * Values and file contents are added to a SHA-256 digest. Directories contribute the relative path, length and
+ * modification time of each file they contain, so that a staging directory can be checked without reading it.
+ */
+class InstallerFingerprint
+{
+
+    /**
+     * The digest algorithm.
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * The encoding used to add values to the digest.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * The digest.
+     */
+    private final MessageDigest digest;
+
+
+    /**
+     * Constructs an <tt>InstallerFingerprint</tt>.
+     *
+     * @throws IOException if the digest algorithm is not available
+     */
+    public InstallerFingerprint() throws IOException
+    {
+        try
+        {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IOException("Failed to create " + ALGORITHM + " digest", exception);
+        }
+    }
+
+    /**
+     * Adds a named value.
+     *
+     * @param name  the value name
+     * @param value the value. May be <tt>null</tt>
+     */
+    public void add(String name, Object value)
+    {
+        update(name + "=" + value + "\n");
+    }
+
+    /**
+     * Adds properties, in name order.
+     *
+     * @param properties the properties
+     */
+    public void add(Properties properties)
+    {
+        for (String name : new TreeSet<String>(properties.stringPropertyNames()))
+        {
+            add(name, properties.getProperty(name));
+        }
+    }
+
+    /**
+     * Adds the content of a file.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be read
+     */
+    public void addContent(File file) throws IOException
+    {
+        add("file", file.getAbsolutePath());
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Adds the path, length and modification time of a file.
+     *
+     * @param file the file
+     */
+    public void addFile(File file)
+    {
+        add("file", file.getAbsolutePath());
+        add("length", file.length());
+        add("modified", file.lastModified());
+    }
+
+    /**
+     * Adds the relative paths, lengths and modification times of the files in a directory, and its
+     * subdirectories.
+     *
+     * @param dir      the directory. If it doesn't exist, nothing is added
+     * @param excluded files to ignore
+     */
+    public void addDirectory(File dir, Set<File> excluded)
+    {
+        add("dir", dir.getAbsolutePath());
+        addDirectory(dir, "", excluded);
+    }
+
+    /**
+     * Adds the location, length and modification time of the jar or directory containing a class.
+     * <p/>
+     * This identifies the version of the code, even between builds of the same snapshot version.
+     *
+     * @param type the class
+     */
+    public void addCodeSource(Class<?> type)
+    {
+        CodeSource source = type.getProtectionDomain().getCodeSource();
+        URL location = (source != null) ? source.getLocation() : null;
+        add("code", location);
+        if (location != null && "file".equals(location.getProtocol()))
+        {
+            try
+            {
+                addFile(new File(location.toURI()));
+            }
+            catch (URISyntaxException ignore)
+            {
+                // the location is sufficient
+            }
+        }
+    }
+
+    /**
+     * Returns the fingerprint.
+     *
+     * @return the fingerprint, as a hexadecimal string
+     */
+    public String getValue()
+    {
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            result.append(Character.forDigit((b >> 4) & 0xF, 16));
+            result.append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Reads a fingerprint previously written by {@link #write}.
+     *
+     * @param file the file to read
+     * @return the fingerprint, or <tt>null</tt> if the file doesn't exist or cannot be read
+     */
+    public static String read(File file)
+    {
+        if (file.isFile())
+        {
+            try
+            {
+                return FileUtils.fileRead(file, ENCODING).trim();
+            }
+            catch (IOException ignore)
+            {
+                // treat as out of date
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes a fingerprint.
+     *
+     * @param file        the file to write to
+     * @param fingerprint the fingerprint
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, String fingerprint) throws IOException
+    {
+        FileUtils.fileWrite(file.getPath(), ENCODING, fingerprint);
+    }
+
+    /**
+     * Adds the files in a directory, recursively, in name order.
+     *
+     * @param dir      the directory
+     * @param path     the path of the directory relative to the root directory
+     * @param excluded files to ignore
+     */
+    private void addDirectory(File dir, String path, Set<File> excluded)
+    {
+        File[] files = dir.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files)
+        {
+            if (excluded.contains(file.getAbsoluteFile()))
+            {
+                continue;
+            }
+            String name = path + file.getName();
+            if (file.isDirectory())
+            {
+                add(name, "/");
+                addDirectory(file, name + "/", excluded);
+            }
+            else
+            {
+                add(name, file.length() + ":" + file.lastModified());
+            }
+        }
+    }
+
+    /**
+     * Adds a string to the digest.
+     *
+     * @param value the string
+     */
+    private void update(String value)
+    {
+        try
+        {
+            digest.update(value.getBytes(ENCODING));
+        }
+        catch (UnsupportedEncodingException exception)
+        {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package org.izpack.mojo;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Developer;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -48,7 +53,7 @@ public class IzPackNewMojo extends AbstractMojo
     private MavenProjectHelper projectHelper;
 
     /**
-     * Format compression. Choices are bzip2, default
+     * Format compression. Choices are bzip2, block, default
      *
      * @parameter default-value="default"
      */
@@ -97,6 +102,37 @@ public class IzPackNewMojo extends AbstractMojo
      */
     private int comprLevel;
 
+    /**
+     * Number of threads used to compress packs. Packs are compressed one after another by default (1)
+     *
+     * @parameter default-value="1"
+     */
+    private int packThreads;
+
+    /**
+     * Directory used to cache compressed packs between builds, so that unchanged packs are not compressed again.
+     * Packs are not cached by default
+     *
+     * @parameter
+     */
+    private File packCacheDirectory;
+
+    /**
+     * Maximum size of the pack cache in megabytes. Once exceeded, the least recently used packs are removed from it.
+     * The size is unlimited by default (0)
+     *
+     * @parameter default-value="0"
+     */
+    private int packCacheSize;
+
+    /**
+     * Whether to compress packs in independently inflatable blocks, so that the installer can seek to files shared
+     * between packs. Packs compressed in parallel always use blocks. Disabled by default
+     *
+     * @parameter default-value="false"
+     */
+    private boolean blockCompression;
+
     /**
      * Whether to automatically include project.url from Maven into
      * IzPack info header
@@ -159,6 +195,25 @@ public class IzPackNewMojo extends AbstractMojo
      */
     private boolean enableOverrideArtifact;
 
+    /**
+     * Whether to skip compilation if the installer jar exists, and the install descriptor, properties, staging
+     * directory contents, configuration, plugin and project dependencies are unchanged since it was compiled.
+     * <p/>
+     * Files the install descriptor references from outside the staging directory are not checked, so this is
+     * disabled by default.
+     *
+     * @parameter expression="${izpack.skipUpToDate}" default-value="false"
+     */
+    private boolean skipUpToDate;
+
+    /**
+     * The plugin dependencies, which may supply custom panels, listeners and conditions.
+     *
+     * @parameter expression="${plugin.artifacts}"
+     * @readonly
+     */
+    private List<Artifact> pluginArtifacts;
+
 
     public void execute() throws MojoExecutionException, MojoFailureException
     {
@@ -175,13 +230,38 @@ public class IzPackNewMojo extends AbstractMojo
         PropertyManager propertyManager = compilerContainer.getComponent(PropertyManager.class);
         initMavenProperties(propertyManager);
 
-        try
+        File fingerprintFile = new File(jarFile.getPath() + ".fingerprint");
+        String fingerprint = null;
+        if (skipUpToDate)
         {
-            compilerConfig.executeCompiler();
+            fingerprint = getFingerprint(jarFile, fingerprintFile, propertyManager.getProperties());
         }
-        catch (Exception e)
+        if (fingerprint != null && jarFile.isFile() && fingerprint.equals(InstallerFingerprint.read(fingerprintFile)))
         {
-            throw new AssertionError(e);
+            getLog().info("Installer is up to date: " + jarFile);
+        }
+        else
+        {
+            fingerprintFile.delete();
+            try
+            {
+                compilerConfig.executeCompiler();
+            }
+            catch (Exception e)
+            {
+                throw new AssertionError(e);
+            }
+            if (fingerprint != null)
+            {
+                try
+                {
+                    InstallerFingerprint.write(fingerprintFile, fingerprint);
+                }
+                catch (IOException e)
+                {
+                    getLog().warn("Failed to write " + fingerprintFile + ": " + e.getMessage());
+                }
+            }
         }
 
         if (classifier != null && !classifier.isEmpty())
@@ -233,6 +313,89 @@ public class IzPackNewMojo extends AbstractMojo
         return file;
     }
 
+    /**
+     * Returns the fingerprint of the compilation inputs.
+     *
+     * @param jarFile         the installer jar
+     * @param fingerprintFile the file the fingerprint is stored in
+     * @param properties      the properties available to the install descriptor
+     * @return the fingerprint
+     * @throws MojoExecutionException if the install descriptor cannot be read
+     */
+    private String getFingerprint(File jarFile, File fingerprintFile, Properties properties)
+            throws MojoExecutionException
+    {
+        try
+        {
+            InstallerFingerprint result = new InstallerFingerprint();
+            result.add("version", CompilerData.IZPACK_VERSION);
+            result.addCodeSource(IzPackNewMojo.class);
+            result.addCodeSource(CompilerConfig.class);
+            result.add("comprFormat", comprFormat);
+            result.add("kind", kind);
+            result.add("comprLevel", comprLevel);
+            result.add("packThreads", packThreads);
+            result.add("packCacheDirectory", packCacheDirectory);
+            result.add("blockCompression", blockCompression);
+            result.add("output", jarFile.getAbsolutePath());
+            if (project != null)
+            {
+                result.add("autoIncludeUrl", autoIncludeUrl ? project.getUrl() : null);
+                if (autoIncludeDevelopers && project.getDevelopers() != null)
+                {
+                    for (Developer dev : (List<Developer>) project.getDevelopers())
+                    {
+                        result.add("developer", dev.getName() + " <" + dev.getEmail() + ">");
+                    }
+                }
+            }
+            addArtifacts(result, "plugin", pluginArtifacts);
+            if (project != null)
+            {
+                addArtifacts(result, "project", project.getArtifacts());
+            }
+            result.addContent(new File(installFile));
+            result.add(properties);
+
+            // the output may be written to the staging directory
+            Set<File> excluded = new HashSet<File>();
+            excluded.add(jarFile.getAbsoluteFile());
+            excluded.add(fingerprintFile.getAbsoluteFile());
+            if (packCacheDirectory != null)
+            {
+                excluded.add(packCacheDirectory.getAbsoluteFile());
+            }
+            result.addDirectory(new File(baseDir), excluded);
+            return result.getValue();
+        }
+        catch (IOException e)
+        {
+            throw new MojoExecutionException("Failed to determine if " + jarFile + " is up to date", e);
+        }
+    }
+
+    /**
+     * Adds the files of resolved artifacts to a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @param name        the name to add the files under
+     * @param artifacts   the artifacts. May be <tt>null</tt>
+     */
+    private void addArtifacts(InstallerFingerprint fingerprint, String name, Collection<Artifact> artifacts)
+    {
+        if (artifacts != null)
+        {
+            for (Artifact artifact : artifacts)
+            {
+                fingerprint.add(name, artifact.getId());
+                if (artifact.getFile() != null)
+                {
+                    fingerprint.addFile(artifact.getFile());
+                }
+            }
+        }
+    }
+
     private void initMavenProperties(PropertyManager propertyManager)
     {
         if (project != null)
@@ -274,8 +437,16 @@ public class IzPackNewMojo extends AbstractMojo
                 info.setAppURL(project.getUrl());
             }
         }
-        return new CompilerData(comprFormat, kind, installFile, null, baseDir, jarFile.getPath(),
-                                mkdirs, comprLevel, info);
+        CompilerData compilerData = new CompilerData(comprFormat, kind, installFile, null, baseDir,
+                                                     jarFile.getPath(), mkdirs, comprLevel, info);
+        compilerData.setPackThreads(packThreads);
+        compilerData.setBlockCompression(blockCompression);
+        if (packCacheDirectory != null)
+        {
+            compilerData.setPackCacheDir(packCacheDirectory.getPath());
+            compilerData.setPackCacheSize(packCacheSize);
+        }
+        return compilerData;
     }
 
 }
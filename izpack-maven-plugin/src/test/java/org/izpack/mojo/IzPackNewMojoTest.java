@@ -78,6 +78,37 @@ public class IzPackNewMojoTest extends AbstractMojoTestCase {
         assertThat( file.exists(), Is.is( true ) );
     }
 
+    @Test
+    public void testSkipUpToDate() throws Exception {
+        File file = new File( "target/sample/izpackUpToDate.jar" );
+        file.delete();
+
+        File testPom = new File( Thread.currentThread().getContextClassLoader().getResource( "basic-pom.xml" ).toURI() );
+        IzPackNewMojo mojo = (IzPackNewMojo)lookupMojo( "izpack", testPom );
+        initIzpackMojo( mojo );
+        setVariableValueToObject( mojo, "output", file.getPath() );
+        setVariableValueToObject( mojo, "skipUpToDate", true );
+        mojo.execute();
+        assertThat( file.exists(), Is.is( true ) );
+        assertThat( new File( file.getPath() + ".fingerprint" ).exists(), Is.is( true ) );
+
+        // nothing has changed, so the installer shouldn't be compiled again
+        assertThat( file.setLastModified( 0 ), Is.is( true ) );
+        mojo.execute();
+        assertThat( file.lastModified(), Is.is( 0L ) );
+
+        // the configuration has changed
+        setVariableValueToObject( mojo, "comprLevel", 9 );
+        mojo.execute();
+        assertThat( file.lastModified() != 0, Is.is( true ) );
+
+        // compilation is forced if the check is disabled
+        assertThat( file.setLastModified( 0 ), Is.is( true ) );
+        setVariableValueToObject( mojo, "skipUpToDate", false );
+        mojo.execute();
+        assertThat( file.lastModified() != 0, Is.is( true ) );
+    }
+
     private void initIzpackMojo( IzPackNewMojo mojo ) throws IllegalAccessException {
         File installFile = new File( "target/test-classes/helloAndFinish.xml" );
         setVariableValueToObject( mojo, "comprFormat", "default" );
@@ -0,0 +1,107 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.io.HeaderReader;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * Reads pack headers written by {@link PackHeaderWriter}.
+ *
+ * @see PackHeaderWriter
+ */
+public class PackHeaderReader extends HeaderReader
+{
+
+    /**
+     * Constructs a <tt>PackHeaderReader</tt>.
+     *
+     * @param in the input to read from
+     */
+    public PackHeaderReader(DataInput in)
+    {
+        super(in);
+    }
+
+    /**
+     * Reads a parsable file header.
+     *
+     * @return the parsable file
+     * @throws IOException for any I/O error, or if the header is invalid
+     */
+    public ParsableFile readParsableFile() throws IOException
+    {
+        readVersion();
+        String path = readString();
+        SubstitutionType type = readEnum(SubstitutionType.class);
+        String encoding = readString();
+        List<OsModel> osConstraints = readOsModels();
+        ParsableFile result = new ParsableFile(path, type, encoding, osConstraints);
+        result.setCondition(readString());
+        return result;
+    }
+
+    /**
+     * Reads an executable file header.
+     *
+     * @return the executable file
+     * @throws IOException for any I/O error, or if the header is invalid
+     */
+    public ExecutableFile readExecutableFile() throws IOException
+    {
+        readVersion();
+        DataInput in = getInput();
+        String path = readString();
+        int executionStage = in.readInt();
+        String mainClass = readString();
+        int type = in.readInt();
+        int onFailure = in.readInt();
+        List<String> argList = readStrings();
+        List<OsModel> osList = readOsModels();
+        boolean keepFile = in.readBoolean();
+        ExecutableFile result = new ExecutableFile(path, type, mainClass, executionStage, onFailure, argList, osList,
+                                                   keepFile);
+        result.setCondition(readString());
+        return result;
+    }
+
+    /**
+     * Reads an update check header.
+     *
+     * @return the update check
+     * @throws IOException for any I/O error, or if the header is invalid
+     */
+    public UpdateCheck readUpdateCheck() throws IOException
+    {
+        readVersion();
+        ArrayList<String> includes = readStrings();
+        ArrayList<String> excludes = readStrings();
+        UpdateCheck result = new UpdateCheck(includes, excludes);
+        result.caseSensitive = getInput().readBoolean();
+        return result;
+    }
+}
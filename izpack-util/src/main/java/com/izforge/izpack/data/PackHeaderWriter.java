@@ -0,0 +1,97 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.izforge.izpack.api.io.HeaderWriter;
+
+
+/**
+ * Writes pack headers, including the parsable headers that precede the pack files, and the executable and update
+ * check headers that follow them.
+ *
+ * @see PackHeaderReader
+ */
+public class PackHeaderWriter extends HeaderWriter
+{
+
+    /**
+     * Constructs a <tt>PackHeaderWriter</tt>.
+     *
+     * @param out the output to write to
+     */
+    public PackHeaderWriter(DataOutput out)
+    {
+        super(out);
+    }
+
+    /**
+     * Writes a parsable file header.
+     *
+     * @param file the parsable file
+     * @throws IOException for any I/O error
+     */
+    public void writeParsableFile(ParsableFile file) throws IOException
+    {
+        writeVersion();
+        writeString(file.getPath());
+        writeEnum(file.getType());
+        writeString(file.getEncoding());
+        writeOsModels(file.getOsConstraints());
+        writeString(file.getCondition());
+    }
+
+    /**
+     * Writes an executable file header.
+     *
+     * @param file the executable file
+     * @throws IOException for any I/O error
+     */
+    public void writeExecutableFile(ExecutableFile file) throws IOException
+    {
+        writeVersion();
+        DataOutput out = getOutput();
+        writeString(file.path);
+        out.writeInt(file.executionStage);
+        writeString(file.mainClass);
+        out.writeInt(file.type);
+        out.writeInt(file.onFailure);
+        writeStrings(file.argList);
+        writeOsModels(file.osList);
+        out.writeBoolean(file.keepFile);
+        writeString(file.getCondition());
+    }
+
+    /**
+     * Writes an update check header.
+     *
+     * @param check the update check
+     * @throws IOException for any I/O error
+     */
+    public void writeUpdateCheck(UpdateCheck check) throws IOException
+    {
+        writeVersion();
+        writeStrings(check.includesList);
+        writeStrings(check.excludesList);
+        getOutput().writeBoolean(check.caseSensitive);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.util.logging.Logger;
+
+
+/**
+ * Pools I/O buffers, one per thread.
+ * <p/>
+ * Buffers are obtained with {@link #acquire()} and must be returned with {@link #release(byte[])} when no longer
+ * required. If the current thread's buffer is already in use, a new buffer is allocated.
+ * <p/>
+ * The buffer size defaults to {@link #DEFAULT_BUFFER_SIZE}, and may be changed via the
+ * <tt>izpack.io.buffersize</tt> system property, or {@link #setBufferSize(int)}. It is constrained to the range
+ * {@link #MIN_BUFFER_SIZE}..{@link #MAX_BUFFER_SIZE}.
+ */
+public final class BufferPool
+{
+
+    /**
+     * The system property used to configure the buffer size, in bytes.
+     */
+    public static final String BUFFER_SIZE = "izpack.io.buffersize";
+
+    /**
+     * The minimum buffer size.
+     */
+    public static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum buffer size.
+     */
+    public static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * The default buffer size.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * The buffer size.
+     */
+    private static volatile int bufferSize = getConfiguredSize();
+
+    /**
+     * The buffer of each thread, or <tt>null</tt> if it has not been allocated or is in use.
+     */
+    private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(BufferPool.class.getName());
+
+    /**
+     * Prevents construction.
+     */
+    private BufferPool()
+    {
+    }
+
+    /**
+     * Returns a buffer for the current thread.
+     *
+     * @return the buffer
+     */
+    public static byte[] acquire()
+    {
+        byte[] buffer = buffers.get();
+        if (buffer != null && buffer.length == bufferSize)
+        {
+            buffers.set(null);
+        }
+        else
+        {
+            buffer = new byte[bufferSize];
+        }
+        return buffer;
+    }
+
+    /**
+     * Releases a buffer obtained via {@link #acquire()}, so that it may be reused by the current thread.
+     *
+     * @param buffer the buffer
+     */
+    public static void release(byte[] buffer)
+    {
+        if (buffer.length == bufferSize)
+        {
+            buffers.set(buffer);
+        }
+    }
+
+    /**
+     * Sets the buffer size.
+     * <p/>
+     * The size is constrained to the range {@link #MIN_BUFFER_SIZE}..{@link #MAX_BUFFER_SIZE}.
+     *
+     * @param size the buffer size, in bytes
+     */
+    public static void setBufferSize(int size)
+    {
+        bufferSize = Math.min(MAX_BUFFER_SIZE, Math.max(MIN_BUFFER_SIZE, size));
+    }
+
+    /**
+     * Returns the buffer size.
+     *
+     * @return the buffer size, in bytes
+     */
+    public static int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the buffer size configured by the <tt>izpack.io.buffersize</tt> system property.
+     *
+     * @return the buffer size
+     */
+    private static int getConfiguredSize()
+    {
+        int result = DEFAULT_BUFFER_SIZE;
+        String size = System.getProperty(BUFFER_SIZE);
+        if (size != null)
+        {
+            try
+            {
+                result = Math.min(MAX_BUFFER_SIZE, Math.max(MIN_BUFFER_SIZE, Integer.parseInt(size.trim())));
+            }
+            catch (NumberFormatException exception)
+            {
+                logger.warning("Invalid " + BUFFER_SIZE + ": " + size);
+            }
+        }
+        return result;
+    }
+}
@@ -329,15 +329,18 @@ public class FileExecutor
 
             if (ExecutableFile.BIN == efile.type && currentStage != ExecutableFile.UNINSTALL && isUnix)
             {
-                // fix executable permission for unix systems
+                // fix executable permission for unix systems. Only fall back to chmod if it can't be set directly
                 logger.fine("Making file executable (setting executable flag)");
-                String[] params = {"/bin/chmod", permissions, file.toString()};
-                exitStatus = executeCommand(params, output);
-                if (exitStatus != 0)
+                if (!IoHelper.setPermissions(file, permissions))
                 {
-                    handler.emitWarning("file execution error", "Error executing \n" + params[0]
-                            + " " + params[1] + " " + params[2]);
-                    continue;
+                    String[] params = {"/bin/chmod", permissions, file.toString()};
+                    exitStatus = executeCommand(params, output);
+                    if (exitStatus != 0)
+                    {
+                        handler.emitWarning("file execution error", "Error executing \n" + params[0]
+                                + " " + params[1] + " " + params[2]);
+                        continue;
+                    }
                 }
             }
 
@@ -30,12 +30,16 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
@@ -54,6 +58,11 @@ import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 public class IoHelper
 {
 
+    /**
+     * Matches a single symbolic mode clause that adds or removes permissions, e.g. <tt>a+x</tt>.
+     */
+    private static final Pattern SYMBOLIC_MODE = Pattern.compile("([ugoa]*)([+-])([rwx]+)");
+
     // This class uses the same values for family and flavor as
     // TargetFactory. But this class should not depends on TargetFactory,
     // because it is possible that TargetFactory is not bound. Therefore
@@ -191,14 +200,7 @@ public class IoHelper
     {
         if (vs == null)
         {
-            byte[] buffer = new byte[5120];
-            long bytesCopied = 0;
-            int bytesInBuffer;
-            while ((bytesInBuffer = in.read(buffer)) != -1)
-            {
-                out.write(buffer, 0, bytesInBuffer);
-                bytesCopied += bytesInBuffer;
-            }
+            copyStream(in, out);
             in.close();
             out.close();
         }
@@ -309,9 +311,121 @@ public class IoHelper
         chmod(file.getAbsolutePath(), permissions);
     }
 
+    /**
+     * Sets the permissions of a file without starting a process, if they can be expressed using the {@link File}
+     * permission methods.
+     * <p/>
+     * These can only distinguish between the owner and everybody, so this supports symbolic modes that add or remove
+     * permissions for the owner (<tt>u</tt>) or everybody (<tt>a</tt> or <tt>ugo</tt>), e.g. <tt>a+x</tt> or
+     * <tt>u+w,a-x</tt>.
+     * <p/>
+     * The following aren't supported, and must be set by running <tt>chmod</tt>:
+     * <ul>
+     * <li>symbolic modes without a class, e.g. <tt>+w</tt>, as <tt>chmod</tt> applies the umask to these, whereas the
+     * {@link File} methods ignore it</li>
+     * <li>octal modes, as <tt>chmod</tt> also clears the setuid, setgid and sticky bits for these, which the
+     * {@link File} methods can't change</li>
+     * </ul>
+     *
+     * @param file        the file
+     * @param permissions the POSIX permissions
+     * @return <tt>true</tt> if the permissions were set, <tt>false</tt> if they are not supported or couldn't be set
+     */
+    public static boolean setPermissions(File file, String permissions)
+    {
+        String mode = permissions.trim();
+
+        // validate all clauses before changing anything
+        List<Matcher> clauses = new ArrayList<Matcher>();
+        for (String clause : mode.split(","))
+        {
+            Matcher matcher = SYMBOLIC_MODE.matcher(clause);
+            if (!matcher.matches())
+            {
+                return false;
+            }
+            String who = matcher.group(1);
+            if (!isOwner(who) && !isEverybody(who))
+            {
+                return false;
+            }
+            clauses.add(matcher);
+        }
+        boolean result = true;
+        for (Matcher clause : clauses)
+        {
+            boolean ownerOnly = isOwner(clause.group(1));
+            boolean enable = clause.group(2).equals("+");
+            String flags = clause.group(3);
+            if (flags.indexOf('r') != -1)
+            {
+                result &= setPermission(file, 4, enable, ownerOnly);
+            }
+            if (flags.indexOf('w') != -1)
+            {
+                result &= setPermission(file, 2, enable, ownerOnly);
+            }
+            if (flags.indexOf('x') != -1)
+            {
+                result &= setPermission(file, 1, enable, ownerOnly);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a symbolic mode class refers to the owner only.
+     *
+     * @param who the class
+     * @return <tt>true</tt> if the class is <tt>u</tt>
+     */
+    private static boolean isOwner(String who)
+    {
+        return who.equals("u");
+    }
+
+    /**
+     * Determines if a symbolic mode class refers to everybody.
+     * <p/>
+     * An empty class isn't treated as everybody, as <tt>chmod</tt> applies the umask to it.
+     *
+     * @param who the class
+     * @return <tt>true</tt> if the class includes <tt>a</tt>, or includes each of <tt>u</tt>, <tt>g</tt> and
+     *         <tt>o</tt>
+     */
+    private static boolean isEverybody(String who)
+    {
+        return who.contains("a") || (who.contains("u") && who.contains("g") && who.contains("o"));
+    }
+
+    /**
+     * Sets a single permission on a file.
+     *
+     * @param file      the file
+     * @param bit       the permission bit: 4 = read, 2 = write, 1 = execute
+     * @param enable    if <tt>true</tt> grant the permission, otherwise revoke it
+     * @param ownerOnly if <tt>true</tt> only change the owner's permission, otherwise change everybody's
+     * @return <tt>true</tt> if the permission was changed
+     */
+    private static boolean setPermission(File file, int bit, boolean enable, boolean ownerOnly)
+    {
+        switch (bit)
+        {
+            case 4:
+                return file.setReadable(enable, ownerOnly);
+            case 2:
+                return file.setWritable(enable, ownerOnly);
+            default:
+                return file.setExecutable(enable, ownerOnly);
+        }
+    }
+
     /**
      * Changes the permissions of the given file to the given POSIX permissions. This method will be
      * raised an exception, if the OS is not UNIX.
+     * <p/>
+     * Permissions that can be expressed using the {@link File} permission methods are set directly; others
+     * are set by running <tt>chmod</tt>.
      *
      * @param path        the absolute path of the file for which the permissions should be changed
      * @param permissions POSIX permissions to be set
@@ -322,6 +436,10 @@ public class IoHelper
         // Perform UNIX
         if (OsVersion.IS_UNIX)
         {
+            if (setPermissions(new File(path), permissions))
+            {
+                return;
+            }
             String[] params = {"chmod", permissions, path};
             String[] output = new String[2];
             FileExecutor fe = new FileExecutor();
@@ -875,6 +993,9 @@ public class IoHelper
 
     /**
      * Copies all the data from the specified input stream to the specified output stream.
+     * <p/>
+     * If both streams are file streams, the data is transferred between their channels, without copying it via a
+     * buffer.
      *
      * @param in  the input stream to read
      * @param out the output stream to write
@@ -883,14 +1004,58 @@ public class IoHelper
      */
     public static long copyStream(InputStream in, OutputStream out) throws IOException
     {
-        byte[] buffer = new byte[5120];
-        long bytesCopied = 0;
-        int bytesInBuffer;
-        while ((bytesInBuffer = in.read(buffer)) != -1)
+        if (in instanceof FileInputStream && out instanceof FileOutputStream)
+        {
+            FileChannel source = ((FileInputStream) in).getChannel();
+            if (source.size() > source.position())
+            {
+                // not a pipe or empty file
+                return transfer(source, ((FileOutputStream) out).getChannel());
+            }
+        }
+        byte[] buffer = BufferPool.acquire();
+        try
+        {
+            long bytesCopied = 0;
+            int bytesInBuffer;
+            while ((bytesInBuffer = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, bytesInBuffer);
+                bytesCopied += bytesInBuffer;
+            }
+            return bytesCopied;
+        }
+        finally
+        {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Transfers the remaining data in one file channel to another.
+     * <p/>
+     * On return, the source channel is positioned at its end.
+     *
+     * @param source the channel to read
+     * @param target the channel to write
+     * @return the total number of bytes transferred
+     * @throws IOException if an I/O error occurs
+     */
+    public static long transfer(FileChannel source, FileChannel target) throws IOException
+    {
+        long position = source.position();
+        long count = source.size() - position;
+        long transferred = 0;
+        while (transferred < count)
         {
-            out.write(buffer, 0, bytesInBuffer);
-            bytesCopied += bytesInBuffer;
+            long bytes = source.transferTo(position + transferred, count - transferred, target);
+            if (bytes <= 0)
+            {
+                break;
+            }
+            transferred += bytes;
         }
-        return bytesCopied;
+        source.position(position + transferred);
+        return transferred;
     }
 }
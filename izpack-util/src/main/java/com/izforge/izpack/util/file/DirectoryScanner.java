@@ -33,6 +33,8 @@ import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.util.file.types.Resource;
 import com.izforge.izpack.util.file.types.ResourceFactory;
 import com.izforge.izpack.util.file.types.selectors.FileSelector;
+import com.izforge.izpack.util.file.types.selectors.PathPattern;
+import com.izforge.izpack.util.file.types.selectors.PathPatternSet;
 import com.izforge.izpack.util.file.types.selectors.SelectorUtils;
 
 /**
@@ -289,6 +291,17 @@ public class DirectoryScanner
      */
     private Set<String> scannedDirs = new HashSet<String>();
 
+    /**
+     * The files that have been included, excluded or deselected. This avoids searching the result vectors for
+     * files reached by more than one include pattern.
+     */
+    private Set<String> filesAccounted = new HashSet<String>();
+
+    /**
+     * The directories that have been included, excluded or deselected.
+     */
+    private Set<String> dirsAccounted = new HashSet<String>();
+
     /**
      * Set of all include patterns that are full file names and don't
      * contain any wildcards.
@@ -316,22 +329,47 @@ public class DirectoryScanner
     private Set<String> excludeNonPatterns = new HashSet<String>();
 
     /**
-     * Array of all include patterns that contain wildcards.
+     * All include patterns that contain wildcards, compiled.
      * <p/>
      * <p>Gets lazily initialized on the first invocation of
      * isIncluded or isExcluded and cleared at the end of the scan
      * method (cleared in clearCaches, actually).</p>
      */
-    private String[] includePatterns;
+    private PathPatternSet includePatterns;
 
     /**
-     * Array of all exclude patterns that contain wildcards.
+     * All exclude patterns that contain wildcards, compiled.
      * <p/>
      * <p>Gets lazily initialized on the first invocation of
      * isIncluded or isExcluded and cleared at the end of the scan
      * method (cleared in clearCaches, actually).</p>
      */
-    private String[] excludePatterns;
+    private PathPatternSet excludePatterns;
+
+    /**
+     * All include patterns, compiled, to determine if a directory
+     * could hold included files.
+     * <p/>
+     * <p>Lifecycle as for includePatterns.</p>
+     */
+    private PathPatternSet allIncludePatterns;
+
+    /**
+     * The exclude patterns ending in &quot;**&quot;, with the
+     * &quot;**&quot; removed, compiled, to determine if the entire
+     * contents of a directory are excluded.
+     * <p/>
+     * <p>Lifecycle as for includePatterns.</p>
+     */
+    private PathPatternSet contentsExcludePatterns;
+
+    /**
+     * Set of all exclude patterns, to determine if an include pattern
+     * is more powerful than the excludes.
+     * <p/>
+     * <p>Lifecycle as for includePatterns.</p>
+     */
+    private Set<String> excludeSet = new HashSet<String>();
 
     /**
      * Have the non-pattern sets and pattern arrays for in- and
@@ -988,6 +1026,8 @@ public class DirectoryScanner
         dirsDeselected = new Vector<String>();
         everythingIncluded = (basedir != null);
         scannedDirs.clear();
+        filesAccounted.clear();
+        dirsAccounted.clear();
     }
 
     /**
@@ -1134,8 +1174,16 @@ public class DirectoryScanner
                     {
                         String name = vpath + newfile;
                         File file = new File(dir, newfile);
-                        (file.isDirectory()
-                                ? dirsExcluded : filesExcluded).addElement(name);
+                        if (file.isDirectory())
+                        {
+                            dirsAccounted.add(name);
+                            dirsExcluded.addElement(name);
+                        }
+                        else
+                        {
+                            filesAccounted.add(name);
+                            filesExcluded.addElement(name);
+                        }
                     }
                     else
                     {
@@ -1201,9 +1249,7 @@ public class DirectoryScanner
      */
     private void accountForIncludedFile(String name, File file) throws Exception
     {
-        if (filesIncluded.contains(name)
-                || filesExcluded.contains(name)
-                || filesDeselected.contains(name))
+        if (!filesAccounted.add(name))
         {
             return;
         }
@@ -1235,9 +1281,7 @@ public class DirectoryScanner
     private void accountForIncludedDir(String name, File file, boolean fast)
             throws Exception
     {
-        if (dirsIncluded.contains(name)
-                || dirsExcluded.contains(name)
-                || dirsDeselected.contains(name))
+        if (!dirsAccounted.add(name))
         {
             return;
         }
@@ -1280,14 +1324,7 @@ public class DirectoryScanner
         {
             return true;
         }
-        for (String includePattern : includePatterns)
-        {
-            if (matchPath(includePattern, name, isCaseSensitive()))
-            {
-                return true;
-            }
-        }
-        return false;
+        return includePatterns.matches(PathPattern.tokenize(name), name.startsWith(File.separator));
     }
 
     /**
@@ -1300,59 +1337,32 @@ public class DirectoryScanner
      */
     protected boolean couldHoldIncluded(String name)
     {
-        for (String include : includes)
-        {
-            if (matchPatternStart(include, name, isCaseSensitive())
-                    && isMorePowerfulThanExcludes(name, include)
-                    && isDeeper(include, name))
-            {
-                return true;
-            }
-        }
-        return false;
-    }
+        ensureNonPatternSetsReady();
 
-    /**
-     * Verify that a pattern specifies files deeper
-     * than the level of the specified file.
-     *
-     * @param pattern the pattern to check.
-     * @param name    the name to check.
-     * @return whether the pattern is deeper than the name.
-     */
-    private boolean isDeeper(String pattern, String name)
-    {
-        Vector<?> p = SelectorUtils.tokenizePath(pattern);
-        Vector<?> n = SelectorUtils.tokenizePath(name);
-        return p.contains("**") || p.size() > n.size();
+        // an include pattern could match below the directory if its start
+        // matches, and it is deeper than the directory
+        return isMorePowerfulThanExcludes(name)
+                && allIncludePatterns.couldMatchBelow(PathPattern.tokenize(name),
+                                                      name.startsWith(File.separator));
     }
 
     /**
-     * Find out whether one particular include pattern is more powerful
-     * than all the excludes.
-     * Note:  the power comparison is based on the length of the include pattern
-     * and of the exclude patterns without the wildcards.
+     * Find out whether the include patterns are more powerful than all
+     * the excludes for a directory.
+     * Note:  the comparison only checks for an exclude pattern matching
+     * everything below the directory, so it applies to every include pattern.
      * Ideally the comparison should be done based on the depth
      * of the match; that is to say how many file separators have been matched
      * before the first ** or the end of the pattern.
      * <p/>
      * IMPORTANT : this function should return false "with care".
      *
-     * @param name           the relative path to test.
-     * @param includepattern one include pattern.
-     * @return true if there is no exclude pattern more powerful than this include pattern.
+     * @param name the relative path to test.
+     * @return true if there is no exclude pattern more powerful than the include patterns.
      */
-    private boolean isMorePowerfulThanExcludes(String name, String includepattern)
+    private boolean isMorePowerfulThanExcludes(String name)
     {
-        String soughtexclude = name + File.separator + "**";
-        for (String exclude : excludes)
-        {
-            if (exclude.equals(soughtexclude))
-            {
-                return false;
-            }
-        }
-        return true;
+        return !excludeSet.contains(name + File.separator + "**");
     }
 
     /**
@@ -1363,16 +1373,9 @@ public class DirectoryScanner
      */
     private boolean contentsExcluded(String name)
     {
+        ensureNonPatternSetsReady();
         name = (name.endsWith(File.separator)) ? name : name + File.separator;
-        for (String e : excludes)
-        {
-            if (e.endsWith("**") && SelectorUtils.matchPath(
-                    e.substring(0, e.length() - 2), name, isCaseSensitive()))
-            {
-                return true;
-            }
-        }
-        return false;
+        return contentsExcludePatterns.matches(PathPattern.tokenize(name), name.startsWith(File.separator));
     }
 
     /**
@@ -1393,14 +1396,7 @@ public class DirectoryScanner
         {
             return true;
         }
-        for (String excludePattern : excludePatterns)
-        {
-            if (matchPath(excludePattern, name, isCaseSensitive()))
-            {
-                return true;
-            }
-        }
-        return false;
+        return excludePatterns.matches(PathPattern.tokenize(name), name.startsWith(File.separator));
     }
 
     /**
@@ -1785,6 +1781,9 @@ public class DirectoryScanner
         excludeNonPatterns.clear();
         includePatterns = null;
         excludePatterns = null;
+        allIncludePatterns = null;
+        contentsExcludePatterns = null;
+        excludeSet.clear();
         areNonPatternSetsReady = false;
     }
 
@@ -1796,8 +1795,19 @@ public class DirectoryScanner
     {
         if (!areNonPatternSetsReady)
         {
-            includePatterns = fillNonPatternSet(includeNonPatterns, includes);
-            excludePatterns = fillNonPatternSet(excludeNonPatterns, excludes);
+            boolean caseSensitive = isCaseSensitive();
+            includePatterns = new PathPatternSet(fillNonPatternSet(includeNonPatterns, includes), caseSensitive);
+            excludePatterns = new PathPatternSet(fillNonPatternSet(excludeNonPatterns, excludes), caseSensitive);
+            allIncludePatterns = new PathPatternSet(includes, caseSensitive);
+            contentsExcludePatterns = new PathPatternSet(caseSensitive);
+            for (String exclude : excludes)
+            {
+                excludeSet.add(exclude);
+                if (exclude.endsWith("**"))
+                {
+                    contentsExcludePatterns.add(exclude.substring(0, exclude.length() - 2));
+                }
+            }
             areNonPatternSetsReady = true;
         }
     }
@@ -0,0 +1,365 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file.types.selectors;
+
+import java.io.File;
+
+
+/**
+ * A path pattern, tokenized once so that it can be matched against many paths.
+ * <p/>
+ * Patterns have the same syntax and semantics as those passed to {@link SelectorUtils#matchPath}: path segments are
+ * separated by {@link File#separatorChar}, '*' and '?' match characters within a segment, and "**" matches zero or
+ * more segments.
+ * <p/>
+ * Paths are supplied already tokenized by {@link #tokenize(String)}, so that a path only needs to be tokenized once
+ * to be matched against several patterns.
+ */
+public class PathPattern
+{
+
+    /**
+     * The multiple segment wildcard.
+     */
+    private static final String DEEP = "**";
+
+    /**
+     * The pattern.
+     */
+    private final String pattern;
+
+    /**
+     * The pattern segments.
+     */
+    private final String[] tokens;
+
+    /**
+     * The pattern segments, as characters.
+     */
+    private final char[][] chars;
+
+    /**
+     * Determines if the pattern starts with a separator.
+     */
+    private final boolean rooted;
+
+    /**
+     * Determines if matching is case sensitive.
+     */
+    private final boolean caseSensitive;
+
+    /**
+     * The no. of leading segments that contain no wildcards.
+     */
+    private final int literalPrefix;
+
+    /**
+     * Determines if the pattern contains "**".
+     */
+    private final boolean deep;
+
+
+    /**
+     * Constructs a <tt>PathPattern</tt>.
+     *
+     * @param pattern       the pattern
+     * @param caseSensitive if <tt>true</tt>, match case sensitively
+     */
+    public PathPattern(String pattern, boolean caseSensitive)
+    {
+        this.pattern = pattern;
+        this.caseSensitive = caseSensitive;
+        tokens = tokenize(pattern);
+        rooted = pattern.startsWith(File.separator);
+        chars = new char[tokens.length][];
+        int prefix = -1;
+        boolean hasDeep = false;
+        for (int i = 0; i < tokens.length; ++i)
+        {
+            chars[i] = tokens[i].toCharArray();
+            if (prefix == -1 && SelectorUtils.hasWildcards(tokens[i]))
+            {
+                prefix = i;
+            }
+            hasDeep |= DEEP.equals(tokens[i]);
+        }
+        literalPrefix = (prefix == -1) ? tokens.length : prefix;
+        deep = hasDeep;
+    }
+
+    /**
+     * Returns the pattern.
+     *
+     * @return the pattern
+     */
+    public String getPattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * Determines if the pattern starts with a separator.
+     *
+     * @return <tt>true</tt> if the pattern only matches paths starting with a separator
+     */
+    public boolean isRooted()
+    {
+        return rooted;
+    }
+
+    /**
+     * Returns the no. of leading segments that contain no wildcards.
+     * <p/>
+     * A path can only match the pattern if its leading segments are the same.
+     *
+     * @return the no. of literal leading segments
+     */
+    public int getLiteralPrefixLength()
+    {
+        return literalPrefix;
+    }
+
+    /**
+     * Returns a pattern segment.
+     *
+     * @param index the segment index
+     * @return the segment
+     */
+    public String getToken(int index)
+    {
+        return tokens[index];
+    }
+
+    /**
+     * Determines if the pattern matches a path.
+     * <p/>
+     * This is equivalent to {@link SelectorUtils#matchPath(String, String, boolean)}.
+     *
+     * @param path   the path segments, as returned by {@link #tokenize(String)}
+     * @param rooted determines if the path starts with a separator
+     * @return <tt>true</tt> if the pattern matches the path
+     */
+    public boolean matches(String[] path, boolean rooted)
+    {
+        if (rooted != this.rooted)
+        {
+            return false;
+        }
+
+        int patIdxStart = 0;
+        int patIdxEnd = tokens.length - 1;
+        int strIdxStart = 0;
+        int strIdxEnd = path.length - 1;
+
+        // up to first '**'
+        while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd)
+        {
+            if (tokens[patIdxStart].equals(DEEP))
+            {
+                break;
+            }
+            if (!match(patIdxStart, path[strIdxStart]))
+            {
+                return false;
+            }
+            patIdxStart++;
+            strIdxStart++;
+        }
+        if (strIdxStart > strIdxEnd)
+        {
+            // path is exhausted
+            return onlyDeep(patIdxStart, patIdxEnd);
+        }
+        else if (patIdxStart > patIdxEnd)
+        {
+            // path not exhausted, but pattern is
+            return false;
+        }
+
+        // up to last '**'
+        while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd)
+        {
+            if (tokens[patIdxEnd].equals(DEEP))
+            {
+                break;
+            }
+            if (!match(patIdxEnd, path[strIdxEnd]))
+            {
+                return false;
+            }
+            patIdxEnd--;
+            strIdxEnd--;
+        }
+        if (strIdxStart > strIdxEnd)
+        {
+            // path is exhausted
+            return onlyDeep(patIdxStart, patIdxEnd);
+        }
+
+        while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd)
+        {
+            int patIdxTmp = -1;
+            for (int i = patIdxStart + 1; i <= patIdxEnd; i++)
+            {
+                if (tokens[i].equals(DEEP))
+                {
+                    patIdxTmp = i;
+                    break;
+                }
+            }
+            if (patIdxTmp == patIdxStart + 1)
+            {
+                // '**/**' situation, so skip one
+                patIdxStart++;
+                continue;
+            }
+            // find the segments between patIdxStart and patIdxTmp in the path between strIdxStart and strIdxEnd
+            int patLength = (patIdxTmp - patIdxStart - 1);
+            int strLength = (strIdxEnd - strIdxStart + 1);
+            int foundIdx = -1;
+            strLoop:
+            for (int i = 0; i <= strLength - patLength; i++)
+            {
+                for (int j = 0; j < patLength; j++)
+                {
+                    if (!match(patIdxStart + j + 1, path[strIdxStart + i + j]))
+                    {
+                        continue strLoop;
+                    }
+                }
+                foundIdx = strIdxStart + i;
+                break;
+            }
+
+            if (foundIdx == -1)
+            {
+                return false;
+            }
+
+            patIdxStart = patIdxTmp;
+            strIdxStart = foundIdx + patLength;
+        }
+
+        return onlyDeep(patIdxStart, patIdxEnd);
+    }
+
+    /**
+     * Determines if a path matches the start of the pattern, up to the first "**".
+     * <p/>
+     * This is equivalent to {@link SelectorUtils#matchPatternStart(String, String, boolean)}, and similarly may
+     * yield false positives.
+     *
+     * @param path   the path segments, as returned by {@link #tokenize(String)}
+     * @param rooted determines if the path starts with a separator
+     * @return <tt>true</tt> if the path matches the start of the pattern
+     */
+    public boolean matchesStart(String[] path, boolean rooted)
+    {
+        if (rooted != this.rooted)
+        {
+            return false;
+        }
+
+        int patIdx = 0;
+        int strIdx = 0;
+
+        // up to first '**'
+        while (patIdx < tokens.length && strIdx < path.length)
+        {
+            if (tokens[patIdx].equals(DEEP))
+            {
+                break;
+            }
+            if (!match(patIdx, path[strIdx]))
+            {
+                return false;
+            }
+            patIdx++;
+            strIdx++;
+        }
+
+        // succeed if the path is exhausted, or the pattern holds '**' while the path is not exhausted
+        return strIdx == path.length || patIdx < tokens.length;
+    }
+
+    /**
+     * Determines if the pattern can match paths with more segments than that specified.
+     *
+     * @param depth the no. of path segments
+     * @return <tt>true</tt> if the pattern contains "**" or has more than <tt>depth</tt> segments
+     */
+    public boolean isDeeper(int depth)
+    {
+        return deep || tokens.length > depth;
+    }
+
+    /**
+     * Returns the pattern.
+     *
+     * @return the pattern
+     */
+    @Override
+    public String toString()
+    {
+        return pattern;
+    }
+
+    /**
+     * Tokenizes a path on {@link File#separatorChar}, ignoring empty segments.
+     *
+     * @param path the path
+     * @return the path segments
+     */
+    public static String[] tokenize(String path)
+    {
+        return SelectorUtils.tokenizePathAsArray(path);
+    }
+
+    /**
+     * Determines if a pattern segment matches a path segment.
+     *
+     * @param index   the pattern segment index
+     * @param segment the path segment
+     * @return <tt>true</tt> if the segments match
+     */
+    private boolean match(int index, String segment)
+    {
+        return SelectorUtils.match(chars[index], segment, caseSensitive);
+    }
+
+    /**
+     * Determines if a range of the pattern segments are all "**".
+     *
+     * @param start the first segment index
+     * @param end   the last segment index
+     * @return <tt>true</tt> if the segments are all "**", or the range is empty
+     */
+    private boolean onlyDeep(int start, int end)
+    {
+        for (int i = start; i <= end; i++)
+        {
+            if (!tokens[i].equals(DEEP))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file.types.selectors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A set of {@link PathPattern}s, compiled so that a path can be matched against all of them at once.
+ * <p/>
+ * Patterns are stored in a tree keyed on their leading segments that contain no wildcards. A pattern can only match
+ * a path that starts with the same segments, so matching a path only visits the nodes along it, and only tests the
+ * patterns stored at those nodes. For a set of patterns such as <tt>lib/*.jar</tt>, <tt>bin/**</tt> and
+ * <tt>doc/api/**</tt>, matching <tt>src/Main.java</tt> tests none of them.
+ * <p/>
+ * The tree also determines if any pattern could match paths below a directory, so that scans can skip directories
+ * that no pattern can reach.
+ */
+public class PathPatternSet
+{
+
+    /**
+     * Determines if matching is case sensitive.
+     */
+    private final boolean caseSensitive;
+
+    /**
+     * The root of the patterns that don't start with a separator.
+     */
+    private final Node relative = new Node();
+
+    /**
+     * The root of the patterns that start with a separator.
+     */
+    private final Node rooted = new Node();
+
+
+    /**
+     * Constructs a <tt>PathPatternSet</tt>.
+     *
+     * @param caseSensitive if <tt>true</tt>, match case sensitively
+     */
+    public PathPatternSet(boolean caseSensitive)
+    {
+        this.caseSensitive = caseSensitive;
+    }
+
+    /**
+     * Constructs a <tt>PathPatternSet</tt>.
+     *
+     * @param patterns      the patterns
+     * @param caseSensitive if <tt>true</tt>, match case sensitively
+     */
+    public PathPatternSet(String[] patterns, boolean caseSensitive)
+    {
+        this(caseSensitive);
+        for (String pattern : patterns)
+        {
+            add(pattern);
+        }
+    }
+
+    /**
+     * Adds a pattern.
+     *
+     * @param pattern the pattern
+     */
+    public void add(String pattern)
+    {
+        PathPattern compiled = new PathPattern(pattern, caseSensitive);
+        Node node = compiled.isRooted() ? rooted : relative;
+        ++node.size;
+        for (int i = 0; i < compiled.getLiteralPrefixLength(); ++i)
+        {
+            node = node.getChild(getKey(compiled.getToken(i)), true);
+            ++node.size;
+        }
+        node.patterns.add(compiled);
+    }
+
+    /**
+     * Determines if the set is empty.
+     *
+     * @return <tt>true</tt> if there are no patterns
+     */
+    public boolean isEmpty()
+    {
+        return relative.size == 0 && rooted.size == 0;
+    }
+
+    /**
+     * Determines if any pattern matches a path.
+     * <p/>
+     * This is equivalent to calling {@link SelectorUtils#matchPath(String, String, boolean)} for each pattern.
+     *
+     * @param path   the path segments, as returned by {@link PathPattern#tokenize(String)}
+     * @param rooted determines if the path starts with a separator
+     * @return <tt>true</tt> if a pattern matches the path
+     */
+    public boolean matches(String[] path, boolean rooted)
+    {
+        Node node = rooted ? this.rooted : relative;
+        for (int i = 0; node != null; ++i)
+        {
+            for (PathPattern pattern : node.patterns)
+            {
+                if (pattern.matches(path, rooted))
+                {
+                    return true;
+                }
+            }
+            node = (i < path.length) ? node.getChild(getKey(path[i]), false) : null;
+        }
+        return false;
+    }
+
+    /**
+     * Determines if any pattern could match paths below a directory.
+     * <p/>
+     * This is equivalent to determining if any pattern satisfies both
+     * {@link SelectorUtils#matchPatternStart(String, String, boolean)} and {@link PathPattern#isDeeper(int)} for the
+     * directory, and similarly may yield false positives.
+     *
+     * @param path   the directory path segments, as returned by {@link PathPattern#tokenize(String)}
+     * @param rooted determines if the path starts with a separator
+     * @return <tt>true</tt> if a pattern could match paths below the directory
+     */
+    public boolean couldMatchBelow(String[] path, boolean rooted)
+    {
+        Node node = rooted ? this.rooted : relative;
+        for (int i = 0; node != null; ++i)
+        {
+            for (PathPattern pattern : node.patterns)
+            {
+                if (pattern.matchesStart(path, rooted) && pattern.isDeeper(path.length))
+                {
+                    return true;
+                }
+            }
+            if (i == path.length)
+            {
+                // patterns whose literal segments extend beyond the directory match its start, and are deeper
+                return node.size > node.patterns.size();
+            }
+            node = node.getChild(getKey(path[i]), false);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the key of a literal segment.
+     * <p/>
+     * When matching case insensitively, each character is converted to upper case, mirroring the character
+     * comparison in {@link SelectorUtils#match(String, String, boolean)}.
+     *
+     * @param segment the segment
+     * @return the key
+     */
+    private String getKey(String segment)
+    {
+        if (caseSensitive)
+        {
+            return segment;
+        }
+        char[] chars = segment.toCharArray();
+        for (int i = 0; i < chars.length; ++i)
+        {
+            chars[i] = Character.toUpperCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A node of the pattern tree.
+     */
+    private static class Node
+    {
+
+        /**
+         * The patterns whose literal segments end at this node.
+         */
+        private final List<PathPattern> patterns = new ArrayList<PathPattern>();
+
+        /**
+         * The child nodes, keyed on segment, or <tt>null</tt> if there are none.
+         */
+        private Map<String, Node> children;
+
+        /**
+         * The no. of patterns at this node and below.
+         */
+        private int size;
+
+        /**
+         * Returns a child node.
+         *
+         * @param key    the segment key
+         * @param create if <tt>true</tt>, create the node if it doesn't exist
+         * @return the child node, or <tt>null</tt> if it doesn't exist and <tt>create</tt> is <tt>false</tt>
+         */
+        public Node getChild(String key, boolean create)
+        {
+            Node result = (children != null) ? children.get(key) : null;
+            if (result == null && create)
+            {
+                if (children == null)
+                {
+                    children = new HashMap<String, Node>();
+                }
+                result = new Node();
+                children.put(key, result);
+            }
+            return result;
+        }
+    }
+}
@@ -97,52 +97,8 @@ public final class SelectorUtils
         // File.separator.
         // When pattern starts with a File.separator, str has to start with a
         // File.separator.
-        if (str.startsWith(File.separator)
-                != pattern.startsWith(File.separator))
-        {
-            return false;
-        }
-
-        String[] patDirs = tokenizePathAsArray(pattern);
-        String[] strDirs = tokenizePathAsArray(str);
-
-        int patIdxStart = 0;
-        int patIdxEnd = patDirs.length - 1;
-        int strIdxStart = 0;
-        int strIdxEnd = strDirs.length - 1;
-
-        // up to first '**'
-        while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd)
-        {
-            String patDir = patDirs[patIdxStart];
-            if (patDir.equals("**"))
-            {
-                break;
-            }
-            if (!match(patDir, strDirs[strIdxStart], isCaseSensitive))
-            {
-                return false;
-            }
-            patIdxStart++;
-            strIdxStart++;
-        }
-
-        if (strIdxStart > strIdxEnd)
-        {
-            // String is exhausted
-            return true;
-        }
-        else if (patIdxStart > patIdxEnd)
-        {
-            // String not exhausted, but pattern is. Failure.
-            return false;
-        }
-        else
-        {
-            // pattern now holds ** while string is not exhausted
-            // this will generate false positives but we can live with that.
-            return true;
-        }
+        return new PathPattern(pattern, isCaseSensitive).matchesStart(
+                tokenizePathAsArray(str), str.startsWith(File.separator));
     }
 
     /**
@@ -179,155 +135,8 @@ public final class SelectorUtils
         // File.separator.
         // When pattern starts with a File.separator, str has to start with a
         // File.separator.
-        if (str.startsWith(File.separator)
-                != pattern.startsWith(File.separator))
-        {
-            return false;
-        }
-
-        String[] patDirs = tokenizePathAsArray(pattern);
-        String[] strDirs = tokenizePathAsArray(str);
-
-        int patIdxStart = 0;
-        int patIdxEnd = patDirs.length - 1;
-        int strIdxStart = 0;
-        int strIdxEnd = strDirs.length - 1;
-
-        // up to first '**'
-        while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd)
-        {
-            String patDir = patDirs[patIdxStart];
-            if (patDir.equals("**"))
-            {
-                break;
-            }
-            if (!match(patDir, strDirs[strIdxStart], isCaseSensitive))
-            {
-                patDirs = null;
-                strDirs = null;
-                return false;
-            }
-            patIdxStart++;
-            strIdxStart++;
-        }
-        if (strIdxStart > strIdxEnd)
-        {
-            // String is exhausted
-            for (int i = patIdxStart; i <= patIdxEnd; i++)
-            {
-                if (!patDirs[i].equals("**"))
-                {
-                    patDirs = null;
-                    strDirs = null;
-                    return false;
-                }
-            }
-            return true;
-        }
-        else
-        {
-            if (patIdxStart > patIdxEnd)
-            {
-                // String not exhausted, but pattern is. Failure.
-                patDirs = null;
-                strDirs = null;
-                return false;
-            }
-        }
-
-        // up to last '**'
-        while (patIdxStart <= patIdxEnd && strIdxStart <= strIdxEnd)
-        {
-            String patDir = patDirs[patIdxEnd];
-            if (patDir.equals("**"))
-            {
-                break;
-            }
-            if (!match(patDir, strDirs[strIdxEnd], isCaseSensitive))
-            {
-                patDirs = null;
-                strDirs = null;
-                return false;
-            }
-            patIdxEnd--;
-            strIdxEnd--;
-        }
-        if (strIdxStart > strIdxEnd)
-        {
-            // String is exhausted
-            for (int i = patIdxStart; i <= patIdxEnd; i++)
-            {
-                if (!patDirs[i].equals("**"))
-                {
-                    patDirs = null;
-                    strDirs = null;
-                    return false;
-                }
-            }
-            return true;
-        }
-
-        while (patIdxStart != patIdxEnd && strIdxStart <= strIdxEnd)
-        {
-            int patIdxTmp = -1;
-            for (int i = patIdxStart + 1; i <= patIdxEnd; i++)
-            {
-                if (patDirs[i].equals("**"))
-                {
-                    patIdxTmp = i;
-                    break;
-                }
-            }
-            if (patIdxTmp == patIdxStart + 1)
-            {
-                // '**/**' situation, so skip one
-                patIdxStart++;
-                continue;
-            }
-            // Find the pattern between padIdxStart & padIdxTmp in str between
-            // strIdxStart & strIdxEnd
-            int patLength = (patIdxTmp - patIdxStart - 1);
-            int strLength = (strIdxEnd - strIdxStart + 1);
-            int foundIdx = -1;
-            strLoop:
-            for (int i = 0; i <= strLength - patLength; i++)
-            {
-                for (int j = 0; j < patLength; j++)
-                {
-                    String subPat = patDirs[patIdxStart + j + 1];
-                    String subStr = strDirs[strIdxStart + i + j];
-                    if (!match(subPat, subStr, isCaseSensitive))
-                    {
-                        continue strLoop;
-                    }
-                }
-
-                foundIdx = strIdxStart + i;
-                break;
-            }
-
-            if (foundIdx == -1)
-            {
-                patDirs = null;
-                strDirs = null;
-                return false;
-            }
-
-            patIdxStart = patIdxTmp;
-            strIdxStart = foundIdx + patLength;
-        }
-
-        for (int i = patIdxStart; i <= patIdxEnd; i++)
-        {
-            if (!patDirs[i].equals("**"))
-            {
-                patDirs = null;
-                strDirs = null;
-                return false;
-            }
-        }
-
-        return true;
+        return new PathPattern(pattern, isCaseSensitive).matches(
+                tokenizePathAsArray(str), str.startsWith(File.separator));
     }
 
     /**
@@ -366,12 +175,26 @@ public final class SelectorUtils
     public static boolean match(String pattern, String str,
                                 boolean isCaseSensitive)
     {
-        char[] patArr = pattern.toCharArray();
-        char[] strArr = str.toCharArray();
+        return match(pattern.toCharArray(), str, isCaseSensitive);
+    }
+
+    /**
+     * Tests whether or not a string matches against a pattern, supplied as
+     * characters so that it can be reused.
+     *
+     * @param patArr          The pattern to match against.
+     * @param str             The string which must be matched against the pattern.
+     * @param isCaseSensitive Whether or not matching should be performed
+     *                        case sensitively.
+     * @return <code>true</code> if the string matches against the pattern,
+     *         or <code>false</code> otherwise.
+     */
+    static boolean match(char[] patArr, String str, boolean isCaseSensitive)
+    {
         int patIdxStart = 0;
         int patIdxEnd = patArr.length - 1;
         int strIdxStart = 0;
-        int strIdxEnd = strArr.length - 1;
+        int strIdxEnd = str.length() - 1;
         char ch;
 
         boolean containsStar = false;
@@ -396,12 +219,12 @@ public final class SelectorUtils
                 ch = patArr[i];
                 if (ch != '?')
                 {
-                    if (isCaseSensitive && ch != strArr[i])
+                    if (isCaseSensitive && ch != str.charAt(i))
                     {
                         return false; // Character mismatch
                     }
                     if (!isCaseSensitive && Character.toUpperCase(ch)
-                            != Character.toUpperCase(strArr[i]))
+                            != Character.toUpperCase(str.charAt(i)))
                     {
                         return false;  // Character mismatch
                     }
@@ -420,12 +243,12 @@ public final class SelectorUtils
         {
             if (ch != '?')
             {
-                if (isCaseSensitive && ch != strArr[strIdxStart])
+                if (isCaseSensitive && ch != str.charAt(strIdxStart))
                 {
                     return false; // Character mismatch
                 }
                 if (!isCaseSensitive && Character.toUpperCase(ch)
-                        != Character.toUpperCase(strArr[strIdxStart]))
+                        != Character.toUpperCase(str.charAt(strIdxStart)))
                 {
                     return false; // Character mismatch
                 }
@@ -452,12 +275,12 @@ public final class SelectorUtils
         {
             if (ch != '?')
             {
-                if (isCaseSensitive && ch != strArr[strIdxEnd])
+                if (isCaseSensitive && ch != str.charAt(strIdxEnd))
                 {
                     return false; // Character mismatch
                 }
                 if (!isCaseSensitive && Character.toUpperCase(ch)
-                        != Character.toUpperCase(strArr[strIdxEnd]))
+                        != Character.toUpperCase(str.charAt(strIdxEnd)))
                 {
                     return false; // Character mismatch
                 }
@@ -511,14 +334,14 @@ public final class SelectorUtils
                     ch = patArr[patIdxStart + j + 1];
                     if (ch != '?')
                     {
-                        if (isCaseSensitive && ch != strArr[strIdxStart + i
-                                + j])
+                        if (isCaseSensitive && ch != str.charAt(strIdxStart + i
+                                + j))
                         {
                             continue strLoop;
                         }
                         if (!isCaseSensitive
                                 && Character.toUpperCase(ch)
-                                != Character.toUpperCase(strArr[strIdxStart + i + j]))
+                                != Character.toUpperCase(str.charAt(strIdxStart + i + j)))
                         {
                             continue strLoop;
                         }
@@ -583,7 +406,7 @@ public final class SelectorUtils
     /**
      * Same as {@link #tokenizePath tokenizePath} but hopefully faster.
      */
-    private static String[] tokenizePathAsArray(String path)
+    static String[] tokenizePathAsArray(String path)
     {
         char sep = File.separatorChar;
         int start = 0;
@@ -0,0 +1,186 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.XPackFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * Tests the {@link PackHeaderWriter} and {@link PackHeaderReader}.
+ */
+public class PackHeaderTest
+{
+
+    /**
+     * Verifies that pack files can be written and read back.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testPackFile() throws IOException
+    {
+        List<OsModel> os = Arrays.asList(new OsModel("x86", "unix", null, "Linux", null));
+        Map<String, String> additionals = new HashMap<String, String>();
+        additionals.put("key", "value");
+        PackFile file = new PackFile("lib/a.jar", "$INSTALL_PATH/lib/a.jar", os, 1234567890123L, 42L, false,
+                                     OverrideType.OVERRIDE_UPDATE, "*.bak", Blockable.BLOCKABLE_AUTO, additionals);
+        file.setCondition("izpack.linuxinstall");
+        file.setPack200Jar(true);
+        file.setPreviousPackFileRef("Core", 70000L);
+        PackFile directory = new PackFile(null, "$INSTALL_PATH/doc", null, 0, -1, true, null, null, null, null);
+        XPackFile extended = new XPackFile("b.txt", "$INSTALL_PATH/b.txt", null, 10, 20, false,
+                                           OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, 300);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PackHeaderWriter writer = new PackHeaderWriter(new DataOutputStream(bytes));
+        writer.writePackFile(file);
+        writer.writePackFile(directory);
+        writer.writePackFile(extended);
+
+        PackHeaderReader reader = new PackHeaderReader(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        PackFile read = reader.readPackFile();
+        assertEquals("lib/a.jar", read.getRelativeSourcePath());
+        assertEquals("$INSTALL_PATH/lib/a.jar", read.getTargetPath());
+        assertEquals(1, read.osConstraints().size());
+        assertEquals("unix", read.osConstraints().get(0).getFamily());
+        assertNull(read.osConstraints().get(0).getJre());
+        assertEquals(1234567890123L, read.length());
+        assertEquals(42L, read.lastModified());
+        assertFalse(read.isDirectory());
+        assertEquals(OverrideType.OVERRIDE_UPDATE, read.override());
+        assertEquals("*.bak", read.overrideRenameTo());
+        assertEquals(Blockable.BLOCKABLE_AUTO, read.blockable());
+        assertEquals("izpack.linuxinstall", read.getCondition());
+        assertTrue(read.isPack200Jar());
+        assertTrue(read.isBackReference());
+        assertEquals("Core", read.previousPackId);
+        assertEquals(70000L, read.offsetInPreviousPack);
+        assertEquals(additionals, read.getAdditionals());
+
+        read = reader.readPackFile();
+        assertNull(read.getRelativeSourcePath());
+        assertTrue(read.isDirectory());
+        assertEquals(-1, read.lastModified());
+        assertNull(read.osConstraints());
+        assertNull(read.override());
+        assertFalse(read.isBackReference());
+        assertFalse(read.hasCondition());
+        assertNull(read.getAdditionals());
+
+        read = reader.readPackFile();
+        assertTrue(read instanceof XPackFile);
+        assertEquals(300, ((XPackFile) read).getArchiveFilePosition());
+        assertEquals(OverrideType.OVERRIDE_TRUE, read.override());
+    }
+
+    /**
+     * Verifies that parsable files, executable files and update checks can be written and read back.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testMetadata() throws IOException
+    {
+        ParsableFile parsable = new ParsableFile("$INSTALL_PATH/a.properties", SubstitutionType.TYPE_JAVA_PROPERTIES,
+                                                 "UTF-8", null);
+        parsable.setCondition("cond");
+        ExecutableFile executable = new ExecutableFile("$INSTALL_PATH/run.sh", ExecutableFile.BIN, null,
+                                                       ExecutableFile.UNINSTALL, ExecutableFile.WARN,
+                                                       new ArrayList<String>(Arrays.asList("-a", "$INSTALL_PATH")),
+                                                       new ArrayList<OsModel>(), true);
+        UpdateCheck check = new UpdateCheck(new ArrayList<String>(Arrays.asList("**/*.jar")), null, "no");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PackHeaderWriter writer = new PackHeaderWriter(new DataOutputStream(bytes));
+        writer.writeParsableFile(parsable);
+        writer.writeExecutableFile(executable);
+        writer.writeUpdateCheck(check);
+
+        PackHeaderReader reader = new PackHeaderReader(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        ParsableFile readParsable = reader.readParsableFile();
+        assertEquals("$INSTALL_PATH/a.properties", readParsable.getPath());
+        assertEquals(SubstitutionType.TYPE_JAVA_PROPERTIES, readParsable.getType());
+        assertEquals("UTF-8", readParsable.getEncoding());
+        assertNull(readParsable.getOsConstraints());
+        assertEquals("cond", readParsable.getCondition());
+
+        ExecutableFile readExecutable = reader.readExecutableFile();
+        assertEquals("$INSTALL_PATH/run.sh", readExecutable.path);
+        assertEquals(ExecutableFile.BIN, readExecutable.type);
+        assertNull(readExecutable.mainClass);
+        assertEquals(ExecutableFile.UNINSTALL, readExecutable.executionStage);
+        assertEquals(ExecutableFile.WARN, readExecutable.onFailure);
+        assertEquals(Arrays.asList("-a", "$INSTALL_PATH"), readExecutable.argList);
+        assertTrue(readExecutable.osList.isEmpty());
+        assertTrue(readExecutable.keepFile);
+        assertFalse(readExecutable.hasCondition());
+
+        UpdateCheck readCheck = reader.readUpdateCheck();
+        assertEquals(Arrays.asList("**/*.jar"), readCheck.includesList);
+        assertNull(readCheck.excludesList);
+        assertFalse(readCheck.caseSensitive);
+    }
+
+    /**
+     * Verifies that headers with an unsupported version are rejected.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testUnsupportedVersion() throws IOException
+    {
+        PackHeaderReader reader = new PackHeaderReader(new DataInputStream(new ByteArrayInputStream(new byte[]{99})));
+        try
+        {
+            reader.readPackFile();
+            fail("Expected IOException");
+        }
+        catch (IOException expected)
+        {
+            // expected behaviour
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.izforge.izpack.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests {@link BufferPool}.
+ */
+public class BufferPoolTest
+{
+
+    /**
+     * Restores the default buffer size.
+     */
+    @After
+    public void tearDown()
+    {
+        BufferPool.setBufferSize(BufferPool.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Verifies that a released buffer is reused by the same thread, and that nested acquisitions get a new buffer.
+     */
+    @Test
+    public void testAcquire()
+    {
+        byte[] buffer1 = BufferPool.acquire();
+        assertEquals(BufferPool.DEFAULT_BUFFER_SIZE, buffer1.length);
+        byte[] buffer2 = BufferPool.acquire();
+        assertNotSame(buffer1, buffer2);
+        BufferPool.release(buffer2);
+        BufferPool.release(buffer1);
+
+        assertSame(buffer1, BufferPool.acquire());
+        BufferPool.release(buffer1);
+    }
+
+    /**
+     * Verifies that the buffer size is constrained, and that buffers of the old size are discarded.
+     */
+    @Test
+    public void testBufferSize()
+    {
+        BufferPool.setBufferSize(1);
+        assertEquals(BufferPool.MIN_BUFFER_SIZE, BufferPool.getBufferSize());
+        BufferPool.setBufferSize(Integer.MAX_VALUE);
+        assertEquals(BufferPool.MAX_BUFFER_SIZE, BufferPool.getBufferSize());
+
+        byte[] buffer = BufferPool.acquire();
+        BufferPool.release(buffer);
+        BufferPool.setBufferSize(100000);
+        assertEquals(100000, BufferPool.acquire().length);
+    }
+
+    /**
+     * Verifies that {@link IoHelper#copyStream(java.io.InputStream, java.io.OutputStream)} copies the remainder of
+     * a file stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCopyFileStream() throws IOException
+    {
+        byte[] data = new byte[300000];
+        for (int i = 0; i < data.length; ++i)
+        {
+            data[i] = (byte) i;
+        }
+        File source = File.createTempFile("source", ".dat");
+        File target = File.createTempFile("target", ".dat");
+        FileOutputStream out = new FileOutputStream(source);
+        out.write(data);
+        out.close();
+
+        FileInputStream in = new FileInputStream(source);
+        assertEquals(10, in.skip(10));
+        out = new FileOutputStream(target);
+        assertEquals(data.length - 10, IoHelper.copyStream(in, out));
+        assertEquals(-1, in.read());
+        in.close();
+        out.close();
+
+        byte[] copied = new byte[data.length - 10];
+        in = new FileInputStream(target);
+        assertEquals(copied.length, in.read(copied, 0, copied.length));
+        in.close();
+        byte[] expected = new byte[copied.length];
+        System.arraycopy(data, 10, expected, 0, expected.length);
+        assertArrayEquals(expected, copied);
+
+        source.delete();
+        target.delete();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.izforge.izpack.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link IoHelper}.
+ */
+public class IoHelperTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that permissions that can be expressed with the {@link File} permission methods are set without
+     * running <tt>chmod</tt>, and that others are rejected.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSetPermissions() throws IOException
+    {
+        Assume.assumeTrue(OsVersion.IS_UNIX);
+        File file = temporaryFolder.newFile("script.sh");
+
+        assertTrue(IoHelper.setPermissions(file, "a+x"));
+        assertTrue(file.canExecute());
+        assertTrue(IoHelper.setPermissions(file, "ugo-x"));
+        assertFalse(file.canExecute());
+        assertTrue(IoHelper.setPermissions(file, "u+x,a+r"));
+        assertTrue(file.canExecute());
+
+        // the group and other permissions can't be set independently
+        assertFalse(IoHelper.setPermissions(file, "g+x"));
+        assertFalse(IoHelper.setPermissions(file, "u=rwx"));
+
+        // chmod applies the umask to these
+        assertFalse(IoHelper.setPermissions(file, "+w"));
+        assertFalse(IoHelper.setPermissions(file, "+r,u+x"));
+
+        // chmod clears the special bits for these
+        assertFalse(IoHelper.setPermissions(file, "644"));
+        assertFalse(IoHelper.setPermissions(file, "0755"));
+        assertFalse(IoHelper.setPermissions(file, "4755"));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link DirectoryScanner} class.
+ */
+public class DirectoryScannerTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that files and directories matched by several include patterns are only reported once.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testOverlappingIncludes() throws Exception
+    {
+        File dir = createTree("lib/a.jar", "lib/b.jar", "lib/readme.txt", "lib/ext/c.jar", "doc/index.html");
+
+        DirectoryScanner scanner = createScanner(dir, new String[]{"lib/**", "lib/*.jar", "**/*.jar", "lib/ext"},
+                                                 new String[]{"**/*.txt"});
+        assertArrayEquals(new String[]{path("lib/a.jar"), path("lib/b.jar"), path("lib/ext/c.jar")},
+                          scanner.getIncludedFiles());
+        assertArrayEquals(new String[]{path("lib"), path("lib/ext")}, scanner.getIncludedDirectories());
+        assertArrayEquals(new String[]{path("lib/readme.txt")}, scanner.getExcludedFiles());
+    }
+
+    /**
+     * Creates a scanner and scans a directory.
+     *
+     * @param dir      the directory to scan
+     * @param includes the include patterns
+     * @param excludes the exclude patterns
+     * @return the scanner
+     * @throws Exception for any error
+     */
+    private DirectoryScanner createScanner(File dir, String[] includes, String[] excludes) throws Exception
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(dir);
+        scanner.setIncludes(includes);
+        scanner.setExcludes(excludes);
+        scanner.scan();
+        return scanner;
+    }
+
+    /**
+     * Creates a directory containing the specified files.
+     *
+     * @param paths the file paths, relative to the directory
+     * @return the directory
+     * @throws IOException for any I/O error
+     */
+    private File createTree(String... paths) throws IOException
+    {
+        File dir = temporaryFolder.newFolder("tree");
+        for (String path : paths)
+        {
+            File file = new File(dir, path(path));
+            file.getParentFile().mkdirs();
+            file.createNewFile();
+        }
+        return dir;
+    }
+
+    /**
+     * Converts a path to use the platform file separator.
+     *
+     * @param path the path
+     * @return the converted path
+     */
+    private String path(String path)
+    {
+        return path.replace('/', File.separatorChar);
+    }
+}
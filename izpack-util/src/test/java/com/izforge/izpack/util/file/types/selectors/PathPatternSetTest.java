@@ -0,0 +1,207 @@
+/*
+ * IzPack - Copyright 2001-2012 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file.types.selectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link PathPatternSet} class.
+ */
+public class PathPatternSetTest
+{
+
+    /**
+     * The patterns.
+     */
+    private static final String[] PATTERNS = {"lib/*.jar", "lib/ext/**", "bin/**/*.sh", "**/CVS/**", "doc/api",
+            "/opt/app/**", "src/**/test/*.java", "?ar/**/x", "**", "conf/*/*.xml"};
+
+    /**
+     * The paths to match.
+     */
+    private static final String[] PATHS = {"", "lib", "lib/a.jar", "LIB/A.JAR", "lib/ext", "lib/ext/b/c.jar",
+            "bin", "bin/run.sh", "bin/x/y/run.sh", "a/CVS/Entries", "CVS", "doc/api", "doc/api/index.html",
+            "/opt", "/opt/app", "/opt/app/bin/run", "opt/app/x", "src/main/test/A.java", "src/test",
+            "var/a/b/x", "bar/x", "conf/x/y.xml", "conf/x", "other/file.txt", "/"};
+
+
+    /**
+     * Verifies that matching a path against a set gives the same results as matching it against each pattern.
+     */
+    @Test
+    public void testMatches()
+    {
+        checkMatches(true);
+        checkMatches(false);
+    }
+
+    /**
+     * Verifies that determining if any pattern could match paths below a directory gives the same results as
+     * checking each pattern.
+     */
+    @Test
+    public void testCouldMatchBelow()
+    {
+        checkCouldMatchBelow(true);
+        checkCouldMatchBelow(false);
+    }
+
+    /**
+     * Verifies that patterns are matched using the Ant semantics.
+     */
+    @Test
+    public void testAntSemantics()
+    {
+        assertTrue(matches("**/*.jar", "a.jar"));
+        assertTrue(matches("**/*.jar", "a/b/c.jar"));
+        assertTrue(matches("lib/**", "lib"));
+        assertTrue(matches("lib/**/x/**/y", "lib/a/x/b/c/y"));
+        assertFalse(matches("lib/**/x/**/y", "lib/a/b/c/y"));
+        assertFalse(matches("lib/*.jar", "lib/a/b.jar"));
+        assertFalse(matches("/lib/*.jar", "lib/a.jar"));
+        assertFalse(matches("lib/*.jar", "/lib/a.jar"));
+        assertTrue(matches("/lib/*.jar", "/lib/a.jar"));
+
+        PathPatternSet set = new PathPatternSet(new String[]{path("lib/ext/*.jar")}, true);
+        assertTrue(couldMatchBelow(set, "lib"));
+        assertTrue(couldMatchBelow(set, "lib/ext"));
+        assertFalse(couldMatchBelow(set, "lib/ext/a"));
+        assertFalse(couldMatchBelow(set, "bin"));
+        assertFalse(couldMatchBelow(set, "/lib"));
+        assertTrue(new PathPatternSet(new String[0], true).isEmpty());
+        assertFalse(set.isEmpty());
+    }
+
+    /**
+     * Verifies that matching a path against a set gives the same results as matching it against each pattern.
+     *
+     * @param caseSensitive if <tt>true</tt>, match case sensitively
+     */
+    private void checkMatches(boolean caseSensitive)
+    {
+        for (int i = 0; i < PATTERNS.length; ++i)
+        {
+            // exclude each pattern in turn, so that the set isn't dominated by "**"
+            String[] patterns = getPatterns(i);
+            PathPatternSet set = new PathPatternSet(patterns, caseSensitive);
+            for (String path : PATHS)
+            {
+                String name = path(path);
+                boolean expected = false;
+                for (String pattern : patterns)
+                {
+                    expected |= SelectorUtils.matchPath(pattern, name, caseSensitive);
+                }
+                assertEquals(path, expected, set.matches(PathPattern.tokenize(name), name.startsWith(File.separator)));
+            }
+        }
+    }
+
+    /**
+     * Verifies that determining if any pattern could match paths below a directory gives the same results as
+     * checking each pattern.
+     *
+     * @param caseSensitive if <tt>true</tt>, match case sensitively
+     */
+    private void checkCouldMatchBelow(boolean caseSensitive)
+    {
+        for (int i = 0; i < PATTERNS.length; ++i)
+        {
+            String[] patterns = getPatterns(i);
+            PathPatternSet set = new PathPatternSet(patterns, caseSensitive);
+            for (String path : PATHS)
+            {
+                String name = path(path);
+                String[] tokens = PathPattern.tokenize(name);
+                boolean expected = false;
+                for (String pattern : patterns)
+                {
+                    expected |= SelectorUtils.matchPatternStart(pattern, name, caseSensitive)
+                            && new PathPattern(pattern, caseSensitive).isDeeper(tokens.length);
+                }
+                assertEquals(path, expected, set.couldMatchBelow(tokens, name.startsWith(File.separator)));
+            }
+        }
+    }
+
+    /**
+     * Returns the patterns, excluding one, with separators converted to the platform separator.
+     *
+     * @param exclude the index of the pattern to exclude
+     * @return the patterns
+     */
+    private String[] getPatterns(int exclude)
+    {
+        String[] result = new String[PATTERNS.length - 1];
+        for (int i = 0, j = 0; i < PATTERNS.length; ++i)
+        {
+            if (i != exclude)
+            {
+                result[j++] = path(PATTERNS[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a single pattern matches a path.
+     *
+     * @param pattern the pattern
+     * @param path    the path
+     * @return <tt>true</tt> if the pattern matches
+     */
+    private boolean matches(String pattern, String path)
+    {
+        PathPatternSet set = new PathPatternSet(new String[]{path(pattern)}, true);
+        String name = path(path);
+        return set.matches(PathPattern.tokenize(name), name.startsWith(File.separator));
+    }
+
+    /**
+     * Determines if any pattern in a set could match paths below a directory.
+     *
+     * @param set  the set
+     * @param path the directory
+     * @return <tt>true</tt> if a pattern could match below the directory
+     */
+    private boolean couldMatchBelow(PathPatternSet set, String path)
+    {
+        String name = path(path);
+        return set.couldMatchBelow(PathPattern.tokenize(name), name.startsWith(File.separator));
+    }
+
+    /**
+     * Converts a path to use the platform separator.
+     *
+     * @param path the path
+     * @return the converted path
+     */
+    private String path(String path)
+    {
+        return path.replace('/', File.separatorChar);
+    }
+}